@@ -0,0 +1,36 @@
+package com.ticketing.service.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks once for each thread count, with the gc profiler for
+ * the allocation rate, and writes a JSON result file per thread count.
+ *
+ * The usual JMH command line options can be given as well, e.g.
+ * "-p venue=100x1000 HoldBenchmark" to narrow a run down. The thread counts
+ * come from the "threads" system property, 1,4,8 by default.
+ */
+public class BenchmarkRunner {
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		for (String threads : System.getProperty("threads", "1,4,8").split(",")) {
+			Options options = new OptionsBuilder()
+					.parent(commandLine)
+					.threads(Integer.parseInt(threads.trim()))
+					.addProfiler(GCProfiler.class)
+					.resultFormat(ResultFormatType.JSON)
+					.result("jmh-result-" + threads.trim() + "-threads.json")
+					.build();
+			new Runner(options).run();
+		}
+	}
+}
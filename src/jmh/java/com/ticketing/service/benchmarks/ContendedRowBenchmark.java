@@ -0,0 +1,85 @@
+package com.ticketing.service.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.services.TicketService;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+
+/**
+ * All the threads hold and expire seats of the same single row venue, the
+ * worst case for the row locks and the compare and set retries alike.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContendedRowBenchmark {
+
+	@Param({ "ROW_LOCKING", "LOCK_FREE", "SEQUENCED" })
+	Engine engine;
+
+	@Param({ "1x64", "1x1000" })
+	String venue;
+
+	@Param({ "2" })
+	int partySize;
+
+	TicketService ticketService;
+
+	ManualExpiryScheduler expiryScheduler;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		expiryScheduler = new ManualExpiryScheduler();
+		ticketService = Venues.create(engine, venue, expiryScheduler);
+		Venues.fill(ticketService, expiryScheduler, 50);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Venues.shutdown(ticketService);
+		expiryScheduler.shutdown();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public SeatHold holdAndExpire(Customer customer) {
+		SeatHold seatHold = ticketService.findAndHoldSeats(partySize, customer.email);
+		expiryScheduler.expireNext();
+		return seatHold;
+	}
+
+	@Benchmark
+	@Group("holdWhileCounting")
+	@GroupThreads(3)
+	public SeatHold holder(Customer customer) {
+		return holdAndExpire(customer);
+	}
+
+	@Benchmark
+	@Group("holdWhileCounting")
+	@GroupThreads(1)
+	public int counter() {
+		return ticketService.numSeatsAvailable();
+	}
+}
@@ -0,0 +1,13 @@
+package com.ticketing.service.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * The customer a benchmark thread holds and reserves seats for
+ */
+@State(Scope.Thread)
+public class Customer {
+
+	final String email = Venues.newCustomerEmail();
+}
@@ -0,0 +1,73 @@
+package com.ticketing.service.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ticketing.service.services.HoldExpiryScheduler.HoldExpiry;
+import com.ticketing.service.services.TimingWheelExpiryScheduler;
+
+/**
+ * Scheduling and cancelling hold expiries on the timing wheel, what every
+ * hold and every reserve pays on top of the seat work.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExpiryBenchmark {
+
+	private static final Runnable NO_OP = () -> {
+	};
+
+	private static final int BATCH_SIZE = 100;
+
+	TimingWheelExpiryScheduler expiryScheduler;
+
+	List<Runnable> batch;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		expiryScheduler = new TimingWheelExpiryScheduler();
+		batch = new ArrayList<>(BATCH_SIZE);
+		for (int i = 0; i < BATCH_SIZE; i++) {
+			batch.add(NO_OP);
+		}
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		expiryScheduler.shutdown();
+	}
+
+	@Benchmark
+	public boolean scheduleAndCancel() {
+		return expiryScheduler.schedule(NO_OP, Venues.ON_HOLD_TIME_OUT).cancel();
+	}
+
+	@Benchmark
+	public int scheduleAllAndCancel() {
+		int cancelled = 0;
+		for (HoldExpiry expiry : expiryScheduler.scheduleAll(batch, Venues.ON_HOLD_TIME_OUT)) {
+			if (expiry.cancel()) {
+				cancelled++;
+			}
+		}
+		return cancelled;
+	}
+}
@@ -0,0 +1,76 @@
+package com.ticketing.service.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.services.TicketService;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+
+/**
+ * findAndHoldSeats, hold expiry and numSeatsAvailable on a venue kept at a
+ * fill level: every hold is followed by the expiry of the oldest pending
+ * hold, so the venue never sells out during the run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HoldBenchmark {
+
+	@Param({ "ROW_LOCKING", "LOCK_FREE", "SEQUENCED" })
+	Engine engine;
+
+	@Param({ "4x4", "100x100", "100x1000" })
+	String venue;
+
+	@Param({ "1", "4", "10" })
+	int partySize;
+
+	@Param({ "0", "50", "90" })
+	int fillPercent;
+
+	TicketService ticketService;
+
+	ManualExpiryScheduler expiryScheduler;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		expiryScheduler = new ManualExpiryScheduler();
+		ticketService = Venues.create(engine, venue, expiryScheduler);
+		Venues.fill(ticketService, expiryScheduler, fillPercent);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		Venues.shutdown(ticketService);
+		expiryScheduler.shutdown();
+	}
+
+	@Benchmark
+	public SeatHold holdAndExpire(Customer customer) {
+		SeatHold seatHold = ticketService.findAndHoldSeats(partySize, customer.email);
+		expiryScheduler.expireNext();
+		return seatHold;
+	}
+
+	@Benchmark
+	public int numSeatsAvailable() {
+		return ticketService.numSeatsAvailable();
+	}
+}
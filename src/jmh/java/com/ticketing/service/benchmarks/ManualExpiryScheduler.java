@@ -0,0 +1,77 @@
+package com.ticketing.service.benchmarks;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.ticketing.service.services.HoldExpiryScheduler;
+
+/**
+ * HoldExpiryScheduler which never runs a task by itself. The benchmarks expire
+ * holds when they choose to, oldest first, so a venue stays at its fill level
+ * and the expiry path is measured on the benchmark threads.
+ */
+final class ManualExpiryScheduler implements HoldExpiryScheduler {
+
+	private final Queue<ManualExpiry> pending = new ConcurrentLinkedQueue<>();
+
+	@Override
+	public HoldExpiry schedule(Runnable task, long delayMillis) {
+		ManualExpiry expiry = new ManualExpiry(task);
+		pending.add(expiry);
+		return expiry;
+	}
+
+	/**
+	 * Run the oldest pending expiry
+	 *
+	 * @return false if there was none
+	 */
+	boolean expireNext() {
+		ManualExpiry expiry = pending.poll();
+		if (expiry == null) {
+			return false;
+		}
+		expiry.run();
+		return true;
+	}
+
+	void expireAll() {
+		while (expireNext()) {
+			// keep going
+		}
+	}
+
+	@Override
+	public int getPendingCount() {
+		return pending.size();
+	}
+
+	@Override
+	public void shutdown() {
+		pending.clear();
+	}
+
+	private static final class ManualExpiry implements HoldExpiry, Runnable {
+
+		private final Runnable task;
+
+		private final AtomicBoolean isDone = new AtomicBoolean();
+
+		private ManualExpiry(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public void run() {
+			if (isDone.compareAndSet(false, true)) {
+				task.run();
+			}
+		}
+
+		@Override
+		public boolean cancel() {
+			return isDone.compareAndSet(false, true);
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package com.ticketing.service.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.services.TicketService;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+
+/**
+ * findAndHoldSeats followed by reserveSeats. Reserved seats are gone for good,
+ * so each iteration sells a fixed batch of holds out of a fresh 100k seat
+ * venue, which is big enough for the batches of 8 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = ReserveBenchmark.HOLDS_PER_ITERATION)
+@Measurement(iterations = 10, batchSize = ReserveBenchmark.HOLDS_PER_ITERATION)
+@Fork(1)
+public class ReserveBenchmark {
+
+	static final int HOLDS_PER_ITERATION = 1000;
+
+	@Param({ "ROW_LOCKING", "LOCK_FREE", "SEQUENCED" })
+	Engine engine;
+
+	@Param({ "1", "4" })
+	int partySize;
+
+	TicketService ticketService;
+
+	ManualExpiryScheduler expiryScheduler;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		expiryScheduler = new ManualExpiryScheduler();
+		ticketService = Venues.create(engine, "100x1000", expiryScheduler);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() {
+		Venues.shutdown(ticketService);
+	}
+
+	@Benchmark
+	public String holdAndReserve(Customer customer) {
+		SeatHold seatHold = ticketService.findAndHoldSeats(partySize, customer.email);
+		return ticketService.reserveSeats(seatHold.getSeatHoldId(), customer.email);
+	}
+}
@@ -0,0 +1,116 @@
+package com.ticketing.service.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.services.HoldExpiryScheduler;
+import com.ticketing.service.services.SequencedTicketService;
+import com.ticketing.service.services.TicketService;
+import com.ticketing.service.services.TicketServiceFactory;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+
+/**
+ * Builds the venues the benchmarks run against
+ */
+final class Venues {
+
+	// long enough that no hold expires by itself during a benchmark
+	static final Long ON_HOLD_TIME_OUT = 3_600_000L;
+
+	// kept referenced, the level would be lost if the logger got collected
+	private static final Logger SERVICE_LOG = Logger.getLogger("com.ticketing.service");
+
+	private static final AtomicInteger CUSTOMERS = new AtomicInteger();
+
+	static {
+		// every expiry logs a warning, which would be all the benchmarks measure
+		SERVICE_LOG.setLevel(Level.SEVERE);
+	}
+
+	private Venues() {
+	}
+
+	/**
+	 * @param venue
+	 *            rows and seats per row, e.g. "100x1000"
+	 * @return a service selling the empty venue
+	 */
+	static TicketService create(Engine engine, String venue, HoldExpiryScheduler expiryScheduler) {
+		String[] size = venue.split("x");
+		return TicketServiceFactory.create(engine, Integer.parseInt(size[0]), Integer.parseInt(size[1]),
+				ON_HOLD_TIME_OUT, expiryScheduler);
+	}
+
+	/**
+	 * Stop the writer thread of a SEQUENCED service, the other engines have
+	 * no thread of their own
+	 *
+	 * @param ticketService
+	 */
+	static void shutdown(TicketService ticketService) {
+		if (ticketService instanceof SequencedTicketService) {
+			((SequencedTicketService) ticketService).shutdown();
+		}
+	}
+
+	/**
+	 * Sell the venue out in parties of 1 to 8 seats, then reserve random
+	 * parties until "fillPercent" of the seats are taken and let the other
+	 * holds expire. The free seats are left scattered the way a real sale
+	 * leaves them.
+	 *
+	 * @param ticketService
+	 * @param expiryScheduler
+	 *            the scheduler the service was created with
+	 * @param fillPercent
+	 */
+	static void fill(TicketService ticketService, ManualExpiryScheduler expiryScheduler, int fillPercent) {
+		Random random = new Random(42);
+		int capacity = ticketService.numSeatsAvailable();
+		List<SeatHold> seatHolds = new ArrayList<>();
+		List<String> customerEmails = new ArrayList<>();
+
+		int customer = 0;
+		while (ticketService.numSeatsAvailable() > 0) {
+			int numSeats = Math.min(1 + random.nextInt(8), ticketService.numSeatsAvailable());
+			String customerEmail = "fill" + customer++;
+			SeatHold seatHold = ticketService.findAndHoldSeats(numSeats, customerEmail);
+			if (seatHold.isError()) {
+				// the party doesn't fit anywhere, a single seat always does
+				seatHold = ticketService.findAndHoldSeats(1, customerEmail);
+			}
+			seatHolds.add(seatHold);
+			customerEmails.add(customerEmail);
+		}
+
+		List<Integer> order = new ArrayList<>(seatHolds.size());
+		for (int i = 0; i < seatHolds.size(); i++) {
+			order.add(i);
+		}
+		Collections.shuffle(order, random);
+
+		int reservedSeats = 0;
+		for (int i : order) {
+			if (reservedSeats * 100L >= (long) capacity * fillPercent) {
+				break;
+			}
+			SeatHold seatHold = seatHolds.get(i);
+			ticketService.reserveSeats(seatHold.getSeatHoldId(), customerEmails.get(i));
+			reservedSeats += seatHold.getTotalSeats();
+		}
+		expiryScheduler.expireAll();
+	}
+
+	/**
+	 * @return an email no other benchmark thread uses
+	 */
+	static String newCustomerEmail() {
+		return "customer" + CUSTOMERS.incrementAndGet() + "@example.com";
+	}
+}
@@ -0,0 +1,573 @@
+package com.ticketing.service.journal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal of the seat hold transitions of a venue: holds,
+ * reservations, expiries, the links between the parts of split holds and the
+ * customers they refer to.
+ *
+ * Records are appended to a memory mapped segment file, and a new segment is
+ * started when the current one is full. Appending only copies the record into
+ * the mapping, a flusher thread forces the segment to disk every few
+ * milliseconds, or as soon as a caller waits for its record in
+ * awaitDurable(), so one force commits every record appended since the last
+ * one.
+ *
+ * Each record is [int length][int crc32][long lsn][byte type][fields], the
+ * log sequence number (lsn) counting the records from 1. Reading a segment
+ * stops at the first record which is zero, cut short or fails its checksum,
+ * so a record torn by a crash is never replayed.
+ *
+ * @author Suma
+ *
+ */
+public class HoldJournal implements Closeable {
+
+	private static final Logger log = Logger.getLogger(HoldJournal.class.getName());
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+	public static final long DEFAULT_FLUSH_INTERVAL_MILLISECS = 2L;
+
+	static final byte HOLD = 1;
+
+	static final byte RESERVE = 2;
+
+	static final byte EXPIRE = 3;
+
+	static final byte CUSTOMER = 4;
+
+	static final byte LINK = 5;
+
+	private static final int HEADER_SIZE = 8;
+
+	private static final int MAX_BODY_SIZE = 4096;
+
+	private static final String SEGMENT_PREFIX = "journal-";
+
+	private static final String SEGMENT_SUFFIX = ".log";
+
+	/**
+	 * Receives the records of the journal in lsn order when it is opened
+	 */
+	public interface RecordHandler {
+
+		void customer(long lsn, int customerId, String emailId);
+
+		void hold(long lsn, long seatHoldId, int rowId, int firstSeatId, int numSeats, int customerId,
+				long deadlineMillis);
+
+		void reserve(long lsn, long seatHoldId);
+
+		void expire(long lsn, long seatHoldId);
+
+		void link(long lsn, long seatHoldId, long linkedId);
+	}
+
+	private final Path directory;
+
+	private final int segmentSize;
+
+	private final long flushIntervalMillis;
+
+	// held while a record is appended, with no monitor, so a virtual thread
+	// appending doesn't pin its carrier on the segment writes
+	private final ReentrantLock appendLock = new ReentrantLock();
+
+	// guarded by appendLock
+	private final ByteBuffer record = ByteBuffer.allocate(HEADER_SIZE + MAX_BODY_SIZE);
+
+	private final CRC32 crc = new CRC32();
+
+	private int segmentIndex;
+
+	private MappedByteBuffer segment;
+
+	// index and last lsn of each segment before the current one
+	private final Deque<long[]> closedSegments;
+
+	private long lastLsn;
+
+	private final ReentrantLock flushLock = new ReentrantLock();
+
+	// signalled when a flush is requested, done or the journal closes
+	private final Condition flushChanged = flushLock.newCondition();
+
+	// guarded by flushLock
+	private boolean isFlushRequested;
+
+	private boolean isClosing;
+
+	private volatile boolean isClosed;
+
+	private volatile long durableLsn;
+
+	private final Thread flusher;
+
+	private HoldJournal(Path directory, int segmentSize, long flushIntervalMillis, Deque<long[]> closedSegments,
+			int segmentIndex, long lastLsn) throws IOException {
+		this.directory = directory;
+		this.closedSegments = closedSegments;
+		this.segmentSize = segmentSize;
+		this.flushIntervalMillis = flushIntervalMillis;
+		this.segmentIndex = segmentIndex;
+		this.lastLsn = lastLsn;
+		this.durableLsn = lastLsn;
+		this.segment = mapSegment(segmentIndex);
+
+		this.flusher = new Thread(this::runFlusher, "hold-journal-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	/**
+	 * Open the journal in the directory with the default segment size and
+	 * flush interval
+	 *
+	 * @see #open(Path, RecordHandler, int, long)
+	 */
+	public static HoldJournal open(Path directory, RecordHandler handler) {
+		return open(directory, handler, 0L);
+	}
+
+	/**
+	 * Open the journal in the directory with the default segment size and
+	 * flush interval, its lsns going on from those of a snapshot
+	 *
+	 * @param directory
+	 * @param handler
+	 * @param snapshotLsn
+	 *            the lsn of the snapshot the journal is replayed on top of,
+	 *            new records get a later lsn even if the snapshot made every
+	 *            record of the journal redundant
+	 * @see #open(Path, RecordHandler, int, long)
+	 */
+	public static HoldJournal open(Path directory, RecordHandler handler, long snapshotLsn) {
+		return open(directory, handler, snapshotLsn, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_INTERVAL_MILLISECS);
+	}
+
+	/**
+	 * Replay the records of the journal in the directory, then open it for
+	 * appending. Appends go to a new segment, so the tail of a segment torn
+	 * by a crash is never written over.
+	 *
+	 * @param directory
+	 *            created if it doesn't exist
+	 * @param handler
+	 *            receives the records already in the journal
+	 * @param segmentSize
+	 *            size of the segment files in bytes
+	 * @param flushIntervalMillis
+	 *            the longest time an appended record waits to be forced
+	 * @return the journal
+	 */
+	public static HoldJournal open(Path directory, RecordHandler handler, int segmentSize, long flushIntervalMillis) {
+		return open(directory, handler, 0L, segmentSize, flushIntervalMillis);
+	}
+
+	private static HoldJournal open(Path directory, RecordHandler handler, long snapshotLsn, int segmentSize,
+			long flushIntervalMillis) {
+		if (segmentSize < 2 * (HEADER_SIZE + MAX_BODY_SIZE)) {
+			throw new IllegalArgumentException("Journal segments must be at least " + 2 * (HEADER_SIZE + MAX_BODY_SIZE)
+					+ " bytes");
+		}
+		try {
+			Files.createDirectories(directory);
+			List<Path> segments = listSegments(directory);
+			Deque<long[]> closedSegments = new ArrayDeque<>();
+			long lastLsn = snapshotLsn;
+			for (Path path : segments) {
+				lastLsn = replaySegment(path, handler, lastLsn);
+				closedSegments.add(new long[] { segmentIndex(path), lastLsn });
+			}
+			int segmentIndex = segments.isEmpty() ? 0 : segmentIndex(segments.get(segments.size() - 1)) + 1;
+
+			return new HoldJournal(directory, segmentSize, flushIntervalMillis, closedSegments, segmentIndex,
+					lastLsn);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not open the journal in " + directory, ex);
+		}
+	}
+
+	/**
+	 * @return the lsn of the HOLD record
+	 */
+	public long appendHold(long seatHoldId, int rowId, int firstSeatId, int numSeats, int customerId,
+			long deadlineMillis) {
+		appendLock.lock();
+		try {
+			startRecord(HOLD);
+			record.putLong(seatHoldId).putInt(rowId).putInt(firstSeatId).putInt(numSeats).putInt(customerId)
+					.putLong(deadlineMillis);
+			return finishRecord();
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	public long appendReserve(long seatHoldId) {
+		appendLock.lock();
+		try {
+			startRecord(RESERVE);
+			record.putLong(seatHoldId);
+			return finishRecord();
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	public long appendExpire(long seatHoldId) {
+		appendLock.lock();
+		try {
+			startRecord(EXPIRE);
+			record.putLong(seatHoldId);
+			return finishRecord();
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * Record that the hold is a part of a split hold, followed by linkedId
+	 * 
+	 * @return the lsn of the LINK record
+	 */
+	public long appendLink(long seatHoldId, long linkedId) {
+		appendLock.lock();
+		try {
+			startRecord(LINK);
+			record.putLong(seatHoldId).putLong(linkedId);
+			return finishRecord();
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	public long appendCustomer(int customerId, String emailId) {
+		byte[] email = emailId.getBytes(StandardCharsets.UTF_8);
+		if (email.length > MAX_BODY_SIZE - 32) {
+			throw new IllegalArgumentException("Email of customer " + customerId + " is too long for the journal");
+		}
+		appendLock.lock();
+		try {
+			startRecord(CUSTOMER);
+			record.putInt(customerId).putShort((short) email.length).put(email);
+			return finishRecord();
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the lsn of the last record appended
+	 */
+	public long getLastLsn() {
+		appendLock.lock();
+		try {
+			return lastLsn;
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * Delete the segment files holding no record after the lsn, e.g. once a
+	 * snapshot covers them. The current segment is never deleted.
+	 *
+	 * @param lsn
+	 * @return the number of segments deleted
+	 */
+	public int deleteSegmentsUpTo(long lsn) {
+		appendLock.lock();
+		try {
+			int deleted = 0;
+			while (!closedSegments.isEmpty() && closedSegments.peekFirst()[1] <= lsn) {
+				Path path = segmentPath((int) closedSegments.pollFirst()[0]);
+				try {
+					Files.deleteIfExists(path);
+					deleted++;
+				} catch (IOException ex) {
+					throw new UncheckedIOException("Could not delete journal segment " + path, ex);
+				}
+			}
+			return deleted;
+		} finally {
+			appendLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the lsn up to which all the records have been forced to disk
+	 */
+	public long getDurableLsn() {
+		return durableLsn;
+	}
+
+	/**
+	 * Wait until the record and all the ones before it have been forced to
+	 * disk. Never call this with a row lock held, the force takes a disk
+	 * write.
+	 *
+	 * @param lsn
+	 * @return false if the wait was interrupted, or the journal closed,
+	 *         before the record was on disk
+	 */
+	public boolean awaitDurable(long lsn) {
+		if (durableLsn >= lsn) {
+			return true;
+		}
+		flushLock.lock();
+		try {
+			isFlushRequested = true;
+			flushChanged.signalAll();
+			while (durableLsn < lsn && !isClosed) {
+				try {
+					flushChanged.await();
+				} catch (InterruptedException ex) {
+					Thread.currentThread().interrupt();
+					break;
+				}
+			}
+			return durableLsn >= lsn;
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	/**
+	 * Stop the flusher and force what is left, the journal can't be appended
+	 * to afterwards
+	 */
+	@Override
+	public void close() {
+		flushLock.lock();
+		try {
+			if (isClosing) {
+				return;
+			}
+			isClosing = true;
+			flushChanged.signalAll();
+		} finally {
+			flushLock.unlock();
+		}
+		try {
+			flusher.join();
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		appendLock.lock();
+		try {
+			segment = null;
+		} finally {
+			appendLock.unlock();
+		}
+		flushLock.lock();
+		try {
+			isClosed = true;
+			flushChanged.signalAll();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private void startRecord(byte type) {
+		if (segment == null) {
+			throw new IllegalStateException("Journal " + directory + " is closed");
+		}
+		record.clear();
+		record.position(HEADER_SIZE);
+		record.putLong(lastLsn + 1).put(type);
+	}
+
+	/**
+	 * Fill in the header of the record and copy it into the segment, rolling
+	 * to a new segment if it doesn't fit
+	 *
+	 * @return the lsn of the record
+	 */
+	private long finishRecord() {
+		int length = record.position() - HEADER_SIZE;
+		crc.reset();
+		crc.update(record.array(), HEADER_SIZE, length);
+		record.putInt(0, length);
+		record.putInt(4, (int) crc.getValue());
+
+		if (segment.remaining() < HEADER_SIZE + length) {
+			rollSegment();
+		}
+		segment.put(record.array(), 0, HEADER_SIZE + length);
+		return ++lastLsn;
+	}
+
+	private void rollSegment() {
+		segment.force();
+		closedSegments.add(new long[] { segmentIndex, lastLsn });
+		try {
+			segment = mapSegment(++segmentIndex);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not start journal segment " + segmentIndex, ex);
+		}
+	}
+
+	private void runFlusher() {
+		while (true) {
+			flushLock.lock();
+			try {
+				if (!isFlushRequested && !isClosing) {
+					try {
+						flushChanged.await(flushIntervalMillis, TimeUnit.MILLISECONDS);
+					} catch (InterruptedException ex) {
+						return;
+					}
+				}
+				isFlushRequested = false;
+				if (isClosing) {
+					return;
+				}
+			} finally {
+				flushLock.unlock();
+			}
+			flush();
+		}
+	}
+
+	/**
+	 * Force the current segment, the segments before it were forced when they
+	 * were rolled
+	 */
+	private void flush() {
+		MappedByteBuffer current;
+		long lsn;
+		appendLock.lock();
+		try {
+			current = segment;
+			lsn = lastLsn;
+		} finally {
+			appendLock.unlock();
+		}
+		if (current == null || lsn <= durableLsn) {
+			return;
+		}
+		current.force();
+		flushLock.lock();
+		try {
+			if (lsn > durableLsn) {
+				durableLsn = lsn;
+			}
+			flushChanged.signalAll();
+		} finally {
+			flushLock.unlock();
+		}
+	}
+
+	private Path segmentPath(int index) {
+		return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+	}
+
+	private MappedByteBuffer mapSegment(int index) throws IOException {
+		Path path = segmentPath(index);
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			return channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+		}
+	}
+
+	private static List<Path> listSegments(Path directory) throws IOException {
+		List<Path> segments = new ArrayList<>();
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+				SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+			for (Path path : stream) {
+				segments.add(path);
+			}
+		}
+		// the index is zero padded, so the names sort in segment order
+		Collections.sort(segments);
+		return segments;
+	}
+
+	private static int segmentIndex(Path segment) {
+		String name = segment.getFileName().toString();
+		return Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+	}
+
+	/**
+	 * Hand the valid records of the segment to the handler
+	 *
+	 * @return the lsn of the last record replayed so far
+	 */
+	private static long replaySegment(Path path, RecordHandler handler, long lastLsn) throws IOException {
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			byte[] body = new byte[MAX_BODY_SIZE];
+			CRC32 crc = new CRC32();
+
+			while (buffer.remaining() >= HEADER_SIZE) {
+				int length = buffer.getInt();
+				int checksum = buffer.getInt();
+				if (length <= 0 || length > MAX_BODY_SIZE || length > buffer.remaining()) {
+					break;
+				}
+				buffer.get(body, 0, length);
+				crc.reset();
+				crc.update(body, 0, length);
+				if ((int) crc.getValue() != checksum) {
+					log.warning("Journal segment " + path + " ends with a torn record after lsn " + lastLsn);
+					break;
+				}
+				ByteBuffer fields = ByteBuffer.wrap(body, 0, length);
+				long lsn = fields.getLong();
+				dispatch(fields.get(), lsn, fields, handler);
+				lastLsn = lsn;
+			}
+		}
+		return lastLsn;
+	}
+
+	private static void dispatch(byte type, long lsn, ByteBuffer fields, RecordHandler handler) {
+		switch (type) {
+		case HOLD:
+			handler.hold(lsn, fields.getLong(), fields.getInt(), fields.getInt(), fields.getInt(), fields.getInt(),
+					fields.getLong());
+			break;
+		case RESERVE:
+			handler.reserve(lsn, fields.getLong());
+			break;
+		case EXPIRE:
+			handler.expire(lsn, fields.getLong());
+			break;
+		case LINK:
+			handler.link(lsn, fields.getLong(), fields.getLong());
+			break;
+		case CUSTOMER:
+			int customerId = fields.getInt();
+			byte[] email = new byte[fields.getShort() & 0xFFFF];
+			fields.get(email);
+			handler.customer(lsn, customerId, new String(email, StandardCharsets.UTF_8));
+			break;
+		default:
+			throw new IllegalStateException("Unknown journal record type " + type + " at lsn " + lsn);
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package com.ticketing.service.journal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+import com.ticketing.service.model.CustomerRegistry;
+import com.ticketing.service.model.HoldTable;
+import com.ticketing.service.model.Row;
+import com.ticketing.service.model.Venue;
+
+/**
+ * Point in time image of a venue: the status words and holders of every row,
+ * the live holds with their deadlines and the customers, along with the lsn
+ * of the journal the image starts from.
+ *
+ * A snapshot is taken while holds and reservations go on. Each row is only
+ * locked while its words are copied, together with its live holds, so the
+ * rows are captured at slightly different times, all after the recorded
+ * lsn. Holds are only added and removed under the lock of their row, so a
+ * row whose held seats outnumber the holds found for it in a first pass over
+ * the table has its holds looked up again while it is locked, and no seat is
+ * captured on hold without its hold, journal or not. Replaying the journal
+ * from that lsn on brings every row up to date: the records set the seats
+ * they name to absolute values, and a reserve or an expiry of a hold which
+ * is no longer in the table is skipped, so records already reflected in a
+ * row change nothing.
+ *
+ * The file is [int magic][int version][long journalLsn][long createdMillis]
+ * [int holdIdGeneration][eventId][int rows][int seatsPerRow], then per row
+ * its words, holders and holds, then the customers in id order, and a CRC32
+ * of all of it. It is written to a temporary file which then replaces the
+ * previous snapshot, and loaded through a memory mapped read.
+ *
+ * @author Suma
+ *
+ */
+public class VenueSnapshot {
+
+	// "VSNP"
+	static final int MAGIC = 0x56534E50;
+
+	// low bit of every two bit lane of a status word, ON_HOLD is 01
+	private static final long LOW_BITS = 0x5555555555555555L;
+
+	// 2: 64 bit seatHoldIds and their generation
+	// 3: the linked id of each hold, for split holds
+	static final int VERSION = 3;
+
+	private final Venue venue;
+
+	private final long journalLsn;
+
+	private final long createdMillis;
+
+	private final int holdIdGeneration;
+
+	private VenueSnapshot(Venue venue, long journalLsn, long createdMillis, int holdIdGeneration) {
+		this.venue = venue;
+		this.journalLsn = journalLsn;
+		this.createdMillis = createdMillis;
+		this.holdIdGeneration = holdIdGeneration;
+	}
+
+	/**
+	 * @return the venue rebuilt from the snapshot, with its live holds
+	 */
+	public Venue getVenue() {
+		return venue;
+	}
+
+	/**
+	 * @return the journal records after this lsn are not all in the snapshot
+	 */
+	public long getJournalLsn() {
+		return journalLsn;
+	}
+
+	public long getCreatedMillis() {
+		return createdMillis;
+	}
+
+	/**
+	 * @return the generation of the seatHoldIds the venue was handing out
+	 */
+	public int getHoldIdGeneration() {
+		return holdIdGeneration;
+	}
+
+	/**
+	 * Write a snapshot of the venue, replacing the file atomically
+	 *
+	 * @param venue
+	 * @param journalLsn
+	 *            the last lsn of the journal before the capture started, 0
+	 *            without a journal
+	 * @param file
+	 */
+	public static void write(Venue venue, long journalLsn, Path file) {
+		List<Row> rows = venue.getVenueTickets();
+		HoldTable holds = venue.getHolds();
+
+		// holds created after this pass are looked up again with their row
+		// locked
+		Map<Integer, List<Long>> holdIdsByRow = new HashMap<>();
+		holds.forEach((seatHoldId, rowId, firstSeatId, numSeats, holderId, deadlineMillis) -> holdIdsByRow
+				.computeIfAbsent(rowId, id -> new ArrayList<>()).add(seatHoldId));
+
+		Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+		try (FileOutputStream fileOut = new FileOutputStream(tempFile.toFile());
+				CheckedOutputStream checkedOut = new CheckedOutputStream(new BufferedOutputStream(fileOut, 1 << 16),
+						new CRC32());
+				DataOutputStream out = new DataOutputStream(checkedOut)) {
+			int seatsPerRow = rows.isEmpty() ? 0 : rows.get(0).getSeatCount();
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(journalLsn);
+			out.writeLong(System.currentTimeMillis());
+			out.writeInt(venue.getHoldIds().getGeneration());
+			writeString(out, venue.getEventId());
+			out.writeInt(rows.size());
+			out.writeInt(seatsPerRow);
+
+			long[] words = new long[rows.isEmpty() ? 0 : rows.get(0).getStatusWordCount()];
+			int[] holderIds = new int[seatsPerRow];
+			HoldTable.Cursor hold = new HoldTable.Cursor();
+			for (Row row : rows) {
+				// id, first seat, seat count, deadline and linked id of each
+				// live hold
+				List<long[]> liveHolds = new ArrayList<>();
+				row.getLock().lock();
+				try {
+					row.copyState(words, holderIds);
+					List<Long> seatHoldIds = holdIdsByRow.getOrDefault(row.getRowId(), Collections.emptyList());
+					int heldSeats = addLiveHolds(holds, row.getRowId(), seatHoldIds, hold, liveHolds);
+					if (heldSeats < onHoldSeats(words)) {
+						// a hold taken since the first pass
+						liveHolds.clear();
+						addLiveHolds(holds, row.getRowId(), rowHoldIds(holds, row.getRowId()), hold, liveHolds);
+					}
+				} finally {
+					row.getLock().unlock();
+				}
+				writeRow(out, words, holderIds, liveHolds);
+			}
+
+			// after the rows, so every holder they refer to is in
+			CustomerRegistry customers = venue.getCustomers();
+			int lastCustomerId = customers.getLastCustomerId();
+			out.writeInt(lastCustomerId);
+			for (int customerId = 1; customerId <= lastCustomerId; customerId++) {
+				writeString(out, customers.getEmailId(customerId));
+			}
+
+			out.flush();
+			out.writeLong(checkedOut.getChecksum().getValue());
+			out.flush();
+			fileOut.getChannel().force(true);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not write the snapshot " + file, ex);
+		}
+
+		try {
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not replace the snapshot " + file, ex);
+		}
+	}
+
+	/**
+	 * Rebuild the venue held in the snapshot file
+	 *
+	 * @param file
+	 * @return the snapshot
+	 * @throws IllegalStateException
+	 *             if the file is not a snapshot of a known version, or is
+	 *             damaged
+	 */
+	public static VenueSnapshot load(Path file) {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			verifyChecksum(buffer, file);
+
+			if (buffer.getInt() != MAGIC) {
+				throw new IllegalStateException(file + " is not a venue snapshot");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IllegalStateException("Unsupported version " + version + " of venue snapshot " + file);
+			}
+			long journalLsn = buffer.getLong();
+			long createdMillis = buffer.getLong();
+			int holdIdGeneration = buffer.getInt();
+			Venue venue = new Venue(readString(buffer), buffer.getInt(), buffer.getInt());
+
+			for (Row row : venue.getVenueTickets()) {
+				long[] words = new long[row.getStatusWordCount()];
+				int[] holderIds = new int[row.getSeatCount()];
+				buffer.asLongBuffer().get(words);
+				buffer.position(buffer.position() + words.length * Long.BYTES);
+				buffer.asIntBuffer().get(holderIds);
+				buffer.position(buffer.position() + holderIds.length * Integer.BYTES);
+				row.restoreState(words, holderIds);
+
+				for (int i = buffer.getInt(); i > 0; i--) {
+					long seatHoldId = buffer.getLong();
+					int firstSeatId = buffer.getInt();
+					int numSeats = buffer.getInt();
+					int holderId = row.getHolderId(firstSeatId);
+					long deadlineMillis = buffer.getLong();
+					venue.getHolds().put(seatHoldId, row.getRowId(), firstSeatId, numSeats, holderId,
+							deadlineMillis, buffer.getLong());
+					venue.getCustomerHolds().add(holderId, seatHoldId, numSeats);
+				}
+			}
+
+			// customers ids come out the same as they are interned in order
+			for (int i = buffer.getInt(); i > 0; i--) {
+				venue.getCustomers().intern(readString(buffer));
+			}
+
+			return new VenueSnapshot(venue, journalLsn, createdMillis, holdIdGeneration);
+		} catch (IOException ex) {
+			throw new UncheckedIOException("Could not load the snapshot " + file, ex);
+		}
+	}
+
+	/**
+	 * Add the id, first seat, seat count, deadline and linked id of each of
+	 * the holds still in the row
+	 *
+	 * @return the seats of the holds added
+	 */
+	private static int addLiveHolds(HoldTable holds, int rowId, List<Long> seatHoldIds, HoldTable.Cursor hold,
+			List<long[]> liveHolds) {
+		int heldSeats = 0;
+		for (long seatHoldId : seatHoldIds) {
+			if (holds.get(seatHoldId, hold) && hold.getRowId() == rowId) {
+				liveHolds.add(new long[] { seatHoldId, hold.getFirstSeatId(), hold.getNumSeats(),
+						hold.getDeadlineMillis(), hold.getLinkedId() });
+				heldSeats += hold.getNumSeats();
+			}
+		}
+		return heldSeats;
+	}
+
+	private static List<Long> rowHoldIds(HoldTable holds, int rowId) {
+		List<Long> seatHoldIds = new ArrayList<>();
+		holds.forEach((seatHoldId, holdRowId, firstSeatId, numSeats, holderId, deadlineMillis) -> {
+			if (holdRowId == rowId) {
+				seatHoldIds.add(seatHoldId);
+			}
+		});
+		return seatHoldIds;
+	}
+
+	private static int onHoldSeats(long[] words) {
+		int count = 0;
+		for (long word : words) {
+			count += Long.bitCount(word & ~(word >>> 1) & LOW_BITS);
+		}
+		return count;
+	}
+
+	private static void writeRow(DataOutputStream out, long[] words, int[] holderIds, List<long[]> liveHolds)
+			throws IOException {
+		for (long word : words) {
+			out.writeLong(word);
+		}
+		for (int holderId : holderIds) {
+			out.writeInt(holderId);
+		}
+		out.writeInt(liveHolds.size());
+		for (long[] hold : liveHolds) {
+			out.writeLong(hold[0]);
+			out.writeInt((int) hold[1]);
+			out.writeInt((int) hold[2]);
+			out.writeLong(hold[3]);
+			out.writeLong(hold[4]);
+		}
+	}
+
+	private static void verifyChecksum(MappedByteBuffer buffer, Path file) {
+		int length = buffer.limit() - Long.BYTES;
+		if (length < 0) {
+			throw new IllegalStateException(file + " is not a venue snapshot");
+		}
+		ByteBuffer content = buffer.duplicate();
+		CRC32 crc = new CRC32();
+		byte[] chunk = new byte[1 << 16];
+		for (int remaining = length; remaining > 0; remaining -= chunk.length) {
+			int chunkLength = Math.min(remaining, chunk.length);
+			content.get(chunk, 0, chunkLength);
+			crc.update(chunk, 0, chunkLength);
+		}
+		if (crc.getValue() != buffer.getLong(length)) {
+			throw new IllegalStateException("Venue snapshot " + file + " is damaged");
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,100 @@
+package com.ticketing.service.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Log linear histogram of durations in nanoseconds, in the manner of
+ * HdrHistogram.
+ *
+ * Every power of two range is split into 32 equal buckets, so a value is
+ * known to within 1/32 of itself. The counts live in a preallocated
+ * AtomicLongArray, so recording a value neither locks nor allocates, and a
+ * snapshot is only as consistent as the counts read one by one.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	// durations up to 2^40 ns, about 18 minutes, longer ones share the last
+	// bucket
+	private static final int MAX_MAGNITUDE = 40;
+
+	static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	private final LongAdder totalNanos = new LongAdder();
+
+	private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+
+	/**
+	 * @param nanos
+	 *            the duration, negative durations count as 0
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0L);
+		counts.incrementAndGet(bucketIndex(value));
+		totalNanos.add(value);
+		maxNanos.accumulate(value);
+	}
+
+	public HistogramSnapshot snapshot() {
+		long[] bucketCounts = new long[BUCKET_COUNT];
+		long count = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			bucketCounts[i] = counts.get(i);
+			count += bucketCounts[i];
+		}
+		long max = maxNanos.get();
+
+		return new HistogramSnapshot(count, count == 0 ? 0L : totalNanos.sum() / count,
+				valueAtPercentile(bucketCounts, count, 50.0, max), valueAtPercentile(bucketCounts, count, 90.0, max),
+				valueAtPercentile(bucketCounts, count, 99.0, max), valueAtPercentile(bucketCounts, count, 99.9, max),
+				max);
+	}
+
+	/**
+	 * @return the highest value of the bucket holding the percentile, never
+	 *         more than the largest value recorded
+	 */
+	private static long valueAtPercentile(long[] bucketCounts, long count, double percentile, long max) {
+		if (count == 0) {
+			return 0L;
+		}
+		long rank = Math.max((long) Math.ceil(percentile / 100.0 * count), 1L);
+		long seen = 0;
+		for (int i = 0; i < bucketCounts.length; i++) {
+			seen += bucketCounts[i];
+			if (seen >= rank) {
+				return Math.min(highestValue(i), max);
+			}
+		}
+		return max;
+	}
+
+	/**
+	 * Values below 32 have a bucket each, above that the bucket is given by
+	 * the position of the highest one bit and the 5 bits after it
+	 */
+	static int bucketIndex(long value) {
+		if (value < SUB_BUCKETS) {
+			return (int) value;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+		int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+		return Math.min((shift + 1) * SUB_BUCKETS + subBucket, BUCKET_COUNT - 1);
+	}
+
+	static long highestValue(int bucketIndex) {
+		if (bucketIndex < SUB_BUCKETS) {
+			return bucketIndex;
+		}
+		int shift = bucketIndex / SUB_BUCKETS - 1;
+		long lowestValue = (long) (SUB_BUCKETS + bucketIndex % SUB_BUCKETS) << shift;
+		return lowestValue + (1L << shift) - 1;
+	}
+}
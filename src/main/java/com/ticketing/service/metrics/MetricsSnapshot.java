@@ -0,0 +1,98 @@
+package com.ticketing.service.metrics;
+
+/**
+ * The metrics of a TicketService at one point in time, see
+ * TicketServiceMetricsMXBean for what each of them counts
+ */
+public class MetricsSnapshot {
+
+	long holdsSucceeded;
+
+	long holdsTooManyRequested;
+
+	long holdsConsecutiveNotAvailable;
+
+	long holdsCustomerLimitReached;
+
+	long reservesSucceeded;
+
+	long reservesEmailMismatch;
+
+	long reservesUnsuccessful;
+
+	long holdsExpired;
+
+	long holdsReleased;
+
+	long liveHolds;
+
+	long expiryBacklog;
+
+	HistogramSnapshot findAndHoldSeatsLatency;
+
+	HistogramSnapshot reserveSeatsLatency;
+
+	HistogramSnapshot holdToReserveTime;
+
+	HistogramSnapshot lockWaitTime;
+
+	public long getHoldsSucceeded() {
+		return holdsSucceeded;
+	}
+
+	public long getHoldsTooManyRequested() {
+		return holdsTooManyRequested;
+	}
+
+	public long getHoldsConsecutiveNotAvailable() {
+		return holdsConsecutiveNotAvailable;
+	}
+
+	public long getHoldsCustomerLimitReached() {
+		return holdsCustomerLimitReached;
+	}
+
+	public long getReservesSucceeded() {
+		return reservesSucceeded;
+	}
+
+	public long getReservesEmailMismatch() {
+		return reservesEmailMismatch;
+	}
+
+	public long getReservesUnsuccessful() {
+		return reservesUnsuccessful;
+	}
+
+	public long getHoldsExpired() {
+		return holdsExpired;
+	}
+
+	public long getHoldsReleased() {
+		return holdsReleased;
+	}
+
+	public long getLiveHolds() {
+		return liveHolds;
+	}
+
+	public long getExpiryBacklog() {
+		return expiryBacklog;
+	}
+
+	public HistogramSnapshot getFindAndHoldSeatsLatency() {
+		return findAndHoldSeatsLatency;
+	}
+
+	public HistogramSnapshot getReserveSeatsLatency() {
+		return reserveSeatsLatency;
+	}
+
+	public HistogramSnapshot getHoldToReserveTime() {
+		return holdToReserveTime;
+	}
+
+	public HistogramSnapshot getLockWaitTime() {
+		return lockWaitTime;
+	}
+}
@@ -0,0 +1,237 @@
+package com.ticketing.service.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters, gauges and latency histograms of one TicketService.
+ *
+ * The recording methods are called on the hot path: they only add to
+ * LongAdders and preallocated histograms, so they take no lock and allocate
+ * nothing. Reading is done through snapshot() or over JMX.
+ *
+ * @author Suma
+ *
+ */
+public class TicketServiceMetrics implements TicketServiceMetricsMXBean {
+
+	/**
+	 * How a findAndHoldSeats or reserveSeats call, or the end of a hold
+	 * without a reservation, ended
+	 */
+	public enum Outcome {
+		HELD, TOO_MANY_REQUESTED, CONSECUTIVE_NOT_AVAILABLE, CUSTOMER_LIMIT_REACHED, RESERVED, EMAIL_MISMATCH,
+		RESERVE_UNSUCCESSFUL, EXPIRED, RELEASED
+	}
+
+	private static final Outcome[] OUTCOMES = Outcome.values();
+
+	private final LongAdder[] outcomes = new LongAdder[OUTCOMES.length];
+
+	private final LatencyHistogram findAndHoldSeatsLatency = new LatencyHistogram();
+
+	private final LatencyHistogram reserveSeatsLatency = new LatencyHistogram();
+
+	private final LatencyHistogram holdToReserveTime = new LatencyHistogram();
+
+	private final LatencyHistogram lockWaitTime = new LatencyHistogram();
+
+	private final LongSupplier liveHolds;
+
+	private final LongSupplier expiryBacklog;
+
+	/**
+	 * @param liveHolds
+	 *            gives the current number of live holds
+	 * @param expiryBacklog
+	 *            gives the current number of pending expiries
+	 */
+	public TicketServiceMetrics(LongSupplier liveHolds, LongSupplier expiryBacklog) {
+		for (int i = 0; i < outcomes.length; i++) {
+			outcomes[i] = new LongAdder();
+		}
+		this.liveHolds = liveHolds;
+		this.expiryBacklog = expiryBacklog;
+	}
+
+	/**
+	 * @param outcome
+	 * @param nanos
+	 *            how long the findAndHoldSeats call took
+	 */
+	public void recordHold(Outcome outcome, long nanos) {
+		outcomes[outcome.ordinal()].increment();
+		findAndHoldSeatsLatency.record(nanos);
+	}
+
+	/**
+	 * @param outcome
+	 * @param nanos
+	 *            how long the reserveSeats call took
+	 */
+	public void recordReserve(Outcome outcome, long nanos) {
+		outcomes[outcome.ordinal()].increment();
+		reserveSeatsLatency.record(nanos);
+	}
+
+	/**
+	 * Count an outcome without a latency, e.g. for the items of a batch
+	 *
+	 * @param outcome
+	 */
+	public void record(Outcome outcome) {
+		outcomes[outcome.ordinal()].increment();
+	}
+
+	/**
+	 * @param nanos
+	 *            the time from the hold to its reservation
+	 */
+	public void recordConversion(long nanos) {
+		holdToReserveTime.record(nanos);
+	}
+
+	/**
+	 * @param nanos
+	 *            the time spent waiting for a lock which was not free
+	 */
+	public void recordLockWait(long nanos) {
+		lockWaitTime.record(nanos);
+	}
+
+	public long getCount(Outcome outcome) {
+		return outcomes[outcome.ordinal()].sum();
+	}
+
+	@Override
+	public long getHoldsSucceeded() {
+		return getCount(Outcome.HELD);
+	}
+
+	@Override
+	public long getHoldsTooManyRequested() {
+		return getCount(Outcome.TOO_MANY_REQUESTED);
+	}
+
+	@Override
+	public long getHoldsConsecutiveNotAvailable() {
+		return getCount(Outcome.CONSECUTIVE_NOT_AVAILABLE);
+	}
+
+	@Override
+	public long getHoldsCustomerLimitReached() {
+		return getCount(Outcome.CUSTOMER_LIMIT_REACHED);
+	}
+
+	@Override
+	public long getReservesSucceeded() {
+		return getCount(Outcome.RESERVED);
+	}
+
+	@Override
+	public long getReservesEmailMismatch() {
+		return getCount(Outcome.EMAIL_MISMATCH);
+	}
+
+	@Override
+	public long getReservesUnsuccessful() {
+		return getCount(Outcome.RESERVE_UNSUCCESSFUL);
+	}
+
+	@Override
+	public long getHoldsExpired() {
+		return getCount(Outcome.EXPIRED);
+	}
+
+	@Override
+	public long getHoldsReleased() {
+		return getCount(Outcome.RELEASED);
+	}
+
+	@Override
+	public long getLiveHolds() {
+		return liveHolds.getAsLong();
+	}
+
+	@Override
+	public long getExpiryBacklog() {
+		return expiryBacklog.getAsLong();
+	}
+
+	@Override
+	public HistogramSnapshot getFindAndHoldSeatsLatency() {
+		return findAndHoldSeatsLatency.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getReserveSeatsLatency() {
+		return reserveSeatsLatency.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getHoldToReserveTime() {
+		return holdToReserveTime.snapshot();
+	}
+
+	@Override
+	public HistogramSnapshot getLockWaitTime() {
+		return lockWaitTime.snapshot();
+	}
+
+	public MetricsSnapshot snapshot() {
+		MetricsSnapshot snapshot = new MetricsSnapshot();
+		snapshot.holdsSucceeded = getHoldsSucceeded();
+		snapshot.holdsTooManyRequested = getHoldsTooManyRequested();
+		snapshot.holdsConsecutiveNotAvailable = getHoldsConsecutiveNotAvailable();
+		snapshot.holdsCustomerLimitReached = getHoldsCustomerLimitReached();
+		snapshot.reservesSucceeded = getReservesSucceeded();
+		snapshot.reservesEmailMismatch = getReservesEmailMismatch();
+		snapshot.reservesUnsuccessful = getReservesUnsuccessful();
+		snapshot.holdsExpired = getHoldsExpired();
+		snapshot.holdsReleased = getHoldsReleased();
+		snapshot.liveHolds = getLiveHolds();
+		snapshot.expiryBacklog = getExpiryBacklog();
+		snapshot.findAndHoldSeatsLatency = getFindAndHoldSeatsLatency();
+		snapshot.reserveSeatsLatency = getReserveSeatsLatency();
+		snapshot.holdToReserveTime = getHoldToReserveTime();
+		snapshot.lockWaitTime = getLockWaitTime();
+		return snapshot;
+	}
+
+	/**
+	 * Register the metrics with the platform MBeanServer
+	 *
+	 * @param eventId
+	 *            the event of the service, part of the ObjectName
+	 * @throws IllegalStateException
+	 *             if the metrics of the event are registered already
+	 */
+	public void registerMBean(String eventId) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName(eventId));
+		} catch (JMException ex) {
+			throw new IllegalStateException("Could not register the metrics of event " + eventId, ex);
+		}
+	}
+
+	/**
+	 * @param eventId
+	 * @return false if the metrics of the event were not registered
+	 */
+	public boolean unregisterMBean(String eventId) {
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName(eventId));
+			return Boolean.TRUE;
+		} catch (JMException ex) {
+			return Boolean.FALSE;
+		}
+	}
+
+	public static ObjectName objectName(String eventId) throws JMException {
+		return new ObjectName("com.ticketing.service:type=TicketServiceMetrics,event=" + ObjectName.quote(eventId));
+	}
+}
@@ -0,0 +1,61 @@
+package com.ticketing.service.metrics;
+
+/**
+ * JMX view of the metrics of one TicketService, registered as
+ * com.ticketing.service:type=TicketServiceMetrics,event=&lt;eventId&gt;
+ */
+public interface TicketServiceMetricsMXBean {
+
+	long getHoldsSucceeded();
+
+	long getHoldsTooManyRequested();
+
+	long getHoldsConsecutiveNotAvailable();
+
+	/**
+	 * @return the holds refused as the customer had as many seats on hold as
+	 *         a customer may have
+	 */
+	long getHoldsCustomerLimitReached();
+
+	long getReservesSucceeded();
+
+	long getReservesEmailMismatch();
+
+	long getReservesUnsuccessful();
+
+	/**
+	 * @return the holds released by their expiry without being reserved
+	 */
+	long getHoldsExpired();
+
+	/**
+	 * @return the holds given up by their customer, see releaseHolds
+	 */
+	long getHoldsReleased();
+
+	/**
+	 * @return the holds which are neither reserved nor expired yet
+	 */
+	long getLiveHolds();
+
+	/**
+	 * @return the expiries waiting in the expiry scheduler
+	 */
+	long getExpiryBacklog();
+
+	HistogramSnapshot getFindAndHoldSeatsLatency();
+
+	HistogramSnapshot getReserveSeatsLatency();
+
+	/**
+	 * @return the time from a hold to its reservation
+	 */
+	HistogramSnapshot getHoldToReserveTime();
+
+	/**
+	 * @return the time spent waiting for row locks, only acquisitions which
+	 *         had to wait are recorded
+	 */
+	HistogramSnapshot getLockWaitTime();
+}
@@ -0,0 +1,169 @@
+package com.ticketing.service.model;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A row of seats for the lock free service, using the same two bit lanes as
+ * Row but kept in an AtomicLongArray.
+ *
+ * Seats change status with compare and set on the words covering them, one
+ * word at a time in ascending order. A claim which finds a lane in an
+ * unexpected status gives back the words it already changed, so a lost race
+ * never leaves seats behind.
+ */
+public class AtomicRow {
+
+	final int rowId;
+
+	final int seatCount;
+
+	final AtomicLongArray statusWords;
+
+	final AtomicInteger availableSeatCount;
+
+	public AtomicRow(int rowId, int seatCount) {
+		this.rowId = rowId;
+		this.seatCount = seatCount;
+		this.statusWords = new AtomicLongArray((seatCount + Row.SEATS_PER_WORD - 1) / Row.SEATS_PER_WORD);
+		this.availableSeatCount = new AtomicInteger(seatCount);
+
+		int usedLanes = seatCount % Row.SEATS_PER_WORD;
+		if (usedLanes != 0) {
+			statusWords.set(statusWords.length() - 1,
+					Row.laneMask(usedLanes, Row.SEATS_PER_WORD) & Row.pattern(Status.RESERVED));
+		}
+	}
+
+	public int getRowId() {
+		return rowId;
+	}
+
+	public int getSeatCount() {
+		return seatCount;
+	}
+
+	public int getAvailableSeatCount() {
+		return availableSeatCount.get();
+	}
+
+	public Status getStatus(int seatId) {
+		long word = statusWords.get(seatId / Row.SEATS_PER_WORD);
+		int shift = (seatId % Row.SEATS_PER_WORD) << 1;
+		return Row.STATUSES[(int) ((word >>> shift) & 3L)];
+	}
+
+	/**
+	 * Find the leftmost run of "numSeats" AVAILABLE seats starting at or
+	 * after fromSeat. The words are read one by one, so the run is only a
+	 * candidate until claimed.
+	 *
+	 * @param numSeats
+	 * @param fromSeat
+	 * @return the first seat of the run, -1 if there is none
+	 */
+	public int findConsecutiveAvailable(int numSeats, int fromSeat) {
+		int run = 0;
+		int runStart = 0;
+		for (int word = fromSeat / Row.SEATS_PER_WORD; word < statusWords.length(); word++) {
+			long statusWord = statusWords.get(word);
+			long free = ~(statusWord | (statusWord >>> 1)) & Row.LOW_BITS;
+			// lanes before fromSeat don't count
+			free &= Row.wordMask(word, fromSeat, Integer.MAX_VALUE);
+			long dense = free | (free << 1);
+
+			int bit = 0;
+			while (bit < Long.SIZE) {
+				long rest = dense >>> bit;
+				if ((rest & 1L) == 0) {
+					run = 0;
+					bit += Math.min(Long.numberOfTrailingZeros(rest), Long.SIZE - bit);
+					continue;
+				}
+				int length = Long.numberOfTrailingZeros(~rest);
+				if (run == 0) {
+					runStart = word * Row.SEATS_PER_WORD + (bit >>> 1);
+				}
+				run += length >>> 1;
+				if (run >= numSeats) {
+					return runStart;
+				}
+				bit += length;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Move "count" seats from one status to another, only if every one of
+	 * them is in the expected status
+	 *
+	 * @param seatId
+	 * @param count
+	 * @param expected
+	 * @param target
+	 * @return false if a seat was not in the expected status, nothing is
+	 *         changed then
+	 */
+	public boolean compareAndSet(int seatId, int count, Status expected, Status target) {
+		long expectedPattern = Row.pattern(expected);
+		long targetPattern = Row.pattern(target);
+		int end = seatId + count;
+		int firstWord = seatId / Row.SEATS_PER_WORD;
+		int lastWord = (end - 1) / Row.SEATS_PER_WORD;
+
+		for (int word = firstWord; word <= lastWord; word++) {
+			long mask = Row.wordMask(word, seatId, end);
+			while (true) {
+				long current = statusWords.get(word);
+				if ((current & mask) != (expectedPattern & mask)) {
+					// give back the words already claimed
+					if (word > firstWord) {
+						set(seatId, Math.min(end, word * Row.SEATS_PER_WORD) - seatId, expected);
+					}
+					return Boolean.FALSE;
+				}
+				if (statusWords.compareAndSet(word, current, (current & ~mask) | (targetPattern & mask))) {
+					break;
+				}
+			}
+		}
+		adjustAvailableCount(count, expected, target);
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * Move seats owned by the caller to a new status, e.g. the seats of a
+	 * hold it has just removed from the hold table
+	 *
+	 * @param seatId
+	 * @param count
+	 * @param from
+	 *            the current status of the seats
+	 * @param target
+	 */
+	public void transition(int seatId, int count, Status from, Status target) {
+		set(seatId, count, target);
+		adjustAvailableCount(count, from, target);
+	}
+
+	private void set(int seatId, int count, Status target) {
+		long targetPattern = Row.pattern(target);
+		int end = seatId + count;
+		for (int word = seatId / Row.SEATS_PER_WORD; word * Row.SEATS_PER_WORD < end; word++) {
+			long mask = Row.wordMask(word, seatId, end);
+			long current;
+			do {
+				current = statusWords.get(word);
+			} while (!statusWords.compareAndSet(word, current, (current & ~mask) | (targetPattern & mask)));
+		}
+	}
+
+	private void adjustAvailableCount(int count, Status from, Status target) {
+		if (from == Status.AVAILABLE && target != Status.AVAILABLE) {
+			availableSeatCount.addAndGet(-count);
+		} else if (from != Status.AVAILABLE && target == Status.AVAILABLE) {
+			availableSeatCount.addAndGet(count);
+		}
+	}
+}
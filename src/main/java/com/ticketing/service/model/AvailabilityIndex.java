@@ -0,0 +1,140 @@
+package com.ticketing.service.model;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sum segment tree over the available seat count of every row of the venue,
+ * so the seats left in any range of rows are summed in O(log rows), and a
+ * count per price tier once the venue has a VenueLayout.
+ *
+ * Rows report the changes of their count themselves from Row.updateSeats,
+ * adding the change to their leaf and the O(log rows) nodes above it with an
+ * atomic add each, so no lock is taken. A change is thus in some of its
+ * nodes and not yet in others for a while, so a range is only ever summed
+ * from nodes which lie wholly inside it, two per level at most, read bottom
+ * up. A sum read while rows of the range change counts each of them as it
+ * was at some point during the read, so it is never negative and never moved
+ * by a row outside the range, which a difference of two prefix sums could
+ * be.
+ */
+public class AvailabilityIndex {
+
+	// the leaf of row r is leafBase + r, node i sums nodes 2i and 2i + 1
+	private final AtomicLongArray tree;
+
+	private final int leafBase;
+
+	private final int rowCount;
+
+	// the tier of each row, -1 for none, and the seats left in each tier;
+	// set once, before the venue is served
+	private volatile int[] tierOfRow;
+
+	private volatile LongAdder[] tierSeats;
+
+	/**
+	 * Build the index over the rows and register it with each of them
+	 *
+	 * @param rows
+	 *            the rows of the venue, in rowId order
+	 */
+	public AvailabilityIndex(List<Row> rows) {
+		this.rowCount = rows.size();
+		int size = Integer.highestOneBit(Math.max(rowCount, 1));
+		if (size < rowCount) {
+			size <<= 1;
+		}
+		this.leafBase = size;
+		long[] nodes = new long[2 * leafBase];
+		for (Row row : rows) {
+			nodes[leafBase + row.getRowId()] = row.getAvailableSeatCount();
+		}
+		for (int node = leafBase - 1; node > 0; node--) {
+			nodes[node] = nodes[node << 1] + nodes[(node << 1) + 1];
+		}
+		this.tree = new AtomicLongArray(nodes);
+		for (Row row : rows) {
+			row.availabilityIndex = this;
+		}
+	}
+
+	/**
+	 * @param firstRowId
+	 * @param lastRowId
+	 *            included
+	 * @return the available seats of the rows
+	 */
+	public long getAvailableSeats(int firstRowId, int lastRowId) {
+		if (firstRowId < 0 || lastRowId >= rowCount || lastRowId < firstRowId) {
+			throw new IllegalArgumentException("No rows " + firstRowId + " to " + lastRowId + " in the venue");
+		}
+		long sum = 0;
+		// [from, to) narrows level by level, the nodes at its edges whose
+		// parent reaches outside it are summed on the way
+		for (int from = leafBase + firstRowId, to = leafBase + lastRowId + 1; from < to; from >>>= 1, to >>>= 1) {
+			if ((from & 1) == 1) {
+				sum += tree.get(from++);
+			}
+			if ((to & 1) == 1) {
+				sum += tree.get(--to);
+			}
+		}
+		return sum;
+	}
+
+	/**
+	 * @param tier
+	 *            the index of the tier in VenueLayout.getPriceTiers
+	 * @return the available seats of the rows of the tier
+	 */
+	public long getTierAvailableSeats(int tier) {
+		LongAdder[] currentTierSeats = tierSeats;
+		if (currentTierSeats == null || tier < 0 || tier >= currentTierSeats.length) {
+			throw new IllegalArgumentException("No price tier " + tier + " in the venue");
+		}
+		return currentTierSeats[tier].sum();
+	}
+
+	/**
+	 * Count the seats of each tier from now on, before the venue is served
+	 *
+	 * @param rows
+	 * @param layout
+	 */
+	void setLayout(List<Row> rows, VenueLayout layout) {
+		int[] tiers = new int[rows.size()];
+		Arrays.fill(tiers, -1);
+		LongAdder[] seats = new LongAdder[layout.getPriceTiers().size()];
+		for (int tier = 0; tier < seats.length; tier++) {
+			seats[tier] = new LongAdder();
+		}
+		for (Section section : layout.getSections()) {
+			int tier = layout.getPriceTiers().indexOf(section.getPriceTier());
+			for (int rowId = section.getFirstRowId(); rowId <= section.getLastRowId(); rowId++) {
+				tiers[rowId] = tier;
+				seats[tier].add(rows.get(rowId).getAvailableSeatCount());
+			}
+		}
+		this.tierSeats = seats;
+		this.tierOfRow = tiers;
+	}
+
+	/**
+	 * Record a change of the available seats of the row
+	 *
+	 * @param rowId
+	 * @param delta
+	 */
+	void add(int rowId, int delta) {
+		for (int node = leafBase + rowId; node > 0; node >>>= 1) {
+			tree.getAndAdd(node, delta);
+		}
+		int[] tiers = tierOfRow;
+		if (tiers != null && tiers[rowId] >= 0) {
+			tierSeats[tiers[rowId]].add(delta);
+		}
+	}
+}
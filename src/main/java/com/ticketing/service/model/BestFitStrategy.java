@@ -0,0 +1,36 @@
+package com.ticketing.service.model;
+
+/**
+ * Places a party in the shortest free run which can take it, the front one
+ * of the shortest runs, so long runs are kept for the large parties to come.
+ *
+ * Only the rows the VenueRunIndex says can take the party are scanned, their
+ * runs a word at a time, and the search stops at the first run the party
+ * fills exactly.
+ */
+public class BestFitStrategy implements SeatAllocationStrategy {
+
+	@Override
+	public long findCandidate(Venue venue, int numSeats) {
+		VenueRunIndex runIndex = venue.getFreeRunIndex();
+		long best = -1L;
+		int bestLength = Integer.MAX_VALUE;
+		for (int rowId = runIndex.findFirstRow(numSeats); rowId >= 0; rowId = runIndex.findNextRow(numSeats,
+				rowId + 1)) {
+			Row row = venue.getRow(rowId);
+			for (int start = row.nextAvailable(0); start >= 0;) {
+				int end = row.freeRunEnd(start);
+				int length = end - start;
+				if (length >= numSeats && length < bestLength) {
+					best = (long) rowId << 32 | start;
+					bestLength = length;
+					if (length == numSeats) {
+						return best;
+					}
+				}
+				start = row.nextAvailable(end);
+			}
+		}
+		return best;
+	}
+}
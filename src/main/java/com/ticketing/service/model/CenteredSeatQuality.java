@@ -0,0 +1,48 @@
+package com.ticketing.service.model;
+
+/**
+ * Seats are the better the closer they are to a preferred row and to the
+ * center of their row.
+ *
+ * A block loses rowWeight for every row between it and the preferred row, and
+ * centerWeight for every seat its middle is away from the middle of the row.
+ */
+public class CenteredSeatQuality implements SeatQualityModel {
+
+	private final int preferredRowId;
+
+	private final double rowWeight;
+
+	private final double centerWeight;
+
+	/**
+	 * @param preferredRowId
+	 *            the row at the best distance from the stage
+	 * @param rowWeight
+	 * @param centerWeight
+	 */
+	public CenteredSeatQuality(int preferredRowId, double rowWeight, double centerWeight) {
+		this.preferredRowId = preferredRowId;
+		this.rowWeight = rowWeight;
+		this.centerWeight = centerWeight;
+	}
+
+	@Override
+	public double score(int rowId, int firstSeatId, int numSeats, int seatsPerRow) {
+		// doubled, so the middles of even blocks and rows stay whole
+		int offCenter = Math.abs(2 * firstSeatId + numSeats - seatsPerRow);
+		return -(rowWeight * Math.abs(rowId - preferredRowId) + centerWeight * offCenter / 2);
+	}
+
+	public int getPreferredRowId() {
+		return preferredRowId;
+	}
+
+	public double getRowWeight() {
+		return rowWeight;
+	}
+
+	public double getCenterWeight() {
+		return centerWeight;
+	}
+}
@@ -0,0 +1,195 @@
+package com.ticketing.service.model;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The live holds of each customer of a venue, by customer id.
+ *
+ * Looking up, capping or releasing the holds of a customer only visits that
+ * customer's holds. Each customer's entry has its own lock, the holds of one
+ * customer may well be in different rows, whose locks don't cover them.
+ */
+public class CustomerHoldIndex {
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// indexed by customer id, only grows under the index lock
+	private volatile Entry[] entries = new Entry[16];
+
+	/**
+	 * Add the hold to the holds of the customer, unless it would put more
+	 * than maxSeats seats on hold for the customer
+	 *
+	 * @param customerId
+	 * @param seatHoldId
+	 * @param numSeats
+	 * @param maxSeats
+	 * @return false if the hold was not added
+	 */
+	public boolean tryAdd(int customerId, long seatHoldId, int numSeats, int maxSeats) {
+		return entry(customerId).tryAdd(seatHoldId, numSeats, maxSeats);
+	}
+
+	/**
+	 * Add the hold to the holds of the customer, whatever their number.
+	 * Adding a hold the customer already has changes nothing, as when a
+	 * journal record replays a hold the snapshot already restored.
+	 *
+	 * @param customerId
+	 * @param seatHoldId
+	 * @param numSeats
+	 */
+	public void add(int customerId, long seatHoldId, int numSeats) {
+		entry(customerId).addIfAbsent(seatHoldId, numSeats);
+	}
+
+	/**
+	 * @param customerId
+	 * @param seatHoldId
+	 * @return false if the customer had no such hold
+	 */
+	public boolean remove(int customerId, long seatHoldId) {
+		Entry entry = find(customerId);
+		return entry != null && entry.remove(seatHoldId);
+	}
+
+	/**
+	 * @param customerId
+	 * @return the ids of the live holds of the customer, oldest first
+	 */
+	public long[] getSeatHoldIds(int customerId) {
+		Entry entry = find(customerId);
+		return entry == null ? new long[0] : entry.getSeatHoldIds();
+	}
+
+	/**
+	 * @param customerId
+	 * @return the number of seats the customer has on hold
+	 */
+	public int getSeatsOnHold(int customerId) {
+		Entry entry = find(customerId);
+		return entry == null ? 0 : entry.getSeatsOnHold();
+	}
+
+	private Entry find(int customerId) {
+		Entry[] current = entries;
+		return customerId < current.length ? current[customerId] : null;
+	}
+
+	private Entry entry(int customerId) {
+		Entry entry = find(customerId);
+		if (entry != null) {
+			return entry;
+		}
+		lock.lock();
+		try {
+			Entry[] current = entries;
+			if (customerId >= current.length) {
+				current = Arrays.copyOf(current, Math.max(current.length * 2, customerId + 1));
+			}
+			if (current[customerId] == null) {
+				current[customerId] = new Entry();
+			}
+			entries = current;
+			return current[customerId];
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static final class Entry {
+
+		// not a monitor, so a virtual thread waiting for it doesn't pin its
+		// carrier
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private long[] seatHoldIds = new long[4];
+
+		private int[] numSeats = new int[4];
+
+		private int count;
+
+		private int seatsOnHold;
+
+		private boolean tryAdd(long seatHoldId, int holdSeats, int maxSeats) {
+			lock.lock();
+			try {
+				if (seatsOnHold + holdSeats > maxSeats) {
+					return false;
+				}
+				append(seatHoldId, holdSeats);
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void addIfAbsent(long seatHoldId, int holdSeats) {
+			lock.lock();
+			try {
+				if (indexOf(seatHoldId) < 0) {
+					append(seatHoldId, holdSeats);
+				}
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private boolean remove(long seatHoldId) {
+			lock.lock();
+			try {
+				int i = indexOf(seatHoldId);
+				if (i < 0) {
+					return false;
+				}
+				seatsOnHold -= numSeats[i];
+				count--;
+				// keep the holds in the order they were taken
+				System.arraycopy(seatHoldIds, i + 1, seatHoldIds, i, count - i);
+				System.arraycopy(numSeats, i + 1, numSeats, i, count - i);
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private long[] getSeatHoldIds() {
+			lock.lock();
+			try {
+				return Arrays.copyOf(seatHoldIds, count);
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private int getSeatsOnHold() {
+			lock.lock();
+			try {
+				return seatsOnHold;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private void append(long seatHoldId, int holdSeats) {
+			if (count == seatHoldIds.length) {
+				seatHoldIds = Arrays.copyOf(seatHoldIds, count * 2);
+				numSeats = Arrays.copyOf(numSeats, count * 2);
+			}
+			seatHoldIds[count] = seatHoldId;
+			numSeats[count] = holdSeats;
+			count++;
+			seatsOnHold += holdSeats;
+		}
+
+		private int indexOf(long seatHoldId) {
+			for (int i = 0; i < count; i++) {
+				if (seatHoldIds[i] == seatHoldId) {
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,132 @@
+package com.ticketing.service.model;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Interns customer emails into compact int ids, so the seat state of a row
+ * can keep an int per seat instead of a String reference.
+ *
+ * Emails are normalized first, trimmed and lower cased, so " A@Example.com"
+ * and "a@example.com" are the same customer. Ids start at 1, 0 means no
+ * customer.
+ *
+ * @author Suma
+ *
+ */
+public class CustomerRegistry {
+
+	public static final int NO_CUSTOMER = 0;
+
+	/**
+	 * Told about every new customer, in customer id order
+	 */
+	public interface Listener {
+
+		void customerInterned(int customerId, String emailId);
+	}
+
+	// held while a new customer is assigned its id and journaled, a
+	// ReentrantLock so a virtual thread waiting on it doesn't pin its carrier
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Map<String, Integer> customerIds = new ConcurrentHashMap<>();
+
+	// indexed by customer id, only grows under the registry lock
+	private volatile String[] emails = new String[16];
+
+	private int lastCustomerId = NO_CUSTOMER;
+
+	private volatile Listener listener;
+
+	/**
+	 * @param listener
+	 *            called under the registry lock for each customer interned
+	 *            from now on, null for none
+	 */
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * Get the id of the customer, assigning a new one on the first call for
+	 * this email
+	 *
+	 * @param emailId
+	 * @return the customer id
+	 */
+	public int intern(String emailId) {
+		emailId = normalize(emailId);
+		Integer customerId = customerIds.get(emailId);
+		if (customerId != null) {
+			return customerId;
+		}
+		lock.lock();
+		try {
+			customerId = customerIds.get(emailId);
+			if (customerId != null) {
+				return customerId;
+			}
+			int newCustomerId = lastCustomerId + 1;
+			String[] current = emails;
+			if (newCustomerId == current.length) {
+				current = Arrays.copyOf(current, current.length * 2);
+			}
+			current[newCustomerId] = emailId;
+			emails = current;
+			lastCustomerId = newCustomerId;
+			Listener currentListener = listener;
+			if (currentListener != null) {
+				currentListener.customerInterned(newCustomerId, emailId);
+			}
+			customerIds.put(emailId, newCustomerId);
+			return newCustomerId;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the highest customer id assigned so far, ids run from 1 to it
+	 */
+	public int getLastCustomerId() {
+		lock.lock();
+		try {
+			return lastCustomerId;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Get the id of the customer without assigning one
+	 *
+	 * @param emailId
+	 * @return the customer id, NO_CUSTOMER if the email was never interned
+	 */
+	public int lookup(String emailId) {
+		Integer customerId = emailId == null ? null : customerIds.get(normalize(emailId));
+		return customerId == null ? NO_CUSTOMER : customerId;
+	}
+
+	/**
+	 * @param customerId
+	 * @return the normalized email of the customer, null for NO_CUSTOMER
+	 */
+	public String getEmailId(int customerId) {
+		String[] current = emails;
+		return customerId > NO_CUSTOMER && customerId < current.length ? current[customerId] : null;
+	}
+
+	/**
+	 * @param emailId
+	 * @return the email trimmed and lower cased, the same String when it is
+	 *         already, so interning a normalized email allocates nothing
+	 */
+	public static String normalize(String emailId) {
+		return emailId.trim().toLowerCase(Locale.ROOT);
+	}
+}
@@ -0,0 +1,15 @@
+package com.ticketing.service.model;
+
+/**
+ * Places a party in the first run of the first row, front to back, which can
+ * take it. The cheapest search, O(log rows) on the VenueRunIndex, but the
+ * runs left over are whatever the party didn't use, single seats included.
+ */
+public class FirstFitStrategy implements SeatAllocationStrategy {
+
+	@Override
+	public long findCandidate(Venue venue, int numSeats) {
+		int rowId = venue.getFreeRunIndex().findFirstRow(numSeats);
+		return rowId < 0 ? -1L : (long) rowId << 32 | 0xFFFFFFFFL;
+	}
+}
@@ -0,0 +1,171 @@
+package com.ticketing.service.model;
+
+/**
+ * Segment tree over the status words of a Row keeping, for every range of
+ * words, the length of its free prefix, its free suffix and its longest run of
+ * AVAILABLE seats.
+ *
+ * Leaves are whole status words, summarised with bit tricks, so the tree has
+ * one leaf per 32 seats. It answers "leftmost run of at least N free seats" in
+ * O(log n) and is kept current by Row.updateSeats in O(words changed + log n).
+ */
+class FreeRunTree {
+
+	private final int leafBase;
+
+	private final int[] prefix;
+
+	private final int[] suffix;
+
+	private final int[] longest;
+
+	/**
+	 * @param statusWords
+	 *            the packed seats of the row, lanes past the last seat marked
+	 *            taken
+	 */
+	FreeRunTree(long[] statusWords) {
+		int size = Integer.highestOneBit(Math.max(statusWords.length, 1));
+		if (size < statusWords.length) {
+			size <<= 1;
+		}
+		this.leafBase = size;
+		this.prefix = new int[2 * size];
+		this.suffix = new int[2 * size];
+		this.longest = new int[2 * size];
+
+		for (int word = 0; word < statusWords.length; word++) {
+			setLeaf(word, statusWords[word]);
+		}
+		for (int node = size - 1; node > 0; node--) {
+			combine(node, size / Integer.highestOneBit(node) / 2);
+		}
+	}
+
+	/**
+	 * @return the longest run of free seats in the row
+	 */
+	int getLongestRun() {
+		return longest[1];
+	}
+
+	/**
+	 * Refresh the leaves of the words in [fromWord, toWord] and their
+	 * ancestors
+	 *
+	 * @param statusWords
+	 * @param fromWord
+	 * @param toWord
+	 */
+	void update(long[] statusWords, int fromWord, int toWord) {
+		for (int word = fromWord; word <= toWord; word++) {
+			setLeaf(word, statusWords[word]);
+		}
+		int from = (leafBase + fromWord) >>> 1;
+		int to = (leafBase + toWord) >>> 1;
+		for (int childWords = 1; from > 0; childWords <<= 1) {
+			for (int node = from; node <= to; node++) {
+				combine(node, childWords);
+			}
+			from >>>= 1;
+			to >>>= 1;
+		}
+	}
+
+	/**
+	 * Find the leftmost run of "numSeats" free seats
+	 *
+	 * @param statusWords
+	 * @param numSeats
+	 * @return the first seat of the run, -1 if the row has none
+	 */
+	int findFirst(long[] statusWords, int numSeats) {
+		if (numSeats > longest[1]) {
+			return -1;
+		}
+		int node = 1;
+		int firstWord = 0;
+		int words = leafBase;
+		while (node < leafBase) {
+			int left = node << 1;
+			int right = left + 1;
+			words >>>= 1;
+			if (longest[left] >= numSeats) {
+				node = left;
+			} else if (suffix[left] + prefix[right] >= numSeats) {
+				// the run crosses the middle of this node
+				return (firstWord + words) * Row.SEATS_PER_WORD - suffix[left];
+			} else {
+				node = right;
+				firstWord += words;
+			}
+		}
+		return firstWord * Row.SEATS_PER_WORD + findInWord(statusWords[firstWord], numSeats);
+	}
+
+	private void setLeaf(int word, long statusWord) {
+		long dense = freeLanes(statusWord);
+		int node = leafBase + word;
+		prefix[node] = Long.numberOfTrailingZeros(~dense) >>> 1;
+		suffix[node] = Long.numberOfLeadingZeros(~dense) >>> 1;
+
+		int best = 0;
+		int bit = 0;
+		while (bit < Long.SIZE) {
+			long rest = dense >>> bit;
+			if ((rest & 1L) == 0) {
+				bit += Math.min(Long.numberOfTrailingZeros(rest), Long.SIZE - bit);
+				continue;
+			}
+			int length = Long.numberOfTrailingZeros(~rest);
+			best = Math.max(best, length >>> 1);
+			bit += length;
+		}
+		longest[node] = best;
+	}
+
+	/**
+	 * @param node
+	 * @param childWords
+	 *            number of words under each child of the node
+	 */
+	private void combine(int node, int childWords) {
+		int left = node << 1;
+		int right = left + 1;
+		int childSeats = childWords * Row.SEATS_PER_WORD;
+
+		prefix[node] = prefix[left] == childSeats ? childSeats + prefix[right] : prefix[left];
+		suffix[node] = suffix[right] == childSeats ? childSeats + suffix[left] : suffix[right];
+		longest[node] = Math.max(Math.max(longest[left], longest[right]), suffix[left] + prefix[right]);
+	}
+
+	/**
+	 * Leftmost run of "numSeats" free seats inside a single word
+	 */
+	private static int findInWord(long statusWord, int numSeats) {
+		long dense = freeLanes(statusWord);
+		int bit = 0;
+		while (bit < Long.SIZE) {
+			long rest = dense >>> bit;
+			if ((rest & 1L) == 0) {
+				bit += Math.min(Long.numberOfTrailingZeros(rest), Long.SIZE - bit);
+				continue;
+			}
+			int length = Long.numberOfTrailingZeros(~rest);
+			if (length >>> 1 >= numSeats) {
+				return bit >>> 1;
+			}
+			bit += length;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return both bits of every AVAILABLE lane set, so free seats show as runs
+	 *         of ones
+	 */
+	private static long freeLanes(long statusWord) {
+		long free = ~(statusWord | (statusWord >>> 1)) & Row.LOW_BITS;
+		return free | (free << 1);
+	}
+}
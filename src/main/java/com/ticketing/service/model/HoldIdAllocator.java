@@ -0,0 +1,80 @@
+package com.ticketing.service.model;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Hands out the seatHoldIds of a venue, never the same id twice.
+ *
+ * An id is [generation: 20 bits][sequence: 40 bits][shard: 4 bits]. Each
+ * shard counts its own sequence, and a thread always takes its ids from the
+ * same shard, so threads holding seats at the same time don't fight over one
+ * counter. The shard also picks the stripe of the HoldTable the hold goes to.
+ *
+ * The generation tells the ids of one run of the service from those of the
+ * runs before it, whose sequences started from 1 as well: a venue recovered
+ * from its journal starts the generation after the last one it finds there.
+ * No id is ever 0.
+ */
+public class HoldIdAllocator {
+
+	static final int SHARD_BITS = 4;
+
+	static final int SEQUENCE_BITS = 40;
+
+	static final int GENERATION_BITS = Long.SIZE - SEQUENCE_BITS - SHARD_BITS;
+
+	private static final int SHARD_COUNT = 1 << SHARD_BITS;
+
+	// one counter per cache line, so the shards don't share one either
+	private static final int PADDING = 8;
+
+	private final AtomicLongArray sequences = new AtomicLongArray(SHARD_COUNT * PADDING);
+
+	private volatile int generation;
+
+	/**
+	 * @return the next id of the calling thread's shard
+	 */
+	public long next() {
+		int shard = (int) Thread.currentThread().getId() & (SHARD_COUNT - 1);
+		long sequence = sequences.incrementAndGet(shard * PADDING);
+		if (sequence >>> SEQUENCE_BITS != 0) {
+			throw new IllegalStateException("Hold ids of generation " + generation + " are used up");
+		}
+		return (long) generation << (SEQUENCE_BITS + SHARD_BITS) | sequence << SHARD_BITS | shard;
+	}
+
+	public int getGeneration() {
+		return generation;
+	}
+
+	/**
+	 * Start handing out ids of a generation after the given one, called before
+	 * the venue is served
+	 *
+	 * @param lastGeneration
+	 *            the last generation whose ids may still be around
+	 */
+	public void startAfter(int lastGeneration) {
+		generation = (lastGeneration + 1) & ((1 << GENERATION_BITS) - 1);
+		for (int i = 0; i < sequences.length(); i++) {
+			sequences.set(i, 0L);
+		}
+	}
+
+	/**
+	 * @param seatHoldId
+	 * @return the generation the id was handed out in
+	 */
+	public static int generationOf(long seatHoldId) {
+		return (int) (seatHoldId >>> (SEQUENCE_BITS + SHARD_BITS));
+	}
+
+	/**
+	 * @param seatHoldId
+	 * @return the shard the id was handed out by
+	 */
+	public static int shardOf(long seatHoldId) {
+		return (int) seatHoldId & (SHARD_COUNT - 1);
+	}
+}
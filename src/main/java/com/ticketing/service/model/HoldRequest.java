@@ -0,0 +1,24 @@
+package com.ticketing.service.model;
+
+/**
+ * One findAndHoldSeats call of a batch
+ */
+public class HoldRequest {
+
+	int numSeats;
+
+	String customerEmail;
+
+	public HoldRequest(int numSeats, String customerEmail) {
+		this.numSeats = numSeats;
+		this.customerEmail = customerEmail;
+	}
+
+	public int getNumSeats() {
+		return numSeats;
+	}
+
+	public String getCustomerEmail() {
+		return customerEmail;
+	}
+}
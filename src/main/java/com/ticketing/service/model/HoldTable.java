@@ -0,0 +1,485 @@
+package com.ticketing.service.model;
+
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * The live holds of a venue, by seatHoldId.
+ *
+ * A hold is stored as its row, first seat, seat count, holder and deadline,
+ * along with the expiry handle of the service, in flat arrays keyed by the
+ * primitive id with linear probing. The parts of a hold split over several
+ * rows are linked in a ring, each part knowing the id of the next one. The
+ * table is split in stripes, each with its own lock, so holds in different
+ * stripes never wait on each other.
+ *
+ * Lookups copy the entry into a Cursor owned by the caller and take no lock
+ * unless a write to the stripe got in their way, so neither a lookup nor a
+ * removal allocates. Every change of a hold is made with the row of the hold
+ * locked, the table only keeps the stripes consistent.
+ */
+public class HoldTable {
+
+	// a stripe per shard of the HoldIdAllocator, holds taken by different
+	// threads go to different stripes
+	private static final int STRIPE_COUNT = 1 << HoldIdAllocator.SHARD_BITS;
+
+	private static final int INITIAL_CAPACITY = 64;
+
+	// no hold has this id, it marks the free slots
+	private static final long EMPTY = 0L;
+
+	/**
+	 * The linked id of a hold which is not split
+	 */
+	public static final long NOT_LINKED = EMPTY;
+
+	private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+
+	public HoldTable() {
+		for (int i = 0; i < STRIPE_COUNT; i++) {
+			stripes[i] = new Stripe();
+		}
+	}
+
+	/**
+	 * Add the hold, replacing any hold with the same id
+	 *
+	 * @param seatHoldId
+	 *            an id of the HoldIdAllocator
+	 * @param rowId
+	 * @param firstSeatId
+	 * @param numSeats
+	 * @param holderId
+	 * @param deadlineMillis
+	 */
+	public void put(long seatHoldId, int rowId, int firstSeatId, int numSeats, int holderId, long deadlineMillis) {
+		put(seatHoldId, rowId, firstSeatId, numSeats, holderId, deadlineMillis, NOT_LINKED);
+	}
+
+	/**
+	 * Add a part of a split hold, replacing any hold with the same id
+	 *
+	 * @param seatHoldId
+	 * @param rowId
+	 * @param firstSeatId
+	 * @param numSeats
+	 * @param holderId
+	 * @param deadlineMillis
+	 * @param linkedId
+	 *            the id of the next part of the hold, NOT_LINKED for a hold
+	 *            in a single row
+	 */
+	public void put(long seatHoldId, int rowId, int firstSeatId, int numSeats, int holderId, long deadlineMillis,
+			long linkedId) {
+		if (seatHoldId == EMPTY) {
+			throw new IllegalArgumentException("seatHoldId 0 is reserved");
+		}
+		stripe(seatHoldId).put(hash(seatHoldId), seatHoldId, rowId, firstSeatId, numSeats,
+				holderId, deadlineMillis, linkedId);
+	}
+
+	/**
+	 * Copy the hold into the cursor
+	 *
+	 * @param seatHoldId
+	 * @param cursor
+	 * @return false if there is no such hold, the cursor then holds nothing
+	 *         useful
+	 */
+	public boolean get(long seatHoldId, Cursor cursor) {
+		return stripe(seatHoldId).get(hash(seatHoldId), seatHoldId, cursor);
+	}
+
+	/**
+	 * Remove the hold and copy it into the cursor
+	 *
+	 * @param seatHoldId
+	 * @param cursor
+	 * @return false if there is no such hold
+	 */
+	public boolean remove(long seatHoldId, Cursor cursor) {
+		return stripe(seatHoldId).remove(hash(seatHoldId), seatHoldId, cursor);
+	}
+
+	/**
+	 * Attach the expiry handle the service got for the hold
+	 *
+	 * @param seatHoldId
+	 * @param expiry
+	 * @return false if there is no such hold
+	 */
+	public boolean setExpiry(long seatHoldId, Object expiry) {
+		return stripe(seatHoldId).setExpiry(hash(seatHoldId), seatHoldId, expiry);
+	}
+
+	/**
+	 * Link the hold to the next part of its split hold
+	 *
+	 * @param seatHoldId
+	 * @param linkedId
+	 * @return false if there is no such hold
+	 */
+	public boolean setLinkedId(long seatHoldId, long linkedId) {
+		return stripe(seatHoldId).setLinkedId(hash(seatHoldId), seatHoldId, linkedId);
+	}
+
+	/**
+	 * @return the number of live holds
+	 */
+	public int size() {
+		int size = 0;
+		for (Stripe stripe : stripes) {
+			size += stripe.count;
+		}
+		return size;
+	}
+
+	/**
+	 * Visit every hold, one stripe at a time with the stripe locked, so the
+	 * visitor must not change the table
+	 *
+	 * @param visitor
+	 */
+	public void forEach(HoldVisitor visitor) {
+		for (Stripe stripe : stripes) {
+			stripe.forEach(visitor);
+		}
+	}
+
+	private Stripe stripe(long seatHoldId) {
+		return stripes[HoldIdAllocator.shardOf(seatHoldId)];
+	}
+
+	private static int hash(long seatHoldId) {
+		// murmur3 finalizer over the id without its shard, the sequences of
+		// the ids are anything but random
+		long hash = seatHoldId >>> HoldIdAllocator.SHARD_BITS;
+		hash ^= hash >>> 33;
+		hash *= 0xff51afd7ed558ccdL;
+		hash ^= hash >>> 33;
+		hash *= 0xc4ceb9fe1a85ec53L;
+		hash ^= hash >>> 33;
+		return (int) hash;
+	}
+
+	/**
+	 * Receives the holds of the table from forEach
+	 */
+	public interface HoldVisitor {
+
+		void visit(long seatHoldId, int rowId, int firstSeatId, int numSeats, int holderId, long deadlineMillis);
+	}
+
+	/**
+	 * A copy of one hold, reused by its owner from one lookup to the next
+	 */
+	public static final class Cursor {
+
+		private long seatHoldId;
+
+		private int rowId;
+
+		private int firstSeatId;
+
+		private int numSeats;
+
+		private int holderId;
+
+		private long deadlineMillis;
+
+		private long linkedId;
+
+		private Object expiry;
+
+		public long getSeatHoldId() {
+			return seatHoldId;
+		}
+
+		public int getRowId() {
+			return rowId;
+		}
+
+		public int getFirstSeatId() {
+			return firstSeatId;
+		}
+
+		public int getNumSeats() {
+			return numSeats;
+		}
+
+		public int getHolderId() {
+			return holderId;
+		}
+
+		public long getDeadlineMillis() {
+			return deadlineMillis;
+		}
+
+		/**
+		 * @return the id of the next part of a split hold, NOT_LINKED for a
+		 *         hold in a single row
+		 */
+		public long getLinkedId() {
+			return linkedId;
+		}
+
+		/**
+		 * @return the expiry handle of the hold, null until one is attached
+		 */
+		public Object getExpiry() {
+			return expiry;
+		}
+	}
+
+	/**
+	 * The slots of a stripe, replaced as a whole when the stripe grows, so an
+	 * optimistic reader always probes arrays of the same length
+	 */
+	private static final class Slots {
+
+		private final long[] keys;
+
+		private final int[] rowIds;
+
+		private final int[] firstSeatIds;
+
+		private final int[] numSeats;
+
+		private final int[] holderIds;
+
+		private final long[] deadlines;
+
+		private final long[] linkedIds;
+
+		private final Object[] expiries;
+
+		private Slots(int capacity) {
+			keys = new long[capacity];
+			rowIds = new int[capacity];
+			firstSeatIds = new int[capacity];
+			numSeats = new int[capacity];
+			holderIds = new int[capacity];
+			deadlines = new long[capacity];
+			linkedIds = new long[capacity];
+			expiries = new Object[capacity];
+		}
+
+		private int mask() {
+			return keys.length - 1;
+		}
+
+		/**
+		 * @return the slot of the key, or of the free slot ending its probe
+		 *         sequence
+		 */
+		private int find(int hash, long key) {
+			int mask = mask();
+			int slot = hash & mask;
+			// bounded, so a torn optimistic read can't loop forever
+			for (int probes = 0; probes <= mask; probes++) {
+				long slotKey = keys[slot];
+				if (slotKey == key || slotKey == EMPTY) {
+					return slot;
+				}
+				slot = (slot + 1) & mask;
+			}
+			return -1;
+		}
+
+		private void copyTo(int slot, Cursor cursor) {
+			cursor.seatHoldId = keys[slot];
+			cursor.rowId = rowIds[slot];
+			cursor.firstSeatId = firstSeatIds[slot];
+			cursor.numSeats = numSeats[slot];
+			cursor.holderId = holderIds[slot];
+			cursor.deadlineMillis = deadlines[slot];
+			cursor.linkedId = linkedIds[slot];
+			cursor.expiry = expiries[slot];
+		}
+
+		private void move(int from, int to) {
+			keys[to] = keys[from];
+			rowIds[to] = rowIds[from];
+			firstSeatIds[to] = firstSeatIds[from];
+			numSeats[to] = numSeats[from];
+			holderIds[to] = holderIds[from];
+			deadlines[to] = deadlines[from];
+			linkedIds[to] = linkedIds[from];
+			expiries[to] = expiries[from];
+		}
+
+		private void clear(int slot) {
+			keys[slot] = EMPTY;
+			expiries[slot] = null;
+		}
+	}
+
+	private static final class Stripe {
+
+		private final StampedLock lock = new StampedLock();
+
+		private volatile Slots slots = new Slots(INITIAL_CAPACITY);
+
+		private volatile int count;
+
+		private void put(int hash, long key, int rowId, int firstSeatId, int numSeats, int holderId,
+				long deadlineMillis, long linkedId) {
+			long stamp = lock.writeLock();
+			try {
+				Slots current = slots;
+				int slot = current.find(hash, key);
+				if (slot < 0 || current.keys[slot] == EMPTY) {
+					// keep the load under a half, probe sequences stay short
+					if ((count + 1) * 2 > current.keys.length) {
+						current = grow(current);
+						slot = current.find(hash, key);
+					}
+					count++;
+				}
+				current.keys[slot] = key;
+				current.rowIds[slot] = rowId;
+				current.firstSeatIds[slot] = firstSeatId;
+				current.numSeats[slot] = numSeats;
+				current.holderIds[slot] = holderId;
+				current.deadlines[slot] = deadlineMillis;
+				current.linkedIds[slot] = linkedId;
+				current.expiries[slot] = null;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		private boolean get(int hash, long key, Cursor cursor) {
+			long stamp = lock.tryOptimisticRead();
+			if (stamp != 0L) {
+				Slots current = slots;
+				int slot = current.find(hash, key);
+				boolean found = slot >= 0 && current.keys[slot] == key;
+				if (found) {
+					current.copyTo(slot, cursor);
+				}
+				if (lock.validate(stamp)) {
+					return found;
+				}
+			}
+			// a write got in the way, wait for it
+			stamp = lock.readLock();
+			try {
+				Slots current = slots;
+				int slot = current.find(hash, key);
+				if (slot >= 0 && current.keys[slot] == key) {
+					current.copyTo(slot, cursor);
+					return true;
+				}
+				return false;
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		private boolean remove(int hash, long key, Cursor cursor) {
+			long stamp = lock.writeLock();
+			try {
+				Slots current = slots;
+				int slot = current.find(hash, key);
+				if (slot < 0 || current.keys[slot] != key) {
+					return false;
+				}
+				current.copyTo(slot, cursor);
+				shiftBack(current, slot);
+				count--;
+				return true;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		private boolean setExpiry(int hash, long key, Object expiry) {
+			long stamp = lock.writeLock();
+			try {
+				Slots current = slots;
+				int slot = current.find(hash, key);
+				if (slot < 0 || current.keys[slot] != key) {
+					return false;
+				}
+				current.expiries[slot] = expiry;
+				return true;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		private boolean setLinkedId(int hash, long key, long linkedId) {
+			long stamp = lock.writeLock();
+			try {
+				Slots current = slots;
+				int slot = current.find(hash, key);
+				if (slot < 0 || current.keys[slot] != key) {
+					return false;
+				}
+				current.linkedIds[slot] = linkedId;
+				return true;
+			} finally {
+				lock.unlockWrite(stamp);
+			}
+		}
+
+		private void forEach(HoldVisitor visitor) {
+			long stamp = lock.readLock();
+			try {
+				Slots current = slots;
+				for (int slot = 0; slot < current.keys.length; slot++) {
+					if (current.keys[slot] != EMPTY) {
+						visitor.visit(current.keys[slot], current.rowIds[slot], current.firstSeatIds[slot],
+								current.numSeats[slot], current.holderIds[slot], current.deadlines[slot]);
+					}
+				}
+			} finally {
+				lock.unlockRead(stamp);
+			}
+		}
+
+		/**
+		 * Free the slot, moving back the entries after it which would no
+		 * longer be found past the gap, so no tombstone is ever left behind
+		 */
+		private void shiftBack(Slots current, int gap) {
+			int mask = current.mask();
+			int slot = gap;
+			while (true) {
+				slot = (slot + 1) & mask;
+				long key = current.keys[slot];
+				if (key == EMPTY) {
+					break;
+				}
+				int home = hash(key) & mask;
+				// move the entry unless its home lies cyclically in (gap, slot]
+				if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+					current.move(slot, gap);
+					gap = slot;
+				}
+			}
+			current.clear(gap);
+		}
+
+		private Slots grow(Slots current) {
+			Slots grown = new Slots(current.keys.length * 2);
+			for (int slot = 0; slot < current.keys.length; slot++) {
+				long key = current.keys[slot];
+				if (key != EMPTY) {
+					int target = grown.find(hash(key), key);
+					grown.keys[target] = key;
+					grown.rowIds[target] = current.rowIds[slot];
+					grown.firstSeatIds[target] = current.firstSeatIds[slot];
+					grown.numSeats[target] = current.numSeats[slot];
+					grown.holderIds[target] = current.holderIds[slot];
+					grown.deadlines[target] = current.deadlines[slot];
+					grown.linkedIds[target] = current.linkedIds[slot];
+					grown.expiries[target] = current.expiries[slot];
+				}
+			}
+			slots = grown;
+			return grown;
+		}
+	}
+}
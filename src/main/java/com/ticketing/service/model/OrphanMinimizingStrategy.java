@@ -0,0 +1,39 @@
+package com.ticketing.service.model;
+
+/**
+ * Places a party so it leaves no single free seat behind, a seat no party
+ * but one of one can ever take.
+ *
+ * A run the party fills exactly is taken first, then the first run it leaves
+ * two seats or more of, and only then a run it leaves one seat of. The party
+ * is placed against the left end of its run, so the run is cut in one place
+ * at most. Only the rows the VenueRunIndex says can take the party are
+ * scanned, and the search stops at the first exact fit.
+ */
+public class OrphanMinimizingStrategy implements SeatAllocationStrategy {
+
+	@Override
+	public long findCandidate(Venue venue, int numSeats) {
+		VenueRunIndex runIndex = venue.getFreeRunIndex();
+		long firstLeavingRun = -1L;
+		long firstLeavingOrphan = -1L;
+		for (int rowId = runIndex.findFirstRow(numSeats); rowId >= 0; rowId = runIndex.findNextRow(numSeats,
+				rowId + 1)) {
+			Row row = venue.getRow(rowId);
+			for (int start = row.nextAvailable(0); start >= 0;) {
+				int end = row.freeRunEnd(start);
+				int leftOver = end - start - numSeats;
+				long candidate = (long) rowId << 32 | start;
+				if (leftOver == 0) {
+					return candidate;
+				} else if (leftOver >= 2 && firstLeavingRun < 0) {
+					firstLeavingRun = candidate;
+				} else if (leftOver == 1 && firstLeavingOrphan < 0) {
+					firstLeavingOrphan = candidate;
+				}
+				start = row.nextAvailable(end);
+			}
+		}
+		return firstLeavingRun >= 0 ? firstLeavingRun : firstLeavingOrphan;
+	}
+}
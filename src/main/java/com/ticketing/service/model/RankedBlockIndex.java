@@ -0,0 +1,230 @@
+package com.ticketing.service.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The blocks of consecutive seats of a venue ranked by a SeatQualityModel,
+ * with the free ones kept in a bitset per party size.
+ *
+ * Every block of every party size up to maxPartySize is scored once, when the
+ * index is built, and sorted best first, ties going to the front left block.
+ * The bit of a block is set while all its seats are AVAILABLE, so the best
+ * free block of a party size is the first set bit of its bitset. A bitset
+ * keeps a bit per word of the level below it up to a single word, and the
+ * first set bit is found in O(log64 blocks) however full the venue is.
+ *
+ * Rows report their changes from Row.updateSeats with their lock held, only
+ * the blocks overlapping the changed seats are looked at, O(maxPartySize) of
+ * them per size. The bits are set and cleared atomically, rows of the venue
+ * change in parallel, and nothing else is locked.
+ */
+public class RankedBlockIndex {
+
+	private final int seatsPerRow;
+
+	private final int maxPartySize;
+
+	// by party size - 1, a block being rowId * blocksPerRow + firstSeatId
+	private final int[][] rankOfBlock;
+
+	private final int[][] blockOfRank;
+
+	private final FreeRanks[] freeRanks;
+
+	/**
+	 * Rank the blocks of the rows and register the index with each of them,
+	 * before the rows are shared
+	 *
+	 * @param rows
+	 *            the rows of the venue, in rowId order, all of the same length
+	 * @param model
+	 * @param maxPartySize
+	 *            the largest party placed by rank, larger ones are left to
+	 *            the VenueRunIndex
+	 */
+	public RankedBlockIndex(List<Row> rows, SeatQualityModel model, int maxPartySize) {
+		this.seatsPerRow = rows.isEmpty() ? 0 : rows.get(0).getSeatCount();
+		this.maxPartySize = Math.max(Math.min(maxPartySize, seatsPerRow), 0);
+		this.rankOfBlock = new int[this.maxPartySize][];
+		this.blockOfRank = new int[this.maxPartySize][];
+		this.freeRanks = new FreeRanks[this.maxPartySize];
+
+		for (int numSeats = 1; numSeats <= this.maxPartySize; numSeats++) {
+			int blocksPerRow = seatsPerRow - numSeats + 1;
+			int blocks = rows.size() * blocksPerRow;
+			// the score as a float whose bits sort like it, negated so the
+			// best comes first, above the block, so one primitive sort ranks
+			// the blocks and breaks the ties front left first
+			long[] keys = new long[blocks];
+			for (int block = 0; block < blocks; block++) {
+				float score = (float) model.score(block / blocksPerRow, block % blocksPerRow, numSeats,
+						seatsPerRow);
+				int bits = Float.floatToIntBits(score);
+				bits ^= (bits >> 31) & Integer.MAX_VALUE;
+				keys[block] = (long) ~bits << 32 | block;
+			}
+			Arrays.sort(keys);
+
+			int[] ranks = new int[blocks];
+			int[] order = new int[blocks];
+			for (int rank = 0; rank < blocks; rank++) {
+				int block = (int) keys[rank];
+				order[rank] = block;
+				ranks[block] = rank;
+			}
+			rankOfBlock[numSeats - 1] = ranks;
+			blockOfRank[numSeats - 1] = order;
+			freeRanks[numSeats - 1] = new FreeRanks(blocks);
+		}
+
+		for (Row row : rows) {
+			update(row, 0, row.getSeatCount());
+			row.blockIndex = this;
+		}
+	}
+
+	/**
+	 * @return the largest party the index places
+	 */
+	public int getMaxPartySize() {
+		return maxPartySize;
+	}
+
+	/**
+	 * Find the best block of "numSeats" free seats. Nothing is locked, so the
+	 * block must be checked again with its row locked.
+	 *
+	 * @param numSeats
+	 *            at most getMaxPartySize()
+	 * @return rowId << 32 | firstSeatId, -1 if no row can take the party
+	 */
+	public long findBest(int numSeats) {
+		if (numSeats < 1 || numSeats > maxPartySize) {
+			return -1L;
+		}
+		int rank = freeRanks[numSeats - 1].first();
+		if (rank < 0) {
+			return -1L;
+		}
+		int blocksPerRow = seatsPerRow - numSeats + 1;
+		int block = blockOfRank[numSeats - 1][rank];
+		return (long) (block / blocksPerRow) << 32 | block % blocksPerRow;
+	}
+
+	/**
+	 * Bring the blocks overlapping the seats in [fromSeatId, toSeatId) of the
+	 * row up to date, called with the row locked
+	 *
+	 * @param row
+	 * @param fromSeatId
+	 * @param toSeatId
+	 */
+	void update(Row row, int fromSeatId, int toSeatId) {
+		int rowId = row.getRowId();
+		// walking right to left, the free seats from the current one on,
+		// counted up to maxPartySize, tell which blocks starting at it are free
+		int run = 0;
+		int end = Math.min(toSeatId + maxPartySize - 1, seatsPerRow);
+		for (int seatId = end - 1; seatId >= Math.max(fromSeatId - maxPartySize + 1, 0); seatId--) {
+			run = row.getStatus(seatId) == Status.AVAILABLE ? Math.min(run + 1, maxPartySize) : 0;
+			if (seatId >= toSeatId) {
+				continue;
+			}
+			// the blocks starting here which reach the changed seats
+			int numSeats = Math.max(fromSeatId - seatId + 1, 1);
+			int maxSeats = Math.min(maxPartySize, seatsPerRow - seatId);
+			for (; numSeats <= maxSeats; numSeats++) {
+				int block = rowId * (seatsPerRow - numSeats + 1) + seatId;
+				FreeRanks ranks = freeRanks[numSeats - 1];
+				int rank = rankOfBlock[numSeats - 1][block];
+				boolean free = run >= numSeats;
+				if (ranks.get(rank) != free) {
+					if (free) {
+						ranks.set(0, rank);
+					} else {
+						ranks.clear(0, rank);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * A bitset whose levels above the first keep a bit per non empty word of
+	 * the level below. A word emptied by one thread while another sets a bit
+	 * in it is checked again after its bit above is cleared, so a set bit is
+	 * always reachable from the top, and the search skips the bits above
+	 * words found empty on the way down.
+	 */
+	private static final class FreeRanks {
+
+		private final AtomicLongArray[] levels;
+
+		private FreeRanks(int size) {
+			List<AtomicLongArray> words = new ArrayList<>();
+			int bits = size;
+			do {
+				bits = (bits + Long.SIZE - 1) >>> 6;
+				words.add(new AtomicLongArray(Math.max(bits, 1)));
+			} while (bits > 1);
+			this.levels = words.toArray(new AtomicLongArray[0]);
+		}
+
+		private boolean get(int index) {
+			return (levels[0].get(index >>> 6) & 1L << index) != 0;
+		}
+
+		private void set(int level, int index) {
+			// the words above a word which already had a bit are marked
+			for (; level < levels.length; level++, index >>>= 6) {
+				AtomicLongArray words = levels[level];
+				long word;
+				do {
+					word = words.get(index >>> 6);
+				} while (!words.compareAndSet(index >>> 6, word, word | 1L << index));
+				if (word != 0) {
+					return;
+				}
+			}
+		}
+
+		private void clear(int level, int index) {
+			AtomicLongArray words = levels[level];
+			long word;
+			long cleared;
+			do {
+				word = words.get(index >>> 6);
+				cleared = word & ~(1L << index);
+			} while (!words.compareAndSet(index >>> 6, word, cleared));
+			if (cleared == 0 && level + 1 < levels.length) {
+				clear(level + 1, index >>> 6);
+				if (words.get(index >>> 6) != 0) {
+					set(level + 1, index >>> 6);
+				}
+			}
+		}
+
+		private int first() {
+			return first(levels.length - 1, 0);
+		}
+
+		private int first(int level, int wordIndex) {
+			long word = levels[level].get(wordIndex);
+			while (word != 0) {
+				int index = (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+				if (level == 0) {
+					return index;
+				}
+				int found = first(level - 1, index);
+				if (found >= 0) {
+					return found;
+				}
+				word &= word - 1;
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.ticketing.service.model;
+
+/**
+ * One reserveSeats call of a batch
+ */
+public class ReserveRequest {
+
+	long seatHoldId;
+
+	String customerEmail;
+
+	public ReserveRequest(long seatHoldId, String customerEmail) {
+		this.seatHoldId = seatHoldId;
+		this.customerEmail = customerEmail;
+	}
+
+	public long getSeatHoldId() {
+		return seatHoldId;
+	}
+
+	public String getCustomerEmail() {
+		return customerEmail;
+	}
+}
@@ -1,15 +1,112 @@
 package com.ticketing.service.model;
 
-import java.util.ArrayList;
+import java.lang.invoke.VarHandle;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * A row of seats stored as packed status bits.
+ *
+ * Each seat takes two bits holding the ordinal of its Status, 32 seats to a
+ * long word, and the customer holding or owning the seat is kept as an
+ * interned customer id in a parallel int array. Lanes past the last seat of
+ * the row are marked RESERVED, so they never show up as available.
+ *
+ * A FreeRunTree over the words keeps the free runs of the row, so the
+ * leftmost run of N available seats is found in O(log n), and the venue wide
+ * VenueRunIndex is told whenever the longest run of the row changes. A
+ * RankedBlockIndex, when the venue has one, is told of every change, and so
+ * is the SeatMapLog of the venue, and the AvailabilityIndex of the venue of
+ * every change of its available seat count.
+ *
+ * The lock of the row guards its seats: callers changing them, or needing a
+ * consistent read of several seats, hold getLock(). It is an explicit lock so
+ * a batch can keep several rows locked at once. The
+ * available seat count is maintained by updateSeats, along with the venue
+ * wide count the row was given, and both can be read without the lock.
+ *
+ * The List of Seat objects is only a view built on demand for callers which
+ * still need Seat objects.
+ */
 public class Row {
-	
+
+	static final int SEATS_PER_WORD = 32;
+
+	// low bit of every two bit lane
+	static final long LOW_BITS = 0x5555555555555555L;
+
+	static final Status[] STATUSES = Status.values();
+
 	int rowId;
-	
-	List<Seat> seats;
-	
-	int availableSeatCount;
+
+	final int seatCount;
+
+	final long[] statusWords;
+
+	final int[] holderIds;
+
+	volatile int availableSeatCount;
+
+	final CustomerRegistry customers;
+
+	// available seats of the whole venue, null for a standalone row
+	final LongAdder venueAvailableSeats;
+
+	final FreeRunTree freeRuns;
+
+	// set by the VenueRunIndex built over this row
+	VenueRunIndex runIndex;
+
+	// set by the RankedBlockIndex built over this row, if any
+	RankedBlockIndex blockIndex;
+
+	// set by the SeatMapLog built over this row, if any
+	SeatMapLog seatMapLog;
+
+	// set by the AvailabilityIndex built over this row, if any
+	AvailabilityIndex availabilityIndex;
+
+	// the changes made while seatMapLog is set, odd while one is under way,
+	// the seqlock the seat maps copy the row under
+	volatile int changeCount;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private List<Seat> seats;
+
+	public Row(int rowId, int seatCount, CustomerRegistry customers) {
+		this(rowId, seatCount, customers, null);
+	}
+
+	/**
+	 * @param rowId
+	 * @param seatCount
+	 * @param customers
+	 * @param venueAvailableSeats
+	 *            venue wide count of available seats, the seats of the new row
+	 *            are added to it
+	 */
+	public Row(int rowId, int seatCount, CustomerRegistry customers, LongAdder venueAvailableSeats) {
+		this.rowId = rowId;
+		this.seatCount = seatCount;
+		this.customers = customers;
+		this.venueAvailableSeats = venueAvailableSeats;
+		this.statusWords = new long[(seatCount + SEATS_PER_WORD - 1) / SEATS_PER_WORD];
+		this.holderIds = new int[seatCount];
+		this.availableSeatCount = seatCount;
+
+		int usedLanes = seatCount % SEATS_PER_WORD;
+		if (usedLanes != 0) {
+			statusWords[statusWords.length - 1] = laneMask(usedLanes, SEATS_PER_WORD) & pattern(Status.RESERVED);
+		}
+		this.freeRuns = new FreeRunTree(statusWords);
+		if (venueAvailableSeats != null) {
+			venueAvailableSeats.add(seatCount);
+		}
+	}
 
 	public int getRowId() {
 		return rowId;
@@ -19,21 +116,305 @@ public class Row {
 		this.rowId = rowId;
 	}
 
+	/**
+	 * @return the lock guarding the seats of the row
+	 */
+	public ReentrantLock getLock() {
+		return lock;
+	}
+
+	public int getSeatCount() {
+		return seatCount;
+	}
+
+	/**
+	 * @return a read only view of the seats, each Seat being a copy of the
+	 *         seat state at the time it is fetched
+	 */
 	public List<Seat> getSeats() {
+		if (seats == null) {
+			seats = new SeatView();
+		}
 		return seats;
 	}
 
-	public void setSeats(List<Seat> seats) {
-		this.seats = seats;
+	/**
+	 * @return the longest run of consecutive AVAILABLE seats in the row
+	 */
+	public int getLongestFreeRun() {
+		return freeRuns.getLongestRun();
 	}
 
 	public int getAvailableSeatCount() {
 		return availableSeatCount;
 	}
 
-	public void setAvailableSeatCount(int availableSeatCount) {
-		this.availableSeatCount = availableSeatCount;
+	public Status getStatus(int seatId) {
+		long word = statusWords[seatId / SEATS_PER_WORD];
+		int shift = (seatId % SEATS_PER_WORD) << 1;
+		return STATUSES[(int) ((word >>> shift) & 3L)];
 	}
 
-	
+	/**
+	 * @param seatId
+	 * @return the id of the customer holding or owning the seat
+	 */
+	public int getHolderId(int seatId) {
+		return holderIds[seatId];
+	}
+
+	/**
+	 * Set the status and the customer of "count" seats starting at seatId
+	 *
+	 * @param seatId
+	 * @param count
+	 * @param status
+	 * @param holderId
+	 *            CustomerRegistry.NO_CUSTOMER when the seats become available
+	 */
+	public void updateSeats(int seatId, int count, Status status, int holderId) {
+		long change = -1L;
+		if (seatMapLog != null) {
+			changeCount++;
+			// the odd count is seen before any word written below, as in
+			// StampedLock, a volatile write alone doesn't order later stores
+			VarHandle.storeStoreFence();
+			change = seatMapLog.claim();
+		}
+		long statusPattern = pattern(status);
+		int end = seatId + count;
+		int firstWord = seatId / SEATS_PER_WORD;
+		int lastWord = (end - 1) / SEATS_PER_WORD;
+		int availableBefore = 0;
+		for (int word = firstWord; word <= lastWord; word++) {
+			long mask = wordMask(word, seatId, end);
+			availableBefore += Long.bitCount(~(statusWords[word] | (statusWords[word] >>> 1)) & LOW_BITS & mask);
+			statusWords[word] = (statusWords[word] & ~mask) | (statusPattern & mask);
+		}
+		Arrays.fill(holderIds, seatId, end, holderId);
+
+		int availableDelta = (status == Status.AVAILABLE ? count : 0) - availableBefore;
+		if (availableDelta != 0) {
+			availableSeatCount += availableDelta;
+			if (venueAvailableSeats != null) {
+				venueAvailableSeats.add(availableDelta);
+			}
+			if (availabilityIndex != null) {
+				availabilityIndex.add(rowId, availableDelta);
+			}
+		}
+
+		int oldLongestRun = freeRuns.getLongestRun();
+		freeRuns.update(statusWords, firstWord, lastWord);
+		if (runIndex != null && freeRuns.getLongestRun() != oldLongestRun) {
+			runIndex.update(rowId, freeRuns.getLongestRun());
+		}
+		if (blockIndex != null) {
+			blockIndex.update(this, seatId, end);
+		}
+		if (seatMapLog != null) {
+			seatMapLog.publish(change, rowId, seatId, count, status);
+			changeCount++;
+		}
+	}
+
+	/**
+	 * Copy the seat state of the row, called with the row locked
+	 *
+	 * @param targetWords
+	 *            receives the status words, as long as getStatusWordCount()
+	 * @param targetHolderIds
+	 *            receives the holder of each seat, as long as getSeatCount()
+	 */
+	public void copyState(long[] targetWords, int[] targetHolderIds) {
+		System.arraycopy(statusWords, 0, targetWords, 0, statusWords.length);
+		System.arraycopy(holderIds, 0, targetHolderIds, 0, seatCount);
+	}
+
+	/**
+	 * Replace the seat state of the row with one taken by copyState, before
+	 * the row is shared. The available counts, the free runs and the venue
+	 * index are brought up to date.
+	 *
+	 * @param sourceWords
+	 * @param sourceHolderIds
+	 */
+	public void restoreState(long[] sourceWords, int[] sourceHolderIds) {
+		System.arraycopy(sourceWords, 0, statusWords, 0, statusWords.length);
+		System.arraycopy(sourceHolderIds, 0, holderIds, 0, seatCount);
+
+		int available = 0;
+		for (long word : statusWords) {
+			available += Long.bitCount(~(word | (word >>> 1)) & LOW_BITS);
+		}
+		int availableDelta = available - availableSeatCount;
+		availableSeatCount = available;
+		if (venueAvailableSeats != null) {
+			venueAvailableSeats.add(availableDelta);
+		}
+		if (availabilityIndex != null) {
+			availabilityIndex.add(rowId, availableDelta);
+		}
+
+		int oldLongestRun = freeRuns.getLongestRun();
+		freeRuns.update(statusWords, 0, statusWords.length - 1);
+		if (runIndex != null && freeRuns.getLongestRun() != oldLongestRun) {
+			runIndex.update(rowId, freeRuns.getLongestRun());
+		}
+		if (blockIndex != null) {
+			blockIndex.update(this, 0, seatCount);
+		}
+		if (seatMapLog != null) {
+			seatMapLog.restored(this);
+		}
+	}
+
+	public int getStatusWordCount() {
+		return statusWords.length;
+	}
+
+	/**
+	 * Check all the seats of the range are AVAILABLE, one word at a time
+	 *
+	 * @param seatId
+	 * @param count
+	 * @return
+	 */
+	public boolean isAvailable(int seatId, int count) {
+		int end = seatId + count;
+		if (seatId < 0 || end > seatCount) {
+			return Boolean.FALSE;
+		}
+		for (int word = seatId / SEATS_PER_WORD; word * SEATS_PER_WORD < end; word++) {
+			if ((statusWords[word] & wordMask(word, seatId, end)) != 0) {
+				return Boolean.FALSE;
+			}
+		}
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * List the runs of consecutive AVAILABLE seats, left to right. Callers
+	 * reading without the row lock must check a run again with it. Searches
+	 * walk the runs with nextAvailable and freeRunEnd instead, which allocate
+	 * nothing.
+	 *
+	 * @return the first seat of each run followed by the seat after it
+	 */
+	public int[] getFreeRuns() {
+		// a run per seat at most, even if the seats change meanwhile
+		int[] runs = new int[2 * seatCount];
+		int count = 0;
+		for (int start = nextAvailable(0); start >= 0; start = nextAvailable(runs[count - 1])) {
+			runs[count++] = start;
+			runs[count++] = freeRunEnd(start);
+		}
+		return Arrays.copyOf(runs, count);
+	}
+
+	/**
+	 * The start of the next free run from seatId on, one word at a time.
+	 * Along with freeRunEnd, walks the free runs of the row left to right
+	 * without allocating, see BestFitStrategy.
+	 *
+	 * @param seatId
+	 * @return the first AVAILABLE seat from seatId on, -1 if there is none
+	 */
+	public int nextAvailable(int seatId) {
+		int word = seatId / SEATS_PER_WORD;
+		if (seatId < 0 || word >= statusWords.length) {
+			return -1;
+		}
+		// the low bit of the lanes of the free seats from seatId on
+		long free = ~(statusWords[word] | statusWords[word] >>> 1) & LOW_BITS
+				& (-1L << ((seatId % SEATS_PER_WORD) << 1));
+		while (free == 0) {
+			if (++word == statusWords.length) {
+				return -1;
+			}
+			free = ~(statusWords[word] | statusWords[word] >>> 1) & LOW_BITS;
+		}
+		return word * SEATS_PER_WORD + (Long.numberOfTrailingZeros(free) >>> 1);
+	}
+
+	/**
+	 * The end of the free run starting at start, one word at a time. The run
+	 * is at least a seat long, so a walk read without the row lock always
+	 * moves on.
+	 *
+	 * @param start
+	 *            a seat nextAvailable returned
+	 * @return the first seat after start which is not AVAILABLE,
+	 *         getSeatCount() if there is none
+	 */
+	public int freeRunEnd(int start) {
+		int seatId = start + 1;
+		int word = seatId / SEATS_PER_WORD;
+		if (word >= statusWords.length) {
+			return seatCount;
+		}
+		// the lanes past the last seat are RESERVED, so taken
+		long taken = (statusWords[word] | statusWords[word] >>> 1) & LOW_BITS
+				& (-1L << ((seatId % SEATS_PER_WORD) << 1));
+		while (taken == 0) {
+			if (++word == statusWords.length) {
+				return seatCount;
+			}
+			taken = (statusWords[word] | statusWords[word] >>> 1) & LOW_BITS;
+		}
+		return Math.min(word * SEATS_PER_WORD + (Long.numberOfTrailingZeros(taken) >>> 1), seatCount);
+	}
+
+	/**
+	 * Find the leftmost run of "numSeats" consecutive AVAILABLE seats
+	 *
+	 * @param numSeats
+	 * @return the first seat of the run, -1 if there is none
+	 */
+	public int findConsecutiveAvailable(int numSeats) {
+		return freeRuns.findFirst(statusWords, numSeats);
+	}
+
+	/**
+	 * Mask of the lanes of the word which fall in [from, to)
+	 */
+	static long wordMask(int word, int from, int to) {
+		int firstSeat = word * SEATS_PER_WORD;
+		int fromLane = Math.max(from - firstSeat, 0);
+		int toLane = Math.min(to - firstSeat, SEATS_PER_WORD);
+		return laneMask(fromLane, toLane);
+	}
+
+	static long laneMask(int fromLane, int toLane) {
+		long below = toLane == SEATS_PER_WORD ? -1L : (1L << (toLane << 1)) - 1;
+		return below & (-1L << (fromLane << 1));
+	}
+
+	/**
+	 * @return the status repeated in every lane of a word
+	 */
+	static long pattern(Status status) {
+		return LOW_BITS * status.ordinal();
+	}
+
+	private class SeatView extends AbstractList<Seat> {
+
+		@Override
+		public Seat get(int seatId) {
+			if (seatId < 0 || seatId >= seatCount) {
+				throw new IndexOutOfBoundsException("Seat " + seatId + " is not in row " + rowId);
+			}
+			Seat seat = new Seat();
+			seat.setRowId(rowId);
+			seat.setSeatId(seatId);
+			seat.setStatus(getStatus(seatId));
+			seat.setEmailId(customers.getEmailId(holderIds[seatId]));
+			return seat;
+		}
+
+		@Override
+		public int size() {
+			return seatCount;
+		}
+	}
 }
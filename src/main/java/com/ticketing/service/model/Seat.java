@@ -2,12 +2,22 @@ package com.ticketing.service.model;
 
 public class Seat {
 
+	int rowId;
+
 	int seatId;
 	
 	Status status;
 	
 	String emailId;
 
+	public int getRowId() {
+		return rowId;
+	}
+
+	public void setRowId(int rowId) {
+		this.rowId = rowId;
+	}
+
 	public int getSeatId() {
 		return seatId;
 	}
@@ -0,0 +1,19 @@
+package com.ticketing.service.model;
+
+/**
+ * Decides where in a venue a party of consecutive seats is placed.
+ *
+ * The rows are read without their locks, the service checks the block again
+ * with its row locked and asks once more if a hold got there first, so a
+ * strategy only has to pick from the seats free when it looks.
+ */
+public interface SeatAllocationStrategy {
+
+	/**
+	 * @param venue
+	 * @param numSeats
+	 * @return rowId << 32 | firstSeatId, the seat being -1 for the first run
+	 *         of the row which can take the party, -1 if no row can take it
+	 */
+	long findCandidate(Venue venue, int numSeats);
+}
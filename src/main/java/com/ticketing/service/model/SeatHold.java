@@ -4,8 +4,10 @@ import java.util.List;
 
 public class SeatHold 
 {
-	int seatHoldId;
+	long seatHoldId;
 	
+	// the first row of the hold, the seats of a hold split over several
+	// rows each tell their own
 	int rowId;
 	
 	int totalSeats;
@@ -15,12 +17,18 @@ public class SeatHold
 	boolean isError;
 	
 	String errorMessage;
+	
+	// System.nanoTime() when the seats were held
+	long holdTimeNanos;
+	
+	// wall clock time the hold expires at, in epoch milliseconds
+	long deadlineMillis;
 
-	public int getSeatHoldId() {
+	public long getSeatHoldId() {
 		return seatHoldId;
 	}
 
-	public void setSeatHoldId(int seatHoldId) {
+	public void setSeatHoldId(long seatHoldId) {
 		this.seatHoldId = seatHoldId;
 	}
 
@@ -63,4 +71,20 @@ public class SeatHold
 	public void setErrorMessage(String errorMessage) {
 		this.errorMessage = errorMessage;
 	}
+
+	public long getHoldTimeNanos() {
+		return holdTimeNanos;
+	}
+
+	public void setHoldTimeNanos(long holdTimeNanos) {
+		this.holdTimeNanos = holdTimeNanos;
+	}
+
+	public long getDeadlineMillis() {
+		return deadlineMillis;
+	}
+
+	public void setDeadlineMillis(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
+	}
 }
@@ -0,0 +1,119 @@
+package com.ticketing.service.model;
+
+import java.util.Arrays;
+
+/**
+ * An immutable picture of the status of every seat of a venue, as of one
+ * version of its SeatMapLog.
+ *
+ * The seats are kept as the rows keep them, two bits of Status per seat and
+ * 32 seats to a long word, the words of every row one after the other, so a
+ * map of a 100x100 venue takes 400 longs. Lanes past the last seat of a row
+ * read RESERVED, as in the rows.
+ */
+public final class SeatMap {
+
+	private final long version;
+
+	// shared between the maps of a log, never written after it is built
+	private final int[] seatCounts;
+
+	private final int[] wordOffsets;
+
+	private final long[] statusWords;
+
+	SeatMap(long version, int[] seatCounts, int[] wordOffsets, long[] statusWords) {
+		this.version = version;
+		this.seatCounts = seatCounts;
+		this.wordOffsets = wordOffsets;
+		this.statusWords = statusWords;
+	}
+
+	/**
+	 * @return the number of seat changes the map includes
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public int getRowCount() {
+		return seatCounts.length;
+	}
+
+	public int getSeatCount(int rowId) {
+		return seatCounts[rowId];
+	}
+
+	public Status getStatus(int rowId, int seatId) {
+		if (seatId < 0 || seatId >= seatCounts[rowId]) {
+			throw new IndexOutOfBoundsException("Seat " + seatId + " is not in row " + rowId);
+		}
+		long word = statusWords[wordOffsets[rowId] + seatId / Row.SEATS_PER_WORD];
+		return Row.STATUSES[(int) ((word >>> ((seatId % Row.SEATS_PER_WORD) << 1)) & 3L)];
+	}
+
+	/**
+	 * @param rowId
+	 * @return the number of AVAILABLE seats of the row in the map
+	 */
+	public int getAvailableSeatCount(int rowId) {
+		int available = 0;
+		for (int word = wordOffsets[rowId]; word < wordOffsets[rowId + 1]; word++) {
+			available += Long.bitCount(~(statusWords[word] | (statusWords[word] >>> 1)) & Row.LOW_BITS);
+		}
+		return available;
+	}
+
+	/**
+	 * @param rowId
+	 * @return a copy of the packed status words of the row, two bits per seat
+	 *         holding the ordinal of its Status, lowest bits first
+	 */
+	public long[] getStatusWords(int rowId) {
+		return Arrays.copyOfRange(statusWords, wordOffsets[rowId], wordOffsets[rowId + 1]);
+	}
+
+	/**
+	 * @param version
+	 * @param changes
+	 *            packed by SeatMapLog, in version order
+	 * @return a new map with the changes applied over this one
+	 */
+	SeatMap apply(long version, long[] changes) {
+		long[] words = statusWords.clone();
+		for (long change : changes) {
+			apply(words, wordOffsets, change);
+		}
+		return new SeatMap(version, seatCounts, wordOffsets, words);
+	}
+
+	/**
+	 * Set the seats of the change in the words, whatever they were
+	 */
+	static void apply(long[] words, int[] wordOffsets, long change) {
+		int rowId = SeatMapLog.rowId(change);
+		int seatId = SeatMapLog.seatId(change);
+		int end = seatId + SeatMapLog.count(change);
+		long statusPattern = Row.pattern(SeatMapLog.status(change));
+		for (int word = seatId / Row.SEATS_PER_WORD; word * Row.SEATS_PER_WORD < end; word++) {
+			long mask = Row.wordMask(word, seatId, end);
+			int index = wordOffsets[rowId] + word;
+			words[index] = (words[index] & ~mask) | (statusPattern & mask);
+		}
+	}
+
+	/**
+	 * The first letter of the status of each seat, a line per row
+	 */
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder();
+		for (int rowId = 0; rowId < seatCounts.length; rowId++) {
+			for (int seatId = 0; seatId < seatCounts[rowId]; seatId++) {
+				builder.append(getStatus(rowId, seatId).name().charAt(0)).append(' ');
+			}
+			builder.append(System.lineSeparator());
+		}
+		return builder.toString();
+	}
+}
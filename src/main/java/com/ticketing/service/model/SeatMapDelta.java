@@ -0,0 +1,72 @@
+package com.ticketing.service.model;
+
+/**
+ * The seat changes of a venue between two versions of its SeatMapLog, in
+ * the order they were made. Each change sets a run of seats of one row to a
+ * status.
+ */
+public final class SeatMapDelta {
+
+	private final long fromVersion;
+
+	private final long toVersion;
+
+	private final long[] changes;
+
+	SeatMapDelta(long fromVersion, long toVersion, long[] changes) {
+		this.fromVersion = fromVersion;
+		this.toVersion = toVersion;
+		this.changes = changes;
+	}
+
+	/**
+	 * @return the version of the map the changes follow
+	 */
+	public long getFromVersion() {
+		return fromVersion;
+	}
+
+	/**
+	 * @return the version of the map once the changes are applied
+	 */
+	public long getToVersion() {
+		return toVersion;
+	}
+
+	public int size() {
+		return changes.length;
+	}
+
+	public int getRowId(int change) {
+		return SeatMapLog.rowId(changes[change]);
+	}
+
+	public int getSeatId(int change) {
+		return SeatMapLog.seatId(changes[change]);
+	}
+
+	/**
+	 * @param change
+	 * @return the number of seats from getSeatId on the change sets
+	 */
+	public int getCount(int change) {
+		return SeatMapLog.count(changes[change]);
+	}
+
+	public Status getStatus(int change) {
+		return SeatMapLog.status(changes[change]);
+	}
+
+	/**
+	 * @param seatMap
+	 *            the map at getFromVersion
+	 * @return the map at getToVersion
+	 */
+	public SeatMap applyTo(SeatMap seatMap) {
+		if (seatMap.getVersion() != fromVersion) {
+			throw new IllegalArgumentException(
+					"The changes follow version " + fromVersion + ", not version " + seatMap.getVersion());
+		}
+		return seatMap.apply(toVersion, changes);
+	}
+}
@@ -0,0 +1,318 @@
+package com.ticketing.service.model;
+
+import java.lang.invoke.VarHandle;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Versioned seat maps of a venue, read without ever holding up the rows.
+ *
+ * Every change to the seats of a row claims the next version with a single
+ * getAndIncrement as the row changes, and is put on a ring of the latest
+ * changes once it has, packed into a long. The SeatMap at version n is the
+ * venue after the first n changes. The last map built is kept, and the next
+ * one is that map with the changes since applied, so readers polling many
+ * times a second only pay for what changed in between, and a client holding
+ * a version can ask for just the changes.
+ *
+ * A reader which fell more than a ring behind copies the rows instead,
+ * without their locks, then applies every change claimed while it copied. A
+ * row is a seqlock to it: the row counts its changes, the count being odd
+ * while one is under way, and the reader copies the row again if the count
+ * was odd or moved meanwhile. A change sets its seats outright, so applying
+ * it again over a row which already has it changes nothing, and the copy
+ * comes out exactly as the venue was at the version read after it. Readers
+ * only ever wait for a row or a change in the middle of being written, the
+ * writers never wait for them.
+ *
+ * A writer held up for a whole lap of the ring finds its slot taken and
+ * leaves its change out; the readers needing it find the slot taken too and
+ * copy the rows again.
+ *
+ * Changes made together, as the parts of a split hold, get a version each,
+ * and a map may have some of them and not the others yet.
+ */
+public class SeatMapLog {
+
+	static final int DEFAULT_LOG_SIZE = 4096;
+
+	// a change packs rowId, seatId, seat count and status ordinal in 22, 20,
+	// 20 and 2 bits
+	private static final int MAX_ROWS = 1 << 22;
+
+	private static final int MAX_SEATS = (1 << 20) - 1;
+
+	// spins on a change under way before yielding to its writer
+	private static final int AWAIT_SPINS = 64;
+
+	private final List<Row> rows;
+
+	private final int[] seatCounts;
+
+	private final int[] wordOffsets;
+
+	private final AtomicReferenceArray<Change> ring;
+
+	private final int mask;
+
+	private final AtomicLong claimed = new AtomicLong();
+
+	private final AtomicReference<SeatMap> latest;
+
+	/**
+	 * Build the log over the rows and register it with each of them, before
+	 * they are shared
+	 *
+	 * @param rows
+	 *            the rows of the venue, in rowId order
+	 */
+	public SeatMapLog(List<Row> rows) {
+		this(rows, DEFAULT_LOG_SIZE);
+	}
+
+	/**
+	 * @param rows
+	 *            the rows of the venue, in rowId order
+	 * @param logSize
+	 *            the number of changes kept, rounded up to a power of two
+	 */
+	public SeatMapLog(List<Row> rows, int logSize) {
+		if (rows.size() > MAX_ROWS) {
+			throw new IllegalArgumentException("A seat map takes up to " + MAX_ROWS + " rows");
+		}
+		int size = Integer.highestOneBit(Math.max(logSize, 1));
+		if (size < logSize) {
+			size <<= 1;
+		}
+		this.rows = rows;
+		this.ring = new AtomicReferenceArray<>(size);
+		this.mask = size - 1;
+		this.seatCounts = new int[rows.size()];
+		this.wordOffsets = new int[rows.size() + 1];
+		for (Row row : rows) {
+			if (row.getSeatCount() > MAX_SEATS) {
+				throw new IllegalArgumentException("A seat map takes up to " + MAX_SEATS + " seats a row");
+			}
+			seatCounts[row.getRowId()] = row.getSeatCount();
+			wordOffsets[row.getRowId() + 1] = wordOffsets[row.getRowId()] + row.getStatusWordCount();
+			row.seatMapLog = this;
+		}
+		long[] words = new long[wordOffsets[rows.size()]];
+		copyRows(words);
+		this.latest = new AtomicReference<>(new SeatMap(0L, seatCounts, wordOffsets, words));
+	}
+
+	/**
+	 * @return the current version, the number of changes claimed so far
+	 */
+	public long getVersion() {
+		return claimed.get();
+	}
+
+	/**
+	 * @return the seats as of the current version
+	 */
+	public SeatMap getSeatMap() {
+		long to = claimed.get();
+		SeatMap base = latest.get();
+		if (base.getVersion() == to) {
+			return base;
+		}
+		long[] changes = read(base.getVersion(), to);
+		SeatMap seatMap = changes == null ? rebuild() : base.apply(to, changes);
+		// keep the newest of the maps built meanwhile
+		latest.accumulateAndGet(seatMap,
+				(current, built) -> built.getVersion() > current.getVersion() ? built : current);
+		return seatMap;
+	}
+
+	/**
+	 * @param sinceVersion
+	 *            the version of the map the client holds
+	 * @return the changes since, null if they are no longer on the ring, a
+	 *         whole map must be fetched then
+	 */
+	public SeatMapDelta getChanges(long sinceVersion) {
+		long to = claimed.get();
+		if (sinceVersion > to || sinceVersion < 0) {
+			throw new IllegalArgumentException("No version " + sinceVersion + ", the log is at " + to);
+		}
+		long[] changes = read(sinceVersion, to);
+		return changes == null ? null : new SeatMapDelta(sinceVersion, to, changes);
+	}
+
+	/**
+	 * Claim the version of a change being made to a row, called with the row
+	 * locked and its change count odd
+	 *
+	 * @return the index of the change
+	 */
+	long claim() {
+		return claimed.getAndIncrement();
+	}
+
+	/**
+	 * Put the change on the ring once the row has it, called with the row
+	 * locked
+	 *
+	 * @param index
+	 *            the index claimed for the change
+	 * @param rowId
+	 * @param seatId
+	 * @param count
+	 * @param status
+	 */
+	void publish(long index, int rowId, int seatId, int count, Status status) {
+		Change change = new Change(index, pack(rowId, seatId, count, status));
+		int slot = (int) index & mask;
+		Change current;
+		do {
+			current = ring.get(slot);
+			if (current != null && current.index > index) {
+				// lapped while the row changed
+				return;
+			}
+		} while (!ring.compareAndSet(slot, current, change));
+	}
+
+	/**
+	 * Put the seats of a row whose state was replaced on the ring, one change
+	 * per run of seats of the same status, before the row is shared
+	 *
+	 * @param row
+	 */
+	void restored(Row row) {
+		int start = 0;
+		for (int seatId = 1; seatId <= row.getSeatCount(); seatId++) {
+			if (seatId == row.getSeatCount() || row.getStatus(seatId) != row.getStatus(start)) {
+				publish(claim(), row.getRowId(), start, seatId - start, row.getStatus(start));
+				start = seatId;
+			}
+		}
+	}
+
+	/**
+	 * @return the changes [from, to), null if some are no longer on the ring
+	 */
+	private long[] read(long from, long to) {
+		if (to - from > ring.length()) {
+			return null;
+		}
+		long[] changes = new long[(int) (to - from)];
+		for (long index = from; index < to; index++) {
+			Change change = await(index);
+			if (change == null) {
+				return null;
+			}
+			changes[(int) (index - from)] = change.packed;
+		}
+		return changes;
+	}
+
+	/**
+	 * Copy the rows as they are, then apply the changes claimed meanwhile
+	 */
+	private SeatMap rebuild() {
+		while (true) {
+			// the changes claimed before are done in the copy
+			long from = claimed.get();
+			long[] words = new long[wordOffsets[rows.size()]];
+			for (Row row : rows) {
+				copyRow(row, words);
+			}
+			long to = claimed.get();
+			long[] changes = read(from, to);
+			if (changes == null) {
+				continue;
+			}
+			for (long change : changes) {
+				SeatMap.apply(words, wordOffsets, change);
+			}
+			return new SeatMap(to, seatCounts, wordOffsets, words);
+		}
+	}
+
+	/**
+	 * Copy the words of the row between two of its changes
+	 */
+	private void copyRow(Row row, long[] words) {
+		for (int spins = 0;; spins++) {
+			int changeCount = row.changeCount;
+			if ((changeCount & 1) == 0) {
+				System.arraycopy(row.statusWords, 0, words, wordOffsets[row.getRowId()], row.statusWords.length);
+				VarHandle.acquireFence();
+				if (row.changeCount == changeCount) {
+					return;
+				}
+			}
+			backOff(spins);
+		}
+	}
+
+	private void copyRows(long[] words) {
+		for (Row row : rows) {
+			System.arraycopy(row.statusWords, 0, words, wordOffsets[row.getRowId()], row.statusWords.length);
+		}
+	}
+
+	/**
+	 * Wait for a claimed change to be put on the ring
+	 *
+	 * @return the change, null if a later one took its slot
+	 */
+	private Change await(long index) {
+		int slot = (int) index & mask;
+		for (int spins = 0;; spins++) {
+			Change change = ring.get(slot);
+			if (change != null && change.index >= index) {
+				return change.index == index ? change : null;
+			}
+			backOff(spins);
+		}
+	}
+
+	/**
+	 * Let a writer in the middle of a change get on with it
+	 */
+	private static void backOff(int spins) {
+		if (spins < AWAIT_SPINS) {
+			Thread.onSpinWait();
+		} else {
+			Thread.yield();
+		}
+	}
+
+	static long pack(int rowId, int seatId, int count, Status status) {
+		return (long) rowId << 42 | (long) seatId << 22 | (long) count << 2 | status.ordinal();
+	}
+
+	static int rowId(long change) {
+		return (int) (change >>> 42);
+	}
+
+	static int seatId(long change) {
+		return (int) (change >>> 22) & MAX_SEATS;
+	}
+
+	static int count(long change) {
+		return (int) (change >>> 2) & MAX_SEATS;
+	}
+
+	static Status status(long change) {
+		return Row.STATUSES[(int) change & 3];
+	}
+
+	private static final class Change {
+
+		private final long index;
+
+		private final long packed;
+
+		private Change(long index, long packed) {
+			this.index = index;
+			this.packed = packed;
+		}
+	}
+}
@@ -0,0 +1,21 @@
+package com.ticketing.service.model;
+
+/**
+ * Scores a block of consecutive seats of a row, the higher the better.
+ *
+ * A RankedBlockIndex scores every block of the venue once, when it is built,
+ * so a model is never asked while seats are being held and may take its time,
+ * but it must give a block the same score every time.
+ */
+public interface SeatQualityModel {
+
+	/**
+	 * @param rowId
+	 * @param firstSeatId
+	 * @param numSeats
+	 * @param seatsPerRow
+	 * @return the score of the seats firstSeatId to firstSeatId + numSeats - 1
+	 *         of the row
+	 */
+	double score(int rowId, int firstSeatId, int numSeats, int seatsPerRow);
+}
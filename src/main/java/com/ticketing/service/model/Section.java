@@ -0,0 +1,46 @@
+package com.ticketing.service.model;
+
+/**
+ * A named block of rows of a venue, e.g. the lower bowl, sold at one price
+ * tier.
+ */
+public class Section {
+
+	private final String name;
+
+	private final int firstRowId;
+
+	private final int lastRowId;
+
+	private final String priceTier;
+
+	/**
+	 * @param name
+	 * @param firstRowId
+	 * @param lastRowId
+	 *            the last row of the section, included
+	 * @param priceTier
+	 */
+	public Section(String name, int firstRowId, int lastRowId, String priceTier) {
+		this.name = name;
+		this.firstRowId = firstRowId;
+		this.lastRowId = lastRowId;
+		this.priceTier = priceTier;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getFirstRowId() {
+		return firstRowId;
+	}
+
+	public int getLastRowId() {
+		return lastRowId;
+	}
+
+	public String getPriceTier() {
+		return priceTier;
+	}
+}
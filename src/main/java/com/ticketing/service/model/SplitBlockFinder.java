@@ -0,0 +1,146 @@
+package com.ticketing.service.model;
+
+import java.util.List;
+
+/**
+ * Finds the tightest block of adjacent rows which can seat a party no single
+ * row can take, the party being split as evenly as possible between them.
+ *
+ * Fewer rows are tried first. For k rows, the parts are numSeats / k seats
+ * each, the front rows taking one more when the split isn't even, and only
+ * windows of k adjacent rows whose longest free runs can take their parts are
+ * looked at, so rows without the room are skipped on their longest run alone.
+ * Within a window the parts are placed to make the block as narrow as
+ * possible, aligned when they can be and staggered otherwise: the narrowest
+ * block has its leftmost part at the last seat some free run can start a part
+ * from, so only these seats are tried as the left edge of the block, with
+ * each row taking the first place from there its runs allow.
+ *
+ * The rows are read without their locks, the caller must check the parts are
+ * still free with the rows locked.
+ */
+public class SplitBlockFinder {
+
+	private final List<Row> rows;
+
+	private final int maxRows;
+
+	/**
+	 * @param rows
+	 *            the rows of the venue, in rowId order
+	 * @param maxRows
+	 *            the most rows a party may be split over
+	 */
+	public SplitBlockFinder(List<Row> rows, int maxRows) {
+		this.rows = rows;
+		this.maxRows = maxRows;
+	}
+
+	/**
+	 * @param numSeats
+	 * @return rowId, firstSeatId and seat count of each part, front to back,
+	 *         null if no block of up to maxRows rows can take the party
+	 */
+	public int[][] find(int numSeats) {
+		for (int k = 2; k <= Math.min(maxRows, Math.min(rows.size(), numSeats)); k++) {
+			int[] sizes = new int[k];
+			for (int i = 0; i < k; i++) {
+				sizes[i] = numSeats / k + (i < numSeats % k ? 1 : 0);
+			}
+
+			int[] best = null;
+			int bestSpan = Integer.MAX_VALUE;
+			// rows in a row, up to the current one, with room for the
+			// smallest part
+			int fitting = 0;
+			for (int rowId = 0; rowId < rows.size(); rowId++) {
+				fitting = rows.get(rowId).getLongestFreeRun() >= sizes[k - 1] ? fitting + 1 : 0;
+				if (fitting < k || !canTakeParts(rowId - k + 1, sizes)) {
+					continue;
+				}
+				int[] placement = place(rowId - k + 1, sizes);
+				if (placement != null && placement[k] < bestSpan) {
+					best = placement;
+					bestSpan = placement[k];
+				}
+			}
+
+			if (best != null) {
+				int[][] parts = new int[k][];
+				for (int i = 0; i < k; i++) {
+					parts[i] = new int[] { best[k + 1] + i, best[i], sizes[i] };
+				}
+				return parts;
+			}
+		}
+		return null;
+	}
+
+	private boolean canTakeParts(int firstRowId, int[] sizes) {
+		for (int i = 0; i < sizes.length; i++) {
+			if (rows.get(firstRowId + i).getLongestFreeRun() < sizes[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Place the parts in the rows from firstRowId on as narrowly as possible
+	 *
+	 * @return the first seat of each part, then the width of the block and
+	 *         firstRowId, null if the rows changed under the search
+	 */
+	private int[] place(int firstRowId, int[] sizes) {
+		int k = sizes.length;
+		int[] best = null;
+		int[] seats = new int[k];
+		for (int i = 0; i < k; i++) {
+			Row row = rows.get(firstRowId + i);
+			for (int start = row.nextAvailable(0); start >= 0;) {
+				int end = row.freeRunEnd(start);
+				int left = end - sizes[i];
+				if (left >= start) {
+					int right = placeFrom(left, firstRowId, sizes, seats);
+					if (right >= 0 && (best == null || right - left < best[k])) {
+						best = new int[k + 2];
+						System.arraycopy(seats, 0, best, 0, k);
+						best[k] = right - left;
+						best[k + 1] = firstRowId;
+					}
+				}
+				start = row.nextAvailable(end);
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Place every part at the first seat from left on its row allows
+	 *
+	 * @return the seat after the rightmost part, -1 if a part has no room
+	 *         from left on
+	 */
+	private int placeFrom(int left, int firstRowId, int[] sizes, int[] seats) {
+		int right = -1;
+		for (int i = 0; i < sizes.length; i++) {
+			Row row = rows.get(firstRowId + i);
+			// the first run from left on with room for the part, the run left
+			// is in counting from left
+			int seatId = row.nextAvailable(left);
+			while (seatId >= 0) {
+				int end = row.freeRunEnd(seatId);
+				if (end - seatId >= sizes[i]) {
+					break;
+				}
+				seatId = row.nextAvailable(end);
+			}
+			if (seatId < 0) {
+				return -1;
+			}
+			seats[i] = seatId;
+			right = Math.max(right, seatId + sizes[i]);
+		}
+		return right;
+	}
+}
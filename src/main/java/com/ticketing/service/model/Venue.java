@@ -2,14 +2,181 @@ package com.ticketing.service.model;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * The seat inventory of one event: its rows, live holds, customers and the
+ * indexes over them.
+ *
+ * Nothing is shared between two venues, so any number of events can be served
+ * from the same JVM without one touching the state or the locks of another.
+ */
 public class Venue {
-	
-	public static Map<Integer, SeatHold> seatHoldMap = Collections.synchronizedMap(new HashMap<>());
 
-	public static List<Row> venueTickets = Collections.synchronizedList(new ArrayList<>());
+	private final String eventId;
 
+	private final List<Row> venueTickets;
+
+	private final HoldTable holds = new HoldTable();
+
+	private final HoldIdAllocator holdIds = new HoldIdAllocator();
+
+	private final CustomerRegistry customers = new CustomerRegistry();
+
+	private final CustomerHoldIndex customerHolds = new CustomerHoldIndex();
+
+	private final LongAdder availableSeats = new LongAdder();
+
+	private final VenueRunIndex freeRunIndex;
+
+	private volatile RankedBlockIndex blockIndex;
+
+	private final SeatMapLog seatMapLog;
+
+	private final AvailabilityIndex availabilityIndex;
+
+	private volatile VenueLayout layout;
+
+	private final Lock batchLock = new ReentrantLock();
+
+	/**
+	 * Initialize the venue so that we have rows number of "rows" and "cols"
+	 * number of seats in each row, a new Row has all its seats AVAILABLE and
+	 * no customer assigned to them
+	 *
+	 * @param eventId
+	 * @param rows
+	 * @param cols
+	 */
+	public Venue(String eventId, int rows, int cols) {
+		this.eventId = eventId;
+
+		List<Row> rowList = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			rowList.add(new Row(i, cols, customers, availableSeats));
+		}
+		this.venueTickets = Collections.unmodifiableList(rowList);
+		this.freeRunIndex = new VenueRunIndex(venueTickets);
+		this.seatMapLog = new SeatMapLog(venueTickets);
+		this.availabilityIndex = new AvailabilityIndex(venueTickets);
+	}
+
+	public String getEventId() {
+		return eventId;
+	}
+
+	/**
+	 * @return the rows of the venue, front to back
+	 */
+	public List<Row> getVenueTickets() {
+		return venueTickets;
+	}
+
+	public Row getRow(int rowId) {
+		return venueTickets.get(rowId);
+	}
+
+	/**
+	 * @return the live holds of the venue, by seatHoldId
+	 */
+	public HoldTable getHolds() {
+		return holds;
+	}
+
+	/**
+	 * @return the source of the seatHoldIds of the venue
+	 */
+	public HoldIdAllocator getHoldIds() {
+		return holdIds;
+	}
+
+	public CustomerRegistry getCustomers() {
+		return customers;
+	}
+
+	/**
+	 * @return the live holds of each customer
+	 */
+	public CustomerHoldIndex getCustomerHolds() {
+		return customerHolds;
+	}
+
+	/**
+	 * @return the count of available seats, kept current by the rows
+	 */
+	public LongAdder getAvailableSeats() {
+		return availableSeats;
+	}
+
+	public VenueRunIndex getFreeRunIndex() {
+		return freeRunIndex;
+	}
+
+	/**
+	 * @return the available seats by row range and price tier
+	 */
+	public AvailabilityIndex getAvailabilityIndex() {
+		return availabilityIndex;
+	}
+
+	/**
+	 * @return the sections and price tiers of the venue, null if it has none
+	 */
+	public VenueLayout getLayout() {
+		return layout;
+	}
+
+	/**
+	 * Divide the venue into the sections of the layout, called before the
+	 * venue is served
+	 *
+	 * @param layout
+	 */
+	public void setLayout(VenueLayout layout) {
+		for (Section section : layout.getSections()) {
+			if (section.getLastRowId() >= venueTickets.size()) {
+				throw new IllegalArgumentException("Section " + section.getName() + " ends past the last row "
+						+ (venueTickets.size() - 1) + " of the venue");
+			}
+		}
+		availabilityIndex.setLayout(venueTickets, layout);
+		this.layout = layout;
+	}
+
+	/**
+	 * @return the versioned seat maps of the venue
+	 */
+	public SeatMapLog getSeatMapLog() {
+		return seatMapLog;
+	}
+
+	/**
+	 * @return the ranked blocks of the venue, null while the best seats are
+	 *         the front left ones
+	 */
+	public RankedBlockIndex getBlockIndex() {
+		return blockIndex;
+	}
+
+	/**
+	 * Place parties of up to maxPartySize seats in the best free block by the
+	 * model instead of the front left one, called before the venue is served
+	 *
+	 * @param model
+	 * @param maxPartySize
+	 */
+	public void setSeatQuality(SeatQualityModel model, int maxPartySize) {
+		this.blockIndex = new RankedBlockIndex(venueTickets, model, maxPartySize);
+	}
+
+	/**
+	 * @return the lock an operation must hold before it locks more than one
+	 *         row, so two such operations never wait on each other's rows
+	 */
+	public Lock getBatchLock() {
+		return batchLock;
+	}
 }
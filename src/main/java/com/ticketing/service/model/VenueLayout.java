@@ -0,0 +1,67 @@
+package com.ticketing.service.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The sections of a venue and their price tiers. Sections are blocks of
+ * whole rows and don't overlap, rows outside every section belong to none.
+ */
+public class VenueLayout {
+
+	private final Map<String, Section> sections = new LinkedHashMap<>();
+
+	private final List<String> priceTiers = new ArrayList<>();
+
+	/**
+	 * @param name
+	 * @param firstRowId
+	 * @param lastRowId
+	 *            the last row of the section, included
+	 * @param priceTier
+	 */
+	public void addSection(String name, int firstRowId, int lastRowId, String priceTier) {
+		if (firstRowId < 0 || lastRowId < firstRowId) {
+			throw new IllegalArgumentException("Section " + name + " has no rows");
+		}
+		for (Section section : sections.values()) {
+			if (section.getName().equals(name)) {
+				throw new IllegalArgumentException("Section " + name + " is already in the layout");
+			}
+			if (firstRowId <= section.getLastRowId() && section.getFirstRowId() <= lastRowId) {
+				throw new IllegalArgumentException(
+						"Section " + name + " overlaps section " + section.getName());
+			}
+		}
+		sections.put(name, new Section(name, firstRowId, lastRowId, priceTier));
+		if (!priceTiers.contains(priceTier)) {
+			priceTiers.add(priceTier);
+		}
+	}
+
+	/**
+	 * @param name
+	 * @return the section, null if the layout has none by that name
+	 */
+	public Section getSection(String name) {
+		return sections.get(name);
+	}
+
+	/**
+	 * @return the sections, in the order they were added
+	 */
+	public List<Section> getSections() {
+		return Collections.unmodifiableList(new ArrayList<>(sections.values()));
+	}
+
+	/**
+	 * @return the price tiers of the sections, in the order they first
+	 *         appeared
+	 */
+	public List<String> getPriceTiers() {
+		return Collections.unmodifiableList(priceTiers);
+	}
+}
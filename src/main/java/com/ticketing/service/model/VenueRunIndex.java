@@ -0,0 +1,148 @@
+package com.ticketing.service.model;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Max segment tree over the longest free run of every row of the venue.
+ *
+ * The root tells in O(1) whether any row can take a party of N consecutive
+ * seats at all, and the first such row is found in O(log rows). Rows report
+ * the changes of their longest run themselves from Row.updateSeats.
+ *
+ * No lock is taken, so rows changing at once never wait on each other here.
+ * A leaf is only written by its row, under the row lock. Each node above it
+ * is refreshed on the way to the root: its children are read and their max
+ * is put in with a compare and set, twice, the way Jayanti's f-arrays do.
+ * If both attempts fail, another refresh which read the children after the
+ * leaf was written got in between, so every node covers the change once
+ * update returns. A node holds a version next to its max, so a refresh made
+ * from children read earlier can't put back a value which was overwritten
+ * meanwhile. Searches read the nodes as they go and go on to the right when
+ * a subtree turned out to have changed under them; callers check the row
+ * they get with its lock anyway.
+ */
+public class VenueRunIndex {
+
+	private final int leafBase;
+
+	// version in the high half, longest run in the low half
+	private final AtomicLongArray longest;
+
+	/**
+	 * Build the index over the rows and register it with each of them
+	 *
+	 * @param rows
+	 *            the rows of the venue, in rowId order
+	 */
+	public VenueRunIndex(List<Row> rows) {
+		int size = Integer.highestOneBit(Math.max(rows.size(), 1));
+		if (size < rows.size()) {
+			size <<= 1;
+		}
+		this.leafBase = size;
+
+		long[] nodes = new long[2 * size];
+		for (Row row : rows) {
+			nodes[leafBase + row.getRowId()] = row.getLongestFreeRun();
+		}
+		for (int node = size - 1; node > 0; node--) {
+			nodes[node] = Math.max(nodes[node << 1], nodes[(node << 1) + 1]);
+		}
+		this.longest = new AtomicLongArray(nodes);
+		for (Row row : rows) {
+			row.runIndex = this;
+		}
+	}
+
+	/**
+	 * @return the longest run of free seats in any row
+	 */
+	public int getLongestFreeRun() {
+		return run(1);
+	}
+
+	/**
+	 * Find the first row, front to back, with "numSeats" consecutive free
+	 * seats
+	 *
+	 * @param numSeats
+	 * @return the rowId, -1 if no row can take the party
+	 */
+	public int findFirstRow(int numSeats) {
+		if (numSeats > run(1)) {
+			return -1;
+		}
+		return findNextRow(numSeats, 0);
+	}
+
+	/**
+	 * Find the first row from fromRowId on, front to back, with "numSeats"
+	 * consecutive free seats
+	 *
+	 * @param numSeats
+	 * @param fromRowId
+	 * @return the rowId, -1 if no row from fromRowId on can take the party
+	 */
+	public int findNextRow(int numSeats, int fromRowId) {
+		if (fromRowId < 0 || fromRowId >= leafBase) {
+			return -1;
+		}
+		int node = leafBase + fromRowId;
+		while (true) {
+			// up until a subtree to the right has the run, then down its left
+			while (run(node) < numSeats) {
+				while ((node & 1) == 1) {
+					node >>>= 1;
+				}
+				if (node == 0) {
+					return -1;
+				}
+				node++;
+			}
+			while (node < leafBase) {
+				node <<= 1;
+				if (run(node) < numSeats) {
+					node++;
+				}
+			}
+			if (run(node) >= numSeats) {
+				return node - leafBase;
+			}
+			// the subtree changed under the search, on from this row
+		}
+	}
+
+	/**
+	 * Record the new longest free run of the row, called with the row locked
+	 *
+	 * @param rowId
+	 * @param longestFreeRun
+	 */
+	void update(int rowId, int longestFreeRun) {
+		int node = leafBase + rowId;
+		longest.set(node, longestFreeRun);
+		for (node >>>= 1; node > 0; node >>>= 1) {
+			if (!refresh(node)) {
+				refresh(node);
+			}
+		}
+	}
+
+	/**
+	 * Put the max of the children of the node in it, unless the node changed
+	 * since it was read
+	 *
+	 * @return false if another refresh got in first
+	 */
+	private boolean refresh(int node) {
+		long current = longest.get(node);
+		int max = Math.max(run(node << 1), run((node << 1) + 1));
+		long version = (current >>> 32) + 1;
+		return longest.compareAndSet(node, current, version << 32 | max);
+	}
+
+	private int run(int node) {
+		return (int) longest.get(node);
+	}
+}
@@ -0,0 +1,75 @@
+package com.ticketing.service.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import com.ticketing.service.model.SeatHold;
+
+/**
+ * The operations of a TicketService returning futures, so a request thread
+ * hands the call off instead of waiting on the locks of the engine.
+ *
+ * A call is cancelled with cancel on its future, and the variants taking a
+ * timeout complete the future with a TimeoutException once it is over. A
+ * call cancelled or timed out before the engine got to it is never applied.
+ * A reserve the engine already applied stands, and a hold it already made
+ * is released right away, as nobody is left to reserve it.
+ *
+ * @author Suma
+ *
+ */
+public interface AsyncTicketService {
+
+	/**
+	 * @return the number of tickets available in the venue
+	 */
+	CompletableFuture<Integer> numSeatsAvailableAsync();
+
+	/**
+	 * Find and hold the best available seats for a customer
+	 *
+	 * @param numSeats
+	 *            the number of seats to find and hold
+	 * @param customerEmail
+	 *            unique identifier for the customer
+	 * @return the SeatHold, once the engine held the seats or refused to
+	 */
+	CompletableFuture<SeatHold> findAndHoldSeatsAsync(int numSeats, String customerEmail);
+
+	/**
+	 * Commit seats held for a specific customer
+	 *
+	 * @param seatHoldId
+	 *            the seat hold identifier
+	 * @param customerEmail
+	 *            the email address of the customer to which the seat hold is
+	 *            assigned
+	 * @return the reservation confirmation code, once the engine got to it
+	 */
+	CompletableFuture<String> reserveSeatsAsync(long seatHoldId, String customerEmail);
+
+	/**
+	 * @param numSeats
+	 * @param customerEmail
+	 * @param timeout
+	 * @param unit
+	 * @return the SeatHold, or a TimeoutException once the timeout is over
+	 */
+	default CompletableFuture<SeatHold> findAndHoldSeatsAsync(int numSeats, String customerEmail, long timeout,
+			TimeUnit unit) {
+		return findAndHoldSeatsAsync(numSeats, customerEmail).orTimeout(timeout, unit);
+	}
+
+	/**
+	 * @param seatHoldId
+	 * @param customerEmail
+	 * @param timeout
+	 * @param unit
+	 * @return the reservation confirmation code, or a TimeoutException once
+	 *         the timeout is over
+	 */
+	default CompletableFuture<String> reserveSeatsAsync(long seatHoldId, String customerEmail, long timeout,
+			TimeUnit unit) {
+		return reserveSeatsAsync(seatHoldId, customerEmail).orTimeout(timeout, unit);
+	}
+}
@@ -0,0 +1,146 @@
+package com.ticketing.service.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+import com.ticketing.service.model.SeatHold;
+
+/**
+ * AsyncTicketService over a blocking TicketService, each hold and reserve
+ * running as a task of an executor.
+ *
+ * By default the tasks run on a virtual thread each when the JVM has them,
+ * found by reflection, and on a cached pool of daemon threads otherwise.
+ * The locks a call may wait on are ReentrantLocks, not monitors, so a
+ * virtual thread waiting on a row gives its carrier up instead of pinning
+ * it. A task checks its future before calling the service, so a call
+ * cancelled or timed out while queued never reaches it, and a hold taken
+ * after its future was cancelled or timed out is released right away instead
+ * of blocking its seats until it expires. The seat count is a volatile read
+ * in every engine and is answered right away.
+ *
+ * @author Suma
+ *
+ */
+public class ExecutorAsyncTicketService implements AsyncTicketService {
+
+	private static final Logger log = Logger.getLogger(ExecutorAsyncTicketService.class.getName());
+
+	private static final AtomicInteger threadCount = new AtomicInteger();
+
+	private final TicketService delegate;
+
+	private final Executor executor;
+
+	// only an executor created here is shut down with the service
+	private final boolean ownsExecutor;
+
+	/**
+	 * @param delegate
+	 *            the service the calls go to
+	 */
+	public ExecutorAsyncTicketService(TicketService delegate) {
+		this(delegate, newDefaultExecutor(), Boolean.TRUE);
+	}
+
+	/**
+	 * @param delegate
+	 *            the service the calls go to
+	 * @param executor
+	 *            runs the calls, left running by shutdown
+	 */
+	public ExecutorAsyncTicketService(TicketService delegate, Executor executor) {
+		this(delegate, executor, Boolean.FALSE);
+	}
+
+	private ExecutorAsyncTicketService(TicketService delegate, Executor executor, boolean ownsExecutor) {
+		this.delegate = delegate;
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+	}
+
+	public TicketService getDelegate() {
+		return delegate;
+	}
+
+	@Override
+	public CompletableFuture<Integer> numSeatsAvailableAsync() {
+		return CompletableFuture.completedFuture(delegate.numSeatsAvailable());
+	}
+
+	@Override
+	public CompletableFuture<SeatHold> findAndHoldSeatsAsync(int numSeats, String customerEmail) {
+		return submit(() -> delegate.findAndHoldSeats(numSeats, customerEmail), seatHold -> {
+			if (!seatHold.isError()) {
+				delegate.releaseHold(seatHold.getSeatHoldId(), customerEmail);
+			}
+		});
+	}
+
+	@Override
+	public CompletableFuture<String> reserveSeatsAsync(long seatHoldId, String customerEmail) {
+		return submit(() -> delegate.reserveSeats(seatHoldId, customerEmail), null);
+	}
+
+	/**
+	 * Stop the default executor once the calls submitted so far ran
+	 */
+	public void shutdown() {
+		if (ownsExecutor) {
+			((ExecutorService) executor).shutdown();
+		}
+	}
+
+	/**
+	 * @param call
+	 * @param undo
+	 *            given the result of a call whose future was done before the
+	 *            call returned, null if there is nothing to undo
+	 */
+	private <T> CompletableFuture<T> submit(Supplier<T> call, Consumer<T> undo) {
+		CompletableFuture<T> future = new CompletableFuture<>();
+		try {
+			executor.execute(() -> {
+				// cancelled or timed out while queued
+				if (future.isDone()) {
+					return;
+				}
+				try {
+					T result = call.get();
+					if (!future.complete(result) && undo != null) {
+						undo.accept(result);
+					}
+				} catch (RuntimeException e) {
+					future.completeExceptionally(e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			future.completeExceptionally(e);
+		}
+		return future;
+	}
+
+	/**
+	 * @return a virtual thread per task executor if the JVM has virtual
+	 *         threads, a cached pool of daemon threads otherwise
+	 */
+	static ExecutorService newDefaultExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			log.info("No virtual threads on this JVM, the calls run on a cached thread pool");
+		}
+		return Executors.newCachedThreadPool(task -> {
+			Thread thread = new Thread(task, "ticket-async-" + threadCount.incrementAndGet());
+			thread.setDaemon(Boolean.TRUE);
+			return thread;
+		});
+	}
+}
@@ -0,0 +1,66 @@
+package com.ticketing.service.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Schedules the expiry of seat holds.
+ *
+ * A single scheduler instance is shared by all the holds of the service, so
+ * scheduling or cancelling an expiry must not create a thread per hold.
+ *
+ * @author Suma
+ *
+ */
+public interface HoldExpiryScheduler {
+
+	/**
+	 * Schedule the task to run once the delay has elapsed
+	 *
+	 * @param task
+	 *            the task releasing the hold
+	 * @param delayMillis
+	 *            the on hold timeout in milliseconds
+	 * @return a handle which can be used to cancel the expiry
+	 */
+	HoldExpiry schedule(Runnable task, long delayMillis);
+
+	/**
+	 * Schedule a batch of tasks, all with the same delay
+	 *
+	 * @param tasks
+	 * @param delayMillis
+	 * @return the handles of the expiries, in the order of the tasks
+	 */
+	default List<HoldExpiry> scheduleAll(List<? extends Runnable> tasks, long delayMillis) {
+		List<HoldExpiry> expiries = new ArrayList<>(tasks.size());
+		for (Runnable task : tasks) {
+			expiries.add(schedule(task, delayMillis));
+		}
+		return expiries;
+	}
+
+	/**
+	 * @return the number of expiries which have neither run nor been
+	 *         cancelled yet
+	 */
+	int getPendingCount();
+
+	/**
+	 * Stop the scheduler, pending expiries are discarded
+	 */
+	void shutdown();
+
+	/**
+	 * Handle of a scheduled hold expiry
+	 */
+	interface HoldExpiry {
+
+		/**
+		 * Cancel the expiry, e.g. when the hold has been reserved
+		 *
+		 * @return true if the expiry was still pending and will not run
+		 */
+		boolean cancel();
+	}
+}
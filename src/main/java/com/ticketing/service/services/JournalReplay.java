@@ -0,0 +1,119 @@
+package com.ticketing.service.services;
+
+import java.util.Arrays;
+
+import com.ticketing.service.journal.HoldJournal;
+import com.ticketing.service.model.CustomerRegistry;
+import com.ticketing.service.model.HoldIdAllocator;
+import com.ticketing.service.model.HoldTable;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.model.Venue;
+
+/**
+ * Rebuilds the seats and the live holds of a venue from its journal, on top
+ * of the snapshot the venue was loaded from if any.
+ *
+ * Runs before the venue is served, so no row lock is taken. Records up to the
+ * lsn of the snapshot are skipped, and replaying a record the snapshot already
+ * reflects changes nothing, see VenueSnapshot.
+ */
+class JournalReplay implements HoldJournal.RecordHandler {
+
+	private final Venue venue;
+
+	private final long fromLsn;
+
+	private final HoldTable.Cursor hold = new HoldTable.Cursor();
+
+	// the last generation of seatHoldIds handed out before the restart
+	private int lastGeneration;
+
+	// registry id of each journal customer id, 0 for the customers which came
+	// with the snapshot, whose ids are unchanged
+	private int[] customerIds = new int[16];
+
+	/**
+	 * @param venue
+	 * @param fromLsn
+	 *            the lsn of the snapshot the venue was loaded from, 0 for a
+	 *            new venue
+	 * @param lastGeneration
+	 *            the generation of the seatHoldIds of the snapshot, -1 for a
+	 *            new venue
+	 */
+	JournalReplay(Venue venue, long fromLsn, int lastGeneration) {
+		this.venue = venue;
+		this.fromLsn = fromLsn;
+		this.lastGeneration = lastGeneration;
+	}
+
+	/**
+	 * @return the last generation of seatHoldIds found in the snapshot and
+	 *         the journal, -1 if there were none
+	 */
+	int getLastGeneration() {
+		return lastGeneration;
+	}
+
+	@Override
+	public void customer(long lsn, int customerId, String emailId) {
+		if (lsn <= fromLsn) {
+			return;
+		}
+		if (customerId >= customerIds.length) {
+			customerIds = Arrays.copyOf(customerIds, Math.max(customerIds.length * 2, customerId + 1));
+		}
+		customerIds[customerId] = venue.getCustomers().intern(emailId);
+	}
+
+	@Override
+	public void hold(long lsn, long seatHoldId, int rowId, int firstSeatId, int numSeats, int customerId,
+			long deadlineMillis) {
+		lastGeneration = Math.max(lastGeneration, HoldIdAllocator.generationOf(seatHoldId));
+		if (lsn <= fromLsn) {
+			return;
+		}
+		int holderId = registryId(customerId);
+		venue.getRow(rowId).updateSeats(firstSeatId, numSeats, Status.ON_HOLD, holderId);
+		venue.getHolds().put(seatHoldId, rowId, firstSeatId, numSeats, holderId, deadlineMillis);
+		venue.getCustomerHolds().add(holderId, seatHoldId, numSeats);
+	}
+
+	@Override
+	public void reserve(long lsn, long seatHoldId) {
+		if (lsn <= fromLsn) {
+			return;
+		}
+		if (venue.getHolds().remove(seatHoldId, hold)) {
+			venue.getCustomerHolds().remove(hold.getHolderId(), seatHoldId);
+			venue.getRow(hold.getRowId()).updateSeats(hold.getFirstSeatId(), hold.getNumSeats(), Status.RESERVED,
+					hold.getHolderId());
+		}
+	}
+
+	@Override
+	public void expire(long lsn, long seatHoldId) {
+		if (lsn <= fromLsn) {
+			return;
+		}
+		if (venue.getHolds().remove(seatHoldId, hold)) {
+			venue.getCustomerHolds().remove(hold.getHolderId(), seatHoldId);
+			venue.getRow(hold.getRowId()).updateSeats(hold.getFirstSeatId(), hold.getNumSeats(), Status.AVAILABLE,
+					CustomerRegistry.NO_CUSTOMER);
+		}
+	}
+
+	@Override
+	public void link(long lsn, long seatHoldId, long linkedId) {
+		if (lsn <= fromLsn) {
+			return;
+		}
+		// the part may have been reserved or released since
+		venue.getHolds().setLinkedId(seatHoldId, linkedId);
+	}
+
+	private int registryId(int customerId) {
+		int registryId = customerId < customerIds.length ? customerIds[customerId] : CustomerRegistry.NO_CUSTOMER;
+		return registryId == CustomerRegistry.NO_CUSTOMER ? customerId : registryId;
+	}
+}
@@ -0,0 +1,273 @@
+package com.ticketing.service.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.ticketing.service.metrics.TicketServiceMetrics;
+import com.ticketing.service.metrics.TicketServiceMetrics.Outcome;
+import com.ticketing.service.model.AtomicRow;
+import com.ticketing.service.model.CustomerRegistry;
+import com.ticketing.service.model.HoldIdAllocator;
+import com.ticketing.service.model.Seat;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.services.HoldExpiryScheduler.HoldExpiry;
+
+/**
+ * TicketService which never blocks on a lock.
+ *
+ * Each row keeps its seats in an AtomicRow. A hold scans for a candidate run
+ * and claims it with compare and set, moving on to the next candidate run if
+ * another hold got there first. The hold table decides between reserveSeats
+ * and the expiry of a hold: whichever removes the hold from the table owns
+ * its seats, and flips them with compare and set as well.
+ *
+ * Runs next to TicketServiceImpl with its own seat state, see
+ * TicketServiceFactory.
+ *
+ * @author Suma
+ *
+ */
+public class LockFreeTicketServiceImpl implements TicketService {
+
+	private static final Logger log = Logger.getLogger(LockFreeTicketServiceImpl.class.getName());
+
+	private final List<AtomicRow> rows;
+
+	private final Map<Long, LockFreeHold> holds = new ConcurrentHashMap<>();
+
+	private final CustomerRegistry customers = new CustomerRegistry();
+
+	private final AtomicInteger availableSeats;
+
+	private final HoldIdAllocator holdIds = new HoldIdAllocator();
+
+	private final long onHoldTimeOut;
+
+	private final HoldExpiryScheduler expiryScheduler;
+
+	private final TicketServiceMetrics metrics;
+
+	public LockFreeTicketServiceImpl(int rows, int cols, Long onHoldTimeOut, HoldExpiryScheduler expiryScheduler) {
+		this.rows = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			this.rows.add(new AtomicRow(i, cols));
+		}
+		this.availableSeats = new AtomicInteger(rows * cols);
+		this.onHoldTimeOut = onHoldTimeOut;
+		this.expiryScheduler = expiryScheduler;
+		this.metrics = new TicketServiceMetrics(holds::size, expiryScheduler::getPendingCount);
+	}
+
+	public TicketServiceMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public int numSeatsAvailable() {
+		return availableSeats.get();
+	}
+
+	@Override
+	public int numSeatsAvailable(int rowId) {
+		return rows.get(rowId).getAvailableSeatCount();
+	}
+
+	@Override
+	public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+		long startNanos = System.nanoTime();
+		SeatHold seatHold = new SeatHold();
+		if (numSeats > numSeatsAvailable()) {
+			seatHold.setError(Boolean.TRUE);
+			seatHold.setErrorMessage(TicketServiceImpl.TICKETS_ERROR_TOO_MANY_REQUESTED.replace("{0}",
+					Integer.toString(numSeats)));
+			metrics.recordHold(Outcome.TOO_MANY_REQUESTED, System.nanoTime() - startNanos);
+
+			return seatHold;
+		}
+
+		for (AtomicRow row : rows) {
+			// avoid scanning the row if it can't take the party anyway
+			if (row.getAvailableSeatCount() < numSeats) {
+				continue;
+			}
+			int seatId = row.findConsecutiveAvailable(numSeats, 0);
+			while (seatId >= 0) {
+				if (row.compareAndSet(seatId, numSeats, Status.AVAILABLE, Status.ON_HOLD)) {
+					availableSeats.addAndGet(-numSeats);
+					populateSeatHold(numSeats, customerEmail, seatHold, row, seatId);
+					metrics.recordHold(Outcome.HELD, System.nanoTime() - startNanos);
+					return seatHold;
+				}
+				// lost the race for this run, try the next candidate
+				seatId = row.findConsecutiveAvailable(numSeats, seatId + 1);
+			}
+		}
+
+		seatHold.setError(Boolean.TRUE);
+		seatHold.setErrorMessage(TicketServiceImpl.TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE.replace("{0}",
+				Integer.toString(numSeats)));
+		metrics.recordHold(Outcome.CONSECUTIVE_NOT_AVAILABLE, System.nanoTime() - startNanos);
+		return seatHold;
+	}
+
+	@Override
+	public String reserveSeats(long seatHoldId, String customerEmail) {
+		long startNanos = System.nanoTime();
+		Outcome outcome = reserveHold(seatHoldId, customerEmail);
+		metrics.recordReserve(outcome, System.nanoTime() - startNanos);
+
+		switch (outcome) {
+		case RESERVED:
+			return TicketServiceImpl.TICKET_MESSAGE_SUCCESS;
+		case EMAIL_MISMATCH:
+			return TicketServiceImpl.TICKET_MESSAGE_EMAIL_MISMATCH;
+		default:
+			return TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL;
+		}
+	}
+
+	private Outcome reserveHold(long seatHoldId, String customerEmail) {
+		LockFreeHold hold = holds.get(seatHoldId);
+		if (hold == null) {
+			return Outcome.RESERVE_UNSUCCESSFUL;
+		}
+		if (hold.customerId != customers.lookup(customerEmail)) {
+			return Outcome.EMAIL_MISMATCH;
+		}
+		// the expiry may win the race for the hold
+		if (!holds.remove(seatHoldId, hold)) {
+			return Outcome.RESERVE_UNSUCCESSFUL;
+		}
+		// still null if the hold is reserved before its expiry got scheduled,
+		// that expiry then finds the hold gone
+		HoldExpiry expiry = hold.expiry;
+		if (expiry != null) {
+			expiry.cancel();
+		}
+		hold.row.transition(hold.firstSeatId, hold.numSeats, Status.ON_HOLD, Status.RESERVED);
+		metrics.recordConversion(System.nanoTime() - hold.holdTimeNanos);
+
+		return Outcome.RESERVED;
+	}
+
+	@Override
+	public int releaseHold(long seatHoldId, String customerEmail) {
+		LockFreeHold hold = holds.get(seatHoldId);
+		if (hold == null || hold.customerId != customers.lookup(customerEmail)) {
+			return 0;
+		}
+		// reserveSeats or the expiry may win the race for the hold
+		if (!holds.remove(seatHoldId, hold)) {
+			return 0;
+		}
+		HoldExpiry expiry = hold.expiry;
+		if (expiry != null) {
+			expiry.cancel();
+		}
+		hold.row.transition(hold.firstSeatId, hold.numSeats, Status.ON_HOLD, Status.AVAILABLE);
+		availableSeats.addAndGet(hold.numSeats);
+		metrics.record(Outcome.RELEASED);
+
+		return hold.numSeats;
+	}
+
+	/**
+	 * @param rowId
+	 * @param seatId
+	 * @return the current status of the seat
+	 */
+	public Status getSeatStatus(int rowId, int seatId) {
+		return rows.get(rowId).getStatus(seatId);
+	}
+
+	/**
+	 * This is just a helper method to print out the Venue Seat matrix
+	 * System out has been used instead of logs for a better representation of the result
+	 */
+	public void printVenueStatus() {
+		for (AtomicRow row : rows) {
+			for (int seatId = 0; seatId < row.getSeatCount(); seatId++) {
+				System.out.print(row.getStatus(seatId).toString().substring(0, 1) + " ");
+			}
+			System.out.println();
+		}
+	}
+
+	/**
+	 * Fill in the SeatHold of the seats just claimed, add it to the hold table
+	 * and schedule its expiry
+	 *
+	 * @param numSeats
+	 * @param customerEmail
+	 * @param seatHold
+	 * @param row
+	 * @param seatId
+	 */
+	private void populateSeatHold(int numSeats, String customerEmail, SeatHold seatHold, AtomicRow row, int seatId) {
+		seatHold.setSeatHoldId(holdIds.next());
+		seatHold.setRowId(row.getRowId());
+		seatHold.setTotalSeats(numSeats);
+		seatHold.setHoldTimeNanos(System.nanoTime());
+
+		List<Seat> seats = new ArrayList<>(numSeats);
+		for (int i = seatId; i < seatId + numSeats; i++) {
+			Seat seat = new Seat();
+			seat.setRowId(row.getRowId());
+			seat.setSeatId(i);
+			seat.setStatus(Status.ON_HOLD);
+			seat.setEmailId(customerEmail);
+			seats.add(seat);
+		}
+		seatHold.setSeats(seats);
+
+		LockFreeHold hold = new LockFreeHold(row, seatId, numSeats, customers.intern(customerEmail),
+				seatHold.getHoldTimeNanos());
+		holds.put(seatHold.getSeatHoldId(), hold);
+		hold.expiry = expiryScheduler.schedule(() -> expireHold(seatHold.getSeatHoldId(), hold), onHoldTimeOut);
+	}
+
+	/**
+	 * Release the seats of the hold, unless reserveSeats removed it first
+	 *
+	 * @param seatHoldId
+	 * @param hold
+	 */
+	private void expireHold(long seatHoldId, LockFreeHold hold) {
+		if (holds.remove(seatHoldId, hold)) {
+			hold.row.transition(hold.firstSeatId, hold.numSeats, Status.ON_HOLD, Status.AVAILABLE);
+			availableSeats.addAndGet(hold.numSeats);
+			metrics.record(Outcome.EXPIRED);
+
+			//I am just logging this message for now, but in real life, the user needs to be notified
+			log.warning("Can't hold " + hold.numSeats + " seats any longer for " + customers.getEmailId(hold.customerId));
+		}
+	}
+
+	private static final class LockFreeHold {
+
+		private final AtomicRow row;
+
+		private final int firstSeatId;
+
+		private final int numSeats;
+
+		private final int customerId;
+
+		private final long holdTimeNanos;
+
+		private volatile HoldExpiry expiry;
+
+		private LockFreeHold(AtomicRow row, int firstSeatId, int numSeats, int customerId, long holdTimeNanos) {
+			this.row = row;
+			this.firstSeatId = firstSeatId;
+			this.numSeats = numSeats;
+			this.customerId = customerId;
+			this.holdTimeNanos = holdTimeNanos;
+		}
+	}
+}
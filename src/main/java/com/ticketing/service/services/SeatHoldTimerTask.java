@@ -1,105 +1,106 @@
 package com.ticketing.service.services;
 
-import static com.ticketing.service.model.Venue.seatHoldMap;
-import static com.ticketing.service.model.Venue.venueTickets;
-
-import java.util.Map;
-import java.util.TimerTask;
 import java.util.logging.Logger;
 
-import com.ticketing.service.model.Seat;
-import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.metrics.TicketServiceMetrics.Outcome;
+import com.ticketing.service.model.CustomerRegistry;
+import com.ticketing.service.model.HoldTable;
+import com.ticketing.service.model.Row;
 import com.ticketing.service.model.Status;
 
-public class SeatHoldTimerTask extends TimerTask {
+public class SeatHoldTimerTask implements Runnable {
 	
 
 	private static final Logger log = Logger.getLogger(SeatHoldTimerTask.class.getName());
-	private String emailId;
 
-	public SeatHoldTimerTask(String emailId) {
-		this.emailId = emailId;
+	private final TicketServiceImpl ticketService;
+
+	private final long seatHoldId;
+
+	private final Row row;
+
+	public SeatHoldTimerTask(TicketServiceImpl ticketService, long seatHoldId, Row row) {
+		this.ticketService = ticketService;
+		this.seatHoldId = seatHoldId;
+		this.row = row;
+	}
+
+	long getSeatHoldId() {
+		return seatHoldId;
 	}
 
 	@Override
 	public void run() {
-		synchronized (seatHoldMap) {
-			if (seatHoldMap != null) {
-				processOnHoldTimeOut(seatHoldMap);
+		HoldTable.Cursor split = TicketServiceImpl.cursor();
+		if (ticketService.getVenue().getHolds().get(seatHoldId, split)
+				&& split.getLinkedId() != HoldTable.NOT_LINKED) {
+			// the parts of a split hold are in several rows, released together
+			String emailId = ticketService.getVenue().getCustomers().getEmailId(split.getHolderId());
+			int releasedSeats = ticketService.releaseSplitHold(seatHoldId, Outcome.EXPIRED);
+			if (releasedSeats > 0) {
+				handleTicketsOnHoldTimeOut(releasedSeats, emailId);
+			}
+			return;
+		}
+
+		// Only the row of the hold is locked, the same lock as reserveSeats
+		// takes, so a hold is either reserved or released
+		ticketService.lockRow(row);
+		try {
+			HoldTable holds = ticketService.getVenue().getHolds();
+			HoldTable.Cursor hold = TicketServiceImpl.cursor();
+
+			// seatHoldIds are never reused, so the hold is gone if it has been
+			// reserved
+			if (holds.remove(seatHoldId, hold)) {
+				ticketService.getVenue().getCustomerHolds().remove(hold.getHolderId(), seatHoldId);
+				processOnHoldTimeOut(hold);
+				ticketService.journalExpiry(seatHoldId);
+				ticketService.getMetrics().record(Outcome.EXPIRED);
 			}
+		} finally {
+			row.getLock().unlock();
 		}
 	}
 
 	/**
-	 * Loop over the SeatHold map and match the email assigned to the seat with 
-	 * the email assigned to this class.(this timer task is triggered every time we hold
-	 * the seat for anyone, email id comparison ensures we are only resetting the appropriate
-	 * seats assigned to the email)
+	 * Reset the seats of the hold this task was scheduled for back to
+	 * available as the on hold timeout has been reached.
 	 * 
-	 * If they match then, reset the seats back to available as the on hold timeout has been reached
+	 * The hold has already been removed from the hold table, so only its own
+	 * seats are changed and no other hold of the same customer is touched.
+	 * They are all still on hold, the hold leaves the table along with them
+	 * under the row lock.
 	 * 
-	 * @param seatHoldMap
+	 * @param hold
 	 */
-	private void processOnHoldTimeOut(Map<Integer, SeatHold> seatHoldMap) {
-		//System.out.println(emailId);
-		int rowId = 0;
-		int counter = 0;
-		int holdMapKey = 0;
-		String emailAssignedToSeat = null;
-
-		for (Map.Entry<Integer, SeatHold> entry : seatHoldMap.entrySet()) {
-			SeatHold seatHold = entry.getValue();
-			holdMapKey = entry.getKey();
-
-			rowId = seatHold.getRowId();
-			for (Seat seat : seatHold.getSeats()) {
-				//System.out.println("counter= "+seat.getEmailId() + "--" +seat.getSeatId());
-				if (seat.getStatus().equals(Status.ON_HOLD) && seat.getEmailId().equalsIgnoreCase(emailId)) {
-					counter++;
-					emailAssignedToSeat = seat.getEmailId();
-
-					updateSeatOnHoldTimeOut(seatHold, seat);
-				}
-			}
-		}
-		
-		// Doing this outside of for loop so it executes just once
-		if (counter > 0) {
-			handleTicketsOnHoldTimeOut(counter, emailAssignedToSeat, rowId, holdMapKey);
-		}
+	private void processOnHoldTimeOut(HoldTable.Cursor hold) {
+		updateSeatsOnHoldTimeOut(hold.getFirstSeatId(), hold.getNumSeats());
+		handleTicketsOnHoldTimeOut(hold.getNumSeats(),
+				ticketService.getVenue().getCustomers().getEmailId(hold.getHolderId()));
 	}
 
 	/**
-	 * Update the available count on the row as these seats just became available 
-	 * and remove this entry from the SeatHold map.
+	 * Let the customer know these seats just became available again, the
+	 * available counts were updated along with the seats
 	 * 
 	 * @param counter
 	 * @param emailAssignedToSeat
-	 * @param rowId
-	 * @param oldCount
-	 * @param holdMapKey
 	 */
-	private void handleTicketsOnHoldTimeOut(int counter, String emailAssignedToSeat, int rowId,
-			int holdMapKey) {
+	private void handleTicketsOnHoldTimeOut(int counter, String emailAssignedToSeat) {
 		//I am just logging this message for now, but in real life, the user needs to be notified
 		String errorMessage = "Can't hold " + counter + " seats any longer for " + emailAssignedToSeat;
 		log.warning(errorMessage);
-		
-		int oldCount = venueTickets.get(rowId).getAvailableSeatCount();
-		venueTickets.get(rowId).setAvailableSeatCount(oldCount + counter);
-		seatHoldMap.remove(holdMapKey);
 	}
 
 	/**
-	 * Update the status of the Seat back to available 
-	 * and reset the associated email to null
+	 * Update the status of the Seats back to available 
+	 * and reset the associated customer, in one change of the row
 	 * 
-	 * @param seatHold
-	 * @param seat
+	 * @param firstSeatId
+	 * @param numSeats
 	 */
-	private void updateSeatOnHoldTimeOut(SeatHold seatHold, Seat seat) {
-		Seat seatToBeUpdated = venueTickets.get(seatHold.getRowId()).getSeats().get(seat.getSeatId());
-		seatToBeUpdated.setStatus(Status.AVAILABLE);
-		seatToBeUpdated.setEmailId(null);
+	private void updateSeatsOnHoldTimeOut(int firstSeatId, int numSeats) {
+		row.updateSeats(firstSeatId, numSeats, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
 	}
 }
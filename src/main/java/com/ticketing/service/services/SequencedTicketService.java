@@ -0,0 +1,566 @@
+package com.ticketing.service.services;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.ticketing.service.metrics.TicketServiceMetrics;
+import com.ticketing.service.metrics.TicketServiceMetrics.Outcome;
+import com.ticketing.service.model.CustomerRegistry;
+import com.ticketing.service.model.HoldIdAllocator;
+import com.ticketing.service.model.HoldRequest;
+import com.ticketing.service.model.ReserveRequest;
+import com.ticketing.service.model.Row;
+import com.ticketing.service.model.Seat;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.model.VenueRunIndex;
+import com.ticketing.service.services.HoldExpiryScheduler.HoldExpiry;
+
+/**
+ * TicketService whose seat state is only ever touched by one writer thread.
+ *
+ * Holds, reserves and expiries are commands, put on a preallocated ring of
+ * slots by any number of threads and applied in order by the writer, which
+ * owns the rows and the hold table outright, so neither is locked nor made
+ * atomic. A caller claims a sequence number with a single getAndIncrement,
+ * fills the slot it maps to and publishes the slot by writing its sequence
+ * last. The writer applies every command published in a row in one drain,
+ * completes their futures and only then frees the slots of the whole batch
+ * with one volatile write. A caller finding the ring full waits for the
+ * writer to free a slot, and the writer parks when there is nothing to do,
+ * after spinning a while. Shutting down sets a bit of the claim counter in
+ * the same atomic step that claims the slot of the STOP command, so every
+ * command claimed before it is applied and every claim after it is refused.
+ *
+ * The futures are completed on the writer thread, so callbacks taking any
+ * time should use the async variants of CompletableFuture. A command whose
+ * future was cancelled or timed out before the writer got to it is skipped,
+ * one which fails completes its future exceptionally and the writer goes on
+ * with the next. A hold whose future was done by the time the writer
+ * completes it is released right away, nobody is left to reserve it.
+ *
+ * The rows and the hold table belong to the writer alone and are never
+ * shared with the locking engines, so TicketServiceFactory hands a venue
+ * to this engine or to one of them, not both.
+ *
+ * @author Suma
+ *
+ */
+public class SequencedTicketService implements TicketService, AsyncTicketService {
+
+	private static final Logger log = Logger.getLogger(SequencedTicketService.class.getName());
+
+	private static final int DEFAULT_RING_SIZE = 1024;
+
+	// rounds of the writer on an empty ring before it parks, spinning then
+	// yielding to the callers
+	private static final int IDLE_SPINS = 1000;
+
+	private static final int IDLE_YIELDS = 100;
+
+	private static final int HOLD = 0;
+
+	private static final int RESERVE = 1;
+
+	private static final int EXPIRE = 2;
+
+	private static final int RELEASE = 3;
+
+	private static final int STOP = 4;
+
+	// set in the claim counter once the service is shut down
+	private static final long STOPPED = 1L << 62;
+
+	private final Command[] ring;
+
+	private final int mask;
+
+	// the next sequence to claim, with the STOPPED bit once shut down
+	private final AtomicLong claimed = new AtomicLong();
+
+	// the slots of the sequences below it are free again
+	private volatile long consumed;
+
+	private volatile boolean isWriterParked;
+
+	private final Thread writer;
+
+	// the state of the writer, read by other threads only where volatile
+	private final List<Row> rows;
+
+	private final VenueRunIndex runIndex;
+
+	private final Map<Long, SequencedHold> holds = new HashMap<>();
+
+	private final CustomerRegistry customers = new CustomerRegistry();
+
+	private final HoldIdAllocator holdIds = new HoldIdAllocator();
+
+	private volatile int availableSeats;
+
+	private volatile int liveHolds;
+
+	private final long onHoldTimeOut;
+
+	private final HoldExpiryScheduler expiryScheduler;
+
+	private final TicketServiceMetrics metrics;
+
+	public SequencedTicketService(int rows, int cols, Long onHoldTimeOut, HoldExpiryScheduler expiryScheduler) {
+		this(rows, cols, onHoldTimeOut, expiryScheduler, DEFAULT_RING_SIZE);
+	}
+
+	/**
+	 * @param rows
+	 * @param cols
+	 * @param onHoldTimeOut
+	 * @param expiryScheduler
+	 * @param ringSize
+	 *            the commands which may wait for the writer at once, rounded
+	 *            up to a power of two
+	 */
+	public SequencedTicketService(int rows, int cols, Long onHoldTimeOut, HoldExpiryScheduler expiryScheduler,
+			int ringSize) {
+		this.rows = new ArrayList<>(rows);
+		for (int i = 0; i < rows; i++) {
+			this.rows.add(new Row(i, cols, customers));
+		}
+		this.runIndex = new VenueRunIndex(this.rows);
+		this.availableSeats = rows * cols;
+		this.onHoldTimeOut = onHoldTimeOut;
+		this.expiryScheduler = expiryScheduler;
+		this.metrics = new TicketServiceMetrics(() -> liveHolds, expiryScheduler::getPendingCount);
+
+		int size = Integer.highestOneBit(Math.max(ringSize, 2) - 1) << 1;
+		this.ring = new Command[size];
+		for (int i = 0; i < size; i++) {
+			ring[i] = new Command();
+		}
+		this.mask = size - 1;
+
+		this.writer = new Thread(this::drain, "ticket-sequencer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	public TicketServiceMetrics getMetrics() {
+		return metrics;
+	}
+
+	@Override
+	public int numSeatsAvailable() {
+		return availableSeats;
+	}
+
+	@Override
+	public int numSeatsAvailable(int rowId) {
+		return rows.get(rowId).getAvailableSeatCount();
+	}
+
+	@Override
+	public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+		return findAndHoldSeatsAsync(numSeats, customerEmail).join();
+	}
+
+	@Override
+	public String reserveSeats(long seatHoldId, String customerEmail) {
+		return reserveSeatsAsync(seatHoldId, customerEmail).join();
+	}
+
+	/**
+	 * The holds of the batch are all put on the ring before the first one is
+	 * waited for, so the writer applies them in as few drains as it can.
+	 */
+	@Override
+	public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests) {
+		List<CompletableFuture<SeatHold>> futures = new ArrayList<>(holdRequests.size());
+		for (HoldRequest holdRequest : holdRequests) {
+			futures.add(findAndHoldSeatsAsync(holdRequest.getNumSeats(), holdRequest.getCustomerEmail()));
+		}
+		List<SeatHold> seatHolds = new ArrayList<>(futures.size());
+		for (CompletableFuture<SeatHold> future : futures) {
+			seatHolds.add(future.join());
+		}
+		return seatHolds;
+	}
+
+	@Override
+	public List<String> reserveSeatsBatch(List<ReserveRequest> reserveRequests) {
+		List<CompletableFuture<String>> futures = new ArrayList<>(reserveRequests.size());
+		for (ReserveRequest reserveRequest : reserveRequests) {
+			futures.add(reserveSeatsAsync(reserveRequest.getSeatHoldId(), reserveRequest.getCustomerEmail()));
+		}
+		List<String> messages = new ArrayList<>(futures.size());
+		for (CompletableFuture<String> future : futures) {
+			messages.add(future.join());
+		}
+		return messages;
+	}
+
+	@Override
+	public CompletableFuture<Integer> numSeatsAvailableAsync() {
+		return CompletableFuture.completedFuture(availableSeats);
+	}
+
+	/**
+	 * @param numSeats
+	 * @param customerEmail
+	 * @return the SeatHold, once the writer got to the command
+	 */
+	@Override
+	public CompletableFuture<SeatHold> findAndHoldSeatsAsync(int numSeats, String customerEmail) {
+		CompletableFuture<SeatHold> future = new CompletableFuture<>();
+		publish(HOLD, numSeats, customerEmail, 0L, future);
+		return future;
+	}
+
+	/**
+	 * @param seatHoldId
+	 * @param customerEmail
+	 * @return the reservation confirmation code, once the writer got to the
+	 *         command
+	 */
+	@Override
+	public CompletableFuture<String> reserveSeatsAsync(long seatHoldId, String customerEmail) {
+		CompletableFuture<String> future = new CompletableFuture<>();
+		publish(RESERVE, 0, customerEmail, seatHoldId, future);
+		return future;
+	}
+
+	@Override
+	public int releaseHold(long seatHoldId, String customerEmail) {
+		CompletableFuture<Integer> future = new CompletableFuture<>();
+		publish(RELEASE, 0, customerEmail, seatHoldId, future);
+		return future.join();
+	}
+
+	/**
+	 * Stop the writer once it applied the commands published so far, the
+	 * service takes no command after that
+	 */
+	public void shutdown() {
+		long sequence = claimed.getAndUpdate(next -> next | STOPPED);
+		if ((sequence & STOPPED) == 0) {
+			put(sequence, STOP, 0, null, 0L, null);
+		}
+		try {
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * @param rowId
+	 * @param seatId
+	 * @return the status of the seat as of the last drain of the writer
+	 */
+	public Status getSeatStatus(int rowId, int seatId) {
+		return rows.get(rowId).getStatus(seatId);
+	}
+
+	private void publish(int type, int numSeats, String customerEmail, long seatHoldId,
+			CompletableFuture<?> future) {
+		// checked on the caller thread, the writer only sees valid commands
+		if (type != EXPIRE && customerEmail == null) {
+			throw new IllegalArgumentException("customerEmail is required");
+		}
+		if (type == HOLD && numSeats <= 0) {
+			throw new IllegalArgumentException("numSeats must be positive, was " + numSeats);
+		}
+		long sequence = claimed.getAndIncrement();
+		if ((sequence & STOPPED) != 0) {
+			// the holds left are gone with the service
+			if (type == EXPIRE) {
+				return;
+			}
+			throw new IllegalStateException("The service is shut down");
+		}
+		put(sequence, type, numSeats, customerEmail, seatHoldId, future);
+	}
+
+	/**
+	 * Fill the slot of the claimed sequence and publish it to the writer
+	 */
+	private void put(long sequence, int type, int numSeats, String customerEmail, long seatHoldId,
+			CompletableFuture<?> future) {
+		// the slot is free once the writer is less than a lap behind
+		while (sequence - consumed >= ring.length) {
+			LockSupport.parkNanos(1000L);
+		}
+		Command command = ring[(int) sequence & mask];
+		command.type = type;
+		command.numSeats = numSeats;
+		command.customerEmail = customerEmail;
+		command.seatHoldId = seatHoldId;
+		command.future = future;
+		command.submitNanos = System.nanoTime();
+		command.sequence = sequence;
+		if (isWriterParked) {
+			LockSupport.unpark(writer);
+		}
+	}
+
+	private void drain() {
+		long next = 0;
+		int idleSpins = 0;
+		boolean isRunning = Boolean.TRUE;
+		while (isRunning) {
+			if (ring[(int) next & mask].sequence != next) {
+				if (++idleSpins < IDLE_SPINS) {
+					continue;
+				} else if (idleSpins < IDLE_SPINS + IDLE_YIELDS) {
+					Thread.yield();
+					continue;
+				}
+				// a command published after the flag is set unparks the
+				// writer, one published before it is seen by the check
+				isWriterParked = Boolean.TRUE;
+				if (ring[(int) next & mask].sequence != next) {
+					LockSupport.park(this);
+				}
+				isWriterParked = Boolean.FALSE;
+				idleSpins = 0;
+				continue;
+			}
+			idleSpins = 0;
+
+			long end = next;
+			while (end - next < ring.length && ring[(int) end & mask].sequence == end) {
+				Command command = ring[(int) end & mask];
+				try {
+					isRunning &= apply(command);
+				} catch (RuntimeException e) {
+					// fails this command only, the writer keeps draining
+					command.result = null;
+					command.failure = e;
+				}
+				end++;
+			}
+			for (long sequence = next; sequence < end; sequence++) {
+				complete(ring[(int) sequence & mask]);
+			}
+			next = end;
+			consumed = end;
+		}
+	}
+
+	/**
+	 * @return false for the STOP command
+	 */
+	private boolean apply(Command command) {
+		if (command.future != null && command.future.isDone()) {
+			// cancelled or timed out while on the ring
+			return Boolean.TRUE;
+		}
+		switch (command.type) {
+		case HOLD:
+			command.result = hold(command.numSeats, command.customerEmail, command.submitNanos);
+			break;
+		case RESERVE:
+			Outcome outcome = reserve(command.seatHoldId, command.customerEmail);
+			metrics.recordReserve(outcome, System.nanoTime() - command.submitNanos);
+			command.result = outcome == Outcome.RESERVED ? TicketServiceImpl.TICKET_MESSAGE_SUCCESS
+					: outcome == Outcome.EMAIL_MISMATCH ? TicketServiceImpl.TICKET_MESSAGE_EMAIL_MISMATCH
+							: TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL;
+			break;
+		case EXPIRE:
+			expire(command.seatHoldId);
+			break;
+		case RELEASE:
+			command.result = release(command.seatHoldId, customers.lookup(command.customerEmail));
+			break;
+		default:
+			return Boolean.FALSE;
+		}
+		return Boolean.TRUE;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void complete(Command command) {
+		CompletableFuture<Object> future = (CompletableFuture<Object>) command.future;
+		Object result = command.result;
+		RuntimeException failure = command.failure;
+		String customerEmail = command.customerEmail;
+		command.future = null;
+		command.result = null;
+		command.failure = null;
+		command.customerEmail = null;
+		if (failure != null) {
+			if (future != null) {
+				future.completeExceptionally(failure);
+			} else {
+				log.log(Level.SEVERE, "Sequenced command failed", failure);
+			}
+		} else if (future != null && !future.complete(result) && result instanceof SeatHold
+				&& !((SeatHold) result).isError()) {
+			// cancelled or timed out since the hold was taken
+			release(((SeatHold) result).getSeatHoldId(), customers.lookup(customerEmail));
+		}
+	}
+
+	private SeatHold hold(int numSeats, String customerEmail, long submitNanos) {
+		SeatHold seatHold = new SeatHold();
+		if (numSeats > availableSeats) {
+			seatHold.setError(Boolean.TRUE);
+			seatHold.setErrorMessage(TicketServiceImpl.TICKETS_ERROR_TOO_MANY_REQUESTED.replace("{0}",
+					Integer.toString(numSeats)));
+			metrics.recordHold(Outcome.TOO_MANY_REQUESTED, System.nanoTime() - submitNanos);
+			return seatHold;
+		}
+
+		// the index is only changed by this thread, so the row it finds can
+		// take the party, found in O(log rows) as in FirstFitStrategy
+		int rowId = runIndex.findFirstRow(numSeats);
+		if (rowId >= 0) {
+			Row row = rows.get(rowId);
+			int seatId = row.findConsecutiveAvailable(numSeats);
+			int customerId = customers.intern(customerEmail);
+			row.updateSeats(seatId, numSeats, Status.ON_HOLD, customerId);
+			availableSeats -= numSeats;
+			populateSeatHold(numSeats, customerEmail, customerId, seatHold, row, seatId);
+			metrics.recordHold(Outcome.HELD, System.nanoTime() - submitNanos);
+			return seatHold;
+		}
+
+		seatHold.setError(Boolean.TRUE);
+		seatHold.setErrorMessage(TicketServiceImpl.TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE.replace("{0}",
+				Integer.toString(numSeats)));
+		metrics.recordHold(Outcome.CONSECUTIVE_NOT_AVAILABLE, System.nanoTime() - submitNanos);
+		return seatHold;
+	}
+
+	private Outcome reserve(long seatHoldId, String customerEmail) {
+		SequencedHold hold = holds.get(seatHoldId);
+		if (hold == null) {
+			return Outcome.RESERVE_UNSUCCESSFUL;
+		}
+		if (hold.customerId != customers.lookup(customerEmail)) {
+			return Outcome.EMAIL_MISMATCH;
+		}
+		holds.remove(seatHoldId);
+		liveHolds = holds.size();
+		hold.expiry.cancel();
+		hold.row.updateSeats(hold.firstSeatId, hold.numSeats, Status.RESERVED, hold.customerId);
+		metrics.recordConversion(System.nanoTime() - hold.holdTimeNanos);
+
+		return Outcome.RESERVED;
+	}
+
+	/**
+	 * @return the number of seats released, 0 if the hold is gone or is not
+	 *         the customer's
+	 */
+	private int release(long seatHoldId, int customerId) {
+		SequencedHold hold = holds.get(seatHoldId);
+		if (hold == null || hold.customerId != customerId) {
+			return 0;
+		}
+		holds.remove(seatHoldId);
+		liveHolds = holds.size();
+		hold.expiry.cancel();
+		hold.row.updateSeats(hold.firstSeatId, hold.numSeats, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+		availableSeats += hold.numSeats;
+		metrics.record(Outcome.RELEASED);
+
+		return hold.numSeats;
+	}
+
+	private void expire(long seatHoldId) {
+		// gone if reserved before the expiry was cancelled
+		SequencedHold hold = holds.remove(seatHoldId);
+		if (hold != null) {
+			liveHolds = holds.size();
+			hold.row.updateSeats(hold.firstSeatId, hold.numSeats, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+			availableSeats += hold.numSeats;
+			metrics.record(Outcome.EXPIRED);
+
+			//I am just logging this message for now, but in real life, the user needs to be notified
+			log.warning("Can't hold " + hold.numSeats + " seats any longer for " + customers.getEmailId(hold.customerId));
+		}
+	}
+
+	/**
+	 * Fill in the SeatHold of the seats just held, add it to the hold table
+	 * and schedule its expiry, which is put on the ring when it is due
+	 */
+	private void populateSeatHold(int numSeats, String customerEmail, int customerId, SeatHold seatHold, Row row,
+			int seatId) {
+		long seatHoldId = holdIds.next();
+		seatHold.setSeatHoldId(seatHoldId);
+		seatHold.setRowId(row.getRowId());
+		seatHold.setTotalSeats(numSeats);
+		seatHold.setHoldTimeNanos(System.nanoTime());
+
+		List<Seat> seats = new ArrayList<>(numSeats);
+		for (int i = seatId; i < seatId + numSeats; i++) {
+			Seat seat = new Seat();
+			seat.setRowId(row.getRowId());
+			seat.setSeatId(i);
+			seat.setStatus(Status.ON_HOLD);
+			seat.setEmailId(customerEmail);
+			seats.add(seat);
+		}
+		seatHold.setSeats(seats);
+
+		SequencedHold hold = new SequencedHold(row, seatId, numSeats, customerId, seatHold.getHoldTimeNanos());
+		holds.put(seatHoldId, hold);
+		liveHolds = holds.size();
+		hold.expiry = expiryScheduler.schedule(() -> publish(EXPIRE, 0, null, seatHoldId, null), onHoldTimeOut);
+	}
+
+	/**
+	 * A slot of the ring, written by the caller which claimed its sequence
+	 * and read by the writer once the sequence is published
+	 */
+	private static final class Command {
+
+		private volatile long sequence = -1L;
+
+		private int type;
+
+		private int numSeats;
+
+		private String customerEmail;
+
+		private long seatHoldId;
+
+		private long submitNanos;
+
+		private CompletableFuture<?> future;
+
+		private Object result;
+
+		private RuntimeException failure;
+	}
+
+	private static final class SequencedHold {
+
+		private final Row row;
+
+		private final int firstSeatId;
+
+		private final int numSeats;
+
+		private final int customerId;
+
+		private final long holdTimeNanos;
+
+		private HoldExpiry expiry;
+
+		private SequencedHold(Row row, int firstSeatId, int numSeats, int customerId, long holdTimeNanos) {
+			this.row = row;
+			this.firstSeatId = firstSeatId;
+			this.numSeats = numSeats;
+			this.customerId = customerId;
+			this.holdTimeNanos = holdTimeNanos;
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package com.ticketing.service.services;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import com.ticketing.service.model.HoldRequest;
+import com.ticketing.service.model.ReserveRequest;
 import com.ticketing.service.model.SeatHold;
 
 
@@ -11,6 +16,16 @@ public interface TicketService {
 	 */
 	int numSeatsAvailable();
 
+	/**
+	 * The number of seats in a row of the venue that are neither held nor
+	 * reserved
+	 *
+	 * @param rowId
+	 *            the row, starting from 0 at the front
+	 * @return the number of tickets available in the row
+	 */
+	int numSeatsAvailable(int rowId);
+
 	/**
 	 * Find and hold the best available seats for a customer
 	 *
@@ -33,5 +48,48 @@ public interface TicketService {
 	 *            assigned
 	 * @return a reservation confirmation code
 	 */
-	String reserveSeats(int seatHoldId, String customerEmail);
+	String reserveSeats(long seatHoldId, String customerEmail);
+
+	/**
+	 * Give up a seat hold before it expires, e.g. when the caller stopped
+	 * waiting for it
+	 *
+	 * @param seatHoldId
+	 *            the seat hold identifier
+	 * @param customerEmail
+	 *            the email address of the customer to which the seat hold is
+	 *            assigned
+	 * @return the number of seats released, 0 if the hold was reserved or
+	 *         expired already, or is not the customer's
+	 */
+	int releaseHold(long seatHoldId, String customerEmail);
+
+	/**
+	 * Find and hold seats for each request of the batch, in order
+	 *
+	 * @param holdRequests
+	 * @return a SeatHold for each request, in the order of the requests
+	 */
+	default List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests) {
+		List<SeatHold> seatHolds = new ArrayList<>(holdRequests.size());
+		for (HoldRequest holdRequest : holdRequests) {
+			seatHolds.add(findAndHoldSeats(holdRequest.getNumSeats(), holdRequest.getCustomerEmail()));
+		}
+		return seatHolds;
+	}
+
+	/**
+	 * Commit the seat holds of each request of the batch, in order
+	 *
+	 * @param reserveRequests
+	 * @return a reservation confirmation code for each request, in the order
+	 *         of the requests
+	 */
+	default List<String> reserveSeatsBatch(List<ReserveRequest> reserveRequests) {
+		List<String> messages = new ArrayList<>(reserveRequests.size());
+		for (ReserveRequest reserveRequest : reserveRequests) {
+			messages.add(reserveSeats(reserveRequest.getSeatHoldId(), reserveRequest.getCustomerEmail()));
+		}
+		return messages;
+	}
 }
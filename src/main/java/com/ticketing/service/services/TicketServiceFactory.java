@@ -0,0 +1,70 @@
+package com.ticketing.service.services;
+
+/**
+ * Creates a TicketService for a venue with the chosen concurrency engine, so
+ * the engines can be swapped and compared behind the same interface.
+ *
+ * @author Suma
+ *
+ */
+public class TicketServiceFactory {
+
+	public enum Engine {
+
+		/**
+		 * TicketServiceImpl, one lock per row
+		 */
+		ROW_LOCKING,
+
+		/**
+		 * LockFreeTicketServiceImpl, compare and set on packed row words
+		 */
+		LOCK_FREE,
+
+		/**
+		 * SequencedTicketService, one writer thread applying the commands
+		 * of every caller from a ring buffer
+		 */
+		SEQUENCED
+	}
+
+	private TicketServiceFactory() {
+	}
+
+	public static TicketService create(Engine engine, int rows, int cols, Long onHoldTimeOut) {
+		return create(engine, rows, cols, onHoldTimeOut, new TimingWheelExpiryScheduler());
+	}
+
+	public static TicketService create(Engine engine, int rows, int cols, Long onHoldTimeOut,
+			HoldExpiryScheduler expiryScheduler) {
+		switch (engine) {
+		case LOCK_FREE:
+			return new LockFreeTicketServiceImpl(rows, cols, onHoldTimeOut, expiryScheduler);
+		case SEQUENCED:
+			return new SequencedTicketService(rows, cols, onHoldTimeOut, expiryScheduler);
+		case ROW_LOCKING:
+		default:
+			return new TicketServiceImpl(rows, cols, onHoldTimeOut, expiryScheduler);
+		}
+	}
+
+	/**
+	 * The engine behind futures, the SEQUENCED engine as it is and the
+	 * others on an ExecutorAsyncTicketService
+	 *
+	 * @param engine
+	 * @param rows
+	 * @param cols
+	 * @param onHoldTimeOut
+	 * @param expiryScheduler
+	 * @return the AsyncTicketService of the engine
+	 */
+	public static AsyncTicketService createAsync(Engine engine, int rows, int cols, Long onHoldTimeOut,
+			HoldExpiryScheduler expiryScheduler) {
+		TicketService service = create(engine, rows, cols, onHoldTimeOut, expiryScheduler);
+		if (service instanceof AsyncTicketService) {
+			return (AsyncTicketService) service;
+		}
+		return new ExecutorAsyncTicketService(service);
+	}
+}
@@ -1,302 +1,1095 @@
 package com.ticketing.service.services;
 
-import static com.ticketing.service.model.Venue.seatHoldMap;
-import static com.ticketing.service.model.Venue.venueTickets;
-
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Timer;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
+import com.ticketing.service.journal.HoldJournal;
+import com.ticketing.service.journal.VenueSnapshot;
+import com.ticketing.service.metrics.TicketServiceMetrics;
+import com.ticketing.service.metrics.TicketServiceMetrics.Outcome;
+import com.ticketing.service.model.CustomerHoldIndex;
+import com.ticketing.service.model.CustomerRegistry;
+import com.ticketing.service.model.FirstFitStrategy;
+import com.ticketing.service.model.HoldIdAllocator;
+import com.ticketing.service.model.HoldRequest;
+import com.ticketing.service.model.HoldTable;
+import com.ticketing.service.model.RankedBlockIndex;
+import com.ticketing.service.model.ReserveRequest;
 import com.ticketing.service.model.Row;
 import com.ticketing.service.model.Seat;
+import com.ticketing.service.model.SeatAllocationStrategy;
 import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.SeatMap;
+import com.ticketing.service.model.SeatMapDelta;
+import com.ticketing.service.model.Section;
+import com.ticketing.service.model.SplitBlockFinder;
 import com.ticketing.service.model.Status;
+import com.ticketing.service.model.Venue;
+import com.ticketing.service.model.VenueLayout;
+import com.ticketing.service.services.HoldExpiryScheduler.HoldExpiry;
 
 public class TicketServiceImpl implements TicketService {
 
-	private static int VENUE_HALL_COLUMNS = 4;
+	private static final int VENUE_HALL_COLUMNS = 4;
+
+	private static final int VENUE_HALL_ROWS = 4;
 
-	private static int VENUE_HALL_ROWS = 4;
+	private static final String DEFAULT_EVENT_ID = "default";
 
-	private Long ON_HOLD_TIME_OUT_MILLISECS = 5000L;
+	private final Long ON_HOLD_TIME_OUT_MILLISECS;
 	
 	protected static final String TICKET_MESSAGE_UNSUCCESSFUL = "Sorry! your seats could not be reserved at this moment.";
 	
-	protected static final String TICKET_MESSAGE_SUCCESS = "Hurray! Your seats have been reserved. Congratulations!";
+	public static final String TICKET_MESSAGE_SUCCESS = "Hurray! Your seats have been reserved. Congratulations!";
 	
 	protected static final String TICKET_MESSAGE_EMAIL_MISMATCH = "Sorry! the email provided doesn't seem to match our records for these seats.";
 	
+	protected static final String TICKET_MESSAGE_NOT_CONFIRMED = "Sorry! your reservation could not be confirmed, please check your seats again.";
+	
 	protected static final String TICKETS_ERROR_TOO_MANY_REQUESTED = "Sorry, we do not have {0} tickets available.";
 	
 	protected static final String TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE = "Sorry, {0} consecutive seats are not available in the Venue.";
 
-	private static final int CONSTANT = 98765;
+	protected static final String TICKET_ERROR_CUSTOMER_LIMIT_REACHED = "Sorry, you can't hold more than {0} seats at a time.";
+
+	// Shared by every service which isn't given its own scheduler, its thread
+	// only starts with the first hold
+	private static final HoldExpiryScheduler DEFAULT_EXPIRY_SCHEDULER = new TimingWheelExpiryScheduler();
+
+	// each thread looks holds up through its own cursor
+	private static final ThreadLocal<HoldTable.Cursor> CURSORS = ThreadLocal.withInitial(HoldTable.Cursor::new);
+
+	private final HoldExpiryScheduler expiryScheduler;
+
+	private final Venue venue;
+
+	// the state of the venue this service sells
+	private final List<Row> venueTickets;
+
+	// the live holds, each with its pending expiry, cancelled when the hold
+	// is reserved
+	private final HoldTable holds;
+
+	private final CustomerRegistry customers;
+
+	private final CustomerHoldIndex customerHolds;
+
+	private final HoldIdAllocator holdIds;
+
+	// the most seats a customer may have on hold at once
+	private volatile int maxSeatsPerCustomer = Integer.MAX_VALUE;
+
+	// the most rows a party no row can take may be split over, 1 to never
+	// split a party
+	private volatile int maxSplitRows = 1;
+
+	// where a party goes when the venue doesn't rank its seats for it
+	private volatile SeatAllocationStrategy allocationStrategy = new FirstFitStrategy();
+
+	private final LongAdder availableSeats;
+
+	private final TicketServiceMetrics metrics;
+
+	// null unless the service runs in durable mode
+	private final HoldJournal journal;
 
 	public TicketServiceImpl() {
-		initializeVenueTickets(VENUE_HALL_ROWS, VENUE_HALL_COLUMNS);
+		this(VENUE_HALL_ROWS, VENUE_HALL_COLUMNS, 5000L);
 	}
 
 	public TicketServiceImpl(int rows, int cols, Long onHoldTimeOut) {
-		initializeVenueTickets(rows, cols);
-		VENUE_HALL_ROWS = rows;
-		VENUE_HALL_COLUMNS = cols;
-		ON_HOLD_TIME_OUT_MILLISECS = onHoldTimeOut;
+		this(rows, cols, onHoldTimeOut, DEFAULT_EXPIRY_SCHEDULER);
+	}
+
+	public TicketServiceImpl(int rows, int cols, Long onHoldTimeOut, HoldExpiryScheduler expiryScheduler) {
+		this(new Venue(DEFAULT_EVENT_ID, rows, cols), onHoldTimeOut, expiryScheduler);
+	}
+
+	/**
+	 * Sell the seats of an existing venue, the service only ever touches the
+	 * state of this venue
+	 * 
+	 * @param venue
+	 * @param onHoldTimeOut
+	 * @param expiryScheduler
+	 */
+	public TicketServiceImpl(Venue venue, Long onHoldTimeOut, HoldExpiryScheduler expiryScheduler) {
+		this(venue, onHoldTimeOut, expiryScheduler, null);
+	}
+
+	private TicketServiceImpl(Venue venue, Long onHoldTimeOut, HoldExpiryScheduler expiryScheduler,
+			HoldJournal journal) {
+		this.venue = venue;
+		this.venueTickets = venue.getVenueTickets();
+		this.holds = venue.getHolds();
+		this.customers = venue.getCustomers();
+		this.customerHolds = venue.getCustomerHolds();
+		this.holdIds = venue.getHoldIds();
+		this.availableSeats = venue.getAvailableSeats();
+		this.ON_HOLD_TIME_OUT_MILLISECS = onHoldTimeOut;
+		this.expiryScheduler = expiryScheduler;
+		this.metrics = new TicketServiceMetrics(holds::size, expiryScheduler::getPendingCount);
+		this.journal = journal;
+		if (journal != null) {
+			customers.setListener(journal::appendCustomer);
+		}
+	}
+
+	/**
+	 * Sell the seats of the venue in durable mode: every hold, reservation and
+	 * expiry is appended to the journal in the directory, and a reservation is
+	 * only confirmed once its record is on disk.
+	 * 
+	 * The journal is replayed into the venue first, which must be new. Holds
+	 * which expired while the service was down are released, the others get
+	 * an expiry for the time they have left.
+	 * 
+	 * @param venue
+	 * @param onHoldTimeOut
+	 * @param expiryScheduler
+	 * @param journalDirectory
+	 * @return the service, close its journal when done with it
+	 */
+	public static TicketServiceImpl recover(Venue venue, Long onHoldTimeOut, HoldExpiryScheduler expiryScheduler,
+			Path journalDirectory) {
+		return recover(venue, 0L, -1, onHoldTimeOut, expiryScheduler, journalDirectory);
+	}
+
+	/**
+	 * Same as recover(Venue, ...), starting from a snapshot written by
+	 * takeSnapshot, so only the journal written since the snapshot is
+	 * replayed
+	 * 
+	 * @param snapshotFile
+	 * @param onHoldTimeOut
+	 * @param expiryScheduler
+	 * @param journalDirectory
+	 * @return the service, close its journal when done with it
+	 */
+	public static TicketServiceImpl recover(Path snapshotFile, Long onHoldTimeOut,
+			HoldExpiryScheduler expiryScheduler, Path journalDirectory) {
+		VenueSnapshot snapshot = VenueSnapshot.load(snapshotFile);
+		return recover(snapshot.getVenue(), snapshot.getJournalLsn(), snapshot.getHoldIdGeneration(), onHoldTimeOut,
+				expiryScheduler, journalDirectory);
+	}
+
+	private static TicketServiceImpl recover(Venue venue, long fromLsn, int lastGeneration, Long onHoldTimeOut,
+			HoldExpiryScheduler expiryScheduler, Path journalDirectory) {
+		JournalReplay replay = new JournalReplay(venue, fromLsn, lastGeneration);
+		HoldJournal journal = HoldJournal.open(journalDirectory, replay, fromLsn);
+		// the ids of the holds journaled before the restart are never handed
+		// out again
+		venue.getHoldIds().startAfter(replay.getLastGeneration());
+
+		TicketServiceImpl ticketService = new TicketServiceImpl(venue, onHoldTimeOut, expiryScheduler, journal);
+		ticketService.resumeHolds();
+		return ticketService;
+	}
+
+	public Venue getVenue() {
+		return venue;
+	}
+
+	public HoldExpiryScheduler getExpiryScheduler() {
+		return expiryScheduler;
+	}
+
+	public TicketServiceMetrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * Write a snapshot of the venue to the file without stopping holds and
+	 * reservations, each row is only locked while it is copied. In durable
+	 * mode the journal segments the snapshot makes redundant are deleted.
+	 * 
+	 * Meant to be called periodically, e.g. from a ScheduledExecutorService.
+	 * 
+	 * @param file
+	 */
+	public void takeSnapshot(Path file) {
+		long journalLsn = journal == null ? 0L : journal.getLastLsn();
+		VenueSnapshot.write(venue, journalLsn, file);
+		if (journal != null) {
+			journal.deleteSegmentsUpTo(journalLsn);
+		}
+	}
+
+	/**
+	 * @param maxSeatsPerCustomer
+	 *            the most seats a customer may have on hold at once, holds
+	 *            which would go over it are refused
+	 */
+	public void setMaxSeatsPerCustomer(int maxSeatsPerCustomer) {
+		this.maxSeatsPerCustomer = maxSeatsPerCustomer;
+	}
+
+	public int getMaxSeatsPerCustomer() {
+		return maxSeatsPerCustomer;
+	}
+
+	/**
+	 * @param maxSplitRows
+	 *            the most adjacent rows a party may be split over when no
+	 *            single row can take it, 1 to never split a party
+	 */
+	public void setMaxSplitRows(int maxSplitRows) {
+		this.maxSplitRows = maxSplitRows;
+	}
+
+	public int getMaxSplitRows() {
+		return maxSplitRows;
+	}
+
+	/**
+	 * @param allocationStrategy
+	 *            where to place the parties the RankedBlockIndex of the venue,
+	 *            if any, doesn't place
+	 */
+	public void setAllocationStrategy(SeatAllocationStrategy allocationStrategy) {
+		this.allocationStrategy = allocationStrategy;
+	}
+
+	public SeatAllocationStrategy getAllocationStrategy() {
+		return allocationStrategy;
+	}
+
+	/**
+	 * @return the journal of the service, null unless it runs in durable mode
+	 */
+	public HoldJournal getJournal() {
+		return journal;
 	}
 
 	@Override
-	public synchronized int numSeatsAvailable() {
-		int counter = 0;
+	public int numSeatsAvailable() {
+		// kept current by the rows as their seats change, no lock needed
+		return availableSeats.intValue();
+	}
+
+	@Override
+	public int numSeatsAvailable(int rowId) {
+		return venueTickets.get(rowId).getAvailableSeatCount();
+	}
+
+	/**
+	 * The number of seats in a range of rows that are neither held nor
+	 * reserved, in O(log rows)
+	 * 
+	 * @param firstRowId
+	 * @param lastRowId
+	 *            included
+	 * @return the number of tickets available in the rows
+	 */
+	public long numSeatsAvailable(int firstRowId, int lastRowId) {
+		return venue.getAvailabilityIndex().getAvailableSeats(firstRowId, lastRowId);
+	}
 
-		// loop over the rows and add up the available seats at each row
-		for (Row row : venueTickets) {
-			counter += row.getAvailableSeatCount();
+	/**
+	 * @param sectionName
+	 *            a section of the layout of the venue
+	 * @return the number of tickets available in the section
+	 */
+	public long numSeatsAvailableInSection(String sectionName) {
+		VenueLayout layout = venue.getLayout();
+		Section section = layout == null ? null : layout.getSection(sectionName);
+		if (section == null) {
+			throw new IllegalArgumentException("No section " + sectionName + " in the venue");
 		}
-		return counter;
+		return numSeatsAvailable(section.getFirstRowId(), section.getLastRowId());
+	}
+
+	/**
+	 * @param priceTier
+	 *            a price tier of the layout of the venue
+	 * @return the number of tickets available in the sections of the tier
+	 */
+	public long numSeatsAvailableInTier(String priceTier) {
+		VenueLayout layout = venue.getLayout();
+		int tier = layout == null ? -1 : layout.getPriceTiers().indexOf(priceTier);
+		if (tier < 0) {
+			throw new IllegalArgumentException("No price tier " + priceTier + " in the venue");
+		}
+		return venue.getAvailabilityIndex().getTierAvailableSeats(tier);
 	}
 
 	@Override
-	public synchronized SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+	public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+		long startNanos = System.nanoTime();
 		SeatHold seatHold = new SeatHold();
 		if (numSeats > numSeatsAvailable()) {
-			seatHold.setError(Boolean.TRUE);
-			seatHold.setErrorMessage(TICKETS_ERROR_TOO_MANY_REQUESTED.replace("{0}", Integer.toString(numSeats)));
-
+			setError(seatHold, TICKETS_ERROR_TOO_MANY_REQUESTED, numSeats);
+			metrics.recordHold(Outcome.TOO_MANY_REQUESTED, System.nanoTime() - startNanos);
+			return seatHold;
+		}
+		int customerId = customers.intern(customerEmail);
+		long seatHoldId = holdIds.next();
+		if (!customerHolds.tryAdd(customerId, seatHoldId, numSeats, maxSeatsPerCustomer)) {
+			setError(seatHold, TICKET_ERROR_CUSTOMER_LIMIT_REACHED, maxSeatsPerCustomer);
+			metrics.recordHold(Outcome.CUSTOMER_LIMIT_REACHED, System.nanoTime() - startNanos);
 			return seatHold;
 		}
 
 		boolean isHeld = Boolean.FALSE;
-		for (Row row : venueTickets) {
-			// avoid looping through the row if the row is already at capacity
-			if (row.getAvailableSeatCount() != 0) {
-				isHeld = holdSeats(numSeats, customerEmail, seatHold, row);
+		// the index gives the best candidate straight away, and none at all
+		// when no run in the venue is long enough. Only its row gets locked,
+		// so another hold may have taken the seats in the meantime, in which
+		// case the index is asked again
+		long candidate;
+		while (!isHeld && (candidate = findCandidate(numSeats)) >= 0) {
+			Row row = venueTickets.get((int) (candidate >>> 32));
+			lockRow(row);
+			try {
+				isHeld = holdSeats(numSeats, customerId, seatHoldId, seatHold, row, (int) candidate);
 
 				if (isHeld) {
-					setNewRowCount(numSeats, row);
-					break;
+					scheduleExpiry(seatHold, row);
 				}
+			} finally {
+				row.getLock().unlock();
+			}
+		}
+		if (!isHeld && maxSplitRows > 1) {
+			// no row can take the party, the rows of a split hold are locked
+			// together, so the batch lock is taken first
+			List<Row> lockedRows = new ArrayList<>();
+			Lock batchLock = venue.getBatchLock();
+			batchLock.lock();
+			try {
+				isHeld = holdSplitSeats(numSeats, customerId, seatHoldId, seatHold, lockedRows);
+
+				if (isHeld) {
+					scheduleExpiry(seatHold, venueTickets.get(seatHold.getRowId()));
+				}
+			} finally {
+				unlockAll(lockedRows);
+				batchLock.unlock();
 			}
 		}
 		if (!isHeld) {
-			seatHold.setError(Boolean.TRUE);
-			seatHold.setErrorMessage(TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE.replace("{0}", Integer.toString(numSeats)));
+			customerHolds.remove(customerId, seatHoldId);
+			setError(seatHold, TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE, numSeats);
 		}
-
-		// SeatHoldTimerTask executes after the timeout for hold has been
-		// reached
-		Timer timer = new Timer();
-		timer.schedule(new SeatHoldTimerTask(customerEmail), ON_HOLD_TIME_OUT_MILLISECS);
+		metrics.recordHold(isHeld ? Outcome.HELD : Outcome.CONSECUTIVE_NOT_AVAILABLE, System.nanoTime() - startNanos);
 
 		return seatHold;
 	}
 
+	/**
+	 * Hold seats for every request, in order, each with the same outcome as
+	 * its own findAndHoldSeats call would have had.
+	 * 
+	 * A row is locked the first time the batch needs it and stays locked
+	 * until the end of the batch, and the expiries of all the holds are
+	 * registered in one go before any row is unlocked.
+	 */
 	@Override
-	public synchronized String reserveSeats(int seatHoldId, String customerEmail) {
-		String message = TICKET_MESSAGE_UNSUCCESSFUL;
-		SeatHold seatHold = seatHoldMap.get(seatHoldId);
+	public List<SeatHold> findAndHoldSeatsBatch(List<HoldRequest> holdRequests) {
+		List<SeatHold> seatHolds = new ArrayList<>(holdRequests.size());
+		List<SeatHoldTimerTask> expiryTasks = new ArrayList<>(holdRequests.size());
+		List<Row> lockedRows = new ArrayList<>();
 
-		if (seatHold != null) {
-			for (Seat seat : seatHold.getSeats()) {
-				if(!seat.getEmailId().equals(customerEmail)){
-					message = TICKET_MESSAGE_EMAIL_MISMATCH;
-					return message;
+		// batches keep several rows locked, and lock them in no particular
+		// order, so only one batch at a time may do so
+		Lock batchLock = venue.getBatchLock();
+		batchLock.lock();
+		try {
+			for (HoldRequest holdRequest : holdRequests) {
+				int numSeats = holdRequest.getNumSeats();
+				SeatHold seatHold = new SeatHold();
+				seatHolds.add(seatHold);
+
+				if (numSeats > numSeatsAvailable()) {
+					setError(seatHold, TICKETS_ERROR_TOO_MANY_REQUESTED, numSeats);
+					metrics.record(Outcome.TOO_MANY_REQUESTED);
+					continue;
+				}
+				int customerId = customers.intern(holdRequest.getCustomerEmail());
+				long seatHoldId = holdIds.next();
+				if (!customerHolds.tryAdd(customerId, seatHoldId, numSeats, maxSeatsPerCustomer)) {
+					setError(seatHold, TICKET_ERROR_CUSTOMER_LIMIT_REACHED, maxSeatsPerCustomer);
+					metrics.record(Outcome.CUSTOMER_LIMIT_REACHED);
+					continue;
 				}
-				
-				Seat reservedSeat = venueTickets.get(seatHold.getRowId()).getSeats().get(seat.getSeatId());
-				updateSeatStatusAndEmail(customerEmail, reservedSeat, Status.RESERVED);
+				boolean isHeld = Boolean.FALSE;
+				long candidate;
+				while (!isHeld && (candidate = findCandidate(numSeats)) >= 0) {
+					Row row = lockForBatch((int) (candidate >>> 32), lockedRows);
+					isHeld = holdSeats(numSeats, customerId, seatHoldId, seatHold, row, (int) candidate);
 
-				message = TICKET_MESSAGE_SUCCESS;
+					if (isHeld) {
+						expiryTasks.add(new SeatHoldTimerTask(this, seatHold.getSeatHoldId(), row));
+					}
+				}
+				if (!isHeld && maxSplitRows > 1) {
+					isHeld = holdSplitSeats(numSeats, customerId, seatHoldId, seatHold, lockedRows);
+
+					if (isHeld) {
+						expiryTasks.add(new SeatHoldTimerTask(this, seatHoldId, venueTickets.get(seatHold.getRowId())));
+					}
+				}
+				if (!isHeld) {
+					customerHolds.remove(customerId, seatHoldId);
+					setError(seatHold, TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE, numSeats);
+				}
+				metrics.record(isHeld ? Outcome.HELD : Outcome.CONSECUTIVE_NOT_AVAILABLE);
 			}
+			scheduleExpiries(expiryTasks);
+		} finally {
+			unlockAll(lockedRows);
+			batchLock.unlock();
+		}
+
+		return seatHolds;
+	}
 
-			// Remove this entry from the seatHoldMap as the seats have been
-			// reserved
-			seatHoldMap.remove(seatHoldId);
+	@Override
+	public String reserveSeats(long seatHoldId, String customerEmail) {
+		long startNanos = System.nanoTime();
+		String message = TICKET_MESSAGE_UNSUCCESSFUL;
+		HoldTable.Cursor hold = CURSORS.get();
+
+		if (holds.get(seatHoldId, hold)) {
+			if (hold.getLinkedId() != HoldTable.NOT_LINKED) {
+				// the rows of a split hold are locked together
+				List<Row> lockedRows = new ArrayList<>();
+				Lock batchLock = venue.getBatchLock();
+				batchLock.lock();
+				try {
+					message = reserveSplitSeats(seatHoldId, customerEmail, lockedRows, hold);
+				} finally {
+					unlockAll(lockedRows);
+					batchLock.unlock();
+				}
+			} else {
+				Row row = venueTickets.get(hold.getRowId());
+				lockRow(row);
+				try {
+					message = reserveHeldSeats(seatHoldId, customerEmail, row, hold);
+				} finally {
+					row.getLock().unlock();
+				}
+			}
+		}
+		if (journal != null && TICKET_MESSAGE_SUCCESS.equals(message)
+				&& !journal.awaitDurable(journal.getLastLsn())) {
+			// the reservation is confirmed once it is on disk, which an
+			// interrupt or a close cut short
+			message = TICKET_MESSAGE_NOT_CONFIRMED;
 		}
+		metrics.recordReserve(reserveOutcome(message), System.nanoTime() - startNanos);
 
 		return message;
 	}
-	
+
 	/**
-	 * This is just a helper method to print out the Venue Seat matrix
-	 * System out has been used instead of logs for a better representation of the result
+	 * Reserve the holds of every request, in order, each with the same outcome
+	 * as its own reserveSeats call would have had. The row of each hold is
+	 * only locked once for the whole batch.
 	 */
-	public void printVenueStatus() {
-		for (Row row : venueTickets) {
-			for (Seat seat : row.getSeats()) {
-				System.out.print(seat.getStatus().toString().substring(0, 1) + " ");
+	@Override
+	public List<String> reserveSeatsBatch(List<ReserveRequest> reserveRequests) {
+		List<String> messages = new ArrayList<>(reserveRequests.size());
+		List<Row> lockedRows = new ArrayList<>();
+		HoldTable.Cursor hold = CURSORS.get();
+
+		Lock batchLock = venue.getBatchLock();
+		batchLock.lock();
+		try {
+			for (ReserveRequest reserveRequest : reserveRequests) {
+				long seatHoldId = reserveRequest.getSeatHoldId();
+				if (!holds.get(seatHoldId, hold)) {
+					messages.add(TICKET_MESSAGE_UNSUCCESSFUL);
+					continue;
+				}
+				String message;
+				if (hold.getLinkedId() != HoldTable.NOT_LINKED) {
+					message = reserveSplitSeats(seatHoldId, reserveRequest.getCustomerEmail(), lockedRows, hold);
+				} else {
+					Row row = lockForBatch(hold.getRowId(), lockedRows);
+					message = reserveHeldSeats(seatHoldId, reserveRequest.getCustomerEmail(), row, hold);
+				}
+				messages.add(message);
 			}
-			System.out.println();
+		} finally {
+			unlockAll(lockedRows);
+			batchLock.unlock();
+		}
+		// one force confirms all the reservations of the batch
+		if (journal != null && !journal.awaitDurable(journal.getLastLsn())) {
+			messages.replaceAll(message -> TICKET_MESSAGE_SUCCESS.equals(message) ? TICKET_MESSAGE_NOT_CONFIRMED
+					: message);
 		}
+		for (String message : messages) {
+			metrics.record(reserveOutcome(message));
+		}
+
+		return messages;
 	}
 
 	/**
-	 * Initialize the venueTickets collection which is a list of rows that
-	 * contains rowId and a list of Seat objects
+	 * Reserve the seats of the hold for the customer, called with the row of
+	 * the hold locked
 	 * 
-	 * Seat has an ID and status among other things
+	 * @param seatHoldId
+	 * @param customerEmail
+	 * @param row
+	 *            the row the hold was in when it was looked up
+	 * @param hold
+	 *            the cursor to read the hold through
+	 * @return the reservation message
+	 */
+	private String reserveHeldSeats(long seatHoldId, String customerEmail, Row row, HoldTable.Cursor hold) {
+		// the hold may have expired while waiting for the row
+		if (!holds.get(seatHoldId, hold) || hold.getRowId() != row.getRowId()) {
+			return TICKET_MESSAGE_UNSUCCESSFUL;
+		}
+		int customerId = customers.lookup(customerEmail);
+		if (hold.getHolderId() != customerId) {
+			return TICKET_MESSAGE_EMAIL_MISMATCH;
+		}
+		row.updateSeats(hold.getFirstSeatId(), hold.getNumSeats(), Status.RESERVED, customerId);
+		long heldMillis = System.currentTimeMillis() - (hold.getDeadlineMillis() - ON_HOLD_TIME_OUT_MILLISECS);
+		metrics.recordConversion(TimeUnit.MILLISECONDS.toNanos(Math.max(heldMillis, 0L)));
+		if (journal != null) {
+			journal.appendReserve(seatHoldId);
+		}
+
+		// Remove this entry from the hold table and cancel its expiry
+		// as the seats have been reserved
+		holds.remove(seatHoldId, hold);
+		customerHolds.remove(customerId, seatHoldId);
+		cancelExpiry(hold);
+
+		return TICKET_MESSAGE_SUCCESS;
+	}
+
+	/**
+	 * Reserve every part of the split hold for the customer, called with the
+	 * batch lock held. Every change of a split hold is made with that lock,
+	 * so its parts can't change while they are visited.
 	 * 
-	 * Initialize the collection so that we have rows number of "rows" and
-	 * "cols" number of seats in each row with status of each Seat as AVAILABLE
-	 * and emailId as null
+	 * @param seatHoldId
+	 *            the id of any part of the hold
+	 * @param customerEmail
+	 * @param lockedRows
+	 *            the rows locked by the caller so far, the rows of the parts
+	 *            are added
+	 * @param hold
+	 *            the cursor to read the hold through
+	 * @return the reservation message
+	 */
+	private String reserveSplitSeats(long seatHoldId, String customerEmail, List<Row> lockedRows,
+			HoldTable.Cursor hold) {
+		if (!holds.get(seatHoldId, hold)) {
+			return TICKET_MESSAGE_UNSUCCESSFUL;
+		}
+		int customerId = customers.lookup(customerEmail);
+		if (hold.getHolderId() != customerId) {
+			return TICKET_MESSAGE_EMAIL_MISMATCH;
+		}
+		long heldMillis = System.currentTimeMillis() - (hold.getDeadlineMillis() - ON_HOLD_TIME_OUT_MILLISECS);
+		metrics.recordConversion(TimeUnit.MILLISECONDS.toNanos(Math.max(heldMillis, 0L)));
+
+		long partId = seatHoldId;
+		while (partId != HoldTable.NOT_LINKED && holds.get(partId, hold)) {
+			// the row first, the hold is only gone along with its seats
+			Row row = lockForBatch(hold.getRowId(), lockedRows);
+			holds.remove(partId, hold);
+			row.updateSeats(hold.getFirstSeatId(), hold.getNumSeats(), Status.RESERVED, customerId);
+			if (journal != null) {
+				journal.appendReserve(partId);
+			}
+			customerHolds.remove(customerId, partId);
+			cancelExpiry(hold);
+			partId = hold.getLinkedId();
+		}
+
+		return TICKET_MESSAGE_SUCCESS;
+	}
+
+	/**
+	 * Release every part of the split hold, with the batch lock every change
+	 * of a split hold is made with
 	 * 
+	 * @param seatHoldId
+	 *            the id of any part of the hold
+	 * @param outcome
+	 *            EXPIRED or RELEASED
+	 * @return the number of seats released, 0 if the hold was gone
+	 */
+	int releaseSplitHold(long seatHoldId, Outcome outcome) {
+		int releasedSeats = 0;
+		HoldTable.Cursor hold = CURSORS.get();
+		List<Row> lockedRows = new ArrayList<>();
+
+		Lock batchLock = venue.getBatchLock();
+		batchLock.lock();
+		try {
+			long partId = seatHoldId;
+			while (partId != HoldTable.NOT_LINKED && holds.get(partId, hold)) {
+				Row row = lockForBatch(hold.getRowId(), lockedRows);
+				holds.remove(partId, hold);
+				customerHolds.remove(hold.getHolderId(), partId);
+				row.updateSeats(hold.getFirstSeatId(), hold.getNumSeats(), Status.AVAILABLE,
+						CustomerRegistry.NO_CUSTOMER);
+				cancelExpiry(hold);
+				journalExpiry(partId);
+				releasedSeats += hold.getNumSeats();
+				partId = hold.getLinkedId();
+			}
+		} finally {
+			unlockAll(lockedRows);
+			batchLock.unlock();
+		}
+		if (releasedSeats > 0) {
+			metrics.record(outcome);
+		}
+
+		return releasedSeats;
+	}
+
+	/**
+	 * Release every hold of the customer at once, e.g. when the customer
+	 * logs out, only the holds of this customer are visited
 	 * 
-	 * @param rows
-	 * @param cols
+	 * @param customerEmail
+	 * @return the number of seats released
 	 */
-	private synchronized void initializeVenueTickets(int rows, int cols) {
+	public int releaseHolds(String customerEmail) {
+		int releasedSeats = 0;
+		HoldTable.Cursor hold = CURSORS.get();
 
-		venueTickets = new ArrayList<>();
+		for (long seatHoldId : customerHolds.getSeatHoldIds(customers.lookup(customerEmail))) {
+			if (holds.get(seatHoldId, hold)) {
+				releasedSeats += releaseHold(seatHoldId, hold);
+			}
+		}
+
+		return releasedSeats;
+	}
+
+	@Override
+	public int releaseHold(long seatHoldId, String customerEmail) {
+		HoldTable.Cursor hold = CURSORS.get();
+		if (!holds.get(seatHoldId, hold) || hold.getHolderId() != customers.lookup(customerEmail)) {
+			return 0;
+		}
+		return releaseHold(seatHoldId, hold);
+	}
 
-		for (int i = 0; i < rows; i++) {
-			ArrayList<Seat> seats = new ArrayList<>();
-			for (int j = 0; j < cols; j++) {
-				Seat seat = makeNewAvailableSeat(j);
-				seats.add(seat);
+	/**
+	 * Release the hold just looked up, with every part of it if it is split
+	 * 
+	 * @param seatHoldId
+	 * @param hold
+	 * @return the number of seats released, 0 if the hold went meanwhile
+	 */
+	private int releaseHold(long seatHoldId, HoldTable.Cursor hold) {
+		if (hold.getLinkedId() != HoldTable.NOT_LINKED) {
+			return releaseSplitHold(seatHoldId, Outcome.RELEASED);
+		}
+		Row row = venueTickets.get(hold.getRowId());
+		lockRow(row);
+		try {
+			// reserved or expired while waiting for the row
+			if (!holds.remove(seatHoldId, hold)) {
+				return 0;
 			}
-			Row row = makeNewRow(cols, i, seats);
-			venueTickets.add(row);
+			customerHolds.remove(hold.getHolderId(), seatHoldId);
+			row.updateSeats(hold.getFirstSeatId(), hold.getNumSeats(), Status.AVAILABLE,
+					CustomerRegistry.NO_CUSTOMER);
+			cancelExpiry(hold);
+			// replays the same as an expiry
+			journalExpiry(seatHoldId);
+			metrics.record(Outcome.RELEASED);
+			return hold.getNumSeats();
+		} finally {
+			row.getLock().unlock();
 		}
 	}
 
 	/**
-	 * This makes a new row
+	 * The live holds of the customer, only the holds of this customer are
+	 * visited
 	 * 
-	 * @param cols
-	 * @param rowId
-	 * @param seats
-	 * @return
-	 */
-	private Row makeNewRow(int cols, int rowId, ArrayList<Seat> seats) {
-		Row row = new Row();
-		row.setRowId(rowId);
-		row.setAvailableSeatCount(cols);
-		row.setSeats(seats);
-		return row;
+	 * @param customerEmail
+	 * @return the holds, oldest first
+	 */
+	public List<SeatHold> getSeatHolds(String customerEmail) {
+		List<SeatHold> seatHolds = new ArrayList<>();
+		HoldTable.Cursor hold = CURSORS.get();
+		// the parts of the split holds already listed
+		Set<Long> listedParts = new HashSet<>();
+
+		for (long seatHoldId : customerHolds.getSeatHoldIds(customers.lookup(customerEmail))) {
+			if (listedParts.contains(seatHoldId) || !holds.get(seatHoldId, hold)) {
+				continue;
+			}
+			SeatHold seatHold = new SeatHold();
+			seatHold.setSeatHoldId(seatHoldId);
+			seatHold.setRowId(hold.getRowId());
+			seatHold.setDeadlineMillis(hold.getDeadlineMillis());
+			List<Seat> seats = new ArrayList<>();
+			// a hold in a single row is its own only part
+			long partId = seatHoldId;
+			do {
+				seats.addAll(venueTickets.get(hold.getRowId()).getSeats().subList(hold.getFirstSeatId(),
+						hold.getFirstSeatId() + hold.getNumSeats()));
+				listedParts.add(partId);
+				partId = hold.getLinkedId();
+			} while (partId != HoldTable.NOT_LINKED && partId != seatHoldId && holds.get(partId, hold));
+			seatHold.setSeats(seats);
+			seatHold.setTotalSeats(seats.size());
+			seatHolds.add(seatHold);
+		}
+		return seatHolds;
 	}
 
 	/**
-	 * This makes a new AVAILABLE Seat
+	 * Cancel the pending expiry of the hold, if it has not run yet
 	 * 
-	 * @param seatId
-	 * @return
+	 * @param hold
 	 */
-	private Seat makeNewAvailableSeat(int seatId) {
-		Seat seat = new Seat();
-		seat.setSeatId(seatId);
-		seat.setStatus(Status.AVAILABLE);
-		return seat;
+	private void cancelExpiry(HoldTable.Cursor hold) {
+		HoldExpiry expiry = (HoldExpiry) hold.getExpiry();
+		if (expiry != null) {
+			expiry.cancel();
+		}
 	}
 
 	/**
-	 * Update the row count after Seats in the row are marked ON_HOLD
+	 * Lock the row for the rest of the batch, unless the batch holds its lock
+	 * already
+	 * 
+	 * @param rowId
+	 * @param lockedRows
+	 *            the rows locked by the batch so far
+	 * @return the row
+	 */
+	private Row lockForBatch(int rowId, List<Row> lockedRows) {
+		Row row = venueTickets.get(rowId);
+		if (!row.getLock().isHeldByCurrentThread()) {
+			lockRow(row);
+			lockedRows.add(row);
+		}
+		return row;
+	}
+
+	/**
+	 * Lock the row, timing the wait when the lock is taken
 	 * 
-	 * @param numSeats
 	 * @param row
 	 */
-	private void setNewRowCount(int numSeats, Row row) {
-		int currentCount = row.getAvailableSeatCount();
-		int newCount = currentCount - numSeats;
-		row.setAvailableSeatCount(newCount);
+	void lockRow(Row row) {
+		ReentrantLock lock = row.getLock();
+		if (!lock.tryLock()) {
+			long startNanos = System.nanoTime();
+			lock.lock();
+			metrics.recordLockWait(System.nanoTime() - startNanos);
+		}
 	}
 
+	private Outcome reserveOutcome(String message) {
+		if (TICKET_MESSAGE_SUCCESS.equals(message)) {
+			return Outcome.RESERVED;
+		}
+		return TICKET_MESSAGE_EMAIL_MISMATCH.equals(message) ? Outcome.EMAIL_MISMATCH : Outcome.RESERVE_UNSUCCESSFUL;
+	}
+
+	private void unlockAll(List<Row> lockedRows) {
+		for (Row row : lockedRows) {
+			row.getLock().unlock();
+		}
+	}
+
+	private void setError(SeatHold seatHold, String errorMessage, int numSeats) {
+		seatHold.setError(Boolean.TRUE);
+		seatHold.setErrorMessage(errorMessage.replace("{0}", Integer.toString(numSeats)));
+	}
+	
 	/**
-	 * If Seats can be marked ON_HOLD for this row, do so else continue to next
-	 * row
+	 * SeatHoldTimerTask executes after the timeout for hold has been reached.
+	 * 
+	 * Called with the row of the hold locked, the task needs that lock too so
+	 * it can't run before its expiry is registered
 	 * 
-	 * @param numSeats
-	 * @param customerEmail
 	 * @param seatHold
 	 * @param row
 	 */
-	private synchronized boolean holdSeats(int numSeats, String customerEmail, SeatHold seatHold, Row row) {
-		boolean isHold = Boolean.FALSE;
-		for (Seat seat : row.getSeats()) {
-			// Find the first available seat and check if "numSeats" consecutive
-			// seats are available in this row
-			if (seat.getStatus().equals(Status.AVAILABLE) && seat.getSeatId() + numSeats <= VENUE_HALL_COLUMNS
-					&& canSeatsBeMarkedOnHold(numSeats, row, seat.getSeatId())) {
-				populateSeatHoldMap(numSeats, customerEmail, seatHold, row, seat);
-				isHold = Boolean.TRUE;
-				break;
+	private void scheduleExpiry(SeatHold seatHold, Row row) {
+		scheduleExpiry(seatHold.getSeatHoldId(), row, ON_HOLD_TIME_OUT_MILLISECS);
+	}
+
+	private void scheduleExpiry(long seatHoldId, Row row, long delayMillis) {
+		HoldExpiry expiry = expiryScheduler.schedule(new SeatHoldTimerTask(this, seatHoldId, row), delayMillis);
+		holds.setExpiry(seatHoldId, expiry);
+	}
+
+	/**
+	 * Release the recovered holds whose deadline has passed and schedule the
+	 * expiry of the others
+	 */
+	private void resumeHolds() {
+		List<long[]> recovered = new ArrayList<>(holds.size());
+		holds.forEach((seatHoldId, rowId, firstSeatId, numSeats, holderId,
+				deadlineMillis) -> recovered.add(new long[] { seatHoldId, rowId, deadlineMillis }));
+
+		for (long[] hold : recovered) {
+			long seatHoldId = hold[0];
+			Row row = venueTickets.get((int) hold[1]);
+			long delayMillis = hold[2] - System.currentTimeMillis();
+			if (delayMillis <= 0) {
+				new SeatHoldTimerTask(this, seatHoldId, row).run();
+				continue;
+			}
+			lockRow(row);
+			try {
+				scheduleExpiry(seatHoldId, row, delayMillis);
+			} finally {
+				row.getLock().unlock();
 			}
 		}
-		return isHold;
 	}
 
 	/**
-	 * If Seats can be marked on hold, update their Status and emailId and add
-	 * them to the SeatHold object and add the SeatHold into the seatHoldMap
+	 * Record the expiry of the hold, called by the SeatHoldTimerTask with the
+	 * row of the hold locked
 	 * 
-	 * @param numSeats
-	 * @param customerEmail
-	 * @param seatHold
-	 * @param row
-	 * @param seat
+	 * @param seatHoldId
 	 */
-	private synchronized void populateSeatHoldMap(int numSeats, String customerEmail, SeatHold seatHold, Row row,
-			Seat seat) {
-		seatHold.setTotalSeats(numSeats);
-		seatHold.setRowId(row.getRowId());
-		seatHold.setSeatHoldId(Integer.parseInt(createUniqueSeatHoldId(row, seat)));
+	void journalExpiry(long seatHoldId) {
+		if (journal != null) {
+			journal.appendExpire(seatHoldId);
+		}
+	}
+
+	/**
+	 * Register the expiries of a batch of holds in one scheduler pass, called
+	 * with the rows of the holds locked
+	 * 
+	 * @param expiryTasks
+	 */
+	private void scheduleExpiries(List<SeatHoldTimerTask> expiryTasks) {
+		if (expiryTasks.isEmpty()) {
+			return;
+		}
+		List<HoldExpiry> expiries = expiryScheduler.scheduleAll(expiryTasks, ON_HOLD_TIME_OUT_MILLISECS);
+		for (int i = 0; i < expiryTasks.size(); i++) {
+			holds.setExpiry(expiryTasks.get(i).getSeatHoldId(), expiries.get(i));
+		}
+	}
 
-		updateSeatHold(numSeats, row, seat, seatHold, customerEmail);
+	/**
+	 * @return the cursor of the calling thread, for the SeatHoldTimerTask
+	 */
+	static HoldTable.Cursor cursor() {
+		return CURSORS.get();
+	}
 
-		seatHoldMap.put(seatHold.getSeatHoldId(), seatHold);
+	/**
+	 * A consistent picture of every seat of the venue, taken without locking
+	 * a row, see SeatMapLog
+	 * 
+	 * @return the seat map as of the latest seat change
+	 */
+	public SeatMap getSeatMap() {
+		return venue.getSeatMapLog().getSeatMap();
 	}
 
 	/**
-	 * Making a unique seatHoldId For Eg for a seat hold that starts at 4th row
-	 * 5th seat, the ID will be: 49876545
+	 * The seat changes since a seat map the caller already has
 	 * 
-	 * @param row
-	 * @param seat
-	 * @return seatHoldId
+	 * @param sinceVersion
+	 *            of the seat map the caller has
+	 * @return the changes, null if too many were made since, getSeatMap must
+	 *         be called again then
 	 */
-	private String createUniqueSeatHoldId(Row row, Seat seat) {
-		return Integer.toString(row.getRowId()) + CONSTANT + row.getRowId() + seat.getSeatId();
+	public SeatMapDelta getSeatMapChanges(long sinceVersion) {
+		return venue.getSeatMapLog().getChanges(sinceVersion);
 	}
 
 	/**
-	 * Mark the seats to ON_HOLD and add them to the SeatHold object
+	 * This is just a helper method to print out the Venue Seat matrix
+	 * System out has been used instead of logs for a better representation of the result
+	 */
+	public void printVenueStatus() {
+		System.out.print(getSeatMap());
+	}
+
+	/**
+	 * Find where to try to hold "numSeats" seats: the best free block when the
+	 * venue ranks its seats and the party is not too large for it, where the
+	 * allocation strategy places it otherwise
 	 * 
+	 * @param numSeats
+	 * @return rowId << 32 | firstSeatId, the seat being -1 for the first run of
+	 *         the row, -1 if no row can take the party
+	 */
+	private long findCandidate(int numSeats) {
+		RankedBlockIndex blockIndex = venue.getBlockIndex();
+		if (blockIndex != null && numSeats <= blockIndex.getMaxPartySize()) {
+			return blockIndex.findBest(numSeats);
+		}
+		return allocationStrategy.findCandidate(venue, numSeats);
+	}
+
+	/**
+	 * If Seats can be marked ON_HOLD for this row, do so
 	 * 
-	 * @param totalSeats
+	 * @param numSeats
+	 * @param customerId
+	 * @param seatHoldId
+	 * @param seatHold
 	 * @param row
-	 * @param seat
+	 * @param firstSeatId
+	 *            the first seat of the candidate block, -1 for the first run
+	 *            of the row
+	 */
+	private boolean holdSeats(int numSeats, int customerId, long seatHoldId, SeatHold seatHold, Row row,
+			int firstSeatId) {
+		boolean isHold = Boolean.FALSE;
+		// Check the candidate block is still free, or find the first run of
+		// "numSeats" consecutive available seats in this row
+		int seatId = firstSeatId >= 0 ? (row.isAvailable(firstSeatId, numSeats) ? firstSeatId : -1)
+				: row.findConsecutiveAvailable(numSeats);
+		if (seatId >= 0) {
+			populateSeatHoldMap(numSeats, customerId, seatHoldId, seatHold, row, seatId);
+			isHold = Boolean.TRUE;
+		}
+		return isHold;
+	}
+
+	/**
+	 * Hold the seats in the tightest block of adjacent rows which can take
+	 * the party, called with the batch lock held. The parts of the hold each
+	 * get an id and are linked in a ring, the first one keeping seatHoldId,
+	 * and the SeatHold gets the seats of every part.
+	 * 
+	 * @param numSeats
+	 * @param customerId
+	 * @param seatHoldId
 	 * @param seatHold
-	 * @param emailId
+	 * @param lockedRows
+	 *            the rows locked by the caller so far, the rows of the block
+	 *            are added
+	 * @return false if no block can take the party
 	 */
-	private synchronized void updateSeatHold(int totalSeats, Row row, Seat seat, SeatHold seatHold, String emailId) {
-		ArrayList<Seat> seats = new ArrayList<>();
+	private boolean holdSplitSeats(int numSeats, int customerId, long seatHoldId, SeatHold seatHold,
+			List<Row> lockedRows) {
+		SplitBlockFinder splitBlockFinder = new SplitBlockFinder(venueTickets, maxSplitRows);
+		// the block is found without the row locks, it is searched again if
+		// a hold got to its seats first
+		int[][] parts = splitBlockFinder.find(numSeats);
+		while (parts != null && !lockParts(parts, lockedRows)) {
+			parts = splitBlockFinder.find(numSeats);
+		}
+		if (parts == null) {
+			return Boolean.FALSE;
+		}
 
-		// loop over all seats to be marked onHold
-		for (int i = seat.getSeatId(); i < seat.getSeatId() + totalSeats; i++) {
-			Seat seatToBeHeld = row.getSeats().get(i);
-			updateSeatStatusAndEmail(emailId, seatToBeHeld, Status.ON_HOLD);
+		long[] partIds = new long[parts.length];
+		partIds[0] = seatHoldId;
+		for (int i = 1; i < parts.length; i++) {
+			partIds[i] = holdIds.next();
+		}
+		seatHold.setSeatHoldId(seatHoldId);
+		seatHold.setRowId(parts[0][0]);
+		seatHold.setTotalSeats(numSeats);
+		seatHold.setHoldTimeNanos(System.nanoTime());
+		seatHold.setDeadlineMillis(System.currentTimeMillis() + ON_HOLD_TIME_OUT_MILLISECS);
 
-			seats.add(seatToBeHeld);
+		List<Seat> seats = new ArrayList<>(numSeats);
+		for (int i = 0; i < parts.length; i++) {
+			Row row = venueTickets.get(parts[i][0]);
+			int firstSeatId = parts[i][1];
+			int partSeats = parts[i][2];
+			row.updateSeats(firstSeatId, partSeats, Status.ON_HOLD, customerId);
+			seats.addAll(row.getSeats().subList(firstSeatId, firstSeatId + partSeats));
+			if (journal != null) {
+				journal.appendHold(partIds[i], row.getRowId(), firstSeatId, partSeats, customerId,
+						seatHold.getDeadlineMillis());
+			}
+			holds.put(partIds[i], row.getRowId(), firstSeatId, partSeats, customerId, seatHold.getDeadlineMillis(),
+					partIds[(i + 1) % parts.length]);
+		}
+		if (journal != null) {
+			for (int i = 0; i < parts.length; i++) {
+				journal.appendLink(partIds[i], partIds[(i + 1) % parts.length]);
+			}
 		}
 		seatHold.setSeats(seats);
+		return Boolean.TRUE;
 	}
 
-	private void updateSeatStatusAndEmail(String emailId, Seat seatToBeHeld, Status status) {
-		seatToBeHeld.setStatus(status);
-		seatToBeHeld.setEmailId(emailId);
+	/**
+	 * Lock the rows of the parts for the rest of the caller's work and check
+	 * their seats are still available
+	 * 
+	 * @param parts
+	 * @param lockedRows
+	 * @return false if a hold got to the seats of a part first
+	 */
+	private boolean lockParts(int[][] parts, List<Row> lockedRows) {
+		for (int[] part : parts) {
+			if (!lockForBatch(part[0], lockedRows).isAvailable(part[1], part[2])) {
+				return Boolean.FALSE;
+			}
+		}
+		return Boolean.TRUE;
+	}
+
+	/**
+	 * If Seats can be marked on hold, update their Status and emailId and add
+	 * them to the SeatHold object and add the hold into the hold table
+	 * 
+	 * @param numSeats
+	 * @param customerId
+	 * @param seatHoldId
+	 * @param seatHold
+	 * @param row
+	 * @param seatId
+	 */
+	private void populateSeatHoldMap(int numSeats, int customerId, long seatHoldId, SeatHold seatHold, Row row,
+			int seatId) {
+		seatHold.setTotalSeats(numSeats);
+		seatHold.setRowId(row.getRowId());
+		seatHold.setSeatHoldId(seatHoldId);
+		seatHold.setHoldTimeNanos(System.nanoTime());
+		seatHold.setDeadlineMillis(System.currentTimeMillis() + ON_HOLD_TIME_OUT_MILLISECS);
+
+		updateSeatHold(numSeats, row, seatId, seatHold, customerId);
+
+		holds.put(seatHold.getSeatHoldId(), row.getRowId(), seatId, numSeats, customerId,
+				seatHold.getDeadlineMillis());
 	}
 
 	/**
-	 * This method checks to see if or not "totalSeats" consecutive seats are
-	 * available in this row to be held
+	 * Mark the seats to ON_HOLD and add them to the SeatHold object
+	 * 
 	 * 
 	 * @param totalSeats
 	 * @param row
-	 * @param seat
-	 * @return
+	 * @param seatId
+	 * @param seatHold
+	 * @param customerId
 	 */
-	private synchronized boolean canSeatsBeMarkedOnHold(int totalSeats, Row row, int seatId) {
-		for (int i = seatId; i < seatId + totalSeats; i++) {
-			if (!row.getSeats().get(i).getStatus().equals(Status.AVAILABLE)) {
-				return Boolean.FALSE;
-			}
+	private void updateSeatHold(int totalSeats, Row row, int seatId, SeatHold seatHold, int customerId) {
+		row.updateSeats(seatId, totalSeats, Status.ON_HOLD, customerId);
+
+		// the SeatHold keeps its own copy of the seats just marked onHold
+		seatHold.setSeats(new ArrayList<>(row.getSeats().subList(seatId, seatId + totalSeats)));
+
+		if (journal != null) {
+			journal.appendHold(seatHold.getSeatHoldId(), row.getRowId(), seatId, totalSeats, customerId,
+					seatHold.getDeadlineMillis());
 		}
-		return Boolean.TRUE;
 	}
 }
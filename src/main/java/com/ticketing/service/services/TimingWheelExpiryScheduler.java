@@ -0,0 +1,297 @@
+package com.ticketing.service.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timing wheel holding all the pending hold expiries of a service.
+ *
+ * The wheel is an array of buckets, each bucket being a doubly linked list of
+ * expiries. An expiry due in more ticks than there are buckets keeps a count
+ * of the remaining rounds, so any timeout fits on the wheel. Scheduling and
+ * cancelling only link or unlink one entry, and a single daemon thread
+ * advances the wheel one tick at a time and runs the expired tasks.
+ *
+ * The worker thread is started on the first schedule, so an unused scheduler
+ * costs no thread.
+ *
+ * @author Suma
+ *
+ */
+public class TimingWheelExpiryScheduler implements HoldExpiryScheduler {
+
+	private static final Logger log = Logger.getLogger(TimingWheelExpiryScheduler.class.getName());
+
+	private static final long DEFAULT_TICK_MILLISECS = 10L;
+
+	private static final int DEFAULT_WHEEL_SIZE = 512;
+
+	private final long tickNanos;
+
+	private final Entry[] wheel;
+
+	private final int mask;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// signalled on shutdown, the worker otherwise waits out its tick
+	private final Condition shutdownSignal = lock.newCondition();
+
+	// guarded by lock
+	private Thread worker;
+
+	private long startTime;
+
+	private long currentTick;
+
+	private boolean isShutdown;
+
+	// written under lock, read without it
+	private volatile int pendingCount;
+
+	public TimingWheelExpiryScheduler() {
+		this(DEFAULT_TICK_MILLISECS, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * @param tickMillis
+	 *            resolution of the wheel, expiries run at most one tick late
+	 * @param wheelSize
+	 *            number of buckets, rounded up to a power of two
+	 */
+	public TimingWheelExpiryScheduler(long tickMillis, int wheelSize) {
+		if (tickMillis <= 0 || wheelSize <= 0) {
+			throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+		}
+		int size = Integer.highestOneBit(wheelSize);
+		if (size < wheelSize) {
+			size <<= 1;
+		}
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.wheel = new Entry[size];
+		this.mask = size - 1;
+	}
+
+	@Override
+	public HoldExpiry schedule(Runnable task, long delayMillis) {
+		Entry entry = new Entry(task);
+		lock.lock();
+		try {
+			if (isShutdown) {
+				throw new IllegalStateException("Expiry scheduler has been shut down");
+			}
+			startIfNeeded();
+			link(entry, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+		} finally {
+			lock.unlock();
+		}
+		return entry;
+	}
+
+	/**
+	 * Link all the tasks into the wheel under a single acquisition of the lock
+	 */
+	@Override
+	public List<HoldExpiry> scheduleAll(List<? extends Runnable> tasks, long delayMillis) {
+		List<HoldExpiry> expiries = new ArrayList<>(tasks.size());
+		for (Runnable task : tasks) {
+			expiries.add(new Entry(task));
+		}
+		lock.lock();
+		try {
+			if (isShutdown) {
+				throw new IllegalStateException("Expiry scheduler has been shut down");
+			}
+			startIfNeeded();
+			long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+			for (HoldExpiry expiry : expiries) {
+				link((Entry) expiry, deadlineNanos);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return expiries;
+	}
+
+	@Override
+	public int getPendingCount() {
+		return pendingCount;
+	}
+
+	@Override
+	public void shutdown() {
+		lock.lock();
+		try {
+			isShutdown = true;
+			pendingCount = 0;
+			for (int i = 0; i < wheel.length; i++) {
+				wheel[i] = null;
+			}
+			shutdownSignal.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private void startIfNeeded() {
+		if (worker == null) {
+			startTime = System.nanoTime();
+			worker = new Thread(this::runWorker, "hold-expiry-wheel");
+			worker.setDaemon(true);
+			worker.start();
+		}
+	}
+
+	/**
+	 * Put the entry in the bucket of its deadline tick. The tick is never
+	 * before the one the worker processes next, so the entry can't be missed.
+	 *
+	 * @param entry
+	 * @param deadlineNanos
+	 */
+	private void link(Entry entry, long deadlineNanos) {
+		long deadlineTick = (deadlineNanos - startTime + tickNanos - 1) / tickNanos;
+		if (deadlineTick < currentTick) {
+			deadlineTick = currentTick;
+		}
+		entry.remainingRounds = (deadlineTick - currentTick) / wheel.length;
+		entry.bucket = (int) (deadlineTick & mask);
+
+		Entry head = wheel[entry.bucket];
+		entry.next = head;
+		if (head != null) {
+			head.prev = entry;
+		}
+		wheel[entry.bucket] = entry;
+		entry.isPending = true;
+		pendingCount++;
+	}
+
+	private void unlink(Entry entry) {
+		if (entry.prev != null) {
+			entry.prev.next = entry.next;
+		} else {
+			wheel[entry.bucket] = entry.next;
+		}
+		if (entry.next != null) {
+			entry.next.prev = entry.prev;
+		}
+		entry.prev = null;
+		entry.next = null;
+		entry.isPending = false;
+		pendingCount--;
+	}
+
+	private void runWorker() {
+		while (true) {
+			Entry expired;
+			lock.lock();
+			try {
+				if (!awaitTick()) {
+					return;
+				}
+				expired = expireBucket(wheel[(int) (currentTick & mask)]);
+				currentTick++;
+			} finally {
+				lock.unlock();
+			}
+			runExpired(expired);
+		}
+	}
+
+	/**
+	 * Wait until the current tick is over, so nothing runs before its
+	 * deadline
+	 *
+	 * @return false if the scheduler has been shut down
+	 */
+	private boolean awaitTick() {
+		long tickEnd = startTime + (currentTick + 1) * tickNanos;
+		long waitNanos;
+		while (!isShutdown && (waitNanos = tickEnd - System.nanoTime()) > 0) {
+			try {
+				shutdownSignal.awaitNanos(waitNanos);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+		return !isShutdown;
+	}
+
+	/**
+	 * Unlink the entries of the bucket which are due in this round and chain
+	 * them through their next pointer, the others get one round closer
+	 *
+	 * @param entry
+	 *            head of the bucket
+	 * @return the chain of expired entries
+	 */
+	private Entry expireBucket(Entry entry) {
+		Entry expired = null;
+		while (entry != null) {
+			Entry next = entry.next;
+			if (entry.remainingRounds == 0) {
+				unlink(entry);
+				entry.next = expired;
+				expired = entry;
+			} else {
+				entry.remainingRounds--;
+			}
+			entry = next;
+		}
+		return expired;
+	}
+
+	private void runExpired(Entry entry) {
+		while (entry != null) {
+			Entry next = entry.next;
+			entry.next = null;
+			try {
+				entry.task.run();
+			} catch (RuntimeException ex) {
+				log.log(Level.SEVERE, "Hold expiry task failed", ex);
+			}
+			entry = next;
+		}
+	}
+
+	private final class Entry implements HoldExpiry {
+
+		private final Runnable task;
+
+		// guarded by lock
+		private long remainingRounds;
+
+		private int bucket;
+
+		private boolean isPending;
+
+		private Entry prev;
+
+		private Entry next;
+
+		private Entry(Runnable task) {
+			this.task = task;
+		}
+
+		@Override
+		public boolean cancel() {
+			lock.lock();
+			try {
+				if (!isPending || isShutdown) {
+					return false;
+				}
+				unlink(this);
+				return true;
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.ticketing.service.services;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.ticketing.service.model.Venue;
+
+/**
+ * Keeps the inventory of every event served by this JVM, keyed by event id.
+ *
+ * Each event owns its Venue, with its seats and hold table, and its own expiry
+ * scheduler, so requests for different events never share a lock or a data
+ * structure. Events are loaded on first use through the VenueLoader and can be
+ * unloaded when their sale is over.
+ *
+ * @author Suma
+ *
+ */
+public class VenueRegistry {
+
+	/**
+	 * Builds the venue of an event, e.g. from the event's seating plan
+	 */
+	public interface VenueLoader {
+
+		/**
+		 * @param eventId
+		 * @return the venue of the event, null if there is no such event
+		 */
+		Venue load(String eventId);
+	}
+
+	private final Map<String, TicketServiceImpl> events = new ConcurrentHashMap<>();
+
+	private final VenueLoader loader;
+
+	private final Long onHoldTimeOut;
+
+	/**
+	 * @param loader
+	 *            used to load the events which are not loaded yet
+	 * @param onHoldTimeOut
+	 *            on hold timeout of the holds of every event
+	 */
+	public VenueRegistry(VenueLoader loader, Long onHoldTimeOut) {
+		this.loader = loader;
+		this.onHoldTimeOut = onHoldTimeOut;
+	}
+
+	/**
+	 * Get the service selling the event, loading it if needed
+	 *
+	 * @param eventId
+	 * @return the service of the event
+	 * @throws IllegalArgumentException
+	 *             if the loader doesn't know the event
+	 */
+	public TicketServiceImpl getTicketService(String eventId) {
+		TicketServiceImpl ticketService = events.get(eventId);
+		if (ticketService != null) {
+			return ticketService;
+		}
+		return events.computeIfAbsent(eventId, id -> {
+			Venue venue = loader.load(id);
+			if (venue == null) {
+				throw new IllegalArgumentException("Unknown event " + id);
+			}
+			return newTicketService(venue);
+		});
+	}
+
+	/**
+	 * Load a venue built by the caller, replacing nothing
+	 *
+	 * @param venue
+	 * @return the service of the event
+	 * @throws IllegalStateException
+	 *             if the event is already loaded
+	 */
+	public TicketServiceImpl load(Venue venue) {
+		TicketServiceImpl ticketService = newTicketService(venue);
+		if (events.putIfAbsent(venue.getEventId(), ticketService) != null) {
+			ticketService.getExpiryScheduler().shutdown();
+			throw new IllegalStateException("Event " + venue.getEventId() + " is already loaded");
+		}
+		return ticketService;
+	}
+
+	/**
+	 * Drop the event and stop its expiry scheduler, its pending holds are
+	 * discarded
+	 *
+	 * @param eventId
+	 * @return false if the event was not loaded
+	 */
+	public boolean unload(String eventId) {
+		TicketServiceImpl ticketService = events.remove(eventId);
+		if (ticketService == null) {
+			return Boolean.FALSE;
+		}
+		ticketService.getExpiryScheduler().shutdown();
+		return Boolean.TRUE;
+	}
+
+	public boolean isLoaded(String eventId) {
+		return events.containsKey(eventId);
+	}
+
+	public Set<String> getLoadedEventIds() {
+		return Collections.unmodifiableSet(events.keySet());
+	}
+
+	private TicketServiceImpl newTicketService(Venue venue) {
+		return new TicketServiceImpl(venue, onHoldTimeOut, new TimingWheelExpiryScheduler());
+	}
+}
@@ -0,0 +1,383 @@
+package com.ticketing.service.services;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.ticketing.service.model.ReserveRequest;
+import com.ticketing.service.model.SeatHold;
+
+/**
+ * A virtual waiting room in front of a TicketService, so an on-sale surge
+ * reaches the service at the rate it holds seats best instead of all at once.
+ *
+ * Holds wait in a FIFO queue, each with a ticket number telling its place in
+ * it, and the head of the queue is let through when a token bucket has a
+ * token for it. The rate of the bucket follows the hold latency of the
+ * service, additive increase while the average latency stays under the
+ * target and multiplicative decrease once it goes over, as TCP does with its
+ * window. Each waiting hold waits on a condition of its own, and only the
+ * new head is woken when the queue moves.
+ *
+ * Once the venue can't take a party any more, the hold is turned away before
+ * it joins the queue, and the head of the queue leaves it the same way, the
+ * SoldOutPolicy.DEFER policy keeps the head waiting instead, for seats
+ * coming back from expired holds. Reserves and the seat counts go straight
+ * to the service, the customers making them already got through.
+ *
+ * @author Suma
+ *
+ */
+public class WaitingRoomTicketService implements TicketService {
+
+	public enum SoldOutPolicy {
+
+		/**
+		 * turn the hold away as soon as the venue can't take its party
+		 */
+		REJECT,
+
+		/**
+		 * keep the hold at the head of the queue until seats come back or it
+		 * waited maxWaitMillis
+		 */
+		DEFER
+	}
+
+	protected static final String TICKET_ERROR_SOLD_OUT = "Sorry, {0} seats are no longer available for this event.";
+
+	protected static final String TICKET_ERROR_WAIT_TIMED_OUT = "Sorry, we couldn't get to your request for {0} seats in time, please try again later.";
+
+	// the rate is adjusted at most this often, each adjustment seeing the
+	// latency of the holds let through at the previous rate
+	private static final long ADJUST_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+
+	private static final double DECREASE_FACTOR = 0.7;
+
+	private static final double LATENCY_WEIGHT = 0.2;
+
+	private static final long SOLD_OUT_RECHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100L);
+
+	private final TicketService delegate;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	// the waiting holds, head first, and the last one of each customer
+	private final ArrayDeque<Waiter> queue = new ArrayDeque<>();
+
+	private final Map<String, Waiter> waitersByEmail = new HashMap<>();
+
+	private long nextTicket;
+
+	// the token bucket, refilled at ratePerSecond up to burst tokens
+	private double tokens;
+
+	private long refilledNanos;
+
+	private double ratePerSecond;
+
+	private final double burst;
+
+	private double latencyNanos;
+
+	private long adjustedNanos;
+
+	private volatile double minRatePerSecond;
+
+	private volatile double maxRatePerSecond;
+
+	private volatile double increasePerSecond;
+
+	private final long targetLatencyNanos;
+
+	private volatile long maxWaitMillis = 60000L;
+
+	private volatile SoldOutPolicy soldOutPolicy = SoldOutPolicy.REJECT;
+
+	private final LongAdder admitted = new LongAdder();
+
+	private final LongAdder rejected = new LongAdder();
+
+	private final LongAdder timedOut = new LongAdder();
+
+	/**
+	 * @param delegate
+	 *            the service the admitted holds go to
+	 * @param ratePerSecond
+	 *            the admission rate to start from, it may go down to a tenth
+	 *            and up to ten times of it
+	 * @param targetLatencyMillis
+	 *            the average hold latency the rate is adjusted to stay under
+	 */
+	public WaitingRoomTicketService(TicketService delegate, double ratePerSecond, long targetLatencyMillis) {
+		this.delegate = delegate;
+		this.ratePerSecond = ratePerSecond;
+		this.minRatePerSecond = ratePerSecond / 10;
+		this.maxRatePerSecond = ratePerSecond * 10;
+		this.increasePerSecond = ratePerSecond / 20;
+		// a tenth of a second of holds may go through at once
+		this.burst = Math.max(ratePerSecond / 10, 1.0);
+		this.tokens = burst;
+		this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+		this.refilledNanos = System.nanoTime();
+		this.adjustedNanos = refilledNanos;
+	}
+
+	/**
+	 * @param minRatePerSecond
+	 * @param maxRatePerSecond
+	 *            the bounds of the admission rate
+	 * @param increasePerSecond
+	 *            what the rate goes up by at each adjustment while the
+	 *            latency is on target
+	 */
+	public void setRateBounds(double minRatePerSecond, double maxRatePerSecond, double increasePerSecond) {
+		this.minRatePerSecond = minRatePerSecond;
+		this.maxRatePerSecond = maxRatePerSecond;
+		this.increasePerSecond = increasePerSecond;
+	}
+
+	/**
+	 * @param maxWaitMillis
+	 *            the longest a hold waits in the queue before it is turned
+	 *            away
+	 */
+	public void setMaxWaitMillis(long maxWaitMillis) {
+		this.maxWaitMillis = maxWaitMillis;
+	}
+
+	public long getMaxWaitMillis() {
+		return maxWaitMillis;
+	}
+
+	public void setSoldOutPolicy(SoldOutPolicy soldOutPolicy) {
+		this.soldOutPolicy = soldOutPolicy;
+	}
+
+	public SoldOutPolicy getSoldOutPolicy() {
+		return soldOutPolicy;
+	}
+
+	@Override
+	public int numSeatsAvailable() {
+		return delegate.numSeatsAvailable();
+	}
+
+	@Override
+	public int numSeatsAvailable(int rowId) {
+		return delegate.numSeatsAvailable(rowId);
+	}
+
+	@Override
+	public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+		String errorMessage;
+		if (soldOutPolicy == SoldOutPolicy.REJECT && delegate.numSeatsAvailable() < numSeats) {
+			rejected.increment();
+			errorMessage = TICKET_ERROR_SOLD_OUT;
+		} else {
+			errorMessage = awaitAdmission(numSeats, customerEmail);
+		}
+		if (errorMessage != null) {
+			SeatHold seatHold = new SeatHold();
+			seatHold.setError(Boolean.TRUE);
+			seatHold.setErrorMessage(errorMessage.replace("{0}", Integer.toString(numSeats)));
+			return seatHold;
+		}
+
+		long startNanos = System.nanoTime();
+		SeatHold seatHold = delegate.findAndHoldSeats(numSeats, customerEmail);
+		long endNanos = System.nanoTime();
+		recordHoldLatency(endNanos - startNanos, endNanos);
+		return seatHold;
+	}
+
+	@Override
+	public String reserveSeats(long seatHoldId, String customerEmail) {
+		return delegate.reserveSeats(seatHoldId, customerEmail);
+	}
+
+	@Override
+	public int releaseHold(long seatHoldId, String customerEmail) {
+		return delegate.releaseHold(seatHoldId, customerEmail);
+	}
+
+	@Override
+	public List<String> reserveSeatsBatch(List<ReserveRequest> reserveRequests) {
+		return delegate.reserveSeatsBatch(reserveRequests);
+	}
+
+	/**
+	 * @param customerEmail
+	 * @return how many holds are at most ahead of the last waiting hold of
+	 *         the customer, holds which left the queue early included, -1 if
+	 *         the customer has none waiting
+	 */
+	public long getPosition(String customerEmail) {
+		lock.lock();
+		try {
+			Waiter waiter = waitersByEmail.get(customerEmail);
+			return waiter == null ? -1L : waiter.ticket - queue.peekFirst().ticket;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int getQueueLength() {
+		lock.lock();
+		try {
+			return queue.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public double getRatePerSecond() {
+		lock.lock();
+		try {
+			return ratePerSecond;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @return the holds let through to the service
+	 */
+	public long getAdmittedCount() {
+		return admitted.sum();
+	}
+
+	/**
+	 * @return the holds turned away because the venue couldn't take them
+	 */
+	public long getRejectedCount() {
+		return rejected.sum();
+	}
+
+	/**
+	 * @return the holds turned away after waiting maxWaitMillis
+	 */
+	public long getTimedOutCount() {
+		return timedOut.sum();
+	}
+
+	/**
+	 * Queue up and wait for the hold to be let through
+	 *
+	 * @return null once admitted, the error message if turned away
+	 */
+	private String awaitAdmission(int numSeats, String customerEmail) {
+		lock.lock();
+		try {
+			Waiter waiter = new Waiter(nextTicket++, customerEmail, lock.newCondition());
+			queue.addLast(waiter);
+			waitersByEmail.put(customerEmail, waiter);
+			long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+			try {
+				while (true) {
+					long nowNanos = System.nanoTime();
+					long waitNanos = deadlineNanos - nowNanos;
+					if (queue.peekFirst() == waiter) {
+						if (delegate.numSeatsAvailable() < numSeats) {
+							if (soldOutPolicy == SoldOutPolicy.REJECT) {
+								leave(waiter);
+								rejected.increment();
+								return TICKET_ERROR_SOLD_OUT;
+							}
+							waitNanos = Math.min(waitNanos, SOLD_OUT_RECHECK_NANOS);
+						} else {
+							refill(nowNanos);
+							if (tokens >= 1.0) {
+								tokens -= 1.0;
+								leave(waiter);
+								admitted.increment();
+								return null;
+							}
+							waitNanos = Math.min(waitNanos, (long) Math.ceil((1.0 - tokens) / ratePerSecond * 1e9));
+						}
+					}
+					if (deadlineNanos - nowNanos <= 0) {
+						leave(waiter);
+						timedOut.increment();
+						return TICKET_ERROR_WAIT_TIMED_OUT;
+					}
+					waiter.turn.awaitNanos(waitNanos);
+				}
+			} catch (InterruptedException e) {
+				leave(waiter);
+				timedOut.increment();
+				Thread.currentThread().interrupt();
+				return TICKET_ERROR_WAIT_TIMED_OUT;
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Take the waiter out of the queue, and wake the next one if it was the
+	 * head. Called with the lock held.
+	 */
+	private void leave(Waiter waiter) {
+		boolean wasHead = queue.peekFirst() == waiter;
+		if (wasHead) {
+			queue.pollFirst();
+		} else {
+			queue.remove(waiter);
+		}
+		waitersByEmail.remove(waiter.customerEmail, waiter);
+		if (wasHead && !queue.isEmpty()) {
+			queue.peekFirst().turn.signal();
+		}
+	}
+
+	private void refill(long nowNanos) {
+		tokens = Math.min(burst, tokens + (nowNanos - refilledNanos) * ratePerSecond / 1e9);
+		refilledNanos = nowNanos;
+	}
+
+	/**
+	 * Fold the latency of a hold into the average, and adjust the rate if
+	 * the last adjustment is old enough
+	 *
+	 * @param latencyNanos
+	 * @param nowNanos
+	 */
+	void recordHoldLatency(long latencyNanos, long nowNanos) {
+		lock.lock();
+		try {
+			this.latencyNanos = this.latencyNanos == 0 ? latencyNanos
+					: this.latencyNanos + (latencyNanos - this.latencyNanos) * LATENCY_WEIGHT;
+			if (nowNanos - adjustedNanos >= ADJUST_INTERVAL_NANOS) {
+				adjustedNanos = nowNanos;
+				// the tokens earned so far are earned at the old rate
+				refill(nowNanos);
+				ratePerSecond = this.latencyNanos > targetLatencyNanos
+						? Math.max(ratePerSecond * DECREASE_FACTOR, minRatePerSecond)
+						: Math.min(ratePerSecond + increasePerSecond, maxRatePerSecond);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private static final class Waiter {
+
+		private final long ticket;
+
+		private final String customerEmail;
+
+		private final Condition turn;
+
+		private Waiter(long ticket, String customerEmail, Condition turn) {
+			this.ticket = ticket;
+			this.customerEmail = customerEmail;
+			this.turn = turn;
+		}
+	}
+}
@@ -0,0 +1,187 @@
+package com.ticketing.service.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.ticketing.service.model.BestFitStrategy;
+import com.ticketing.service.model.FirstFitStrategy;
+import com.ticketing.service.model.OrphanMinimizingStrategy;
+import com.ticketing.service.model.Row;
+import com.ticketing.service.model.SeatAllocationStrategy;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Venue;
+import com.ticketing.service.services.TicketServiceImpl;
+import com.ticketing.service.services.TimingWheelExpiryScheduler;
+
+/**
+ * Replays the same sale against every SeatAllocationStrategy and reports how
+ * full each one gets the venue, how many single free seats it leaves behind
+ * and what a hold costs with it.
+ *
+ * The parties are drawn from a seeded party size distribution, and some
+ * holds are given back along the way, as cancelled orders would, to open
+ * holes in the rows. Every strategy sees the same draws.
+ *
+ * Arguments: rows, seats per row, requests, seed, the distribution as
+ * size:weight pairs and the share of requests which release a hold, e.g.
+ *
+ * 20 50 450 42 1:10,2:35,3:15,4:25,5:5,6:10 0.1
+ */
+public class AllocationSimulation {
+
+	private static final int WARM_UP_SALES = 20;
+
+	public static void main(String[] args) {
+		int rows = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		int cols = args.length > 1 ? Integer.parseInt(args[1]) : 50;
+		int requests = args.length > 2 ? Integer.parseInt(args[2]) : 450;
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 42L;
+		int[] partySizes = parseDistribution(args.length > 4 ? args[4] : "1:10,2:35,3:15,4:25,5:5,6:10");
+		double releaseRate = args.length > 5 ? Double.parseDouble(args[5]) : 0.1;
+
+		SeatAllocationStrategy[] strategies = { new FirstFitStrategy(), new BestFitStrategy(),
+				new OrphanMinimizingStrategy() };
+		System.out.println(String.format("%-26s %9s %8s %8s %12s", "strategy", "fill rate", "orphans", "refused",
+				"ns/request"));
+		// sales on other draws warm every strategy up first, so the one tried
+		// first isn't the one paying for the compiler
+		for (int sale = 1; sale <= WARM_UP_SALES; sale++) {
+			for (SeatAllocationStrategy strategy : strategies) {
+				simulate(strategy, rows, cols, requests, seed + sale, partySizes, releaseRate);
+			}
+		}
+		for (SeatAllocationStrategy strategy : strategies) {
+			Result result = simulate(strategy, rows, cols, requests, seed, partySizes, releaseRate);
+			System.out.println(String.format("%-26s %8.2f%% %8d %8d %12d", strategy.getClass().getSimpleName(),
+					100.0 * result.fillRate, result.orphans, result.refused, result.nanosPerRequest));
+		}
+		System.exit(0);
+	}
+
+	/**
+	 * Run a sale on a fresh venue with the strategy
+	 *
+	 * @param strategy
+	 * @param rows
+	 * @param cols
+	 * @param requests
+	 *            the number of holds and releases
+	 * @param seed
+	 * @param partySizes
+	 *            a party size per unit of weight, drawn from uniformly
+	 * @param releaseRate
+	 *            the share of requests which release a random live hold
+	 */
+	public static Result simulate(SeatAllocationStrategy strategy, int rows, int cols, int requests, long seed,
+			int[] partySizes, double releaseRate) {
+		Venue venue = new Venue("simulation", rows, cols);
+		TimingWheelExpiryScheduler expiryScheduler = new TimingWheelExpiryScheduler();
+		// the holds must not expire during the sale
+		TicketServiceImpl service = new TicketServiceImpl(venue, 3600000L, expiryScheduler);
+		service.setAllocationStrategy(strategy);
+
+		Random random = new Random(seed);
+		List<String> liveHolds = new ArrayList<>();
+		long holdNanos = 0;
+		int holdRequests = 0;
+		int refused = 0;
+		try {
+			for (int i = 0; i < requests; i++) {
+				if (!liveHolds.isEmpty() && random.nextDouble() < releaseRate) {
+					int index = random.nextInt(liveHolds.size());
+					String customerEmail = liveHolds.get(index);
+					liveHolds.set(index, liveHolds.get(liveHolds.size() - 1));
+					liveHolds.remove(liveHolds.size() - 1);
+					service.releaseHolds(customerEmail);
+					continue;
+				}
+				int numSeats = partySizes[random.nextInt(partySizes.length)];
+				String customerEmail = "customer" + i + "@simulation";
+				long startNanos = System.nanoTime();
+				SeatHold seatHold = service.findAndHoldSeats(numSeats, customerEmail);
+				holdNanos += System.nanoTime() - startNanos;
+				holdRequests++;
+				if (seatHold.isError()) {
+					refused++;
+				} else {
+					liveHolds.add(customerEmail);
+				}
+			}
+		} finally {
+			expiryScheduler.shutdown();
+		}
+
+		int orphans = 0;
+		for (Row row : venue.getVenueTickets()) {
+			for (int start = row.nextAvailable(0); start >= 0;) {
+				int end = row.freeRunEnd(start);
+				if (end - start == 1) {
+					orphans++;
+				}
+				start = row.nextAvailable(end);
+			}
+		}
+		double fillRate = 1.0 - (double) service.numSeatsAvailable() / ((long) rows * cols);
+		return new Result(fillRate, orphans, refused, holdRequests == 0 ? 0 : holdNanos / holdRequests);
+	}
+
+	/**
+	 * @param distribution
+	 *            size:weight pairs, comma separated
+	 * @return every size repeated weight times
+	 */
+	public static int[] parseDistribution(String distribution) {
+		List<Integer> sizes = new ArrayList<>();
+		for (String pair : distribution.split(",")) {
+			String[] sizeAndWeight = pair.trim().split(":");
+			int size = Integer.parseInt(sizeAndWeight[0]);
+			int weight = sizeAndWeight.length > 1 ? Integer.parseInt(sizeAndWeight[1]) : 1;
+			for (int i = 0; i < weight; i++) {
+				sizes.add(size);
+			}
+		}
+		int[] partySizes = new int[sizes.size()];
+		for (int i = 0; i < partySizes.length; i++) {
+			partySizes[i] = sizes.get(i);
+		}
+		return partySizes;
+	}
+
+	/**
+	 * The state of the venue at the end of a sale
+	 */
+	public static class Result {
+
+		private final double fillRate;
+
+		private final int orphans;
+
+		private final int refused;
+
+		private final long nanosPerRequest;
+
+		Result(double fillRate, int orphans, int refused, long nanosPerRequest) {
+			this.fillRate = fillRate;
+			this.orphans = orphans;
+			this.refused = refused;
+			this.nanosPerRequest = nanosPerRequest;
+		}
+
+		public double getFillRate() {
+			return fillRate;
+		}
+
+		public int getOrphans() {
+			return orphans;
+		}
+
+		public int getRefused() {
+			return refused;
+		}
+
+		public long getNanosPerRequest() {
+			return nanosPerRequest;
+		}
+	}
+}
@@ -0,0 +1,281 @@
+package com.ticketing.service.util;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import com.ticketing.service.metrics.LatencyHistogram;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.services.HoldExpiryScheduler;
+import com.ticketing.service.services.TicketService;
+import com.ticketing.service.services.TicketServiceFactory;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+import com.ticketing.service.services.TicketServiceImpl;
+import com.ticketing.service.services.TimingWheelExpiryScheduler;
+import com.ticketing.service.services.WaitingRoomTicketService;
+
+/**
+ * Drives a TicketService through an on-sale surge as a LoadProfile describes
+ * it, a thread per client, and reports throughput, latency percentiles,
+ * sell-out time and the failed requests.
+ *
+ * A client waits for its arrival time, holds its party, thinks, and then
+ * reserves or leaves the hold to expire. The whole plan, arrival times, party
+ * sizes, think times and who converts, is drawn from the seed before the run
+ * starts, so runs against different engines get the same requests; only the
+ * interleaving of the threads differs.
+ *
+ * Clients run on virtual threads when the JVM has them, found by reflection
+ * so the build doesn't need them, on a pool of platform threads otherwise. A
+ * platform pool smaller than the clients in flight delays arrivals, which
+ * shows in the start lag of the report.
+ *
+ * Run from the command line with system properties, e.g.
+ *
+ * java -Dengine=LOCK_FREE -Dvenue=100x200 -Dclients=20000 -Dseed=7
+ * -cp target/classes com.ticketing.service.util.LoadGenerator
+ *
+ * and -DwaitingRoom=2000 to put a WaitingRoomTicketService admitting 2000
+ * holds a second to start with in front of the engine.
+ */
+public class LoadGenerator {
+
+	private static final Logger log = Logger.getLogger(LoadGenerator.class.getName());
+
+	private final TicketService service;
+
+	private final LoadProfile profile;
+
+	private final LatencyHistogram holdLatency = new LatencyHistogram();
+
+	private final LatencyHistogram reserveLatency = new LatencyHistogram();
+
+	private final LatencyHistogram startLag = new LatencyHistogram();
+
+	private final LongAdder holdsHeld = new LongAdder();
+
+	private final LongAdder holdsAbandoned = new LongAdder();
+
+	private final LongAdder reserved = new LongAdder();
+
+	private final LongAdder seatsSold = new LongAdder();
+
+	private final AtomicLong soldOutNanos = new AtomicLong(-1L);
+
+	private final Map<String, LongAdder> failures = new ConcurrentHashMap<>();
+
+	public LoadGenerator(TicketService service, LoadProfile profile) {
+		this.service = service;
+		this.profile = profile;
+	}
+
+	public static void main(String[] args) throws InterruptedException {
+		String[] venue = System.getProperty("venue", "50x100").split("x");
+		Engine engine = Engine.valueOf(System.getProperty("engine", Engine.ROW_LOCKING.name()));
+		long holdTimeOut = Long.getLong("holdTimeOut", 5000L);
+
+		LoadProfile profile = new LoadProfile();
+		profile.setSeed(Long.getLong("seed", profile.getSeed()));
+		profile.setClients(Integer.getInteger("clients", profile.getClients()));
+		profile.setBaseRatePerSecond(
+				Double.parseDouble(System.getProperty("baseRate", String.valueOf(profile.getBaseRatePerSecond()))));
+		profile.setPeakRatePerSecond(
+				Double.parseDouble(System.getProperty("peakRate", String.valueOf(profile.getPeakRatePerSecond()))));
+		profile.setBurstMillis(Long.getLong("burstMillis", profile.getBurstMillis()));
+		if (System.getProperty("parties") != null) {
+			profile.setPartySizeDistribution(System.getProperty("parties"));
+		}
+		profile.setConversionRatio(Double.parseDouble(
+				System.getProperty("conversion", String.valueOf(profile.getConversionRatio()))));
+		profile.setThinkMillis(Long.getLong("minThinkMillis", profile.getMinThinkMillis()),
+				Long.getLong("maxThinkMillis", profile.getMaxThinkMillis()));
+		String threads = System.getProperty("threads", "virtual");
+		profile.setVirtualThreads("virtual".equals(threads));
+		if (!profile.isVirtualThreads()) {
+			profile.setPlatformThreads(Integer.parseInt(threads));
+		}
+
+		HoldExpiryScheduler expiryScheduler = new TimingWheelExpiryScheduler();
+		TicketService service = TicketServiceFactory.create(engine, Integer.parseInt(venue[0]),
+				Integer.parseInt(venue[1]), holdTimeOut, expiryScheduler);
+		if (System.getProperty("waitingRoom") != null) {
+			// the admission rate to start from
+			service = new WaitingRoomTicketService(service, Double.parseDouble(System.getProperty("waitingRoom")),
+					Long.getLong("targetLatencyMillis", 5L));
+		}
+		System.out.println(engine + " " + venue[0] + "x" + venue[1] + ", " + profile.getClients() + " clients, seed "
+				+ profile.getSeed());
+		System.out.print(new LoadGenerator(service, profile).run());
+		expiryScheduler.shutdown();
+		System.exit(0);
+	}
+
+	/**
+	 * Run every client of the profile and wait for the last one to finish
+	 *
+	 * @return the report of the run
+	 * @throws InterruptedException
+	 *             if interrupted waiting for the clients
+	 */
+	public LoadReport run() throws InterruptedException {
+		Plan plan = plan(profile);
+		boolean[] isVirtual = new boolean[1];
+		ExecutorService executor = newExecutor(isVirtual);
+
+		long startNanos = System.nanoTime();
+		try {
+			for (int client = 0; client < plan.arrivalNanos.length; client++) {
+				int clientId = client;
+				executor.execute(() -> runClient(plan, clientId, startNanos));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		long elapsedNanos = System.nanoTime() - startNanos;
+
+		Map<String, Long> failureCounts = new TreeMap<>();
+		for (Map.Entry<String, LongAdder> failure : failures.entrySet()) {
+			failureCounts.put(failure.getKey(), failure.getValue().sum());
+		}
+		return new LoadReport(elapsedNanos, isVirtual[0], holdsHeld.sum(), holdsAbandoned.sum(), reserved.sum(),
+				seatsSold.sum(), soldOutNanos.get(), holdLatency.snapshot(), reserveLatency.snapshot(),
+				startLag.snapshot(), failureCounts);
+	}
+
+	private void runClient(Plan plan, int clientId, long startNanos) {
+		long arrivalNanos = startNanos + plan.arrivalNanos[clientId];
+		parkUntil(arrivalNanos);
+		startLag.record(System.nanoTime() - arrivalNanos);
+
+		String customerEmail = "customer" + clientId + "@load";
+		int numSeats = plan.partySizes[clientId];
+		try {
+			long holdStartNanos = System.nanoTime();
+			SeatHold seatHold = service.findAndHoldSeats(numSeats, customerEmail);
+			long heldNanos = System.nanoTime();
+			holdLatency.record(heldNanos - holdStartNanos);
+			if (seatHold.isError()) {
+				countFailure("hold: " + seatHold.getErrorMessage());
+				return;
+			}
+			holdsHeld.increment();
+			if (soldOutNanos.get() < 0 && service.numSeatsAvailable() == 0) {
+				soldOutNanos.compareAndSet(-1L, heldNanos - startNanos);
+			}
+			if (!plan.converts[clientId]) {
+				holdsAbandoned.increment();
+				return;
+			}
+
+			parkUntil(heldNanos + plan.thinkNanos[clientId]);
+			long reserveStartNanos = System.nanoTime();
+			String message = service.reserveSeats(seatHold.getSeatHoldId(), customerEmail);
+			reserveLatency.record(System.nanoTime() - reserveStartNanos);
+			if (TicketServiceImpl.TICKET_MESSAGE_SUCCESS.equals(message)) {
+				reserved.increment();
+				seatsSold.add(numSeats);
+			} else {
+				countFailure("reserve: " + message);
+			}
+		} catch (RuntimeException e) {
+			countFailure("exception: " + e.getClass().getName());
+		}
+	}
+
+	private void countFailure(String message) {
+		// the numbers in a message are left out, so the same failure for
+		// different parties is counted once
+		failures.computeIfAbsent(message.replaceAll("[0-9]+", "N"), key -> new LongAdder()).increment();
+	}
+
+	private static void parkUntil(long deadlineNanos) {
+		long remainingNanos;
+		while ((remainingNanos = deadlineNanos - System.nanoTime()) > 0) {
+			LockSupport.parkNanos(remainingNanos);
+		}
+	}
+
+	private ExecutorService newExecutor(boolean[] isVirtual) {
+		if (profile.isVirtualThreads()) {
+			try {
+				ExecutorService executor = (ExecutorService) Executors.class
+						.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+				isVirtual[0] = Boolean.TRUE;
+				return executor;
+			} catch (ReflectiveOperationException e) {
+				log.info("No virtual threads on this JVM, the clients run on " + profile.getPlatformThreads()
+						+ " platform threads");
+			}
+		}
+		return Executors.newFixedThreadPool(profile.getPlatformThreads());
+	}
+
+	/**
+	 * Draw the clients of a profile from its seed
+	 *
+	 * @param profile
+	 * @return the plan of every client, in arrival order
+	 */
+	static Plan plan(LoadProfile profile) {
+		if (profile.getBaseRatePerSecond() <= 0.0) {
+			throw new IllegalArgumentException("The base arrival rate must be positive");
+		}
+		Random random = new Random(profile.getSeed());
+		int clients = profile.getClients();
+		Plan plan = new Plan(clients);
+
+		// arrivals of a Poisson process at the peak rate, each kept with the
+		// share of the peak the rate has at its time, thin the process down
+		// to the decaying burst
+		double maxRate = Math.max(profile.getPeakRatePerSecond(), profile.getBaseRatePerSecond());
+		double burstRate = Math.max(profile.getPeakRatePerSecond() - profile.getBaseRatePerSecond(), 0.0);
+		double burstSeconds = Math.max(profile.getBurstMillis(), 1L) / 1000.0;
+		double seconds = 0.0;
+		long thinkRangeNanos = TimeUnit.MILLISECONDS.toNanos(profile.getMaxThinkMillis() - profile.getMinThinkMillis());
+		for (int client = 0; client < clients;) {
+			seconds -= Math.log(1.0 - random.nextDouble()) / maxRate;
+			double rate = profile.getBaseRatePerSecond() + burstRate * Math.exp(-seconds / burstSeconds);
+			if (random.nextDouble() * maxRate >= rate) {
+				continue;
+			}
+			plan.arrivalNanos[client] = (long) (seconds * 1e9);
+			plan.partySizes[client] = profile.getPartySizes()[random.nextInt(profile.getPartySizes().length)];
+			plan.thinkNanos[client] = TimeUnit.MILLISECONDS.toNanos(profile.getMinThinkMillis())
+					+ (long) (random.nextDouble() * thinkRangeNanos);
+			plan.converts[client] = random.nextDouble() < profile.getConversionRatio();
+			client++;
+		}
+		return plan;
+	}
+
+	/**
+	 * Arrival time from the start of the run, party size, think time and
+	 * whether the client reserves, by client
+	 */
+	static final class Plan {
+
+		final long[] arrivalNanos;
+
+		final int[] partySizes;
+
+		final long[] thinkNanos;
+
+		final boolean[] converts;
+
+		private Plan(int clients) {
+			this.arrivalNanos = new long[clients];
+			this.partySizes = new int[clients];
+			this.thinkNanos = new long[clients];
+			this.converts = new boolean[clients];
+		}
+	}
+}
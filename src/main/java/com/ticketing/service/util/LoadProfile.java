@@ -0,0 +1,151 @@
+package com.ticketing.service.util;
+
+/**
+ * What a LoadGenerator run sends a TicketService: how many clients arrive and
+ * when, how many seats each wants, how long they think before reserving and
+ * how many of them reserve at all.
+ *
+ * Clients arrive at baseRatePerSecond plus an on-sale burst starting at
+ * peakRatePerSecond and decaying by a factor of e every burstMillis. Every
+ * draw comes from the seed, so two runs with the same profile send the same
+ * requests at the same times.
+ */
+public class LoadProfile {
+
+	private long seed = 42L;
+
+	private int clients = 5000;
+
+	private double baseRatePerSecond = 200.0;
+
+	private double peakRatePerSecond = 20000.0;
+
+	private long burstMillis = 500L;
+
+	private int[] partySizes = AllocationSimulation.parseDistribution("1:10,2:35,3:15,4:25,5:5,6:10");
+
+	private double conversionRatio = 0.7;
+
+	private long minThinkMillis = 50L;
+
+	private long maxThinkMillis = 500L;
+
+	private boolean virtualThreads = Boolean.TRUE;
+
+	private int platformThreads = 200;
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+	public int getClients() {
+		return clients;
+	}
+
+	/**
+	 * @param clients
+	 *            the number of clients arriving in the run, each holding
+	 *            once and reserving at most once
+	 */
+	public void setClients(int clients) {
+		this.clients = clients;
+	}
+
+	public double getBaseRatePerSecond() {
+		return baseRatePerSecond;
+	}
+
+	public void setBaseRatePerSecond(double baseRatePerSecond) {
+		this.baseRatePerSecond = baseRatePerSecond;
+	}
+
+	public double getPeakRatePerSecond() {
+		return peakRatePerSecond;
+	}
+
+	/**
+	 * @param peakRatePerSecond
+	 *            the arrival rate the moment the sale opens, base rate
+	 *            included
+	 */
+	public void setPeakRatePerSecond(double peakRatePerSecond) {
+		this.peakRatePerSecond = peakRatePerSecond;
+	}
+
+	public long getBurstMillis() {
+		return burstMillis;
+	}
+
+	public void setBurstMillis(long burstMillis) {
+		this.burstMillis = burstMillis;
+	}
+
+	public int[] getPartySizes() {
+		return partySizes;
+	}
+
+	/**
+	 * @param distribution
+	 *            size:weight pairs, comma separated, e.g. 2:60,4:40
+	 */
+	public void setPartySizeDistribution(String distribution) {
+		this.partySizes = AllocationSimulation.parseDistribution(distribution);
+	}
+
+	public double getConversionRatio() {
+		return conversionRatio;
+	}
+
+	/**
+	 * @param conversionRatio
+	 *            the share of held clients who reserve, the others leave
+	 *            their hold to expire
+	 */
+	public void setConversionRatio(double conversionRatio) {
+		this.conversionRatio = conversionRatio;
+	}
+
+	public long getMinThinkMillis() {
+		return minThinkMillis;
+	}
+
+	public long getMaxThinkMillis() {
+		return maxThinkMillis;
+	}
+
+	/**
+	 * @param minThinkMillis
+	 * @param maxThinkMillis
+	 *            the time between a hold and its reserve is drawn uniformly
+	 *            from these bounds
+	 */
+	public void setThinkMillis(long minThinkMillis, long maxThinkMillis) {
+		this.minThinkMillis = minThinkMillis;
+		this.maxThinkMillis = Math.max(minThinkMillis, maxThinkMillis);
+	}
+
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @param virtualThreads
+	 *            a virtual thread per client when the JVM has them, the
+	 *            platform thread pool otherwise
+	 */
+	public void setVirtualThreads(boolean virtualThreads) {
+		this.virtualThreads = virtualThreads;
+	}
+
+	public int getPlatformThreads() {
+		return platformThreads;
+	}
+
+	public void setPlatformThreads(int platformThreads) {
+		this.platformThreads = platformThreads;
+	}
+}
@@ -0,0 +1,136 @@
+package com.ticketing.service.util;
+
+import java.util.Map;
+
+import com.ticketing.service.metrics.HistogramSnapshot;
+
+/**
+ * The outcome of a LoadGenerator run. Latencies are in nanoseconds, failed
+ * requests are counted by their message, numbers left out.
+ */
+public class LoadReport {
+
+	private final long elapsedNanos;
+
+	private final boolean virtualThreads;
+
+	private final long holdsHeld;
+
+	private final long holdsAbandoned;
+
+	private final long reserved;
+
+	private final long seatsSold;
+
+	private final long soldOutNanos;
+
+	private final HistogramSnapshot holdLatency;
+
+	private final HistogramSnapshot reserveLatency;
+
+	private final HistogramSnapshot startLag;
+
+	private final Map<String, Long> failures;
+
+	LoadReport(long elapsedNanos, boolean virtualThreads, long holdsHeld, long holdsAbandoned, long reserved,
+			long seatsSold, long soldOutNanos, HistogramSnapshot holdLatency, HistogramSnapshot reserveLatency,
+			HistogramSnapshot startLag, Map<String, Long> failures) {
+		this.elapsedNanos = elapsedNanos;
+		this.virtualThreads = virtualThreads;
+		this.holdsHeld = holdsHeld;
+		this.holdsAbandoned = holdsAbandoned;
+		this.reserved = reserved;
+		this.seatsSold = seatsSold;
+		this.soldOutNanos = soldOutNanos;
+		this.holdLatency = holdLatency;
+		this.reserveLatency = reserveLatency;
+		this.startLag = startLag;
+		this.failures = failures;
+	}
+
+	public long getElapsedNanos() {
+		return elapsedNanos;
+	}
+
+	/**
+	 * @return true if every client had a virtual thread of its own
+	 */
+	public boolean isVirtualThreads() {
+		return virtualThreads;
+	}
+
+	/**
+	 * @return the requests completed per second, holds and reserves
+	 */
+	public double getThroughput() {
+		long requests = holdLatency.getCount() + reserveLatency.getCount();
+		return elapsedNanos == 0 ? 0.0 : requests * 1e9 / elapsedNanos;
+	}
+
+	public long getHoldsHeld() {
+		return holdsHeld;
+	}
+
+	/**
+	 * @return the holds left to expire by clients who didn't convert
+	 */
+	public long getHoldsAbandoned() {
+		return holdsAbandoned;
+	}
+
+	public long getReserved() {
+		return reserved;
+	}
+
+	public long getSeatsSold() {
+		return seatsSold;
+	}
+
+	/**
+	 * @return the time from the start of the run to the first hold leaving
+	 *         no seat available, -1 if the venue never sold out
+	 */
+	public long getSoldOutNanos() {
+		return soldOutNanos;
+	}
+
+	public HistogramSnapshot getHoldLatency() {
+		return holdLatency;
+	}
+
+	public HistogramSnapshot getReserveLatency() {
+		return reserveLatency;
+	}
+
+	/**
+	 * @return how late clients started after their arrival time, large when
+	 *         the threads of the generator can't keep up with the arrivals
+	 */
+	public HistogramSnapshot getStartLag() {
+		return startLag;
+	}
+
+	/**
+	 * @return the failed requests by message
+	 */
+	public Map<String, Long> getFailures() {
+		return failures;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder report = new StringBuilder();
+		report.append(String.format("elapsed: %d ms on %s threads, throughput: %.0f requests/s%n",
+				elapsedNanos / 1000000, virtualThreads ? "virtual" : "platform", getThroughput()));
+		report.append(String.format("held: %d, reserved: %d (%d seats), abandoned: %d, sold out: %s%n", holdsHeld,
+				reserved, seatsSold, holdsAbandoned, soldOutNanos < 0 ? "never" : soldOutNanos / 1000000 + " ms"));
+		report.append("hold latency: ").append(holdLatency).append(System.lineSeparator());
+		report.append("reserve latency: ").append(reserveLatency).append(System.lineSeparator());
+		report.append("start lag: ").append(startLag).append(System.lineSeparator());
+		for (Map.Entry<String, Long> failure : failures.entrySet()) {
+			report.append("failed ").append(failure.getValue()).append("x: ").append(failure.getKey())
+					.append(System.lineSeparator());
+		}
+		return report.toString();
+	}
+}
@@ -163,31 +163,26 @@ public class PrintResult {
 
 	protected static void concurrencyScenario(TicketServiceImpl impl, long holdTimeOut) {
 		System.out.println("*****************************************************");
-		System.out.println("Concurrency: 2 threads hold 2 and 3 seats each simulataneous");
-
-		Runnable task1 = () -> {
-			impl.findAndHoldSeats(2, "user11@example.com");
-		};
-		Runnable task2 = () -> {
-			impl.findAndHoldSeats(3, "user12@example.com");
-		};
-		// start the thread
-		Thread t1 = new Thread(task1);
-		Thread t2 = new Thread(task2);
-
-		t1.start();
-		t2.start();
-
+		System.out.println("Concurrency: an on-sale surge of 100 customers, each on its own thread,");
+		System.out.println("half of them reserving after a think time, the others letting their hold expire");
+
+		LoadProfile profile = new LoadProfile();
+		profile.setClients(100);
+		profile.setBaseRatePerSecond(100.0);
+		profile.setPeakRatePerSecond(5000.0);
+		profile.setBurstMillis(20L);
+		profile.setPartySizeDistribution("1:1,2:2,3:1");
+		profile.setConversionRatio(0.5);
+		profile.setThinkMillis(0L, 100L);
 		try {
-			t1.join();
-			t2.join();
+			System.out.print(new LoadGenerator(impl, profile).run());
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
 		}
 		System.out.println("State of seats before timeout");
 		impl.printVenueStatus();
 		System.out.println("Total Seats Available: " + impl.numSeatsAvailable());
-		System.out.println("Two different set of seats are put on hold for user 11 and user 12 by each thread.");
+		System.out.println("No seat is held or reserved twice, the customers who came too late are told so.");
 
 		try {
 			Thread.sleep(holdTimeOut + 1000);
@@ -197,7 +192,7 @@ public class PrintResult {
 		System.out.println("State of seats after timeout");
 		impl.printVenueStatus();
 		System.out.println("Total Seats Available: " + impl.numSeatsAvailable());
-		System.out.println("The appropriate seats are released back to the pool by both threads.");
+		System.out.println("The seats held but not reserved are released back to the pool.");
 		
 		System.out.println("*****************************************************");
 		System.out.println("\n");
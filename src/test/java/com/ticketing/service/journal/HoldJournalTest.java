@@ -0,0 +1,148 @@
+package com.ticketing.service.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class HoldJournalTest extends TestCase {
+
+	private static final int SEGMENT_SIZE = 64 << 10;
+
+	Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("hold-journal");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	public void testRecordsAreReplayedInOrder() {
+		HoldJournal journal = HoldJournal.open(directory, new RecordingHandler(), SEGMENT_SIZE, 1L);
+		assertEquals(1, journal.appendCustomer(1, "customer@example.com"));
+		assertEquals(2, journal.appendHold(7, 1, 2, 3, 1, 123456789L));
+		assertEquals(3, journal.appendReserve(7));
+		assertEquals(4, journal.appendExpire(8));
+		journal.awaitDurable(4);
+		assertEquals(4, journal.getDurableLsn());
+		journal.close();
+
+		RecordingHandler handler = new RecordingHandler();
+		journal = HoldJournal.open(directory, handler, SEGMENT_SIZE, 1L);
+		assertEquals(4, journal.getLastLsn());
+		assertEquals(5, journal.appendReserve(8));
+		journal.close();
+
+		List<String> expected = new ArrayList<>();
+		expected.add("1 customer 1 customer@example.com");
+		expected.add("2 hold 7 1 2 3 1 123456789");
+		expected.add("3 reserve 7");
+		expected.add("4 expire 8");
+		assertEquals(expected, handler.records);
+	}
+
+	@Test
+	public void testInterruptedWaitIsNotDurable() {
+		// no force but the one awaitDurable asks for
+		HoldJournal journal = HoldJournal.open(directory, new RecordingHandler(), SEGMENT_SIZE, 60000L);
+		long lsn = journal.appendReserve(7);
+		Thread.currentThread().interrupt();
+		assertFalse(journal.awaitDurable(lsn));
+		// the interrupt is kept for the caller
+		assertTrue(Thread.interrupted());
+		assertTrue(journal.awaitDurable(lsn));
+		assertEquals(lsn, journal.getDurableLsn());
+		journal.close();
+	}
+
+	@Test
+	public void testSegmentsRoll() throws IOException {
+		HoldJournal journal = HoldJournal.open(directory, new RecordingHandler(), SEGMENT_SIZE, 1L);
+		for (int i = 0; i < 10000; i++) {
+			journal.appendHold(i, 0, i, 1, 1, i);
+		}
+		journal.close();
+		try (Stream<Path> paths = Files.list(directory)) {
+			assertTrue(paths.count() > 1);
+		}
+
+		RecordingHandler handler = new RecordingHandler();
+		HoldJournal.open(directory, handler, SEGMENT_SIZE, 1L).close();
+		assertEquals(10000, handler.records.size());
+		assertEquals("10000 hold 9999 0 9999 1 1 9999", handler.records.get(9999));
+	}
+
+	@Test
+	public void testTornRecordIsNotReplayed() throws IOException {
+		HoldJournal journal = HoldJournal.open(directory, new RecordingHandler(), SEGMENT_SIZE, 1L);
+		journal.appendReserve(1);
+		journal.appendReserve(2);
+		journal.close();
+
+		// corrupt the last byte of the second record
+		try (Stream<Path> paths = Files.list(directory);
+				RandomAccessFile file = new RandomAccessFile(paths.findFirst().get().toFile(), "rw")) {
+			int recordSize = 8 + 8 + 1 + 8;
+			file.seek(2 * recordSize - 1);
+			file.write(0xFF);
+		}
+
+		RecordingHandler handler = new RecordingHandler();
+		journal = HoldJournal.open(directory, handler, SEGMENT_SIZE, 1L);
+		assertEquals(1, handler.records.size());
+		assertEquals(1, journal.getLastLsn());
+		journal.close();
+	}
+
+	private static class RecordingHandler implements HoldJournal.RecordHandler {
+
+		final List<String> records = new ArrayList<>();
+
+		@Override
+		public void customer(long lsn, int customerId, String emailId) {
+			records.add(lsn + " customer " + customerId + " " + emailId);
+		}
+
+		@Override
+		public void hold(long lsn, long seatHoldId, int rowId, int firstSeatId, int numSeats, int customerId,
+				long deadlineMillis) {
+			records.add(lsn + " hold " + seatHoldId + " " + rowId + " " + firstSeatId + " " + numSeats + " "
+					+ customerId + " " + deadlineMillis);
+		}
+
+		@Override
+		public void reserve(long lsn, long seatHoldId) {
+			records.add(lsn + " reserve " + seatHoldId);
+		}
+
+		@Override
+		public void expire(long lsn, long seatHoldId) {
+			records.add(lsn + " expire " + seatHoldId);
+		}
+
+		@Override
+		public void link(long lsn, long seatHoldId, long linkedId) {
+			records.add(lsn + " link " + seatHoldId + " " + linkedId);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.ticketing.service.journal;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.model.HoldTable;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.model.Venue;
+import com.ticketing.service.services.TicketServiceImpl;
+import com.ticketing.service.services.TimingWheelExpiryScheduler;
+
+import junit.framework.TestCase;
+
+public class VenueSnapshotTest extends TestCase {
+
+	Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("venue-snapshot");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	public void testSnapshotRoundTrip() {
+		TicketServiceImpl ticketService = new TicketServiceImpl(new Venue("event1", 3, 40), 60000L,
+				new TimingWheelExpiryScheduler());
+		SeatHold reserved = ticketService.findAndHoldSeats(35, "A1");
+		SeatHold held = ticketService.findAndHoldSeats(6, "B1");
+		ticketService.reserveSeats(reserved.getSeatHoldId(), "A1");
+
+		Path file = directory.resolve("event1.snapshot");
+		ticketService.takeSnapshot(file);
+		ticketService.getExpiryScheduler().shutdown();
+
+		VenueSnapshot snapshot = VenueSnapshot.load(file);
+		Venue venue = snapshot.getVenue();
+		assertEquals(0, snapshot.getJournalLsn());
+		assertEquals("event1", venue.getEventId());
+		assertEquals(79, venue.getAvailableSeats().intValue());
+		assertEquals(Status.RESERVED, venue.getRow(0).getStatus(34));
+		assertEquals(Status.AVAILABLE, venue.getRow(0).getStatus(35));
+		assertEquals(Status.ON_HOLD, venue.getRow(1).getStatus(5));
+		assertEquals(34, venue.getRow(1).getLongestFreeRun());
+		assertEquals(40, venue.getFreeRunIndex().getLongestFreeRun());
+
+		HoldTable.Cursor hold = new HoldTable.Cursor();
+		assertTrue(venue.getHolds().get(held.getSeatHoldId(), hold));
+		assertEquals(1, venue.getHolds().size());
+		assertEquals(6, hold.getNumSeats());
+		assertEquals(held.getDeadlineMillis(), hold.getDeadlineMillis());
+		assertEquals("b1", venue.getCustomers().getEmailId(hold.getHolderId()));
+		assertEquals(2, venue.getCustomers().getLastCustomerId());
+	}
+
+	@Test
+	public void testEveryHeldSeatHasItsHoldWithoutAJournal() throws InterruptedException {
+		TicketServiceImpl ticketService = new TicketServiceImpl(new Venue("event1", 400, 8), 60000L,
+				new TimingWheelExpiryScheduler());
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		Thread holder = new Thread(() -> {
+			for (int i = 0; isRunning.get() && ticketService.numSeatsAvailable() > 0; i++) {
+				ticketService.findAndHoldSeats(2, "customer" + i % 50);
+			}
+		});
+		holder.start();
+
+		Path file = directory.resolve("event1.snapshot");
+		try {
+			for (int i = 0; i < 20; i++) {
+				// no journal replays the holds taken while the rows are
+				// copied, each held seat must come with its hold
+				ticketService.takeSnapshot(file);
+				Venue venue = VenueSnapshot.load(file).getVenue();
+				int heldSeats = 0;
+				for (int rowId = 0; rowId < 400; rowId++) {
+					for (int seatId = 0; seatId < 8; seatId++) {
+						if (venue.getRow(rowId).getStatus(seatId) == Status.ON_HOLD) {
+							heldSeats++;
+						}
+					}
+				}
+				assertEquals(heldSeats, 2 * venue.getHolds().size());
+			}
+		} finally {
+			isRunning.set(false);
+			holder.join();
+			ticketService.getExpiryScheduler().shutdown();
+		}
+	}
+
+	@Test
+	public void testDamagedSnapshotIsRejected() throws IOException {
+		Path file = directory.resolve("event1.snapshot");
+		VenueSnapshot.write(new Venue("event1", 2, 8), 0L, file);
+
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+			raf.seek(40);
+			raf.write(raf.read() ^ 0xFF);
+		}
+
+		try {
+			VenueSnapshot.load(file);
+			fail("Expected the damaged snapshot to be rejected");
+		} catch (IllegalStateException ex) {
+			assertTrue(ex.getMessage().contains("damaged"));
+		}
+	}
+}
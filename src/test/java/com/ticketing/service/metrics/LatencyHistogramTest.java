@@ -0,0 +1,42 @@
+package com.ticketing.service.metrics;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class LatencyHistogramTest extends TestCase {
+
+	@Test
+	public void testBucketsAreContiguous() {
+		for (int i = 1; i < LatencyHistogram.BUCKET_COUNT; i++) {
+			long lowestValue = LatencyHistogram.highestValue(i - 1) + 1;
+			assertEquals(i, LatencyHistogram.bucketIndex(lowestValue));
+			assertEquals(i, LatencyHistogram.bucketIndex(LatencyHistogram.highestValue(i)));
+		}
+		assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+	}
+
+	@Test
+	public void testPercentiles() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long nanos = 1; nanos <= 10000; nanos++) {
+			histogram.record(nanos * 1000);
+		}
+		HistogramSnapshot snapshot = histogram.snapshot();
+
+		assertEquals(10000, snapshot.getCount());
+		assertEquals(5000500, snapshot.getMean());
+		assertEquals(10000000, snapshot.getMax());
+		// within the 1/32 precision of the buckets
+		assertEquals(5000000, snapshot.getP50(), 5000000 / 32);
+		assertEquals(9900000, snapshot.getP99(), 9900000 / 32);
+		assertTrue(snapshot.getP999() <= snapshot.getMax());
+	}
+
+	@Test
+	public void testEmptySnapshot() {
+		HistogramSnapshot snapshot = new LatencyHistogram().snapshot();
+		assertEquals(0, snapshot.getCount());
+		assertEquals(0, snapshot.getP99());
+	}
+}
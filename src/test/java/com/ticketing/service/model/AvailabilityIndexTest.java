@@ -0,0 +1,116 @@
+package com.ticketing.service.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class AvailabilityIndexTest extends TestCase {
+
+	Venue venue;
+
+	@Before
+	public void setUp() {
+		venue = new Venue("event1", 13, 20);
+	}
+
+	@Test
+	public void testRangesFollowTheRows() {
+		AvailabilityIndex index = venue.getAvailabilityIndex();
+		assertEquals(260L, index.getAvailableSeats(0, 12));
+
+		Random random = new Random(7L);
+		for (int i = 0; i < 500; i++) {
+			Row row = venue.getRow(random.nextInt(13));
+			int seatId = random.nextInt(20);
+			int count = 1 + random.nextInt(20 - seatId);
+			row.updateSeats(seatId, count, Status.values()[random.nextInt(3)], 1);
+
+			int firstRowId = random.nextInt(13);
+			int lastRowId = firstRowId + random.nextInt(13 - firstRowId);
+			long expected = 0;
+			for (int rowId = firstRowId; rowId <= lastRowId; rowId++) {
+				expected += venue.getRow(rowId).getAvailableSeatCount();
+			}
+			assertEquals(expected, index.getAvailableSeats(firstRowId, lastRowId));
+		}
+		try {
+			index.getAvailableSeats(5, 13);
+			fail("row 13 is not in the venue");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testRangeNeverSeesRowsOutsideIt() throws InterruptedException {
+		AvailabilityIndex index = venue.getAvailabilityIndex();
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		List<Thread> writers = new ArrayList<>();
+		// rows 0 to 4 and 9 to 12 fill up and empty again, rows 5 to 8 stay
+		for (int rowId : new int[] { 1, 2, 3, 4, 9, 11 }) {
+			Row row = venue.getRow(rowId);
+			Thread writer = new Thread(() -> {
+				for (int i = 0; isRunning.get(); i++) {
+					row.getLock().lock();
+					try {
+						row.updateSeats(0, 20, i % 2 == 0 ? Status.RESERVED : Status.AVAILABLE, 1);
+					} finally {
+						row.getLock().unlock();
+					}
+				}
+			});
+			writers.add(writer);
+			writer.start();
+		}
+
+		long deadline = System.currentTimeMillis() + 300L;
+		long wrong = -1;
+		while (System.currentTimeMillis() < deadline && wrong < 0) {
+			long available = index.getAvailableSeats(5, 8);
+			long venueAvailable = index.getAvailableSeats(0, 12);
+			if (available != 80L) {
+				wrong = available;
+			} else if (venueAvailable < 0) {
+				wrong = venueAvailable;
+			}
+		}
+		isRunning.set(false);
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertEquals(-1L, wrong);
+	}
+
+	@Test
+	public void testTiers() {
+		VenueLayout layout = new VenueLayout();
+		layout.addSection("floor", 0, 1, "premium");
+		layout.addSection("lower bowl", 2, 6, "standard");
+		layout.addSection("upper bowl", 9, 12, "standard");
+		try {
+			layout.addSection("club", 6, 8, "premium");
+			fail("the club overlaps the lower bowl");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		venue.getRow(3).updateSeats(0, 5, Status.ON_HOLD, 1);
+		venue.setLayout(layout);
+
+		AvailabilityIndex index = venue.getAvailabilityIndex();
+		assertEquals(40L, index.getTierAvailableSeats(0));
+		assertEquals(175L, index.getTierAvailableSeats(1));
+
+		venue.getRow(10).updateSeats(0, 20, Status.RESERVED, 1);
+		venue.getRow(3).updateSeats(0, 5, Status.AVAILABLE, 0);
+		// rows 7 and 8 are in no section
+		venue.getRow(7).updateSeats(0, 20, Status.RESERVED, 1);
+		assertEquals(40L, index.getTierAvailableSeats(0));
+		assertEquals(160L, index.getTierAvailableSeats(1));
+	}
+}
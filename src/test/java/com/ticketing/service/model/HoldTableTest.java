@@ -0,0 +1,82 @@
+package com.ticketing.service.model;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class HoldTableTest extends TestCase {
+
+	HoldTable holds;
+
+	HoldTable.Cursor cursor;
+
+	@Before
+	public void setUp() {
+		holds = new HoldTable();
+		cursor = new HoldTable.Cursor();
+	}
+
+	@Test
+	public void testPutGetAndRemove() {
+		holds.put(42, 3, 10, 4, 7, 123456789L);
+		assertEquals(1, holds.size());
+		assertFalse(holds.get(43, cursor));
+
+		assertTrue(holds.get(42, cursor));
+		assertEquals(42, cursor.getSeatHoldId());
+		assertEquals(3, cursor.getRowId());
+		assertEquals(10, cursor.getFirstSeatId());
+		assertEquals(4, cursor.getNumSeats());
+		assertEquals(7, cursor.getHolderId());
+		assertEquals(123456789L, cursor.getDeadlineMillis());
+		assertNull(cursor.getExpiry());
+
+		Object expiry = new Object();
+		assertTrue(holds.setExpiry(42, expiry));
+		assertFalse(holds.setExpiry(43, expiry));
+
+		assertTrue(holds.remove(42, cursor));
+		assertSame(expiry, cursor.getExpiry());
+		assertFalse(holds.remove(42, cursor));
+		assertFalse(holds.get(42, cursor));
+		assertEquals(0, holds.size());
+	}
+
+	@Test
+	public void testRandomOperationsMatchAMap() {
+		// enough holds to grow every stripe a few times, removals shifting
+		// entries back across the probe sequences
+		Random random = new Random(7);
+		Map<Long, Integer> expected = new HashMap<>();
+		for (int i = 0; i < 20000; i++) {
+			long seatHoldId = 1 + random.nextInt(5000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(expected.remove(seatHoldId) != null, holds.remove(seatHoldId, cursor));
+			} else {
+				expected.put(seatHoldId, i);
+				holds.put(seatHoldId, i, 0, 1, 1, i);
+			}
+		}
+
+		assertEquals(expected.size(), holds.size());
+		for (long seatHoldId = 1; seatHoldId <= 5000; seatHoldId++) {
+			Integer rowId = expected.get(seatHoldId);
+			assertEquals(rowId != null, holds.get(seatHoldId, cursor));
+			if (rowId != null) {
+				assertEquals(rowId.intValue(), cursor.getRowId());
+			}
+		}
+
+		int[] visited = new int[1];
+		holds.forEach((seatHoldId, rowId, firstSeatId, numSeats, holderId, deadlineMillis) -> {
+			assertEquals(expected.get(seatHoldId).intValue(), rowId);
+			visited[0]++;
+		});
+		assertEquals(expected.size(), visited[0]);
+	}
+}
@@ -0,0 +1,75 @@
+package com.ticketing.service.model;
+
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RankedBlockIndexTest extends TestCase {
+
+	Venue venue;
+
+	SeatQualityModel model;
+
+	@Before
+	public void setUp() {
+		venue = new Venue("event1", 6, 70);
+		model = new CenteredSeatQuality(2, 3.0, 1.0);
+		venue.setSeatQuality(model, 8);
+	}
+
+	@Test
+	public void testBestBlockIsCenterOfPreferredRow() {
+		RankedBlockIndex blockIndex = venue.getBlockIndex();
+		assertEquals(8, blockIndex.getMaxPartySize());
+		assertEquals(2L << 32 | 34, blockIndex.findBest(2));
+		assertEquals(2L << 32 | 33, blockIndex.findBest(4));
+
+		// the center taken, the seats next to it are better than another row
+		venue.getRow(2).updateSeats(34, 2, Status.ON_HOLD, 1);
+		assertEquals(2L << 32 | 32, blockIndex.findBest(2));
+		venue.getRow(2).updateSeats(0, 70, Status.RESERVED, 1);
+		assertEquals(1L << 32 | 34, blockIndex.findBest(2));
+
+		venue.getRow(2).updateSeats(0, 70, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+		assertEquals(2L << 32 | 34, blockIndex.findBest(2));
+		assertEquals(-1L, blockIndex.findBest(9));
+	}
+
+	@Test
+	public void testRandomChangesMatchAFullScan() {
+		// parties of every size come and go all over the venue, the index
+		// must keep giving the best free block a scan of every block gives
+		Random random = new Random(11);
+		for (int i = 0; i < 3000; i++) {
+			Row row = venue.getRow(random.nextInt(6));
+			int numSeats = 1 + random.nextInt(12);
+			int seatId = random.nextInt(70 - numSeats + 1);
+			if (random.nextInt(3) == 0) {
+				row.updateSeats(seatId, numSeats, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+			} else {
+				row.updateSeats(seatId, numSeats, Status.ON_HOLD, 1);
+			}
+
+			int partySize = 1 + random.nextInt(8);
+			assertEquals(scanForBest(partySize), venue.getBlockIndex().findBest(partySize));
+		}
+	}
+
+	private long scanForBest(int numSeats) {
+		long best = -1L;
+		double bestScore = Double.NEGATIVE_INFINITY;
+		for (Row row : venue.getVenueTickets()) {
+			for (int seatId = 0; seatId + numSeats <= row.getSeatCount(); seatId++) {
+				double score = model.score(row.getRowId(), seatId, numSeats, row.getSeatCount());
+				if (row.isAvailable(seatId, numSeats) && score > bestScore) {
+					best = (long) row.getRowId() << 32 | seatId;
+					bestScore = score;
+				}
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,232 @@
+package com.ticketing.service.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class RowTest extends TestCase {
+
+	Row row;
+
+	@Before
+	public void setUp() {
+		// spans three status words, the last one partly used
+		row = new Row(0, 70, new CustomerRegistry());
+	}
+
+	@Test
+	public void testNewRowIsAvailable() {
+		assertEquals(70, row.getSeats().size());
+		assertEquals(Status.AVAILABLE, row.getStatus(69));
+		assertTrue(row.isAvailable(0, 70));
+		assertFalse(row.isAvailable(60, 11));
+		assertEquals(0, row.findConsecutiveAvailable(70));
+		assertEquals(-1, row.findConsecutiveAvailable(71));
+	}
+
+	@Test
+	public void testUpdateSeatsAcrossWords() {
+		row.updateSeats(30, 5, Status.ON_HOLD, 7);
+
+		assertEquals(Status.AVAILABLE, row.getStatus(29));
+		assertEquals(Status.ON_HOLD, row.getStatus(30));
+		assertEquals(Status.ON_HOLD, row.getStatus(34));
+		assertEquals(Status.AVAILABLE, row.getStatus(35));
+		assertEquals(7, row.getHolderId(32));
+		assertFalse(row.isAvailable(28, 3));
+
+		row.updateSeats(31, 2, Status.RESERVED, 7);
+		assertEquals(Status.ON_HOLD, row.getStatus(30));
+		assertEquals(Status.RESERVED, row.getStatus(32));
+		assertEquals(Status.ON_HOLD, row.getStatus(33));
+	}
+
+	@Test
+	public void testFindConsecutiveAvailable() {
+		row.updateSeats(2, 1, Status.RESERVED, 1);
+		row.updateSeats(10, 25, Status.ON_HOLD, 2);
+
+		assertEquals(0, row.findConsecutiveAvailable(2));
+		assertEquals(3, row.findConsecutiveAvailable(3));
+		assertEquals(3, row.findConsecutiveAvailable(7));
+		// the run from seat 35 crosses into the third word
+		assertEquals(35, row.findConsecutiveAvailable(8));
+		assertEquals(35, row.findConsecutiveAvailable(35));
+		assertEquals(-1, row.findConsecutiveAvailable(36));
+
+		row.updateSeats(10, 25, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+		assertEquals(3, row.findConsecutiveAvailable(36));
+	}
+
+	@Test
+	public void testSeatViewReflectsCurrentState() {
+		CustomerRegistry customers = new CustomerRegistry();
+		Row namedRow = new Row(3, 4, customers);
+		namedRow.updateSeats(1, 2, Status.ON_HOLD, customers.intern("a@example.com"));
+
+		Seat seat = namedRow.getSeats().get(2);
+		assertEquals(2, seat.getSeatId());
+		assertEquals(Status.ON_HOLD, seat.getStatus());
+		assertEquals("a@example.com", seat.getEmailId());
+		assertNull(namedRow.getSeats().get(3).getEmailId());
+	}
+
+	@Test
+	public void testAvailableCountsFollowUpdates() {
+		LongAdder venueAvailableSeats = new LongAdder();
+		Row countedRow = new Row(0, 40, new CustomerRegistry(), venueAvailableSeats);
+		assertEquals(40, venueAvailableSeats.sum());
+
+		countedRow.updateSeats(30, 5, Status.ON_HOLD, 1);
+		countedRow.updateSeats(31, 2, Status.RESERVED, 1);
+		countedRow.updateSeats(28, 4, Status.ON_HOLD, 2);
+		assertEquals(33, countedRow.getAvailableSeatCount());
+		assertEquals(33, venueAvailableSeats.sum());
+
+		countedRow.updateSeats(28, 12, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+		assertEquals(40, countedRow.getAvailableSeatCount());
+		assertEquals(40, venueAvailableSeats.sum());
+	}
+
+	@Test
+	public void testLongestFreeRunFollowsUpdates() {
+		Row wideRow = new Row(0, 200, new CustomerRegistry());
+		assertEquals(200, wideRow.getLongestFreeRun());
+
+		wideRow.updateSeats(60, 10, Status.ON_HOLD, 1);
+		wideRow.updateSeats(150, 1, Status.RESERVED, 1);
+		assertEquals(80, wideRow.getLongestFreeRun());
+		assertEquals(0, wideRow.findConsecutiveAvailable(60));
+		assertEquals(70, wideRow.findConsecutiveAvailable(61));
+		assertEquals(70, wideRow.findConsecutiveAvailable(80));
+		assertEquals(-1, wideRow.findConsecutiveAvailable(81));
+
+		wideRow.updateSeats(60, 10, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+		assertEquals(150, wideRow.getLongestFreeRun());
+		assertEquals(0, wideRow.findConsecutiveAvailable(150));
+	}
+
+	@Test
+	public void testFreeRunWalkMatchesSeats() {
+		Random random = new Random(11L);
+		// with and without lanes past the last seat
+		for (int seatCount : new int[] { 1, 31, 64, 100 }) {
+			Row wideRow = new Row(0, seatCount, new CustomerRegistry());
+			for (int i = 0; i < 200; i++) {
+				int seatId = random.nextInt(seatCount);
+				int count = 1 + random.nextInt(Math.min(seatCount - seatId, 40));
+				wideRow.updateSeats(seatId, count, Status.values()[random.nextInt(3)], 1);
+
+				List<Integer> runs = new ArrayList<>();
+				for (int start = wideRow.nextAvailable(0); start >= 0;) {
+					int end = wideRow.freeRunEnd(start);
+					runs.add(start);
+					runs.add(end);
+					start = wideRow.nextAvailable(end);
+				}
+				List<Integer> expected = new ArrayList<>();
+				for (int seat = 0; seat < seatCount; seat++) {
+					boolean isFree = wideRow.getStatus(seat) == Status.AVAILABLE;
+					boolean wasFree = seat > 0 && wideRow.getStatus(seat - 1) == Status.AVAILABLE;
+					if (isFree != wasFree) {
+						expected.add(seat);
+					}
+				}
+				if (expected.size() % 2 == 1) {
+					expected.add(seatCount);
+				}
+				assertEquals(expected, runs);
+				int[] freeRuns = wideRow.getFreeRuns();
+				assertEquals(expected.size(), freeRuns.length);
+				for (int run = 0; run < freeRuns.length; run++) {
+					assertEquals(expected.get(run).intValue(), freeRuns[run]);
+				}
+			}
+			assertEquals(-1, wideRow.nextAvailable(seatCount));
+		}
+	}
+
+	@Test
+	public void testVenueRunIndexFindsFirstRow() {
+		CustomerRegistry customers = new CustomerRegistry();
+		List<Row> rows = new ArrayList<>();
+		for (int rowId = 0; rowId < 5; rowId++) {
+			rows.add(new Row(rowId, 10, customers));
+		}
+		VenueRunIndex index = new VenueRunIndex(rows);
+
+		rows.get(0).updateSeats(3, 1, Status.RESERVED, 1);
+		rows.get(1).updateSeats(5, 1, Status.RESERVED, 1);
+		rows.get(2).updateSeats(0, 10, Status.ON_HOLD, 1);
+
+		assertEquals(0, index.findFirstRow(6));
+		assertEquals(3, index.findFirstRow(7));
+		assertEquals(10, index.getLongestFreeRun());
+
+		rows.get(3).updateSeats(0, 1, Status.RESERVED, 1);
+		rows.get(4).updateSeats(9, 1, Status.RESERVED, 1);
+		assertEquals(9, index.getLongestFreeRun());
+		assertEquals(-1, index.findFirstRow(10));
+
+		rows.get(2).updateSeats(0, 10, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+		assertEquals(2, index.findFirstRow(10));
+	}
+
+	@Test
+	public void testVenueRunIndexUnderConcurrentRows() throws InterruptedException {
+		CustomerRegistry customers = new CustomerRegistry();
+		List<Row> rows = new ArrayList<>();
+		for (int rowId = 0; rowId < 37; rowId++) {
+			rows.add(new Row(rowId, 40, customers));
+		}
+		VenueRunIndex index = new VenueRunIndex(rows);
+
+		// every thread changes rows of its own, no two leaves share a writer
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < 4; t++) {
+			int first = t;
+			Thread thread = new Thread(() -> {
+				Random random = new Random(first);
+				for (int i = 0; i < 20000; i++) {
+					Row row = rows.get(first + 4 * random.nextInt((rows.size() - first + 3) / 4));
+					int seatId = random.nextInt(40);
+					int count = 1 + random.nextInt(40 - seatId);
+					row.getLock().lock();
+					try {
+						row.updateSeats(seatId, count, Status.values()[random.nextInt(3)], 1);
+					} finally {
+						row.getLock().unlock();
+					}
+					index.findFirstRow(1 + random.nextInt(40));
+				}
+			});
+			threads.add(thread);
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		int longest = 0;
+		for (Row row : rows) {
+			longest = Math.max(longest, row.getLongestFreeRun());
+		}
+		assertEquals(longest, index.getLongestFreeRun());
+		for (int numSeats = 1; numSeats <= 41; numSeats++) {
+			int expected = -1;
+			for (Row row : rows) {
+				if (row.getLongestFreeRun() >= numSeats) {
+					expected = row.getRowId();
+					break;
+				}
+			}
+			assertEquals("first row for " + numSeats, expected, index.findFirstRow(numSeats));
+		}
+	}
+}
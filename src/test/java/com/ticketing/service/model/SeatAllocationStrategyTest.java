@@ -0,0 +1,70 @@
+package com.ticketing.service.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class SeatAllocationStrategyTest extends TestCase {
+
+	Venue venue;
+
+	@Before
+	public void setUp() {
+		// row 0: a run of 3 at 0, a run of 4 at 4, a run of 2 at 9
+		// row 1: a run of 5 at 0, row 2 full, row 3 free
+		venue = new Venue("event1", 4, 12);
+		venue.getRow(0).updateSeats(3, 1, Status.RESERVED, 1);
+		venue.getRow(0).updateSeats(8, 1, Status.RESERVED, 1);
+		venue.getRow(0).updateSeats(11, 1, Status.RESERVED, 1);
+		venue.getRow(1).updateSeats(5, 7, Status.RESERVED, 1);
+		venue.getRow(2).updateSeats(0, 12, Status.RESERVED, 1);
+	}
+
+	@Test
+	public void testFreeRunsAndNextRow() {
+		int[] runs = venue.getRow(0).getFreeRuns();
+		assertEquals(6, runs.length);
+		assertEquals(4, runs[2]);
+		assertEquals(8, runs[3]);
+		assertEquals(0, venue.getRow(2).getFreeRuns().length);
+
+		VenueRunIndex runIndex = venue.getFreeRunIndex();
+		assertEquals(0, runIndex.findNextRow(4, 0));
+		assertEquals(1, runIndex.findNextRow(4, 1));
+		assertEquals(3, runIndex.findNextRow(4, 2));
+		assertEquals(3, runIndex.findNextRow(6, 0));
+		assertEquals(-1, runIndex.findNextRow(13, 0));
+		assertEquals(-1, runIndex.findNextRow(1, 4));
+	}
+
+	@Test
+	public void testStrategiesPlaceParties() {
+		SeatAllocationStrategy firstFit = new FirstFitStrategy();
+		SeatAllocationStrategy bestFit = new BestFitStrategy();
+		SeatAllocationStrategy orphanMinimizing = new OrphanMinimizingStrategy();
+
+		// the first row with the room, its first run found under the lock
+		assertEquals(0L << 32 | 0xFFFFFFFFL, firstFit.findCandidate(venue, 3));
+		assertEquals(1L << 32 | 0xFFFFFFFFL, firstFit.findCandidate(venue, 5));
+
+		// the shortest run which fits, exact fits first
+		assertEquals(0L << 32 | 9, bestFit.findCandidate(venue, 2));
+		assertEquals(0L << 32 | 4, bestFit.findCandidate(venue, 4));
+		assertEquals(3L << 32 | 0, bestFit.findCandidate(venue, 6));
+
+		// a party of 3 would leave one seat of the run of 4, the exact fit
+		// at 0 leaves nothing; a party of 2 fills the run at 9 exactly; a
+		// party of 1 passes over the run of 2 it would leave one seat of
+		assertEquals(0L << 32 | 0, orphanMinimizing.findCandidate(venue, 3));
+		assertEquals(0L << 32 | 9, orphanMinimizing.findCandidate(venue, 2));
+		venue.getRow(0).updateSeats(0, 3, Status.ON_HOLD, 1);
+		assertEquals(0L << 32 | 4, orphanMinimizing.findCandidate(venue, 1));
+		assertEquals(-1L, orphanMinimizing.findCandidate(venue, 13));
+
+		venue.getRow(0).updateSeats(9, 2, Status.RESERVED, 1);
+		// only runs of 4, 5 and 12 left: the party of 3 leaves one seat in
+		// all but the run of 5
+		assertEquals(1L << 32 | 0, orphanMinimizing.findCandidate(venue, 3));
+	}
+}
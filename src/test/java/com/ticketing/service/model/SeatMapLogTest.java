@@ -0,0 +1,134 @@
+package com.ticketing.service.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class SeatMapLogTest extends TestCase {
+
+	List<Row> rows;
+
+	SeatMapLog seatMapLog;
+
+	@Before
+	public void setUp() {
+		CustomerRegistry customers = new CustomerRegistry();
+		rows = new ArrayList<>();
+		for (int rowId = 0; rowId < 3; rowId++) {
+			// spans two status words
+			rows.add(new Row(rowId, 40, customers));
+		}
+		seatMapLog = new SeatMapLog(rows, 8);
+	}
+
+	@Test
+	public void testSeatMapFollowsChanges() {
+		SeatMap empty = seatMapLog.getSeatMap();
+		assertEquals(0L, empty.getVersion());
+		assertEquals(40, empty.getAvailableSeatCount(2));
+
+		rows.get(1).updateSeats(30, 5, Status.ON_HOLD, 1);
+		rows.get(2).updateSeats(0, 3, Status.RESERVED, 2);
+		SeatMap seatMap = seatMapLog.getSeatMap();
+		assertEquals(2L, seatMap.getVersion());
+		assertEquals(Status.AVAILABLE, seatMap.getStatus(1, 29));
+		assertEquals(Status.ON_HOLD, seatMap.getStatus(1, 34));
+		assertEquals(Status.RESERVED, seatMap.getStatus(2, 2));
+		assertEquals(35, seatMap.getAvailableSeatCount(1));
+		// the maps already built don't change
+		assertEquals(Status.AVAILABLE, empty.getStatus(1, 34));
+		// nothing changed since
+		assertSame(seatMap, seatMapLog.getSeatMap());
+		assertTrue(seatMap.toString().startsWith("A A A"));
+	}
+
+	@Test
+	public void testChangesSinceVersion() {
+		rows.get(0).updateSeats(0, 4, Status.ON_HOLD, 1);
+		SeatMap seatMap = seatMapLog.getSeatMap();
+		rows.get(0).updateSeats(0, 4, Status.RESERVED, 1);
+		rows.get(2).updateSeats(10, 25, Status.ON_HOLD, 2);
+
+		SeatMapDelta delta = seatMapLog.getChanges(seatMap.getVersion());
+		assertEquals(2, delta.size());
+		assertEquals(2, delta.getRowId(1));
+		assertEquals(10, delta.getSeatId(1));
+		assertEquals(25, delta.getCount(1));
+		assertEquals(Status.ON_HOLD, delta.getStatus(1));
+		assertSeatMap(delta.applyTo(seatMap));
+		try {
+			delta.applyTo(seatMapLog.getSeatMap());
+			fail("the changes don't follow the latest map");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testLappedClientFetchesWholeMap() {
+		SeatMap seatMap = seatMapLog.getSeatMap();
+		for (int i = 0; i < 20; i++) {
+			rows.get(i % 3).updateSeats(i, 2, i % 2 == 0 ? Status.ON_HOLD : Status.RESERVED, 1);
+		}
+		// the ring keeps the last 8 changes only
+		assertNull(seatMapLog.getChanges(seatMap.getVersion()));
+		SeatMap latest = seatMapLog.getSeatMap();
+		assertEquals(20L, latest.getVersion());
+		assertSeatMap(latest);
+	}
+
+	@Test
+	public void testSeatMapsNeverShowPartOfAChange() throws InterruptedException {
+		AtomicBoolean isRunning = new AtomicBoolean(true);
+		List<Thread> writers = new ArrayList<>();
+		for (Row row : rows) {
+			Thread writer = new Thread(() -> {
+				for (int i = 0; isRunning.get(); i++) {
+					row.getLock().lock();
+					try {
+						// across the boundary of the two words
+						row.updateSeats(25, 10, i % 2 == 0 ? Status.ON_HOLD : Status.AVAILABLE, 1);
+					} finally {
+						row.getLock().unlock();
+					}
+				}
+			});
+			writers.add(writer);
+			writer.start();
+		}
+
+		AtomicReference<String> torn = new AtomicReference<>();
+		long deadline = System.currentTimeMillis() + 500L;
+		while (System.currentTimeMillis() < deadline) {
+			SeatMap seatMap = seatMapLog.getSeatMap();
+			for (int rowId = 0; rowId < rows.size(); rowId++) {
+				int available = seatMap.getAvailableSeatCount(rowId);
+				if (available != 30 && available != 40) {
+					torn.set("row " + rowId + " has " + available + " seats available at version "
+							+ seatMap.getVersion());
+				}
+			}
+		}
+		isRunning.set(false);
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		assertNull(torn.get(), torn.get());
+		assertSeatMap(seatMapLog.getSeatMap());
+	}
+
+	private void assertSeatMap(SeatMap seatMap) {
+		for (Row row : rows) {
+			for (int seatId = 0; seatId < row.getSeatCount(); seatId++) {
+				assertEquals("seat " + seatId + " of row " + row.getRowId(), row.getStatus(seatId),
+						seatMap.getStatus(row.getRowId(), seatId));
+			}
+		}
+	}
+}
@@ -0,0 +1,53 @@
+package com.ticketing.service.model;
+
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class SplitBlockFinderTest extends TestCase {
+
+	Venue venue;
+
+	@Before
+	public void setUp() {
+		// no row has more than 3 free seats: rows 0 and 1 have them
+		// staggered, rows 2 and 3 right above each other
+		venue = new Venue("event1", 4, 10);
+		leaveFree(0, 0, 3);
+		leaveFree(1, 2, 3);
+		leaveFree(2, 5, 3);
+		leaveFree(3, 5, 3);
+	}
+
+	@Test
+	public void testAlignedBlockIsTightest() {
+		int[][] parts = new SplitBlockFinder(venue.getVenueTickets(), 2).find(6);
+		assertTrue(Arrays.deepEquals(new int[][] { { 2, 5, 3 }, { 3, 5, 3 } }, parts));
+	}
+
+	@Test
+	public void testStaggeredBlock() {
+		venue.getRow(3).updateSeats(5, 1, Status.ON_HOLD, 1);
+
+		int[][] parts = new SplitBlockFinder(venue.getVenueTickets(), 2).find(6);
+		assertTrue(Arrays.deepEquals(new int[][] { { 0, 0, 3 }, { 1, 2, 3 } }, parts));
+	}
+
+	@Test
+	public void testPartyTooLargeForTheRows() {
+		// 4 and 3 seats over two rows, no row has 4 free seats
+		assertNull(new SplitBlockFinder(venue.getVenueTickets(), 2).find(7));
+		// 3, 2 and 2 seats over three rows, rows 1 to 3 have room
+		int[][] parts = new SplitBlockFinder(venue.getVenueTickets(), 3).find(7);
+		assertTrue(Arrays.deepEquals(new int[][] { { 1, 2, 3 }, { 2, 5, 2 }, { 3, 5, 2 } }, parts));
+	}
+
+	private void leaveFree(int rowId, int firstSeatId, int numSeats) {
+		Row row = venue.getRow(rowId);
+		row.updateSeats(0, row.getSeatCount(), Status.RESERVED, 1);
+		row.updateSeats(firstSeatId, numSeats, Status.AVAILABLE, CustomerRegistry.NO_CUSTOMER);
+	}
+}
@@ -0,0 +1,165 @@
+package com.ticketing.service.services;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+
+import junit.framework.TestCase;
+
+public class ExecutorAsyncTicketServiceTest extends TestCase {
+
+	TicketServiceImpl ticketService;
+
+	ExecutorService executor;
+
+	ExecutorAsyncTicketService asyncService;
+
+	private static final Long onHoldTimeOut = 5000L;
+
+	@Before
+	public void setUp() {
+		ticketService = new TicketServiceImpl(4, 4, onHoldTimeOut, new TimingWheelExpiryScheduler());
+		executor = Executors.newSingleThreadExecutor();
+		asyncService = new ExecutorAsyncTicketService(ticketService, executor);
+	}
+
+	@After
+	public void tearDown() {
+		executor.shutdownNow();
+		ticketService.getExpiryScheduler().shutdown();
+	}
+
+	@Test
+	public void testHoldAndReserveSeats() throws Exception {
+		SeatHold seatHold = asyncService.findAndHoldSeatsAsync(3, "customerEmail", 5, TimeUnit.SECONDS).get();
+		assertFalse(seatHold.isError());
+		assertEquals(Integer.valueOf(13), asyncService.numSeatsAvailableAsync().get());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+				asyncService.reserveSeatsAsync(seatHold.getSeatHoldId(), "customerEmail").get());
+		assertEquals(13, ticketService.numSeatsAvailable());
+	}
+
+	@Test
+	public void testTimedOutAndCancelledCallsNeverRun() throws Exception {
+		// the only thread of the executor is kept busy, so the calls behind
+		// it stay queued
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+
+		CompletableFuture<SeatHold> timedOut = asyncService.findAndHoldSeatsAsync(2, "late", 50,
+				TimeUnit.MILLISECONDS);
+		CompletableFuture<SeatHold> cancelled = asyncService.findAndHoldSeatsAsync(2, "cancelled");
+		assertTrue(cancelled.cancel(true));
+		try {
+			timedOut.get();
+			fail("the hold should have timed out");
+		} catch (ExecutionException e) {
+			assertTrue(e.getCause() instanceof TimeoutException);
+		}
+
+		release.countDown();
+		SeatHold seatHold = asyncService.findAndHoldSeatsAsync(1, "onTime").get();
+		assertFalse(seatHold.isError());
+		// only the last hold took seats
+		assertEquals(15, ticketService.numSeatsAvailable());
+		assertTrue(ticketService.getSeatHolds("late").isEmpty());
+		assertTrue(ticketService.getSeatHolds("cancelled").isEmpty());
+	}
+
+	@Test
+	public void testHoldTakenAfterItsFutureTimedOutIsReleased() throws Exception {
+		CountDownLatch holding = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		// returns the hold only once the caller gave up on it
+		TicketService slowService = new TicketService() {
+
+			@Override
+			public int numSeatsAvailable() {
+				return ticketService.numSeatsAvailable();
+			}
+
+			@Override
+			public int numSeatsAvailable(int rowId) {
+				return ticketService.numSeatsAvailable(rowId);
+			}
+
+			@Override
+			public SeatHold findAndHoldSeats(int numSeats, String customerEmail) {
+				SeatHold seatHold = ticketService.findAndHoldSeats(numSeats, customerEmail);
+				holding.countDown();
+				try {
+					proceed.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return seatHold;
+			}
+
+			@Override
+			public String reserveSeats(long seatHoldId, String customerEmail) {
+				return ticketService.reserveSeats(seatHoldId, customerEmail);
+			}
+
+			@Override
+			public int releaseHold(long seatHoldId, String customerEmail) {
+				return ticketService.releaseHold(seatHoldId, customerEmail);
+			}
+		};
+		asyncService = new ExecutorAsyncTicketService(slowService, executor);
+
+		CompletableFuture<SeatHold> late = asyncService.findAndHoldSeatsAsync(3, "late");
+		holding.await();
+		assertEquals(13, ticketService.numSeatsAvailable());
+		assertTrue(late.cancel(false));
+		proceed.countDown();
+
+		// queued on the same thread, behind the release of the late hold
+		asyncService.reserveSeatsAsync(0L, "nobody").get();
+		assertEquals(16, ticketService.numSeatsAvailable());
+		assertTrue(ticketService.getSeatHolds("late").isEmpty());
+		assertEquals(1, ticketService.getMetrics().getHoldsReleased());
+	}
+
+	@Test
+	public void testCreateAsync() throws Exception {
+		HoldExpiryScheduler expiryScheduler = new TimingWheelExpiryScheduler();
+		AsyncTicketService sequenced = TicketServiceFactory.createAsync(Engine.SEQUENCED, 4, 4, onHoldTimeOut,
+				expiryScheduler);
+		AsyncTicketService rowLocking = TicketServiceFactory.createAsync(Engine.ROW_LOCKING, 4, 4, onHoldTimeOut,
+				expiryScheduler);
+		try {
+			// the sequenced engine has futures of its own
+			assertTrue(sequenced instanceof SequencedTicketService);
+			assertTrue(rowLocking instanceof ExecutorAsyncTicketService);
+			for (AsyncTicketService service : new AsyncTicketService[] { sequenced, rowLocking }) {
+				SeatHold seatHold = service.findAndHoldSeatsAsync(4, "customerEmail", 5, TimeUnit.SECONDS).get();
+				assertFalse(seatHold.isError());
+				assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+						service.reserveSeatsAsync(seatHold.getSeatHoldId(), "customerEmail", 5, TimeUnit.SECONDS)
+								.get());
+				assertEquals(Integer.valueOf(12), service.numSeatsAvailableAsync().get());
+			}
+		} finally {
+			((SequencedTicketService) sequenced).shutdown();
+			((ExecutorAsyncTicketService) rowLocking).shutdown();
+			expiryScheduler.shutdown();
+		}
+	}
+}
@@ -0,0 +1,207 @@
+package com.ticketing.service.services;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.journal.VenueSnapshot;
+import com.ticketing.service.model.HoldIdAllocator;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.model.Venue;
+
+import junit.framework.TestCase;
+
+public class JournalRecoveryTest extends TestCase {
+
+	private static final Long onHoldTimeOut = 1000L;
+
+	Path directory;
+
+	@Before
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("hold-journal");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(directory)) {
+			for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+				Files.delete(path);
+			}
+		}
+	}
+
+	@Test
+	public void testReservationsAndHoldsSurviveRestart() {
+		TicketServiceImpl ticketService = recover();
+		SeatHold reserved = ticketService.findAndHoldSeats(3, "A1");
+		SeatHold held = ticketService.findAndHoldSeats(4, "B1");
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, ticketService.reserveSeats(reserved.getSeatHoldId(), "A1"));
+		crash(ticketService);
+
+		ticketService = recover();
+		assertEquals(Status.RESERVED, ticketService.getVenue().getRow(0).getStatus(0));
+		assertEquals(Status.ON_HOLD, ticketService.getVenue().getRow(1).getStatus(0));
+		assertEquals(9, ticketService.numSeatsAvailable());
+
+		// the ids handed out after the restart are of the next generation
+		assertEquals(0, HoldIdAllocator.generationOf(held.getSeatHoldId()));
+		assertEquals(1, ticketService.getVenue().getHoldIds().getGeneration());
+
+		// the live hold can still be reserved, but only by its customer
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_EMAIL_MISMATCH,
+				ticketService.reserveSeats(held.getSeatHoldId(), "A1"));
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, ticketService.reserveSeats(held.getSeatHoldId(), "B1"));
+		crash(ticketService);
+
+		ticketService = recover();
+		assertEquals(Status.RESERVED, ticketService.getVenue().getRow(1).getStatus(3));
+		assertEquals(9, ticketService.numSeatsAvailable());
+		crash(ticketService);
+	}
+
+	@Test
+	public void testHoldsExpireWhileDown() throws InterruptedException {
+		TicketServiceImpl ticketService = recover();
+		SeatHold seatHold = ticketService.findAndHoldSeats(2, "A1");
+		crash(ticketService);
+
+		Thread.sleep(onHoldTimeOut + 500);
+
+		ticketService = recover();
+		assertEquals(Status.AVAILABLE, ticketService.getVenue().getRow(0).getStatus(0));
+		assertEquals(16, ticketService.numSeatsAvailable());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "A1"));
+		crash(ticketService);
+
+		// the customer, the hold and its expiry
+		ticketService = recover();
+		assertEquals(3, ticketService.getJournal().getLastLsn());
+		assertEquals(16, ticketService.numSeatsAvailable());
+		crash(ticketService);
+	}
+
+	@Test
+	public void testRecoveryFromSnapshotAndJournalTail() throws IOException {
+		TicketServiceImpl ticketService = TicketServiceImpl.recover(new Venue("event1", 4, 4), onHoldTimeOut,
+				new TimingWheelExpiryScheduler(), directory.resolve("journal"));
+		SeatHold reserved = ticketService.findAndHoldSeats(3, "A1");
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, ticketService.reserveSeats(reserved.getSeatHoldId(), "A1"));
+		SeatHold held = ticketService.findAndHoldSeats(4, "B1");
+
+		Path snapshotFile = directory.resolve("event1.snapshot");
+		ticketService.takeSnapshot(snapshotFile);
+
+		// the tail: a new customer, and the hold taken before the snapshot
+		// reserved after it
+		ticketService.findAndHoldSeats(2, "C1");
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, ticketService.reserveSeats(held.getSeatHoldId(), "B1"));
+		crash(ticketService);
+
+		ticketService = TicketServiceImpl.recover(snapshotFile, onHoldTimeOut, new TimingWheelExpiryScheduler(),
+				directory.resolve("journal"));
+		assertEquals(Status.RESERVED, ticketService.getVenue().getRow(0).getStatus(2));
+		assertEquals(Status.RESERVED, ticketService.getVenue().getRow(1).getStatus(3));
+		assertEquals(Status.ON_HOLD, ticketService.getVenue().getRow(2).getStatus(1));
+		assertEquals(7, ticketService.numSeatsAvailable());
+		assertEquals(1, ticketService.getVenue().getHolds().size());
+		assertEquals("c1", ticketService.getVenue().getRow(2).getSeats().get(0).getEmailId());
+		assertEquals(1, ticketService.getVenue().getHoldIds().getGeneration());
+		// the seat map has the seats the snapshot restored
+		assertEquals(Status.RESERVED, ticketService.getSeatMap().getStatus(1, 3));
+		assertEquals(Status.ON_HOLD, ticketService.getSeatMap().getStatus(2, 1));
+
+		// the journal written before the snapshot is gone once another one is
+		// taken, the segment being written at the time of the first is kept
+		ticketService.takeSnapshot(snapshotFile);
+		try (Stream<Path> segments = Files.list(directory.resolve("journal"))) {
+			assertEquals(1, segments.count());
+		}
+		crash(ticketService);
+	}
+
+	@Test
+	public void testHoldInSnapshotAndJournalTailIsCountedOnce() throws InterruptedException {
+		Path journalDirectory = directory.resolve("journal");
+		Path snapshotFile = directory.resolve("event1.snapshot");
+		TicketServiceImpl ticketService = TicketServiceImpl.recover(new Venue("event1", 4, 4), onHoldTimeOut,
+				new TimingWheelExpiryScheduler(), journalDirectory);
+		// the hold is taken after the snapshot read the lsn, but before it
+		// went through the hold table
+		long lsn = ticketService.getJournal().getLastLsn();
+		ticketService.findAndHoldSeats(3, "A1");
+		VenueSnapshot.write(ticketService.getVenue(), lsn, snapshotFile);
+		crash(ticketService);
+
+		ticketService = TicketServiceImpl.recover(snapshotFile, onHoldTimeOut, new TimingWheelExpiryScheduler(),
+				journalDirectory);
+		Venue venue = ticketService.getVenue();
+		int customerId = venue.getCustomers().lookup("A1");
+		assertEquals(3, venue.getCustomerHolds().getSeatsOnHold(customerId));
+		assertEquals(1, venue.getCustomerHolds().getSeatHoldIds(customerId).length);
+
+		Thread.sleep(onHoldTimeOut + 500);
+		assertEquals(0, venue.getCustomerHolds().getSeatsOnHold(customerId));
+		assertTrue(ticketService.getSeatHolds("A1").isEmpty());
+		crash(ticketService);
+	}
+
+	@Test
+	public void testSplitHoldSurvivesRestart() {
+		Path journalDirectory = directory.resolve("journal");
+		Path snapshotFile = directory.resolve("event1.snapshot");
+		TicketServiceImpl ticketService = TicketServiceImpl.recover(new Venue("event1", 4, 4), onHoldTimeOut,
+				new TimingWheelExpiryScheduler(), journalDirectory);
+		for (String customerEmail : new String[] { "A1", "B1", "C1", "D1" }) {
+			ticketService.findAndHoldSeats(3, customerEmail);
+		}
+		ticketService.setMaxSplitRows(2);
+		SeatHold split = ticketService.findAndHoldSeats(2, "E1");
+		assertEquals(Status.ON_HOLD, ticketService.getVenue().getRow(1).getStatus(3));
+		crash(ticketService);
+
+		// the parts are linked again by the journal
+		ticketService = TicketServiceImpl.recover(new Venue("event1", 4, 4), onHoldTimeOut,
+				new TimingWheelExpiryScheduler(), journalDirectory);
+		assertEquals(1, ticketService.getSeatHolds("E1").size());
+		ticketService.takeSnapshot(snapshotFile);
+		crash(ticketService);
+
+		// and by the snapshot, the reservation of every part making it to the
+		// journal tail
+		ticketService = TicketServiceImpl.recover(snapshotFile, onHoldTimeOut, new TimingWheelExpiryScheduler(),
+				journalDirectory);
+		assertEquals(2, ticketService.getSeatHolds("E1").get(0).getTotalSeats());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, ticketService.reserveSeats(split.getSeatHoldId(), "E1"));
+		crash(ticketService);
+
+		ticketService = TicketServiceImpl.recover(snapshotFile, onHoldTimeOut, new TimingWheelExpiryScheduler(),
+				journalDirectory);
+		assertEquals(Status.RESERVED, ticketService.getVenue().getRow(0).getStatus(3));
+		assertEquals(Status.RESERVED, ticketService.getVenue().getRow(1).getStatus(3));
+		assertTrue(ticketService.getSeatHolds("E1").isEmpty());
+		crash(ticketService);
+	}
+
+	private TicketServiceImpl recover() {
+		return TicketServiceImpl.recover(new Venue("event1", 4, 4), onHoldTimeOut, new TimingWheelExpiryScheduler(),
+				directory);
+	}
+
+	/**
+	 * Stop the service without releasing its holds, the way a process dies
+	 */
+	private void crash(TicketServiceImpl ticketService) {
+		ticketService.getExpiryScheduler().shutdown();
+		ticketService.getJournal().close();
+	}
+}
@@ -0,0 +1,114 @@
+package com.ticketing.service.services;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.model.Seat;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+
+import junit.framework.TestCase;
+
+public class LockFreeTicketServiceImplTest extends TestCase {
+
+	LockFreeTicketServiceImpl ticketService;
+
+	private static final Long onHoldTimeOut = 2000L;
+	private static final Long threadSleepTime = 3000L;
+
+	@Before
+	public void setUp() {
+		ticketService = (LockFreeTicketServiceImpl) TicketServiceFactory.create(Engine.LOCK_FREE, 4, 4, onHoldTimeOut);
+	}
+
+	@Test
+	public void testFindAndHoldSeatsErrors() {
+		SeatHold seatHold = ticketService.findAndHoldSeats(20, "customerEmail");
+		assertTrue(seatHold.isError());
+		assertEquals(TicketServiceImpl.TICKETS_ERROR_TOO_MANY_REQUESTED.replace("{0}", "20"), seatHold.getErrorMessage());
+
+		seatHold = ticketService.findAndHoldSeats(5, "customerEmail");
+		assertTrue(seatHold.isError());
+		assertEquals(TicketServiceImpl.TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE.replace("{0}", "5"),
+				seatHold.getErrorMessage());
+	}
+
+	@Test
+	public void testHoldAndReserveSeats() {
+		SeatHold seatHold = ticketService.findAndHoldSeats(3, "customerEmail");
+		assertFalse(seatHold.isError());
+		assertEquals(Status.ON_HOLD, ticketService.getSeatStatus(0, 2));
+		assertEquals(13, ticketService.numSeatsAvailable());
+
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_EMAIL_MISMATCH,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "someOtherEmailId"));
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+
+		assertEquals(Status.RESERVED, ticketService.getSeatStatus(0, 0));
+		assertEquals(Status.RESERVED, ticketService.getSeatStatus(0, 2));
+		assertEquals(Status.AVAILABLE, ticketService.getSeatStatus(0, 3));
+		assertEquals(13, ticketService.numSeatsAvailable());
+	}
+
+	@Test
+	public void testHoldExpiresWhenNotReserved() {
+		SeatHold seatHold = ticketService.findAndHoldSeats(3, "customerEmail");
+		ticketService.findAndHoldSeats(1, "B1");
+		assertEquals(12, ticketService.numSeatsAvailable());
+
+		try {
+			Thread.sleep(threadSleepTime);
+		} catch (InterruptedException ex) {
+			Thread.currentThread().interrupt();
+		}
+
+		assertEquals(Status.AVAILABLE, ticketService.getSeatStatus(0, 0));
+		assertEquals(Status.AVAILABLE, ticketService.getSeatStatus(0, 3));
+		assertEquals(16, ticketService.numSeatsAvailable());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+	}
+
+	@Test
+	public void testContendedHoldsOnFrontRows() throws InterruptedException {
+		ticketService = (LockFreeTicketServiceImpl) TicketServiceFactory.create(Engine.LOCK_FREE, 4, 70,
+				onHoldTimeOut);
+		ConcurrentLinkedQueue<SeatHold> seatHolds = new ConcurrentLinkedQueue<>();
+
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			String customerEmail = "customer" + i;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 35; j++) {
+					SeatHold seatHold = ticketService.findAndHoldSeats(1, customerEmail);
+					seatHolds.add(seatHold);
+					if (j % 2 == 0) {
+						ticketService.reserveSeats(seatHold.getSeatHoldId(), customerEmail);
+					}
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Set<Integer> heldSeats = new HashSet<>();
+		for (SeatHold seatHold : seatHolds) {
+			assertFalse(seatHold.isError());
+			for (Seat seat : seatHold.getSeats()) {
+				assertTrue(heldSeats.add(seatHold.getRowId() * 70 + seat.getSeatId()));
+			}
+		}
+		assertEquals(280, heldSeats.size());
+		assertEquals(0, ticketService.numSeatsAvailable());
+	}
+}
@@ -0,0 +1,279 @@
+package com.ticketing.service.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.model.HoldRequest;
+import com.ticketing.service.model.Seat;
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.services.TicketServiceFactory.Engine;
+
+import junit.framework.TestCase;
+
+public class SequencedTicketServiceTest extends TestCase {
+
+	SequencedTicketService ticketService;
+
+	private static final Long onHoldTimeOut = 500L;
+	private static final Long threadSleepTime = 1500L;
+
+	@Before
+	public void setUp() {
+		ticketService = (SequencedTicketService) TicketServiceFactory.create(Engine.SEQUENCED, 4, 4, onHoldTimeOut);
+	}
+
+	@After
+	public void tearDown() {
+		ticketService.shutdown();
+	}
+
+	@Test
+	public void testHoldAndReserveSeats() {
+		SeatHold seatHold = ticketService.findAndHoldSeats(20, "customerEmail");
+		assertEquals(TicketServiceImpl.TICKETS_ERROR_TOO_MANY_REQUESTED.replace("{0}", "20"), seatHold.getErrorMessage());
+		seatHold = ticketService.findAndHoldSeats(5, "customerEmail");
+		assertEquals(TicketServiceImpl.TICKET_ERROR_CONSECUTIVE_NOT_AVAILABLE.replace("{0}", "5"),
+				seatHold.getErrorMessage());
+
+		seatHold = ticketService.findAndHoldSeats(3, "customerEmail");
+		assertFalse(seatHold.isError());
+		assertEquals(Status.ON_HOLD, ticketService.getSeatStatus(0, 2));
+		assertEquals(13, ticketService.numSeatsAvailable());
+
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_EMAIL_MISMATCH,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "someOtherEmailId"));
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+		assertEquals(Status.RESERVED, ticketService.getSeatStatus(0, 2));
+		assertEquals(1, ticketService.numSeatsAvailable(0));
+	}
+
+	@Test
+	public void testHoldExpiresThroughTheRing() throws InterruptedException {
+		SeatHold seatHold = ticketService.findAndHoldSeats(3, "customerEmail");
+		List<SeatHold> batch = ticketService.findAndHoldSeatsBatch(
+				Arrays.asList(new HoldRequest(4, "B1"), new HoldRequest(4, "C1")));
+		assertEquals(1, batch.get(0).getRowId());
+		assertEquals(2, batch.get(1).getRowId());
+		assertEquals(5, ticketService.numSeatsAvailable());
+		ticketService.reserveSeats(batch.get(1).getSeatHoldId(), "C1");
+
+		Thread.sleep(threadSleepTime);
+
+		assertEquals(Status.AVAILABLE, ticketService.getSeatStatus(0, 0));
+		assertEquals(Status.RESERVED, ticketService.getSeatStatus(2, 0));
+		assertEquals(12, ticketService.numSeatsAvailable());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+	}
+
+	@Test
+	public void testContendedHoldsThroughASmallRing() throws InterruptedException {
+		// a ring of 8 slots for 8 threads, callers keep waiting for the
+		// writer to free slots
+		ticketService.shutdown();
+		ticketService = new SequencedTicketService(4, 70, 60000L, new TimingWheelExpiryScheduler(), 8);
+		ConcurrentLinkedQueue<SeatHold> seatHolds = new ConcurrentLinkedQueue<>();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 8; i++) {
+			String customerEmail = "customer" + i;
+			Thread thread = new Thread(() -> {
+				for (int j = 0; j < 35; j++) {
+					SeatHold seatHold = ticketService.findAndHoldSeatsAsync(1, customerEmail).join();
+					seatHolds.add(seatHold);
+					if (j % 2 == 0) {
+						ticketService.reserveSeats(seatHold.getSeatHoldId(), customerEmail);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		Set<Integer> heldSeats = new HashSet<>();
+		for (SeatHold seatHold : seatHolds) {
+			assertFalse(seatHold.isError());
+			for (Seat seat : seatHold.getSeats()) {
+				assertTrue(heldSeats.add(seatHold.getRowId() * 70 + seat.getSeatId()));
+			}
+		}
+		assertEquals(280, heldSeats.size());
+		assertEquals(0, ticketService.numSeatsAvailable());
+		assertEquals(280 - 8 * 18, ticketService.getMetrics().getLiveHolds());
+	}
+
+	@Test
+	public void testInvalidCommandsAreRefusedByTheCaller() {
+		try {
+			ticketService.findAndHoldSeatsAsync(2, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("customerEmail is required", e.getMessage());
+		}
+		try {
+			ticketService.findAndHoldSeatsAsync(0, "customerEmail");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("numSeats must be positive, was 0", e.getMessage());
+		}
+		try {
+			ticketService.reserveSeatsAsync(1L, null);
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertEquals("customerEmail is required", e.getMessage());
+		}
+		assertFalse(ticketService.findAndHoldSeats(2, "customerEmail").isError());
+	}
+
+	@Test
+	public void testFailedCommandDoesNotStopTheWriter() {
+		ticketService.shutdown();
+		AtomicBoolean isFailing = new AtomicBoolean(true);
+		HookedExpiryScheduler scheduler = new HookedExpiryScheduler(() -> {
+			if (isFailing.getAndSet(false)) {
+				throw new IllegalStateException("scheduler down");
+			}
+		});
+		ticketService = new SequencedTicketService(4, 4, 60000L, scheduler);
+
+		try {
+			ticketService.findAndHoldSeats(2, "customerEmail");
+			fail();
+		} catch (CompletionException e) {
+			assertEquals("scheduler down", e.getCause().getMessage());
+		}
+		SeatHold seatHold = ticketService.findAndHoldSeats(2, "customerEmail");
+		assertFalse(seatHold.isError());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+				ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testHoldTakenAfterItsFutureTimedOutIsReleased() throws InterruptedException {
+		ticketService.shutdown();
+		CountDownLatch holding = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		HookedExpiryScheduler scheduler = new HookedExpiryScheduler(() -> {
+			// the writer has taken the seats of the first hold and waits here
+			if (holding.getCount() > 0) {
+				holding.countDown();
+				try {
+					proceed.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+		ticketService = new SequencedTicketService(4, 4, 60000L, scheduler);
+
+		CompletableFuture<SeatHold> late = ticketService.findAndHoldSeatsAsync(3, "late");
+		holding.await();
+		assertTrue(late.cancel(false));
+		proceed.countDown();
+
+		// applied after the writer completed the late hold
+		SeatHold seatHold = ticketService.findAndHoldSeats(2, "onTime");
+		assertEquals(0, seatHold.getSeats().get(0).getSeatId());
+		assertEquals(14, ticketService.numSeatsAvailable());
+		assertEquals(1, ticketService.getMetrics().getHoldsReleased());
+		assertEquals(0, ticketService.releaseHold(seatHold.getSeatHoldId(), "late"));
+		assertEquals(2, ticketService.releaseHold(seatHold.getSeatHoldId(), "onTime"));
+		assertEquals(16, ticketService.numSeatsAvailable());
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testShutdownCompletesEveryCommandTaken() throws InterruptedException {
+		ticketService.shutdown();
+		ticketService = new SequencedTicketService(50, 50, 60000L, new TimingWheelExpiryScheduler(), 8);
+		ConcurrentLinkedQueue<CompletableFuture<SeatHold>> futures = new ConcurrentLinkedQueue<>();
+
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			String customerEmail = "customer" + i;
+			Thread thread = new Thread(() -> {
+				try {
+					while (true) {
+						futures.add(ticketService.findAndHoldSeatsAsync(1, customerEmail));
+					}
+				} catch (IllegalStateException e) {
+					// refused once the service is shut down
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		Thread.sleep(50L);
+		ticketService.shutdown();
+		for (Thread thread : threads) {
+			thread.join(5000L);
+			assertFalse(thread.isAlive());
+		}
+
+		// no command is claimed after the STOP and left on the ring
+		for (CompletableFuture<SeatHold> future : futures) {
+			assertTrue(future.isDone());
+		}
+	}
+
+	/**
+	 * Runs the hook on the writer thread before every expiry it schedules
+	 */
+	private static final class HookedExpiryScheduler implements HoldExpiryScheduler {
+
+		private final HoldExpiryScheduler scheduler = new TimingWheelExpiryScheduler();
+
+		private final Runnable hook;
+
+		private HookedExpiryScheduler(Runnable hook) {
+			this.hook = hook;
+		}
+
+		@Override
+		public HoldExpiry schedule(Runnable task, long delayMillis) {
+			hook.run();
+			return scheduler.schedule(task, delayMillis);
+		}
+
+		@Override
+		public int getPendingCount() {
+			return scheduler.getPendingCount();
+		}
+
+		@Override
+		public void shutdown() {
+			scheduler.shutdown();
+		}
+	}
+
+	@Test
+	public void testNoCommandAfterShutdown() {
+		ticketService.shutdown();
+		try {
+			ticketService.findAndHoldSeats(1, "customerEmail");
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("The service is shut down", e.getMessage());
+		}
+	}
+}
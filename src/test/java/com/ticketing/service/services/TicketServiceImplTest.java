@@ -1,11 +1,28 @@
 package com.ticketing.service.services;
 
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
 import org.junit.Before;
 import org.junit.Test;
 
+import com.ticketing.service.metrics.MetricsSnapshot;
+import com.ticketing.service.metrics.TicketServiceMetrics;
+import com.ticketing.service.model.BestFitStrategy;
+import com.ticketing.service.model.CenteredSeatQuality;
+import com.ticketing.service.model.HoldRequest;
+import com.ticketing.service.model.ReserveRequest;
+import com.ticketing.service.model.Seat;
 import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.SeatMap;
+import com.ticketing.service.model.SeatMapDelta;
 import com.ticketing.service.model.Status;
 import com.ticketing.service.model.Venue;
+import com.ticketing.service.model.VenueLayout;
 
 import junit.framework.TestCase;
 
@@ -241,11 +258,394 @@ public class TicketServiceImplTest extends TestCase  {
 		assertEquals(11, ticketService.numSeatsAvailable());
 	}
 	
+	@Test
+	public void testOnlyExpiredHoldOfCustomerIsReleased(){
+		SeatHold seatHold1 = ticketService.findAndHoldSeats(2, "customerEmail");
+		SeatHold seatHold2 = ticketService.findAndHoldSeats(2, "customerEmail");
+		assertFalse(seatHold1.isError());
+		assertFalse(seatHold2.isError());
+		
+		String message = ticketService.reserveSeats(seatHold2.getSeatHoldId(), "customerEmail");
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, message);
+		
+		try        
+        {
+            Thread.sleep(threadSleepTime);
+        } 
+        catch(InterruptedException ex) 
+        {
+            Thread.currentThread().interrupt();
+        }
+		
+		// The first hold of the customer times out, the reserved one is kept
+		assertStatus(0,0,Status.AVAILABLE);
+		assertStatus(0,1,Status.AVAILABLE);
+		assertStatus(0,2,Status.RESERVED);
+		assertStatus(0,3,Status.RESERVED);
+		assertEquals(14, ticketService.numSeatsAvailable());
+		assertEquals(2, ticketService.numSeatsAvailable(0));
+	}
+	
+	@Test
+	public void testConcurrentHoldsNeverShareSeats() throws InterruptedException {
+		ticketService = new TicketServiceImpl(10, 8, onHoldTimeOut);
+		ConcurrentLinkedQueue<SeatHold> seatHolds = new ConcurrentLinkedQueue<>();
+		
+		Thread[] threads = new Thread[8];
+		for (int i = 0; i < threads.length; i++) {
+			String customerEmail = "customer" + i;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 5; j++) {
+					seatHolds.add(ticketService.findAndHoldSeats(2, customerEmail));
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		
+		Set<Integer> heldSeats = new HashSet<>();
+		for (SeatHold seatHold : seatHolds) {
+			assertFalse(seatHold.isError());
+			for (Seat seat : seatHold.getSeats()) {
+				assertTrue(heldSeats.add(seatHold.getRowId() * 8 + seat.getSeatId()));
+			}
+		}
+		assertEquals(80, heldSeats.size());
+		assertEquals(0, ticketService.numSeatsAvailable());
+	}
+	
+	@Test
+	public void testSeatHoldIdsAreNeverReused() throws InterruptedException {
+		// the rowIds run into three digits
+		ticketService = new TicketServiceImpl(new Venue("event1", 150, 4), 200L, new TimingWheelExpiryScheduler());
+		Set<Long> seatHoldIds = new HashSet<>();
+		for (int i = 0; i < 149; i++) {
+			SeatHold seatHold = ticketService.findAndHoldSeats(4, "customer" + i);
+			ticketService.reserveSeats(seatHold.getSeatHoldId(), "customer" + i);
+			assertTrue(seatHoldIds.add(seatHold.getSeatHoldId()));
+		}
+
+		SeatHold expired = ticketService.findAndHoldSeats(2, "A1");
+		Thread.sleep(500);
+		SeatHold seatHold = ticketService.findAndHoldSeats(2, "A1");
+		assertEquals(expired.getSeats().get(0).getSeatId(), seatHold.getSeats().get(0).getSeatId());
+		assertTrue(expired.getSeatHoldId() != seatHold.getSeatHoldId());
+
+		// a late reserve of the expired hold doesn't commit the new one
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService.reserveSeats(expired.getSeatHoldId(), "A1"));
+		assertStatus(149, 0, Status.ON_HOLD);
+	}
+
+	@Test
+	public void testRankedSeats(){
+		Venue venue = new Venue("event1", 5, 9);
+		venue.setSeatQuality(new CenteredSeatQuality(2, 10.0, 1.0), 4);
+		TicketServiceImpl rankedService = new TicketServiceImpl(venue, onHoldTimeOut, new TimingWheelExpiryScheduler());
+
+		// the center of the preferred row first, then next to it
+		SeatHold center = rankedService.findAndHoldSeats(3, "A1");
+		assertEquals(2, center.getRowId());
+		assertEquals(3, center.getSeats().get(0).getSeatId());
+		SeatHold beside = rankedService.findAndHoldSeats(2, "B1");
+		assertEquals(2, beside.getRowId());
+		assertEquals(1, beside.getSeats().get(0).getSeatId());
+
+		// too large to be ranked, the front left run takes it
+		SeatHold large = rankedService.findAndHoldSeats(6, "C1");
+		assertEquals(0, large.getRowId());
+		assertEquals(0, large.getSeats().get(0).getSeatId());
+
+		List<SeatHold> batch = rankedService.findAndHoldSeatsBatch(Arrays.asList(new HoldRequest(4, "D1")));
+		assertEquals(1, batch.get(0).getRowId());
+		assertEquals(2, batch.get(0).getSeats().get(0).getSeatId());
+		rankedService.getExpiryScheduler().shutdown();
+	}
+
+	@Test
+	public void testSeatMap(){
+		SeatMap before = ticketService.getSeatMap();
+		SeatHold seatHold = ticketService.findAndHoldSeats(3, "customerEmail");
+		ticketService.reserveSeats(seatHold.getSeatHoldId(), "customerEmail");
+
+		SeatMap after = ticketService.getSeatMap();
+		assertEquals(before.getVersion() + 2, after.getVersion());
+		assertEquals(Status.RESERVED, after.getStatus(0, 2));
+		assertEquals(Status.AVAILABLE, before.getStatus(0, 2));
+		// a client with the first map only needs the changes since
+		SeatMapDelta delta = ticketService.getSeatMapChanges(before.getVersion());
+		assertEquals(2, delta.size());
+		assertEquals(Status.ON_HOLD, delta.getStatus(0));
+		assertEquals(Status.RESERVED, delta.applyTo(before).getStatus(0, 2));
+	}
+
+	@Test
+	public void testExpiryIsOneChangeOfTheRow(){
+		ticketService.findAndHoldSeats(3, "customerEmail");
+		SeatMap held = ticketService.getSeatMap();
+
+		try
+		{
+			Thread.sleep(threadSleepTime);
+		}
+		catch(InterruptedException ex)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		// the seats of the hold are set free in a single ranged update
+		SeatMapDelta delta = ticketService.getSeatMapChanges(held.getVersion());
+		assertEquals(1, delta.size());
+		assertEquals(0, delta.getRowId(0));
+		assertEquals(0, delta.getSeatId(0));
+		assertEquals(3, delta.getCount(0));
+		assertEquals(Status.AVAILABLE, delta.getStatus(0));
+		assertEquals(held.getVersion() + 1, ticketService.getSeatMap().getVersion());
+	}
+
+	@Test
+	public void testLayoutAvailability(){
+		Venue venue = new Venue("event1", 6, 4);
+		VenueLayout layout = new VenueLayout();
+		layout.addSection("orchestra", 0, 1, "premium");
+		layout.addSection("mezzanine", 2, 3, "standard");
+		layout.addSection("balcony", 4, 5, "standard");
+		venue.setLayout(layout);
+		TicketServiceImpl layoutService = new TicketServiceImpl(venue, onHoldTimeOut, new TimingWheelExpiryScheduler());
+
+		SeatHold reserved = layoutService.findAndHoldSeats(4, "A1");
+		layoutService.reserveSeats(reserved.getSeatHoldId(), "A1");
+		layoutService.findAndHoldSeats(3, "B1");
+		assertEquals(1L, layoutService.numSeatsAvailableInSection("orchestra"));
+		assertEquals(5L, layoutService.numSeatsAvailable(1, 2));
+		assertEquals(1L, layoutService.numSeatsAvailableInTier("premium"));
+		assertEquals(16L, layoutService.numSeatsAvailableInTier("standard"));
+
+		// released holds count again
+		layoutService.releaseHolds("B1");
+		assertEquals(4L, layoutService.numSeatsAvailableInSection("orchestra"));
+		assertEquals(4L, layoutService.numSeatsAvailableInTier("premium"));
+		try {
+			layoutService.numSeatsAvailableInSection("pit");
+			fail("the venue has no pit");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		layoutService.getExpiryScheduler().shutdown();
+	}
+
+	@Test
+	public void testAllocationStrategy(){
+		TicketServiceImpl bestFitService = new TicketServiceImpl(2, 6, onHoldTimeOut, new TimingWheelExpiryScheduler());
+		bestFitService.setAllocationStrategy(new BestFitStrategy());
+		bestFitService.findAndHoldSeats(4, "A1");
+		bestFitService.findAndHoldSeats(3, "B1");
+
+		// the 2 seats left in the first row fit the party better than the
+		// 3 left in the second
+		SeatHold seatHold = bestFitService.findAndHoldSeats(2, "C1");
+		assertEquals(0, seatHold.getRowId());
+		assertEquals(4, seatHold.getSeats().get(0).getSeatId());
+		seatHold = bestFitService.findAndHoldSeats(1, "D1");
+		assertEquals(1, seatHold.getRowId());
+		assertEquals(3, seatHold.getSeats().get(0).getSeatId());
+		bestFitService.getExpiryScheduler().shutdown();
+	}
+
+	@Test
+	public void testSplitHolds(){
+		TicketServiceImpl splitService = new TicketServiceImpl(3, 6, onHoldTimeOut, new TimingWheelExpiryScheduler());
+		for (String customerEmail : Arrays.asList("A1", "B1", "C1")) {
+			splitService.findAndHoldSeats(4, customerEmail);
+		}
+
+		// each row has 2 seats left, the party can't be split by default
+		assertTrue(splitService.findAndHoldSeats(6, "D1").isError());
+		splitService.setMaxSplitRows(3);
+		SeatHold seatHold = splitService.findAndHoldSeats(6, "D1");
+		assertFalse(seatHold.isError());
+		assertEquals(6, seatHold.getTotalSeats());
+		assertEquals(0, seatHold.getRowId());
+		for (int i = 0; i < 6; i++) {
+			assertEquals(i / 2, seatHold.getSeats().get(i).getRowId());
+			assertEquals(4 + i % 2, seatHold.getSeats().get(i).getSeatId());
+		}
+		assertEquals(0, splitService.numSeatsAvailable());
+
+		// listed and reserved as one hold
+		List<SeatHold> seatHolds = splitService.getSeatHolds("D1");
+		assertEquals(1, seatHolds.size());
+		assertEquals(6, seatHolds.get(0).getSeats().size());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_EMAIL_MISMATCH,
+				splitService.reserveSeats(seatHold.getSeatHoldId(), "A1"));
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, splitService.reserveSeats(seatHold.getSeatHoldId(), "D1"));
+		for (int rowId = 0; rowId < 3; rowId++) {
+			assertEquals(Status.RESERVED, splitService.getVenue().getRow(rowId).getStatus(5));
+		}
+		assertTrue(splitService.getSeatHolds("D1").isEmpty());
+
+		// released as one hold too
+		assertEquals(4, splitService.releaseHolds("A1"));
+		assertEquals(4, splitService.releaseHolds("B1"));
+		SeatHold released = splitService.findAndHoldSeats(6, "E1");
+		assertFalse(released.isError());
+		assertEquals(6, splitService.releaseHolds("E1"));
+		assertEquals(8, splitService.numSeatsAvailable());
+		splitService.getExpiryScheduler().shutdown();
+	}
+
+	@Test
+	public void testCustomerHolds(){
+		ticketService.setMaxSeatsPerCustomer(5);
+		SeatHold seatHold1 = ticketService.findAndHoldSeats(2, "A1@example.com");
+		SeatHold seatHold2 = ticketService.findAndHoldSeats(3, " a1@Example.com ");
+		ticketService.findAndHoldSeats(2, "b1@example.com");
+
+		// the emails are the same customer, who is at the limit now
+		SeatHold refused = ticketService.findAndHoldSeats(1, "a1@example.com");
+		assertTrue(refused.isError());
+		assertEquals(TicketServiceImpl.TICKET_ERROR_CUSTOMER_LIMIT_REACHED.replace("{0}", "5"),
+				refused.getErrorMessage());
+		assertEquals(1, ticketService.getMetrics().snapshot().getHoldsCustomerLimitReached());
+
+		List<SeatHold> seatHolds = ticketService.getSeatHolds("a1@example.com");
+		assertEquals(2, seatHolds.size());
+		assertEquals(seatHold1.getSeatHoldId(), seatHolds.get(0).getSeatHoldId());
+		assertEquals(seatHold2.getSeatHoldId(), seatHolds.get(1).getSeatHoldId());
+		assertEquals("a1@example.com", seatHolds.get(1).getSeats().get(0).getEmailId());
+
+		// reserving a hold frees its seats from the limit
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+				ticketService.reserveSeats(seatHold1.getSeatHoldId(), "A1@EXAMPLE.COM"));
+		assertFalse(ticketService.findAndHoldSeats(2, "a1@example.com").isError());
+
+		// logging out releases the other holds of the customer only
+		assertEquals(5, ticketService.releaseHolds("a1@example.com"));
+		assertTrue(ticketService.getSeatHolds("a1@example.com").isEmpty());
+		assertEquals(1, ticketService.getSeatHolds("b1@example.com").size());
+		assertEquals(12, ticketService.numSeatsAvailable());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService.reserveSeats(seatHold2.getSeatHoldId(), "a1@example.com"));
+		assertEquals(2, ticketService.getMetrics().snapshot().getHoldsReleased());
+	}
+
+	@Test
+	public void testBatchesMatchSequentialCalls(){
+		List<HoldRequest> holdRequests = Arrays.asList(new HoldRequest(3, "A1"), new HoldRequest(5, "B1"),
+				new HoldRequest(4, "C1"), new HoldRequest(1, "D1"), new HoldRequest(20, "E1"));
+		TicketServiceImpl sequentialService = new TicketServiceImpl(4, 4, onHoldTimeOut);
+		
+		List<SeatHold> seatHolds = ticketService.findAndHoldSeatsBatch(holdRequests);
+		assertEquals(holdRequests.size(), seatHolds.size());
+		for (int i = 0; i < holdRequests.size(); i++) {
+			HoldRequest holdRequest = holdRequests.get(i);
+			SeatHold expected = sequentialService.findAndHoldSeats(holdRequest.getNumSeats(), holdRequest.getCustomerEmail());
+			
+			assertEquals(expected.isError(), seatHolds.get(i).isError());
+			assertEquals(expected.getErrorMessage(), seatHolds.get(i).getErrorMessage());
+			assertEquals(expected.getSeatHoldId(), seatHolds.get(i).getSeatHoldId());
+		}
+		assertEquals(sequentialService.numSeatsAvailable(), ticketService.numSeatsAvailable());
+		
+		// the same hold twice, a wrong email and an unknown hold
+		List<ReserveRequest> reserveRequests = Arrays.asList(
+				new ReserveRequest(seatHolds.get(0).getSeatHoldId(), "A1"),
+				new ReserveRequest(seatHolds.get(0).getSeatHoldId(), "A1"),
+				new ReserveRequest(seatHolds.get(2).getSeatHoldId(), "A1"),
+				new ReserveRequest(seatHolds.get(3).getSeatHoldId(), "D1"),
+				new ReserveRequest(12345, "A1"));
+		
+		List<String> messages = ticketService.reserveSeatsBatch(reserveRequests);
+		for (int i = 0; i < reserveRequests.size(); i++) {
+			ReserveRequest reserveRequest = reserveRequests.get(i);
+			assertEquals(sequentialService.reserveSeats(reserveRequest.getSeatHoldId(), reserveRequest.getCustomerEmail()),
+					messages.get(i));
+		}
+		assertEquals(Arrays.asList(TicketServiceImpl.TICKET_MESSAGE_SUCCESS, TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				TicketServiceImpl.TICKET_MESSAGE_EMAIL_MISMATCH, TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+				TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL), messages);
+		
+		assertStatus(0,0,Status.RESERVED);
+		assertStatus(0,3,Status.RESERVED);
+		assertStatus(1,0,Status.ON_HOLD);
+		assertEquals(8, ticketService.numSeatsAvailable());
+	}
+	
+	@Test
+	public void testBatchHoldsExpire(){
+		List<SeatHold> seatHolds = ticketService.findAndHoldSeatsBatch(
+				Arrays.asList(new HoldRequest(2, "A1"), new HoldRequest(4, "B1"), new HoldRequest(2, "C1")));
+		assertEquals(8, ticketService.numSeatsAvailable());
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_SUCCESS,
+				ticketService.reserveSeats(seatHolds.get(2).getSeatHoldId(), "C1"));
+		
+		try        
+        {
+            Thread.sleep(threadSleepTime);
+        } 
+        catch(InterruptedException ex) 
+        {
+            Thread.currentThread().interrupt();
+        }
+		
+		assertStatus(0,0,Status.AVAILABLE);
+		assertStatus(0,2,Status.RESERVED);
+		assertStatus(1,0,Status.AVAILABLE);
+		assertEquals(14, ticketService.numSeatsAvailable());
+	}
+	
+	@Test
+	public void testMetrics() throws Exception {
+		SeatHold seatHold1 = ticketService.findAndHoldSeats(3, "A1");
+		SeatHold seatHold2 = ticketService.findAndHoldSeats(2, "B1");
+		ticketService.findAndHoldSeats(20, "C1");
+		ticketService.findAndHoldSeats(5, "C1");
+		ticketService.reserveSeats(seatHold1.getSeatHoldId(), "A1");
+		ticketService.reserveSeats(seatHold2.getSeatHoldId(), "A1");
+		ticketService.reserveSeats(12345, "A1");
+		
+		MetricsSnapshot snapshot = ticketService.getMetrics().snapshot();
+		assertEquals(2, snapshot.getHoldsSucceeded());
+		assertEquals(1, snapshot.getHoldsTooManyRequested());
+		assertEquals(1, snapshot.getHoldsConsecutiveNotAvailable());
+		assertEquals(1, snapshot.getReservesSucceeded());
+		assertEquals(1, snapshot.getReservesEmailMismatch());
+		assertEquals(1, snapshot.getReservesUnsuccessful());
+		assertEquals(1, snapshot.getLiveHolds());
+		assertEquals(4, snapshot.getFindAndHoldSeatsLatency().getCount());
+		assertEquals(3, snapshot.getReserveSeatsLatency().getCount());
+		assertEquals(1, snapshot.getHoldToReserveTime().getCount());
+		
+		try        
+        {
+            Thread.sleep(threadSleepTime);
+        } 
+        catch(InterruptedException ex) 
+        {
+            Thread.currentThread().interrupt();
+        }
+		
+		snapshot = ticketService.getMetrics().snapshot();
+		assertEquals(1, snapshot.getHoldsExpired());
+		assertEquals(0, snapshot.getLiveHolds());
+		
+		// the same counters over JMX
+		ticketService.getMetrics().registerMBean("metricsTest");
+		try {
+			assertEquals(1L, ManagementFactory.getPlatformMBeanServer()
+					.getAttribute(TicketServiceMetrics.objectName("metricsTest"), "HoldsExpired"));
+		} finally {
+			assertTrue(ticketService.getMetrics().unregisterMBean("metricsTest"));
+		}
+	}
+	
 	
 	
     private void assertStatus(int rowId, int seatId, Status status)
     {
-    	assertEquals(status, Venue.venueTickets.get(rowId).getSeats().get(seatId).getStatus());
+    	assertEquals(status, ticketService.getVenue().getRow(rowId).getSeats().get(seatId).getStatus());
     }
 	
 }
@@ -0,0 +1,64 @@
+package com.ticketing.service.services;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.services.HoldExpiryScheduler.HoldExpiry;
+
+import junit.framework.TestCase;
+
+public class TimingWheelExpirySchedulerTest extends TestCase {
+
+	TimingWheelExpiryScheduler scheduler;
+
+	@Before
+	public void setUp() {
+		// a small wheel so the timeouts below take several rounds
+		scheduler = new TimingWheelExpiryScheduler(5L, 8);
+	}
+
+	@After
+	public void tearDown() {
+		scheduler.shutdown();
+	}
+
+	@Test
+	public void testScheduledTaskRunsAfterDelay() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+		long start = System.nanoTime();
+
+		scheduler.schedule(latch::countDown, 200L);
+
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 200L);
+	}
+
+	@Test
+	public void testCancelledTaskDoesNotRun() throws InterruptedException {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch latch = new CountDownLatch(1);
+
+		HoldExpiry expiry = scheduler.schedule(runs::incrementAndGet, 100L);
+		scheduler.schedule(latch::countDown, 300L);
+
+		assertTrue(expiry.cancel());
+		assertFalse(expiry.cancel());
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertEquals(0, runs.get());
+	}
+
+	@Test
+	public void testCancelAfterExpiry() throws InterruptedException {
+		CountDownLatch latch = new CountDownLatch(1);
+
+		HoldExpiry expiry = scheduler.schedule(latch::countDown, 50L);
+
+		assertTrue(latch.await(2, TimeUnit.SECONDS));
+		assertFalse(expiry.cancel());
+	}
+}
@@ -0,0 +1,77 @@
+package com.ticketing.service.services;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.model.SeatHold;
+import com.ticketing.service.model.Status;
+import com.ticketing.service.model.Venue;
+
+import junit.framework.TestCase;
+
+public class VenueRegistryTest extends TestCase {
+
+	VenueRegistry registry;
+
+	@Before
+	public void setUp() {
+		registry = new VenueRegistry(eventId -> eventId.startsWith("event") ? new Venue(eventId, 4, 4) : null, 2000L);
+	}
+
+	@Test
+	public void testEventsAreLoadedOnDemand() {
+		assertFalse(registry.isLoaded("event1"));
+
+		TicketServiceImpl ticketService = registry.getTicketService("event1");
+
+		assertTrue(registry.isLoaded("event1"));
+		assertSame(ticketService, registry.getTicketService("event1"));
+		assertEquals("event1", ticketService.getVenue().getEventId());
+	}
+
+	@Test
+	public void testUnknownEvent() {
+		try {
+			registry.getTicketService("concert");
+			fail("Expected the event to be unknown");
+		} catch (IllegalArgumentException ex) {
+			assertFalse(registry.isLoaded("concert"));
+		}
+	}
+
+	@Test
+	public void testEventsDoNotShareSeats() {
+		TicketServiceImpl ticketService1 = registry.getTicketService("event1");
+		TicketServiceImpl ticketService2 = registry.getTicketService("event2");
+
+		SeatHold seatHold = ticketService1.findAndHoldSeats(4, "customerEmail");
+		ticketService1.reserveSeats(seatHold.getSeatHoldId(), "customerEmail");
+
+		assertEquals(12, ticketService1.numSeatsAvailable());
+		assertEquals(16, ticketService2.numSeatsAvailable());
+		assertEquals(Status.RESERVED, ticketService1.getVenue().getRow(0).getStatus(0));
+		assertEquals(Status.AVAILABLE, ticketService2.getVenue().getRow(0).getStatus(0));
+		assertNotSame(ticketService1.getExpiryScheduler(), ticketService2.getExpiryScheduler());
+
+		// the same seats in the other event get the same seatHoldId
+		assertEquals(TicketServiceImpl.TICKET_MESSAGE_UNSUCCESSFUL,
+				ticketService2.reserveSeats(seatHold.getSeatHoldId(), "customerEmail"));
+	}
+
+	@Test
+	public void testLoadAndUnload() {
+		registry.load(new Venue("gala", 2, 10));
+		assertEquals(20, registry.getTicketService("gala").numSeatsAvailable());
+
+		try {
+			registry.load(new Venue("gala", 2, 10));
+			fail("Expected the event to be loaded already");
+		} catch (IllegalStateException ex) {
+			assertEquals(1, registry.getLoadedEventIds().size());
+		}
+
+		assertTrue(registry.unload("gala"));
+		assertFalse(registry.unload("gala"));
+		assertFalse(registry.isLoaded("gala"));
+	}
+}
@@ -0,0 +1,119 @@
+package com.ticketing.service.services;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.model.SeatHold;
+
+import junit.framework.TestCase;
+
+public class WaitingRoomTicketServiceTest extends TestCase {
+
+	TicketServiceImpl impl;
+
+	@Before
+	public void setUp() {
+		impl = new TicketServiceImpl(4, 10, 60000L, new TimingWheelExpiryScheduler());
+	}
+
+	@After
+	public void tearDown() {
+		impl.getExpiryScheduler().shutdown();
+	}
+
+	@Test
+	public void testSoldOutIsRejectedWithoutQueueing() {
+		WaitingRoomTicketService waitingRoom = new WaitingRoomTicketService(impl, 1000.0, 1000L);
+		for (int i = 0; i < 4; i++) {
+			assertFalse(waitingRoom.findAndHoldSeats(10, "A" + i).isError());
+		}
+		SeatHold seatHold = waitingRoom.findAndHoldSeats(2, "B1");
+		assertTrue(seatHold.isError());
+		assertEquals("Sorry, 2 seats are no longer available for this event.", seatHold.getErrorMessage());
+		assertEquals(4, waitingRoom.getAdmittedCount());
+		assertEquals(1, waitingRoom.getRejectedCount());
+		assertEquals(0, waitingRoom.getQueueLength());
+	}
+
+	@Test
+	public void testHoldsAreAdmittedAtTheRate() throws InterruptedException {
+		// 5 holds go through at once, the 15 others one every 20 ms
+		WaitingRoomTicketService waitingRoom = new WaitingRoomTicketService(impl, 50.0, 1000L);
+		List<Thread> customers = new ArrayList<>();
+		long startNanos = System.nanoTime();
+		for (int i = 0; i < 20; i++) {
+			String customerEmail = "C" + i;
+			Thread customer = new Thread(() -> waitingRoom.findAndHoldSeats(1, customerEmail));
+			customer.start();
+			customers.add(customer);
+		}
+		for (Thread customer : customers) {
+			customer.join();
+		}
+		assertTrue(System.nanoTime() - startNanos >= TimeUnit.MILLISECONDS.toNanos(250));
+		assertEquals(20, waitingRoom.getAdmittedCount());
+		assertEquals(20, impl.numSeatsAvailable());
+	}
+
+	@Test
+	public void testPositionsFollowArrival() throws InterruptedException {
+		WaitingRoomTicketService waitingRoom = new WaitingRoomTicketService(impl, 10.0, 1000L);
+		waitingRoom.setMaxWaitMillis(100L);
+		List<Thread> customers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			String customerEmail = "C" + i;
+			Thread customer = new Thread(() -> waitingRoom.findAndHoldSeats(1, customerEmail));
+			customer.start();
+			customers.add(customer);
+			// the first one goes through on the only token, the others queue
+			// up in the order they come
+			while (waitingRoom.getQueueLength() + waitingRoom.getAdmittedCount() < i + 1) {
+				Thread.sleep(1);
+			}
+		}
+		assertEquals(-1L, waitingRoom.getPosition("C0"));
+		assertEquals(0L, waitingRoom.getPosition("C1"));
+		assertEquals(1L, waitingRoom.getPosition("C2"));
+		assertEquals(2L, waitingRoom.getPosition("C3"));
+		for (Thread customer : customers) {
+			customer.join();
+		}
+		// at 10 per second, not all of them got through in 100 ms
+		assertTrue(waitingRoom.getTimedOutCount() > 0);
+		assertEquals(4, waitingRoom.getAdmittedCount() + waitingRoom.getTimedOutCount());
+		assertEquals(0, waitingRoom.getQueueLength());
+	}
+
+	@Test
+	public void testRateFollowsHoldLatency() {
+		WaitingRoomTicketService waitingRoom = new WaitingRoomTicketService(impl, 100.0, 10L);
+		long nowNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+
+		// over the target, the rate is cut
+		waitingRoom.recordHoldLatency(TimeUnit.MILLISECONDS.toNanos(50), nowNanos);
+		assertEquals(70.0, waitingRoom.getRatePerSecond(), 0.001);
+
+		// not adjusted again within 100 ms, the fast holds bring the average
+		// latency down meanwhile
+		for (int i = 0; i < 30; i++) {
+			nowNanos += TimeUnit.MILLISECONDS.toNanos(1);
+			waitingRoom.recordHoldLatency(TimeUnit.MILLISECONDS.toNanos(1), nowNanos);
+		}
+		assertEquals(70.0, waitingRoom.getRatePerSecond(), 0.001);
+		nowNanos += TimeUnit.MILLISECONDS.toNanos(100);
+		waitingRoom.recordHoldLatency(TimeUnit.MILLISECONDS.toNanos(1), nowNanos);
+		assertEquals(75.0, waitingRoom.getRatePerSecond(), 0.001);
+
+		// never below a tenth of the starting rate
+		for (int i = 0; i < 50; i++) {
+			nowNanos += TimeUnit.MILLISECONDS.toNanos(100);
+			waitingRoom.recordHoldLatency(TimeUnit.SECONDS.toNanos(1), nowNanos);
+		}
+		assertEquals(10.0, waitingRoom.getRatePerSecond(), 0.001);
+	}
+}
@@ -0,0 +1,76 @@
+package com.ticketing.service.util;
+
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ticketing.service.services.TicketServiceImpl;
+import com.ticketing.service.services.TimingWheelExpiryScheduler;
+
+import junit.framework.TestCase;
+
+public class LoadGeneratorTest extends TestCase {
+
+	TicketServiceImpl impl;
+
+	LoadProfile profile;
+
+	@Before
+	public void setUp() {
+		impl = new TicketServiceImpl(5, 10, 60000L, new TimingWheelExpiryScheduler());
+		profile = new LoadProfile();
+		profile.setClients(200);
+		profile.setBaseRatePerSecond(1000.0);
+		profile.setPeakRatePerSecond(50000.0);
+		profile.setBurstMillis(5L);
+		profile.setThinkMillis(0L, 5L);
+		profile.setPlatformThreads(16);
+	}
+
+	@After
+	public void tearDown() {
+		impl.getExpiryScheduler().shutdown();
+	}
+
+	@Test
+	public void testPlanIsReproducibleFromTheSeed() {
+		LoadGenerator.Plan plan = LoadGenerator.plan(profile);
+		LoadGenerator.Plan again = LoadGenerator.plan(profile);
+		assertTrue(Arrays.equals(plan.arrivalNanos, again.arrivalNanos));
+		assertTrue(Arrays.equals(plan.partySizes, again.partySizes));
+		assertTrue(Arrays.equals(plan.thinkNanos, again.thinkNanos));
+		assertTrue(Arrays.equals(plan.converts, again.converts));
+
+		// in arrival order, the burst bringing the first clients in faster
+		// than the base rate brings the last ones
+		for (int client = 1; client < plan.arrivalNanos.length; client++) {
+			assertTrue(plan.arrivalNanos[client] >= plan.arrivalNanos[client - 1]);
+		}
+		assertTrue(plan.arrivalNanos[99] < plan.arrivalNanos[199] - plan.arrivalNanos[100]);
+
+		profile.setSeed(43L);
+		assertFalse(Arrays.equals(plan.arrivalNanos, LoadGenerator.plan(profile).arrivalNanos));
+	}
+
+	@Test
+	public void testSurgeSellsOutWithoutOverselling() throws InterruptedException {
+		LoadReport report = new LoadGenerator(impl, profile).run();
+
+		long failedHolds = 0;
+		for (String failure : report.getFailures().keySet()) {
+			assertTrue(failure, failure.startsWith("hold: "));
+			failedHolds += report.getFailures().get(failure);
+		}
+		assertEquals(200, report.getHoldsHeld() + failedHolds);
+		assertEquals(200, report.getHoldLatency().getCount());
+		assertEquals(report.getHoldsHeld(), report.getReserved() + report.getHoldsAbandoned());
+		assertEquals(report.getReserved(), report.getReserveLatency().getCount());
+
+		// no hold expires in the run, every seat is held or sold once
+		assertTrue(report.getSoldOutNanos() > 0);
+		assertEquals(0, impl.numSeatsAvailable());
+		assertTrue(report.getSeatsSold() <= 50);
+	}
+}